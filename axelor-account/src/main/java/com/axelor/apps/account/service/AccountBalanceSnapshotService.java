@@ -0,0 +1,64 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.base.db.Period;
+
+/**
+ * Maintains the debit and credit totals of the move lines of closed periods, per company, account,
+ * partner, period and journal, so that reports can read them instead of aggregating move lines.
+ */
+public interface AccountBalanceSnapshotService {
+
+  /**
+   * Compute again the snapshots of the given period from its daybook and validated moves.
+   *
+   * @param period a period, usually just closed
+   */
+  public void computeSnapshots(Period period);
+
+  /**
+   * Remove the snapshots of the given period, which has to be done when it is opened again.
+   *
+   * @param period a period
+   */
+  public void removeSnapshots(Period period);
+
+  /**
+   * Add the lines of the given move to the snapshots of its period, if the period has some.
+   *
+   * @param move a move just validated or added to the daybook
+   */
+  public void addMove(Move move);
+
+  /**
+   * Remove the lines of the given move from the snapshots of its period, if the period has some.
+   *
+   * @param move a move about to be canceled or removed
+   */
+  public void removeMove(Move move);
+
+  /**
+   * Check whether the snapshots of the given period have been computed.
+   *
+   * @param period a period
+   * @return true if the period has snapshots
+   */
+  public boolean hasSnapshots(Period period);
+}
@@ -0,0 +1,238 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountBalanceSnapshot;
+import com.axelor.apps.account.db.Journal;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.Period;
+import com.axelor.apps.base.db.repo.PeriodRepository;
+import com.axelor.db.JPA;
+import com.google.inject.persist.Transactional;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AccountBalanceSnapshotServiceImpl implements AccountBalanceSnapshotService {
+
+  protected static final int SNAPSHOT_BATCH_SIZE = 100;
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Override
+  @Transactional
+  public void computeSnapshots(Period period) {
+    lockPeriod(period);
+    removeSnapshots(period);
+
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT move.company.id, journal.id, account.id, partner.id, "
+                    + "SUM(self.debit), SUM(self.credit), COUNT(self.id) "
+                    + "FROM MoveLine self "
+                    + "JOIN self.move move "
+                    + "JOIN self.account account "
+                    + "LEFT JOIN move.journal journal "
+                    + "LEFT JOIN self.partner partner "
+                    + "WHERE move.period.id = :periodId "
+                    + "AND move.ignoreInAccountingOk = false "
+                    + "AND move.statusSelect IN (:statusList) "
+                    + "GROUP BY move.company.id, journal.id, account.id, partner.id",
+                Object[].class)
+            .setParameter("periodId", period.getId())
+            .setParameter(
+                "statusList",
+                Arrays.asList(MoveRepository.STATUS_DAYBOOK, MoveRepository.STATUS_VALIDATED))
+            .getResultList();
+
+    Long periodId = period.getId();
+    EntityManager em = JPA.em();
+    int count = 0;
+
+    for (Object[] result : resultList) {
+      AccountBalanceSnapshot snapshot = new AccountBalanceSnapshot();
+      snapshot.setCompany(em.getReference(Company.class, result[0]));
+      snapshot.setPeriod(em.getReference(Period.class, periodId));
+      snapshot.setJournal(result[1] != null ? em.getReference(Journal.class, result[1]) : null);
+      snapshot.setAccount(em.getReference(Account.class, result[2]));
+      snapshot.setPartner(result[3] != null ? em.getReference(Partner.class, result[3]) : null);
+      snapshot.setDebit((BigDecimal) result[4]);
+      snapshot.setCredit((BigDecimal) result[5]);
+      snapshot.setMoveLineCount(((Long) result[6]).intValue());
+      snapshot.setSnapshotKey(
+          computeSnapshotKey(
+              (Long) result[0], periodId, (Long) result[1], (Long) result[2], (Long) result[3]));
+      em.persist(snapshot);
+
+      if (++count % SNAPSHOT_BATCH_SIZE == 0) {
+        JPA.flush();
+        JPA.clear();
+      }
+    }
+
+    log.debug("{} balance snapshots computed for the period {}", count, periodId);
+  }
+
+  @Override
+  @Transactional
+  public void removeSnapshots(Period period) {
+    JPA.em()
+        .createQuery("DELETE FROM AccountBalanceSnapshot self WHERE self.period.id = :periodId")
+        .setParameter("periodId", period.getId())
+        .executeUpdate();
+  }
+
+  @Override
+  public void addMove(Move move) {
+    updateSnapshots(move, false);
+  }
+
+  @Override
+  public void removeMove(Move move) {
+    updateSnapshots(move, true);
+  }
+
+  @Override
+  public boolean hasSnapshots(Period period) {
+    return !JPA.em()
+        .createQuery(
+            "SELECT self.id FROM AccountBalanceSnapshot self WHERE self.period.id = :periodId",
+            Long.class)
+        .setParameter("periodId", period.getId())
+        .setMaxResults(1)
+        .getResultList()
+        .isEmpty();
+  }
+
+  @Transactional
+  protected void updateSnapshots(Move move, boolean remove) {
+    Period period = move.getPeriod();
+
+    if (period == null
+        || period.getStatusSelect() != PeriodRepository.STATUS_CLOSED
+        || move.getIgnoreInAccountingOk()
+        || move.getMoveLineList() == null) {
+      return;
+    }
+
+    lockPeriod(period);
+    if (!hasSnapshots(period)) {
+      return;
+    }
+
+    Map<Pair<Account, Partner>, AccountBalanceSnapshot> totalMap = new LinkedHashMap<>();
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      if (moveLine.getAccount() == null) {
+        continue;
+      }
+      AccountBalanceSnapshot total =
+          totalMap.computeIfAbsent(
+              Pair.of(moveLine.getAccount(), moveLine.getPartner()),
+              key -> new AccountBalanceSnapshot());
+      total.setDebit(total.getDebit().add(moveLine.getDebit()));
+      total.setCredit(total.getCredit().add(moveLine.getCredit()));
+      total.setMoveLineCount(total.getMoveLineCount() + 1);
+    }
+
+    for (Map.Entry<Pair<Account, Partner>, AccountBalanceSnapshot> entry : totalMap.entrySet()) {
+      AccountBalanceSnapshot total = entry.getValue();
+      AccountBalanceSnapshot snapshot =
+          getSnapshot(move, entry.getKey().getLeft(), entry.getKey().getRight());
+
+      if (remove) {
+        snapshot.setDebit(snapshot.getDebit().subtract(total.getDebit()));
+        snapshot.setCredit(snapshot.getCredit().subtract(total.getCredit()));
+        snapshot.setMoveLineCount(snapshot.getMoveLineCount() - total.getMoveLineCount());
+      } else {
+        snapshot.setDebit(snapshot.getDebit().add(total.getDebit()));
+        snapshot.setCredit(snapshot.getCredit().add(total.getCredit()));
+        snapshot.setMoveLineCount(snapshot.getMoveLineCount() + total.getMoveLineCount());
+      }
+      JPA.save(snapshot);
+    }
+  }
+
+  /**
+   * Lock the period row, so that the snapshots of a period are computed and updated by one
+   * transaction at a time.
+   */
+  protected void lockPeriod(Period period) {
+    JPA.em().find(Period.class, period.getId(), LockModeType.PESSIMISTIC_WRITE);
+  }
+
+  /**
+   * Build the key that is unique per snapshot. Journal and partner are optional, so a unique
+   * constraint on the many-to-one columns would not catch duplicates where they are empty.
+   */
+  protected String computeSnapshotKey(
+      Long companyId, Long periodId, Long journalId, Long accountId, Long partnerId) {
+    return String.format(
+        "%d-%d-%d-%d-%d",
+        companyId,
+        periodId,
+        journalId != null ? journalId : 0L,
+        accountId,
+        partnerId != null ? partnerId : 0L);
+  }
+
+  /** Get the snapshot of the move period and journal for the given account and partner. */
+  protected AccountBalanceSnapshot getSnapshot(Move move, Account account, Partner partner) {
+    String snapshotKey =
+        computeSnapshotKey(
+            move.getCompany().getId(),
+            move.getPeriod().getId(),
+            move.getJournal() != null ? move.getJournal().getId() : null,
+            account.getId(),
+            partner != null ? partner.getId() : null);
+
+    List<AccountBalanceSnapshot> snapshotList =
+        JPA.em()
+            .createQuery(
+                "SELECT self FROM AccountBalanceSnapshot self "
+                    + "WHERE self.snapshotKey = :snapshotKey",
+                AccountBalanceSnapshot.class)
+            .setParameter("snapshotKey", snapshotKey)
+            .getResultList();
+    if (!snapshotList.isEmpty()) {
+      return snapshotList.get(0);
+    }
+
+    AccountBalanceSnapshot snapshot = new AccountBalanceSnapshot();
+    snapshot.setCompany(move.getCompany());
+    snapshot.setPeriod(move.getPeriod());
+    snapshot.setJournal(move.getJournal());
+    snapshot.setAccount(account);
+    snapshot.setPartner(partner);
+    snapshot.setSnapshotKey(snapshotKey);
+    return snapshot;
+  }
+}
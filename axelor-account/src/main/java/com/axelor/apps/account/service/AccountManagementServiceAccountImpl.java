@@ -67,6 +67,23 @@ public class AccountManagementServiceAccountImpl extends AccountManagementServic
       boolean isPurchase,
       boolean fixedAsset)
       throws AxelorException {
+    return accountManagementCacheService.get(
+        Account.class,
+        () -> resolveProductAccount(product, company, fiscalPosition, isPurchase, fixedAsset),
+        product,
+        company,
+        fiscalPosition,
+        isPurchase,
+        fixedAsset);
+  }
+
+  protected Account resolveProductAccount(
+      Product product,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase,
+      boolean fixedAsset)
+      throws AxelorException {
 
     log.debug(
         "Get the account for the product {} (company : {}, purchase : {}, fixed asset : {}, fiscal position : {})",
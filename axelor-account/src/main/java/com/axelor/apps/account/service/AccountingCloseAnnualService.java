@@ -23,8 +23,10 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Year;
 import com.axelor.exception.AxelorException;
 import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -44,6 +46,36 @@ public interface AccountingCloseAnnualService {
       boolean allocatePerPartner)
       throws AxelorException;
 
+  /**
+   * Generate the closure and opening moves of the given balances, with one move per company
+   * holding a line for each balance, and reconcile them.
+   *
+   * @param balanceMap the balances, keyed by account id and partner id as returned by {@link
+   *     #computeBalances(Set, Year, boolean)}
+   * @return the generated moves
+   */
+  @Transactional(rollbackOn = {AxelorException.class, RuntimeException.class})
+  public List<Move> generateCloseAnnualAccounts(
+      Year year,
+      Map<Pair<Long, Long>, BigDecimal> balanceMap,
+      LocalDate endOfYearDate,
+      LocalDate reportedBalanceDate,
+      String origin,
+      String moveDescription,
+      boolean closeYear,
+      boolean openYear)
+      throws AxelorException;
+
+  /**
+   * Compute with one query the balances of the year of the given accounts and of their sub
+   * accounts.
+   *
+   * @return the balances keyed by account id and partner id, the partner id being null when the
+   *     balance is not allocated per partner
+   */
+  public Map<Pair<Long, Long>, BigDecimal> computeBalances(
+      Set<Account> accountSet, Year year, boolean allocatePerPartner);
+
   public List<Long> getAllAccountOfYear(Set<Account> accountSet, Year year);
 
   public List<Pair<Long, Long>> assignPartner(
@@ -40,12 +40,17 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.persistence.Query;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -148,6 +153,164 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
     return moveList;
   }
 
+  @Transactional(rollbackOn = {AxelorException.class, RuntimeException.class})
+  public List<Move> generateCloseAnnualAccounts(
+      Year year,
+      Map<Pair<Long, Long>, BigDecimal> balanceMap,
+      LocalDate endOfYearDate,
+      LocalDate reportedBalanceDate,
+      String origin,
+      String moveDescription,
+      boolean closeYear,
+      boolean openYear)
+      throws AxelorException {
+
+    List<Move> moveList = new ArrayList<>();
+
+    for (Map.Entry<Company, List<Triple<Account, Partner, BigDecimal>>> entry :
+        getBalanceListPerCompany(balanceMap).entrySet()) {
+
+      Company company = entry.getKey();
+      List<Triple<Account, Partner, BigDecimal>> balanceList = entry.getValue();
+
+      Move closeYearMove = null;
+      Move openYearMove = null;
+
+      if (closeYear) {
+        closeYearMove =
+            generateCloseAnnualAccountMove(
+                company,
+                balanceList,
+                endOfYearDate,
+                endOfYearDate,
+                origin,
+                moveDescription,
+                false);
+        moveList.add(closeYearMove);
+      }
+
+      if (openYear) {
+        openYearMove =
+            generateCloseAnnualAccountMove(
+                company,
+                balanceList,
+                reportedBalanceDate,
+                endOfYearDate,
+                origin,
+                moveDescription,
+                true);
+        moveList.add(openYearMove);
+      }
+
+      if (closeYearMove != null && openYearMove != null) {
+        reconcile(closeYearMove, openYearMove);
+      }
+    }
+
+    return moveList;
+  }
+
+  /**
+   * Load the accounts and partners of the given balances, grouping the non zero balances by company
+   * of the account.
+   */
+  protected Map<Company, List<Triple<Account, Partner, BigDecimal>>> getBalanceListPerCompany(
+      Map<Pair<Long, Long>, BigDecimal> balanceMap) {
+
+    Set<Long> partnerIdSet =
+        balanceMap.keySet().stream()
+            .map(Pair::getRight)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+    Map<Long, Partner> partnerMap = new HashMap<>();
+    if (!partnerIdSet.isEmpty()) {
+      JPA.em()
+          .createQuery("SELECT self FROM Partner self WHERE self.id IN (:ids)", Partner.class)
+          .setParameter("ids", partnerIdSet)
+          .getResultList()
+          .forEach(partner -> partnerMap.put(partner.getId(), partner));
+    }
+
+    Map<Company, List<Triple<Account, Partner, BigDecimal>>> balanceListMap =
+        new LinkedHashMap<>();
+    for (Map.Entry<Pair<Long, Long>, BigDecimal> entry : balanceMap.entrySet()) {
+      if (entry.getValue().signum() == 0) {
+        continue;
+      }
+      Account account = accountRepository.find(entry.getKey().getLeft());
+      Partner partner = partnerMap.get(entry.getKey().getRight());
+      balanceListMap
+          .computeIfAbsent(account.getCompany(), company -> new ArrayList<>())
+          .add(Triple.of(account, partner, entry.getValue()));
+    }
+    return balanceListMap;
+  }
+
+  /**
+   * Generate one closure or opening move holding a line for each given balance and a single
+   * counterpart line on the year closure or opening account.
+   */
+  protected Move generateCloseAnnualAccountMove(
+      Company company,
+      List<Triple<Account, Partner, BigDecimal>> balanceList,
+      LocalDate moveDate,
+      LocalDate originDate,
+      String origin,
+      String moveDescription,
+      boolean isReverse)
+      throws AxelorException {
+
+    AccountConfig accountConfig = accountConfigService.getAccountConfig(company);
+
+    Move move =
+        moveCreateService.createMove(
+            accountConfigService.getReportedBalanceJournal(accountConfig),
+            company,
+            company.getCurrency(),
+            null,
+            moveDate,
+            null,
+            MoveRepository.TECHNICAL_ORIGIN_AUTOMATIC,
+            false,
+            false,
+            !isReverse);
+    move.setFunctionalOriginSelect(
+        isReverse
+            ? MoveRepository.FUNCTIONAL_ORIGIN_OPENING
+            : MoveRepository.FUNCTIONAL_ORIGIN_CLOSURE);
+    counter = 0;
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (Triple<Account, Partner, BigDecimal> balanceTriple : balanceList) {
+      BigDecimal balance =
+          isReverse ? balanceTriple.getRight().negate() : balanceTriple.getRight();
+      this.generateCloseAnnualMoveLine(
+          move,
+          balanceTriple.getMiddle(),
+          origin,
+          balanceTriple.getLeft(),
+          moveDescription,
+          originDate,
+          balance.negate());
+      total = total.add(balance);
+    }
+
+    if (total.signum() != 0) {
+      this.generateCloseAnnualMoveLine(
+          move,
+          null,
+          origin,
+          getYearClosureOrOpeningAccount(accountConfig, isReverse),
+          moveDescription,
+          originDate,
+          total);
+    }
+
+    moveValidateService.validate(move);
+
+    return move;
+  }
+
   protected Move generateCloseAnnualAccountMove(
       Year year,
       Account account,
@@ -233,12 +396,25 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
       LocalDate originDate,
       BigDecimal balance)
       throws AxelorException {
+    return generateCloseAnnualMoveLine(
+        move, move.getPartner(), origin, account, moveDescription, originDate, balance);
+  }
+
+  protected MoveLine generateCloseAnnualMoveLine(
+      Move move,
+      Partner partner,
+      String origin,
+      Account account,
+      String moveDescription,
+      LocalDate originDate,
+      BigDecimal balance)
+      throws AxelorException {
     LocalDate moveDate = move.getDate();
 
     MoveLine moveLine =
         moveLineService.createMoveLine(
             move,
-            move.getPartner(),
+            partner,
             account,
             balance.abs(),
             balance.abs(),
@@ -295,6 +471,52 @@ public class AccountingCloseAnnualServiceImpl implements AccountingCloseAnnualSe
     }
   }
 
+  public Map<Pair<Long, Long>, BigDecimal> computeBalances(
+      Set<Account> accountSet, Year year, boolean allocatePerPartner) {
+
+    Map<Pair<Long, Long>, BigDecimal> balanceMap = new LinkedHashMap<>();
+
+    List<Long> accountIdList =
+        accountService.getAllAccountsSubAccountIncluded(
+            accountSet.stream().map(Account::getId).collect(Collectors.toList()));
+    if (accountIdList.isEmpty()) {
+      return balanceMap;
+    }
+
+    List<Object[]> resultList =
+        JPA.em()
+            .createQuery(
+                "SELECT account.id, account.useForPartnerBalance, partner.id, "
+                    + "SUM(self.debit - self.credit) "
+                    + "FROM MoveLine self "
+                    + "JOIN self.account account "
+                    + "LEFT JOIN self.partner partner "
+                    + "WHERE self.move.ignoreInAccountingOk = false "
+                    + "AND self.move.period.year = :year AND account.id IN (:accountIds) "
+                    + "AND self.move.statusSelect = :statusSelect "
+                    + "AND self.move.autoYearClosureMove is not true "
+                    + "GROUP BY account.id, account.useForPartnerBalance, partner.id "
+                    + "ORDER BY account.id, partner.id",
+                Object[].class)
+            .setParameter("year", year)
+            .setParameter("accountIds", accountIdList)
+            .setParameter("statusSelect", MoveRepository.STATUS_VALIDATED)
+            .getResultList();
+
+    for (Object[] result : resultList) {
+      Long accountId = (Long) result[0];
+      boolean useForPartnerBalance = Boolean.TRUE.equals(result[1]);
+      Long partnerId = allocatePerPartner && useForPartnerBalance ? (Long) result[2] : null;
+      BigDecimal balance = result[3] != null ? (BigDecimal) result[3] : BigDecimal.ZERO;
+
+      balanceMap.merge(Pair.of(accountId, partnerId), balance, BigDecimal::add);
+    }
+
+    LOG.debug("{} balances computed for the year : {}", balanceMap.size(), year.getCode());
+
+    return balanceMap;
+  }
+
   protected void reconcile(Move move, Move reverseMove) throws AxelorException {
 
     List<MoveLine> moveLineSortedList = move.getMoveLineList();
@@ -26,7 +26,6 @@ import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.AccountingReportRepository;
 import com.axelor.apps.account.db.repo.AnalyticMoveLineRepository;
 import com.axelor.apps.account.db.repo.FixedAssetRepository;
-import com.axelor.apps.account.db.repo.MoveLineRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.db.repo.PaymentModeRepository;
 import com.axelor.apps.account.db.repo.TaxPaymentMoveLineRepository;
@@ -36,6 +35,7 @@ import com.axelor.apps.account.report.IReport;
 import com.axelor.apps.account.service.app.AppAccountService;
 import com.axelor.apps.account.service.config.AccountConfigService;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.repo.PeriodRepository;
 import com.axelor.apps.base.db.repo.SequenceRepository;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.base.service.app.AppBaseService;
@@ -73,6 +73,19 @@ public class AccountingReportServiceImpl implements AccountingReportService {
   protected List<Object> params = new ArrayList<>();
   protected int paramNumber = 1;
 
+  /**
+   * Filter on {@link com.axelor.apps.account.db.AccountBalanceSnapshot} reading the balances of
+   * the closed periods of the report, null if the report can not use the snapshots.
+   */
+  protected String snapshotQuery;
+
+  protected List<Object> snapshotParams = new ArrayList<>();
+
+  /** Filter on the move lines not already counted in the snapshots read by the report. */
+  protected String moveLineQuery = "";
+
+  protected List<Object> moveLineParams = new ArrayList<>();
+
   @Inject
   public AccountingReportServiceImpl(
       AppAccountService appBaseService,
@@ -251,9 +264,134 @@ public class AccountingReportServiceImpl implements AccountingReportService {
 
     log.debug("Query : {}", this.query);
 
+    this.buildSnapshotQuery(accountingReport);
+
     return this.query;
   }
 
+  /**
+   * Check whether the balances of the report can be read from the snapshots of its closed periods:
+   * it has to filter move lines only on the fields kept in the snapshots.
+   */
+  protected boolean isSnapshotCompatible(AccountingReport accountingReport) {
+    int typeSelect = accountingReport.getTypeSelect();
+
+    return accountingReport.getCurrency() == null
+        && accountingReport.getPaymentMode() == null
+        && (typeSelect == AccountingReportRepository.REPORT_GENERAL_LEDGER
+            || typeSelect == AccountingReportRepository.REPORT_GENERAL_BALANCE
+            || typeSelect == AccountingReportRepository.REPORT_BALANCE
+            || typeSelect == AccountingReportRepository.REPORT_PARNER_BALANCE
+            || typeSelect == AccountingReportRepository.REPORT_JOURNAL
+            || typeSelect == AccountingReportRepository.REPORT_GENERAL_LEDGER2)
+        && !(typeSelect >= AccountingReportRepository.REPORT_PARNER_GENERAL_LEDGER
+            && accountingReport.getDisplayOnlyNotCompletelyLetteredMoveLines());
+  }
+
+  /**
+   * Build the filters used to compute the balances of the report: the snapshots of the closed
+   * periods entirely within the dates of the report, and the move lines of the other periods.
+   */
+  protected void buildSnapshotQuery(AccountingReport accountingReport) {
+    this.snapshotQuery = null;
+    this.snapshotParams = new ArrayList<>();
+    this.moveLineQuery = this.query;
+    this.moveLineParams = new ArrayList<>(this.params);
+
+    if (!isSnapshotCompatible(accountingReport)) {
+      return;
+    }
+
+    List<String> filterList = new ArrayList<>();
+
+    if (accountingReport.getCompany() != null) {
+      addSnapshotParams(filterList, "self.company = ?%d", accountingReport.getCompany());
+    }
+
+    if (accountingReport.getJournal() != null) {
+      addSnapshotParams(filterList, "self.journal = ?%d", accountingReport.getJournal());
+    }
+
+    if (accountingReport.getPeriod() != null) {
+      addSnapshotParams(filterList, "self.period = ?%d", accountingReport.getPeriod());
+    }
+
+    if (accountingReport.getAccountSet() != null && !accountingReport.getAccountSet().isEmpty()) {
+      addSnapshotParams(
+          filterList,
+          "(self.account in (?%d) or self.account.parentAccount in (?%d) "
+              + "or self.account.parentAccount.parentAccount in (?%d) "
+              + "or self.account.parentAccount.parentAccount.parentAccount in (?%d) "
+              + "or self.account.parentAccount.parentAccount.parentAccount.parentAccount in (?%d) "
+              + "or self.account.parentAccount.parentAccount.parentAccount.parentAccount"
+              + ".parentAccount in (?%d) "
+              + "or self.account.parentAccount.parentAccount.parentAccount.parentAccount"
+              + ".parentAccount.parentAccount in (?%d))",
+          accountingReport.getAccountSet());
+    }
+
+    if (accountingReport.getPartnerSet() != null && !accountingReport.getPartnerSet().isEmpty()) {
+      addSnapshotParams(filterList, "self.partner in (?%d)", accountingReport.getPartnerSet());
+    }
+
+    if (accountingReport.getYear() != null) {
+      addSnapshotParams(filterList, "self.period.year = ?%d", accountingReport.getYear());
+    }
+
+    if (accountingReport.getTypeSelect() == AccountingReportRepository.REPORT_BALANCE) {
+      filterList.add("self.account.reconcileOk = 'true'");
+    }
+
+    filterList.add(getSnapshotPeriodFilter(accountingReport, "self.period", snapshotParams));
+
+    this.snapshotQuery = String.join(" AND ", filterList);
+    this.moveLineQuery =
+        this.query
+            + " AND NOT ("
+            + getSnapshotPeriodFilter(accountingReport, "self.move.period", moveLineParams)
+            + ")";
+
+    log.debug("Snapshot query : {}", this.snapshotQuery);
+  }
+
+  protected void addSnapshotParams(List<String> filterList, String filter, Object param) {
+    snapshotParams.add(param);
+    filterList.add(filter.replaceAll("%d", String.valueOf(snapshotParams.size())));
+  }
+
+  /**
+   * Get the filter selecting, on the given period path, the closed periods having snapshots and
+   * entirely within the dates of the report. Its parameters are appended to the given list.
+   */
+  protected String getSnapshotPeriodFilter(
+      AccountingReport accountingReport, String periodPath, List<Object> paramList) {
+
+    List<String> filterList = new ArrayList<>();
+    filterList.add(periodPath + ".statusSelect = " + PeriodRepository.STATUS_CLOSED);
+    filterList.add(
+        "EXISTS (SELECT snapshot.id FROM AccountBalanceSnapshot snapshot "
+            + "WHERE snapshot.period = "
+            + periodPath
+            + ")");
+
+    if (accountingReport.getDateFrom() != null) {
+      paramList.add(accountingReport.getDateFrom());
+      filterList.add(periodPath + ".fromDate >= ?" + paramList.size());
+    }
+
+    if (accountingReport.getDateTo() != null) {
+      paramList.add(accountingReport.getDateTo());
+      filterList.add(periodPath + ".toDate <= ?" + paramList.size());
+    }
+
+    if (accountingReport.getDate() != null) {
+      paramList.add(accountingReport.getDate());
+      filterList.add(periodPath + ".toDate <= ?" + paramList.size());
+    }
+
+    return "(" + String.join(" AND ", filterList) + ")";
+  }
+
   protected void initQuery() {
     query = "";
     paramNumber = 1;
@@ -394,52 +532,104 @@ public class AccountingReportServiceImpl implements AccountingReportService {
    */
   public BigDecimal getDebitBalance() {
 
+    BigDecimal result = this.getMoveLineTotal("self.debit").add(getSnapshotTotal("self.debit"));
+    log.debug("Total debit : {}", result);
+
+    return result;
+  }
+
+  /**
+   * @param queryFilter
+   * @return
+   */
+  public BigDecimal getCreditBalance() {
+
+    BigDecimal result = this.getMoveLineTotal("self.credit").add(getSnapshotTotal("self.credit"));
+    log.debug("Total credit : {}", result);
+
+    return result;
+  }
+
+  protected BigDecimal getMoveLineTotal(String field) {
+
     Query q =
         JPA.em()
             .createQuery(
-                "select SUM(self.debit) FROM MoveLine as self WHERE " + query, BigDecimal.class);
+                "select SUM(" + field + ") FROM MoveLine as self WHERE " + moveLineQuery,
+                BigDecimal.class);
 
     int i = 1;
 
-    for (Object param : params.toArray()) {
+    for (Object param : moveLineParams.toArray()) {
       q.setParameter(i++, param);
     }
 
     BigDecimal result = (BigDecimal) q.getSingleResult();
-    log.debug("Total debit : {}", result);
 
-    if (result != null) {
-      return result;
-    } else {
+    return result != null ? result : BigDecimal.ZERO;
+  }
+
+  protected BigDecimal getSnapshotTotal(String field) {
+
+    if (snapshotQuery == null) {
       return BigDecimal.ZERO;
     }
+
+    Query q =
+        JPA.em()
+            .createQuery(
+                "select SUM("
+                    + field
+                    + ") FROM AccountBalanceSnapshot as self WHERE "
+                    + snapshotQuery,
+                BigDecimal.class);
+
+    int i = 1;
+
+    for (Object param : snapshotParams.toArray()) {
+      q.setParameter(i++, param);
+    }
+
+    BigDecimal result = (BigDecimal) q.getSingleResult();
+
+    return result != null ? result : BigDecimal.ZERO;
   }
 
-  /**
-   * @param queryFilter
-   * @return
-   */
-  public BigDecimal getCreditBalance() {
+  /** Count the move lines of the report built by {@link #buildQuery(AccountingReport)}. */
+  protected long getMoveLineCount() {
 
     Query q =
         JPA.em()
             .createQuery(
-                "select SUM(self.credit) FROM MoveLine as self WHERE " + query, BigDecimal.class);
+                "select COUNT(self.id) FROM MoveLine as self WHERE " + moveLineQuery, Long.class);
 
     int i = 1;
 
-    for (Object param : params.toArray()) {
+    for (Object param : moveLineParams.toArray()) {
       q.setParameter(i++, param);
     }
 
-    BigDecimal result = (BigDecimal) q.getSingleResult();
-    log.debug("Total debit : {}", result);
+    long count = (Long) q.getSingleResult();
 
-    if (result != null) {
-      return result;
-    } else {
-      return BigDecimal.ZERO;
+    if (snapshotQuery != null) {
+      q =
+          JPA.em()
+              .createQuery(
+                  "select SUM(self.moveLineCount) FROM AccountBalanceSnapshot as self WHERE "
+                      + snapshotQuery,
+                  Long.class);
+
+      i = 1;
+
+      for (Object param : snapshotParams.toArray()) {
+        q.setParameter(i++, param);
+      }
+
+      Long snapshotCount = (Long) q.getSingleResult();
+      count += snapshotCount != null ? snapshotCount : 0;
     }
+
+    return count;
   }
 
   public BigDecimal getDebitBalanceType4() {
@@ -518,11 +708,8 @@ public class AccountingReportServiceImpl implements AccountingReportService {
       Integer typeSelect = accountingReport.getTypeSelect();
       long count = 0;
       if (typeSelect > 0 && typeSelect <= AccountingReportRepository.REPORT_GENERAL_LEDGER2) {
-        count =
-            Beans.get(MoveLineRepository.class)
-                .all()
-                .filter(this.getMoveLineList(accountingReport))
-                .count();
+        this.buildQuery(accountingReport);
+        count = this.getMoveLineCount();
       } else if (typeSelect == AccountingReportRepository.REPORT_VAT_STATEMENT_RECEIVED) {
         count =
             Beans.get(TaxPaymentMoveLineRepository.class)
@@ -35,16 +35,19 @@ public class PeriodServiceAccountImpl extends PeriodServiceImpl implements Perio
 
   protected MoveValidateService moveValidateService;
   protected MoveRepository moveRepository;
+  protected AccountBalanceSnapshotService accountBalanceSnapshotService;
 
   @Inject
   public PeriodServiceAccountImpl(
       PeriodRepository periodRepo,
       AdjustHistoryService adjustHistoryService,
       MoveValidateService moveValidateService,
-      MoveRepository moveRepository) {
+      MoveRepository moveRepository,
+      AccountBalanceSnapshotService accountBalanceSnapshotService) {
     super(periodRepo, adjustHistoryService);
     this.moveValidateService = moveValidateService;
     this.moveRepository = moveRepository;
+    this.accountBalanceSnapshotService = accountBalanceSnapshotService;
   }
 
   public void close(Period period) throws AxelorException {
@@ -54,6 +57,12 @@ public class PeriodServiceAccountImpl extends PeriodServiceImpl implements Perio
       period = periodRepo.find(period.getId());
     }
     super.close(period);
+    accountBalanceSnapshotService.computeSnapshots(periodRepo.find(period.getId()));
+  }
+
+  public void adjust(Period period) {
+    super.adjust(period);
+    accountBalanceSnapshotService.removeSnapshots(period);
   }
 
   public Query<Move> getMoveListToValidateQuery(Period period) {
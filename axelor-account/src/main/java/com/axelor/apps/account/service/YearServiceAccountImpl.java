@@ -59,6 +59,7 @@ public class YearServiceAccountImpl extends YearServiceImpl {
   protected AdjustHistoryService adjustHistoryService;
   protected PartnerRepository partnerRepository;
   protected PeriodServiceAccountImpl periodServiceAccountImpl;
+  protected AccountBalanceSnapshotService accountBalanceSnapshotService;
 
   @Inject
   public YearServiceAccountImpl(
@@ -66,12 +67,14 @@ public class YearServiceAccountImpl extends YearServiceImpl {
       ReportedBalanceLineRepository reportedBalanceLineRepo,
       YearRepository yearRepository,
       AdjustHistoryService adjustHistoryService,
-      PeriodServiceAccountImpl periodServiceAccountImpl) {
+      PeriodServiceAccountImpl periodServiceAccountImpl,
+      AccountBalanceSnapshotService accountBalanceSnapshotService) {
     super(yearRepository);
     this.partnerRepository = partnerRepository;
     this.reportedBalanceLineRepo = reportedBalanceLineRepo;
     this.adjustHistoryService = adjustHistoryService;
     this.periodServiceAccountImpl = periodServiceAccountImpl;
+    this.accountBalanceSnapshotService = accountBalanceSnapshotService;
   }
 
   /**
@@ -158,6 +161,10 @@ public class YearServiceAccountImpl extends YearServiceImpl {
     }
     year = yearRepository.find(year.getId());
     closeYear(year);
+
+    for (Period period : year.getPeriodList()) {
+      accountBalanceSnapshotService.computeSnapshots(period);
+    }
   }
 
   @Transactional
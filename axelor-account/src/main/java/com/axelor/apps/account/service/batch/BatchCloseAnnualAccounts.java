@@ -24,7 +24,6 @@ import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
 import com.axelor.apps.account.service.AccountingCloseAnnualService;
 import com.axelor.apps.account.service.AccountingReportService;
-import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.db.Year;
 import com.axelor.apps.base.db.repo.PartnerRepository;
 import com.axelor.apps.base.db.repo.YearRepository;
@@ -36,14 +35,26 @@ import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class BatchCloseAnnualAccounts extends BatchStrategy {
+
+  /** Maximum number of balances reported in a single closure or opening move. */
+  protected static final int MOVE_LINE_LIMIT = 500;
+
   protected final Logger log = LoggerFactory.getLogger(getClass());
   protected PartnerRepository partnerRepository;
   protected YearRepository yearRepository;
@@ -110,61 +121,64 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
       String origin = accountingBatch.getCode();
       String moveDescription = accountingBatch.getMoveDescription();
 
-      List<Long> accountIdList =
-          accountingCloseAnnualService.getAllAccountOfYear(accountingBatch.getAccountSet(), year);
-
-      List<Pair<Long, Long>> accountAndPartnerPairList =
-          accountingCloseAnnualService.assignPartner(accountIdList, year, allocatePerPartner);
+      Map<Pair<Long, Long>, BigDecimal> balanceMap =
+          accountingCloseAnnualService.computeBalances(
+              accountingBatch.getAccountSet(), year, allocatePerPartner);
+      balanceMap.values().removeIf(balance -> balance.signum() == 0);
 
-      Account account = null;
-      Partner partner = null;
+      List<Pair<Long, Long>> accountAndPartnerPairList = new ArrayList<>(balanceMap.keySet());
+      Set<Long> doneAccountIdSet = new HashSet<>();
 
-      for (Pair<Long, Long> accountAndPartnerPair : accountAndPartnerPairList) {
+      for (int i = 0; i < accountAndPartnerPairList.size(); i += MOVE_LINE_LIMIT) {
+        Map<Pair<Long, Long>, BigDecimal> chunkBalanceMap = new LinkedHashMap<>();
+        for (Pair<Long, Long> accountAndPartnerPair :
+            accountAndPartnerPairList.subList(
+                i, Math.min(i + MOVE_LINE_LIMIT, accountAndPartnerPairList.size()))) {
+          chunkBalanceMap.put(accountAndPartnerPair, balanceMap.get(accountAndPartnerPair));
+        }
+        Set<Long> accountIdSet =
+            chunkBalanceMap.keySet().stream()
+                .map(Pair::getLeft)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
 
         try {
-          account = accountRepository.find(accountAndPartnerPair.getLeft());
-          if (accountAndPartnerPair.getRight() != null) {
-            partner = partnerRepository.find(accountAndPartnerPair.getRight());
-          } else {
-            partner = null;
-          }
-
           List<Move> generateMoves =
-              accountingCloseAnnualService.generateCloseAnnualAccount(
+              accountingCloseAnnualService.generateCloseAnnualAccounts(
                   yearRepository.find(year.getId()),
-                  account,
-                  partner,
+                  chunkBalanceMap,
                   endOfYearDate,
                   reportedBalanceDate,
                   origin,
                   moveDescription,
                   closeYear,
-                  openYear,
-                  allocatePerPartner);
+                  openYear);
 
-          if (generateMoves != null && !generateMoves.isEmpty()) {
-            updateAccount(account);
+          for (Move move : generateMoves) {
+            updateAccountMove(move, false);
+          }
 
-            for (Move move : generateMoves) {
-              updateAccountMove(move, false);
+          for (Long accountId : accountIdSet) {
+            if (doneAccountIdSet.add(accountId)) {
+              updateAccount(accountRepository.find(accountId));
             }
           }
 
         } catch (AxelorException e) {
           TraceBackService.trace(
               new AxelorException(
-                  e, e.getCategory(), I18n.get("Account") + " %s", account.getCode()),
+                  e, e.getCategory(), I18n.get("Account") + " %s", getAccountCodes(accountIdSet)),
               null,
               batch.getId());
           incrementAnomaly();
           break;
         } catch (Exception e) {
+          String accountCodes = getAccountCodes(accountIdSet);
           TraceBackService.trace(
-              new Exception(String.format(I18n.get("Account") + " %s", account.getCode()), e),
+              new Exception(String.format(I18n.get("Account") + " %s", accountCodes), e),
               null,
               batch.getId());
           incrementAnomaly();
-          LOG.error("Anomaly generated for the account {}", account.getCode());
+          LOG.error("Anomaly generated for the accounts {}", accountCodes);
           break;
         } finally {
           JPA.clear();
@@ -173,6 +187,13 @@ public class BatchCloseAnnualAccounts extends BatchStrategy {
     }
   }
 
+  protected String getAccountCodes(Set<Long> accountIdSet) {
+    return accountIdSet.stream()
+        .map(accountRepository::find)
+        .map(Account::getCode)
+        .collect(Collectors.joining(", "));
+  }
+
   @Override
   protected void stop() {
     StringBuilder sb = new StringBuilder();
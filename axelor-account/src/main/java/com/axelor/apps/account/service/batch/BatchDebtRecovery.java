@@ -19,6 +19,7 @@ package com.axelor.apps.account.service.batch;
 
 import com.axelor.apps.account.db.DebtRecovery;
 import com.axelor.apps.account.db.repo.DebtRecoveryRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
 import com.axelor.apps.account.service.debtrecovery.DebtRecoveryActionService;
 import com.axelor.apps.account.service.debtrecovery.DebtRecoveryService;
@@ -28,21 +29,30 @@ import com.axelor.apps.base.db.repo.BlockingRepository;
 import com.axelor.apps.base.db.repo.PartnerRepository;
 import com.axelor.apps.base.service.BlockingService;
 import com.axelor.apps.message.db.repo.MessageRepository;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.ExceptionOriginRepository;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import javax.persistence.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class BatchDebtRecovery extends BatchStrategy {
 
+  protected static final int MAX_PARALLEL_CHUNKS = 4;
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
   protected boolean stopping = false;
   protected PartnerRepository partnerRepository;
   protected MessageRepository messageRepository;
@@ -98,57 +108,158 @@ public class BatchDebtRecovery extends BatchStrategy {
   public void debtRecoveryPartner() {
     Company company = batch.getAccountingBatch().getCompany();
 
-    Query<Partner> query =
-        partnerRepository
-            .all()
-            .filter(
-                "self.isContact = false "
-                    + "AND :_company MEMBER OF self.companySet "
-                    + "AND self.accountingSituationList IS NOT EMPTY "
-                    + "AND self.isCustomer = true "
-                    + "AND self.id NOT IN ("
-                    + Beans.get(BlockingService.class)
-                        .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
-                    + ")")
-            .bind("_company", company)
-            .order("id");
-
-    int offset = 0;
-    List<Partner> partnerList;
-
-    while (!(partnerList = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      findBatch();
-
-      for (Partner partner : partnerList) {
-        ++offset;
+    long startTime = System.currentTimeMillis();
+    List<Long> partnerIdList = getPartnerIdList(company);
+    long selectionTime = System.currentTimeMillis() - startTime;
+
+    log.debug("{} partners to process selected in {} ms", partnerIdList.size(), selectionTime);
+
+    startTime = System.currentTimeMillis();
+    Long companyId = company.getId();
+    List<Callable<List<DebtRecoveryResult>>> tasks = new ArrayList<>();
+    for (int i = 0; i < partnerIdList.size(); i += FETCH_LIMIT) {
+      List<Long> chunk = partnerIdList.subList(i, Math.min(i + FETCH_LIMIT, partnerIdList.size()));
+      tasks.add(() -> debtRecoveryPartners(chunk, companyId));
+    }
+
+    ParallelTool.run(
+        tasks,
+        MAX_PARALLEL_CHUNKS,
+        (resultList, i) -> {
+          findBatch();
+          for (DebtRecoveryResult result : resultList) {
+            processResult(result);
+          }
+          JPA.clear();
+        },
+        (e, i) -> {
+          TraceBackService.trace(e, ExceptionOriginRepository.DEBT_RECOVERY, batch.getId());
+          incrementAnomaly();
+        });
+
+    log.debug(
+        "{} partners processed in {} ms (selection: {} ms)",
+        partnerIdList.size(),
+        System.currentTimeMillis() - startTime,
+        selectionTime);
+  }
+
+  /**
+   * Get the ids of the partners to process with one query: customers of the company having a
+   * positive balance due, those whose debt recovery has to be reset because their balance is not
+   * due anymore and those without accounting situation for the company, which are reported as
+   * anomalies.
+   *
+   * @param company the company of the batch
+   * @return the ids of the partners, in ascending order
+   */
+  protected List<Long> getPartnerIdList(Company company) {
+    return JPA.em()
+        .createQuery(
+            "SELECT self.id FROM Partner self "
+                + "WHERE self.isContact = false "
+                + "AND :company MEMBER OF self.companySet "
+                + "AND self.accountingSituationList IS NOT EMPTY "
+                + "AND self.isCustomer = true "
+                + "AND self.id NOT IN ("
+                + Beans.get(BlockingService.class)
+                    .listOfBlockedPartner(company, BlockingRepository.REMINDER_BLOCKING)
+                + ") "
+                + "AND (self.id IN ("
+                + "SELECT moveLine.partner.id FROM MoveLine moveLine "
+                + "WHERE moveLine.move.company = :company "
+                + "AND moveLine.move.ignoreInDebtRecoveryOk = false "
+                + "AND moveLine.move.ignoreInAccountingOk = false "
+                + "AND moveLine.move.statusSelect IN (:statusValidated, :statusDaybook) "
+                + "AND moveLine.account.useForPartnerBalance = true "
+                + "AND moveLine.amountRemaining > 0 "
+                + "GROUP BY moveLine.partner.id "
+                + "HAVING SUM(CASE WHEN moveLine.debit > 0 "
+                + "AND COALESCE(moveLine.dueDate, moveLine.date) <= :today "
+                + "THEN moveLine.amountRemaining ELSE 0 END) "
+                + "> SUM(CASE WHEN moveLine.credit > 0 "
+                + "THEN moveLine.amountRemaining ELSE 0 END)) "
+                + "OR self.id IN ("
+                + "SELECT accountingSituation.partner.id "
+                + "FROM AccountingSituation accountingSituation "
+                + "JOIN accountingSituation.debtRecovery debtRecovery "
+                + "WHERE accountingSituation.company = :company "
+                + "AND (debtRecovery.debtRecoveryMethodLine IS NOT NULL "
+                + "OR debtRecovery.waitDebtRecoveryMethodLine IS NOT NULL "
+                + "OR COALESCE(debtRecovery.balanceDue, 0) <> 0 "
+                + "OR COALESCE(debtRecovery.balanceDueDebtRecovery, 0) <> 0 "
+                + "OR debtRecovery.invoiceDebtRecoverySet IS NOT EMPTY "
+                + "OR debtRecovery.paymentScheduleLineDebtRecoverySet IS NOT EMPTY)) "
+                + "OR NOT EXISTS ("
+                + "SELECT accountingSituation FROM AccountingSituation accountingSituation "
+                + "WHERE accountingSituation.partner = self "
+                + "AND accountingSituation.company = :company)) "
+                + "ORDER BY self.id",
+            Long.class)
+        .setParameter("company", company)
+        .setParameter("statusValidated", MoveRepository.STATUS_VALIDATED)
+        .setParameter("statusDaybook", MoveRepository.STATUS_DAYBOOK)
+        .setParameter("today", appBaseService.getTodayDate(company))
+        .getResultList();
+  }
+
+  /**
+   * Generate the debt recoveries of the given partners, each one in its own transaction. Called
+   * from a worker thread, so the batch is not updated here.
+   */
+  protected List<DebtRecoveryResult> debtRecoveryPartners(
+      List<Long> partnerIdList, Long companyId) {
+    List<DebtRecoveryResult> resultList = new ArrayList<>();
+
+    try {
+      for (Long partnerId : partnerIdList) {
+        Partner partner = partnerRepository.find(partnerId);
+        Company company = companyRepo.find(companyId);
+        DebtRecoveryResult result = new DebtRecoveryResult(partnerId, partner.getName());
 
         try {
-          boolean remindedOk = debtRecoveryService.debtRecoveryGenerate(partner, company);
-          if (remindedOk) {
+          if (debtRecoveryService.debtRecoveryGenerate(partner, company)) {
             DebtRecovery debtRecovery = debtRecoveryService.getDebtRecovery(partner, company);
-            addBatchToModel(debtRecovery);
-            incrementDone(partner);
+            result.debtRecoveryId = debtRecovery.getId();
           }
-        } catch (AxelorException e) {
-          TraceBackService.trace(
-              new AxelorException(
-                  e, e.getCategory(), I18n.get("Partner") + " %s", partner.getName()),
-              ExceptionOriginRepository.DEBT_RECOVERY,
-              batch.getId());
-          incrementAnomaly(partner);
-          break;
         } catch (Exception e) {
-          TraceBackService.trace(
-              new Exception(String.format(I18n.get("Partner") + " %s", partner.getName()), e),
-              ExceptionOriginRepository.DEBT_RECOVERY,
-              batch.getId());
-          incrementAnomaly(partner);
-          break;
+          result.exception = e;
+          JPA.clear();
         }
-      }
 
+        resultList.add(result);
+      }
+    } finally {
       JPA.clear();
     }
+
+    return resultList;
+  }
+
+  protected void processResult(DebtRecoveryResult result) {
+    Partner partner = partnerRepository.find(result.partnerId);
+    Exception e = result.exception;
+
+    if (e instanceof AxelorException) {
+      TraceBackService.trace(
+          new AxelorException(
+              e,
+              ((AxelorException) e).getCategory(),
+              I18n.get("Partner") + " %s",
+              result.partnerName),
+          ExceptionOriginRepository.DEBT_RECOVERY,
+          batch.getId());
+      incrementAnomaly(partner);
+    } else if (e != null) {
+      TraceBackService.trace(
+          new Exception(String.format(I18n.get("Partner") + " %s", result.partnerName), e),
+          ExceptionOriginRepository.DEBT_RECOVERY,
+          batch.getId());
+      incrementAnomaly(partner);
+    } else if (result.debtRecoveryId != null) {
+      addBatchToModel(debtRecoveryRepository.find(result.debtRecoveryId));
+      incrementDone(partner);
+    }
   }
 
   protected void incrementDone(Partner partner) {
@@ -179,6 +290,20 @@ public class BatchDebtRecovery extends BatchStrategy {
     return modelTableName + "_BATCH_SET";
   }
 
+  /** Outcome of the debt recovery of one partner. */
+  protected static class DebtRecoveryResult {
+
+    protected final Long partnerId;
+    protected final String partnerName;
+    protected Long debtRecoveryId;
+    protected Exception exception;
+
+    protected DebtRecoveryResult(Long partnerId, String partnerName) {
+      this.partnerId = partnerId;
+      this.partnerName = partnerName;
+    }
+  }
+
   /**
    * As {@code batch} entity can be detached from the session, call {@code Batch.find()} get the
    * entity in the persistant context. Warning : {@code batch} entity have to be saved before.
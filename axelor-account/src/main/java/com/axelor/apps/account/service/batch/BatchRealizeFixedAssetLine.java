@@ -21,22 +21,37 @@ import com.axelor.apps.account.db.FixedAssetLine;
 import com.axelor.apps.account.db.repo.FixedAssetLineRepository;
 import com.axelor.apps.account.db.repo.FixedAssetRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
+import com.axelor.apps.account.service.fixedasset.FixedAssetDepreciationEntry;
 import com.axelor.apps.account.service.fixedasset.FixedAssetLineMoveService;
 import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
 import com.axelor.db.JPA;
+import com.axelor.db.Query;
+import com.axelor.exception.AxelorException;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BatchRealizeFixedAssetLine extends AbstractBatch {
 
+  protected static final int MAX_PARALLEL_CHUNKS = 4;
+  protected static final int CHUNK_SIZE = 1000;
+
   private FixedAssetLineMoveService fixedAssetLineMoveService;
   private AppBaseService appBaseService;
 
@@ -62,7 +77,7 @@ public class BatchRealizeFixedAssetLine extends AbstractBatch {
     } else {
       query += " AND self.depreciationDate < :dateNow";
     }
-    List<FixedAssetLine> fixedAssetLineList =
+    Query<FixedAssetLine> fixedAssetLineQuery =
         Beans.get(FixedAssetLineRepository.class)
             .all()
             .filter(query)
@@ -76,8 +91,14 @@ public class BatchRealizeFixedAssetLine extends AbstractBatch {
                         ? batch.getAccountingBatch().getCompany()
                         : Optional.ofNullable(AuthUtils.getUser())
                             .map(User::getActiveCompany)
-                            .orElse(null)))
-            .fetch();
+                            .orElse(null)));
+
+    if (batch.getAccountingBatch().getGroupFixedAssetLineMoves()) {
+      processGrouped(fixedAssetLineQuery);
+      return;
+    }
+
+    List<FixedAssetLine> fixedAssetLineList = fixedAssetLineQuery.fetch();
 
     for (FixedAssetLine fixedAssetLine : fixedAssetLineList) {
       try {
@@ -94,6 +115,105 @@ public class BatchRealizeFixedAssetLine extends AbstractBatch {
     }
   }
 
+  /**
+   * Realize the fixed asset lines with one move per company, journal, period and depreciation
+   * account. Fixed assets are split into chunks realized in parallel, so each chunk generates its
+   * own moves and a fixed asset is only updated by one worker.
+   */
+  protected void processGrouped(Query<FixedAssetLine> fixedAssetLineQuery) {
+    List<List<Long>> chunkList = new ArrayList<>();
+    List<Long> chunk = new ArrayList<>();
+    Long lastFixedAssetId = null;
+
+    for (Map<String, Object> row :
+        fixedAssetLineQuery
+            .order("fixedAsset.id")
+            .order("id")
+            .select("id", "fixedAsset.id", "fixedAsset.statusSelect")
+            .fetch(0, 0)) {
+      if ((Integer) row.get("fixedAsset.statusSelect") <= FixedAssetRepository.STATUS_DRAFT) {
+        continue;
+      }
+      Long fixedAssetId = (Long) row.get("fixedAsset.id");
+      if (chunk.size() >= CHUNK_SIZE && !fixedAssetId.equals(lastFixedAssetId)) {
+        chunkList.add(chunk);
+        chunk = new ArrayList<>();
+      }
+      chunk.add((Long) row.get("id"));
+      lastFixedAssetId = fixedAssetId;
+    }
+    if (!chunk.isEmpty()) {
+      chunkList.add(chunk);
+    }
+    if (chunkList.isEmpty()) {
+      return;
+    }
+
+    Queue<Exception> errorQueue = new ConcurrentLinkedQueue<>();
+    AtomicInteger anomalyCount = new AtomicInteger();
+    List<Callable<Integer>> tasks = new ArrayList<>();
+    for (List<Long> fixedAssetLineIdList : chunkList) {
+      tasks.add(() -> realizeChunk(fixedAssetLineIdList, errorQueue, anomalyCount));
+    }
+
+    ParallelTool.run(
+        tasks,
+        MAX_PARALLEL_CHUNKS,
+        (doneCount, i) -> {
+          for (int j = 0; j < doneCount; j++) {
+            incrementDone();
+          }
+        },
+        (e, i) -> {
+          TraceBackService.trace(e);
+          anomalyCount.addAndGet(chunkList.get(i).size());
+        });
+
+    for (Exception e : errorQueue) {
+      TraceBackService.trace(e);
+    }
+    for (int i = 0; i < anomalyCount.get(); i++) {
+      incrementAnomaly();
+    }
+  }
+
+  /**
+   * Realize a chunk of fixed asset lines from a worker thread, each group in its own transaction.
+   *
+   * @return the number of realized lines.
+   */
+  protected int realizeChunk(
+      List<Long> fixedAssetLineIdList, Queue<Exception> errorQueue, AtomicInteger anomalyCount)
+      throws AxelorException {
+    Map<List<Long>, List<FixedAssetDepreciationEntry>> groupMap = new LinkedHashMap<>();
+    for (FixedAssetDepreciationEntry entry :
+        fixedAssetLineMoveService.getDepreciationEntries(fixedAssetLineIdList)) {
+      groupMap
+          .computeIfAbsent(
+              Arrays.asList(
+                  entry.getCompanyId(),
+                  entry.getJournalId(),
+                  entry.getPeriodId(),
+                  entry.getDepreciationAccountId()),
+              key -> new ArrayList<>())
+          .add(entry);
+    }
+    JPA.clear();
+
+    int doneCount = 0;
+    for (List<FixedAssetDepreciationEntry> entryList : groupMap.values()) {
+      try {
+        fixedAssetLineMoveService.realizeGrouped(entryList);
+        doneCount += entryList.size();
+      } catch (Exception e) {
+        errorQueue.add(e);
+        anomalyCount.addAndGet(entryList.size());
+      }
+      JPA.clear();
+    }
+    return doneCount;
+  }
+
   @Override
   protected void stop() {
 
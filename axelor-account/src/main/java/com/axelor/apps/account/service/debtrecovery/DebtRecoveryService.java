@@ -42,6 +42,7 @@ import com.axelor.apps.message.db.repo.MessageRepository;
 import com.axelor.apps.tool.date.DateTool;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.exception.service.TraceBackService;
@@ -124,17 +125,16 @@ public class DebtRecoveryService {
   }
 
   public BigDecimal getSubstractBalanceDue(Partner partner) {
-    List<? extends MoveLine> moveLineQuery =
-        moveLineRepo.all().filter("self.partner = ?1", partner).fetch();
-    BigDecimal balance = BigDecimal.ZERO;
-    for (MoveLine moveLine : moveLineQuery) {
-      if (moveLine.getCredit().compareTo(BigDecimal.ZERO) > 0) {
-        if (moveLine.getAccount() != null && moveLine.getAccount().getUseForPartnerBalance()) {
-          balance = balance.subtract(moveLine.getAmountRemaining());
-        }
-      }
-    }
-    return balance;
+    BigDecimal amountRemaining =
+        JPA.em()
+            .createQuery(
+                "SELECT SUM(self.amountRemaining) FROM MoveLine self "
+                    + "WHERE self.partner = :partner AND self.credit > 0 "
+                    + "AND self.account.useForPartnerBalance = true",
+                BigDecimal.class)
+            .setParameter("partner", partner)
+            .getSingleResult();
+    return amountRemaining != null ? amountRemaining.negate() : BigDecimal.ZERO;
   }
 
   /**
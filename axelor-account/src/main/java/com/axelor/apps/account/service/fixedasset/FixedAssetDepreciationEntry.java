@@ -0,0 +1,126 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.fixedasset;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Planned depreciation of a fixed asset line, with the ids needed to group it with other lines into
+ * a depreciation move. Built outside of any persistence context so it can be computed in parallel.
+ */
+public class FixedAssetDepreciationEntry {
+
+  private final Long fixedAssetLineId;
+  private final Long fixedAssetId;
+  private final Long companyId;
+  private final Long journalId;
+  private final Long partnerId;
+  private final Long chargeAccountId;
+  private final Long depreciationAccountId;
+  private final Long analyticDistributionTemplateId;
+  private final LocalDate depreciationDate;
+  private final BigDecimal depreciation;
+  private final String name;
+  private final String reference;
+
+  private Long periodId;
+
+  public FixedAssetDepreciationEntry(
+      Long fixedAssetLineId,
+      Long fixedAssetId,
+      Long companyId,
+      Long journalId,
+      Long partnerId,
+      Long chargeAccountId,
+      Long depreciationAccountId,
+      Long analyticDistributionTemplateId,
+      LocalDate depreciationDate,
+      BigDecimal depreciation,
+      String name,
+      String reference) {
+    this.fixedAssetLineId = fixedAssetLineId;
+    this.fixedAssetId = fixedAssetId;
+    this.companyId = companyId;
+    this.journalId = journalId;
+    this.partnerId = partnerId;
+    this.chargeAccountId = chargeAccountId;
+    this.depreciationAccountId = depreciationAccountId;
+    this.analyticDistributionTemplateId = analyticDistributionTemplateId;
+    this.depreciationDate = depreciationDate;
+    this.depreciation = depreciation;
+    this.name = name;
+    this.reference = reference;
+  }
+
+  public Long getFixedAssetLineId() {
+    return fixedAssetLineId;
+  }
+
+  public Long getFixedAssetId() {
+    return fixedAssetId;
+  }
+
+  public Long getCompanyId() {
+    return companyId;
+  }
+
+  public Long getJournalId() {
+    return journalId;
+  }
+
+  public Long getPartnerId() {
+    return partnerId;
+  }
+
+  public Long getChargeAccountId() {
+    return chargeAccountId;
+  }
+
+  public Long getDepreciationAccountId() {
+    return depreciationAccountId;
+  }
+
+  public Long getAnalyticDistributionTemplateId() {
+    return analyticDistributionTemplateId;
+  }
+
+  public LocalDate getDepreciationDate() {
+    return depreciationDate;
+  }
+
+  public BigDecimal getDepreciation() {
+    return depreciation;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getReference() {
+    return reference;
+  }
+
+  public Long getPeriodId() {
+    return periodId;
+  }
+
+  public void setPeriodId(Long periodId) {
+    this.periodId = periodId;
+  }
+}
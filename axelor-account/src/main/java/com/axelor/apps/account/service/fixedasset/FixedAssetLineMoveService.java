@@ -18,11 +18,30 @@
 package com.axelor.apps.account.service.fixedasset;
 
 import com.axelor.apps.account.db.FixedAssetLine;
+import com.axelor.apps.account.db.Move;
 import com.axelor.exception.AxelorException;
+import java.util.List;
 
 public interface FixedAssetLineMoveService {
 
   void realize(FixedAssetLine fixedAssetLine) throws AxelorException;
 
   void generateDisposalMove(FixedAssetLine fixedAssetLine) throws AxelorException;
+
+  /**
+   * Get the depreciations of the given fixed asset lines, with the fiscal period of their
+   * depreciation date.
+   */
+  List<FixedAssetDepreciationEntry> getDepreciationEntries(List<Long> fixedAssetLineIdList)
+      throws AxelorException;
+
+  /**
+   * Realize fixed asset lines sharing the same company, journal, period and depreciation account
+   * with one move. Each fixed asset keeps its own charge move line with its analytic distribution,
+   * and the depreciation account is credited with the total.
+   *
+   * @param entryList depreciations of the same group.
+   * @return the generated move.
+   */
+  Move realizeGrouped(List<FixedAssetDepreciationEntry> entryList) throws AxelorException;
 }
@@ -31,14 +31,24 @@ import com.axelor.apps.account.service.move.MoveCreateService;
 import com.axelor.apps.account.service.move.MoveLineService;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.repo.YearRepository;
+import com.axelor.apps.base.service.PeriodService;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,16 +64,23 @@ public class FixedAssetLineMoveServiceImpl implements FixedAssetLineMoveService
 
   protected MoveLineService moveLineService;
 
+  protected PeriodService periodService;
+
+  /** Number of move lines inserted before the persistence context is flushed and cleared. */
+  protected static final int SAVE_BATCH_SIZE = 100;
+
   @Inject
   public FixedAssetLineMoveServiceImpl(
       FixedAssetLineRepository fixedAssetLineRepo,
       MoveCreateService moveCreateService,
       MoveRepository moveRepo,
-      MoveLineService moveLineService) {
+      MoveLineService moveLineService,
+      PeriodService periodService) {
     this.fixedAssetLineRepo = fixedAssetLineRepo;
     this.moveCreateService = moveCreateService;
     this.moveRepo = moveRepo;
     this.moveLineService = moveLineService;
+    this.periodService = periodService;
   }
 
   @Override
@@ -275,6 +292,246 @@ public class FixedAssetLineMoveServiceImpl implements FixedAssetLineMoveService
     fixedAsset.setDisposalMove(move);
   }
 
+  @Override
+  public List<FixedAssetDepreciationEntry> getDepreciationEntries(List<Long> fixedAssetLineIdList)
+      throws AxelorException {
+    List<FixedAssetDepreciationEntry> entryList = new ArrayList<>();
+    Map<List<Object>, Long> periodIdMap = new HashMap<>();
+
+    for (List<Long> idList : Lists.partition(fixedAssetLineIdList, SAVE_BATCH_SIZE * 10)) {
+      List<Object[]> rows =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.id, fixedAsset.id, company.id, journal.id, partner.id, "
+                      + "chargeAccount.id, depreciationAccount.id, template.id, "
+                      + "self.depreciationDate, self.depreciation, "
+                      + "fixedAsset.name, fixedAsset.reference "
+                      + "FROM FixedAssetLine self "
+                      + "JOIN self.fixedAsset fixedAsset "
+                      + "JOIN fixedAsset.company company "
+                      + "JOIN fixedAsset.journal journal "
+                      + "JOIN fixedAsset.fixedAssetCategory category "
+                      + "JOIN category.chargeAccount chargeAccount "
+                      + "JOIN category.depreciationAccount depreciationAccount "
+                      + "LEFT JOIN fixedAsset.partner partner "
+                      + "LEFT JOIN fixedAsset.analyticDistributionTemplate template "
+                      + "WHERE self.id IN (:idList) "
+                      + "ORDER BY fixedAsset.id, self.depreciationDate",
+                  Object[].class)
+              .setParameter("idList", idList)
+              .getResultList();
+
+      for (Object[] row : rows) {
+        FixedAssetDepreciationEntry entry =
+            new FixedAssetDepreciationEntry(
+                (Long) row[0],
+                (Long) row[1],
+                (Long) row[2],
+                (Long) row[3],
+                (Long) row[4],
+                (Long) row[5],
+                (Long) row[6],
+                (Long) row[7],
+                (LocalDate) row[8],
+                (BigDecimal) row[9],
+                (String) row[10],
+                (String) row[11]);
+
+        List<Object> periodKey = Arrays.asList(entry.getCompanyId(), entry.getDepreciationDate());
+        Long periodId = periodIdMap.get(periodKey);
+        if (periodId == null) {
+          periodId =
+              periodService
+                  .getActivePeriod(
+                      entry.getDepreciationDate(),
+                      JPA.em().find(Company.class, entry.getCompanyId()),
+                      YearRepository.TYPE_FISCAL)
+                  .getId();
+          periodIdMap.put(periodKey, periodId);
+        }
+        entry.setPeriodId(periodId);
+        entryList.add(entry);
+      }
+    }
+
+    return entryList;
+  }
+
+  @Override
+  @Transactional(rollbackOn = {Exception.class})
+  public Move realizeGrouped(List<FixedAssetDepreciationEntry> entryList) throws AxelorException {
+    EntityManager em = JPA.em();
+    FixedAssetDepreciationEntry firstEntry = entryList.get(0);
+
+    Journal journal = em.find(Journal.class, firstEntry.getJournalId());
+    Company company = em.find(Company.class, firstEntry.getCompanyId());
+    LocalDate date =
+        entryList.stream()
+            .map(FixedAssetDepreciationEntry::getDepreciationDate)
+            .max(Comparator.naturalOrder())
+            .orElse(firstEntry.getDepreciationDate());
+
+    log.debug(
+        "Creating a grouped fixed asset depreciation entry for {} lines "
+            + "(Company : {}, Journal : {})",
+        entryList.size(),
+        company.getName(),
+        journal.getCode());
+
+    Move move =
+        moveCreateService.createMove(
+            journal,
+            company,
+            company.getCurrency(),
+            null,
+            date,
+            null,
+            MoveRepository.TECHNICAL_ORIGIN_AUTOMATIC);
+    move = moveRepo.save(move);
+    Long moveId = move.getId();
+
+    Long depreciationAccountId = firstEntry.getDepreciationAccountId();
+    boolean creditPerFixedAsset =
+        em.find(Account.class, depreciationAccountId).getAnalyticDistributionAuthorized();
+    BigDecimal totalAmount = BigDecimal.ZERO;
+    int counter = 0;
+    int entryCount = 0;
+
+    for (FixedAssetDepreciationEntry entry : entryList) {
+      move = em.getReference(Move.class, moveId);
+      Long partnerId = entry.getPartnerId();
+      Partner partner = partnerId != null ? em.getReference(Partner.class, partnerId) : null;
+      Long templateId = entry.getAnalyticDistributionTemplateId();
+      AnalyticDistributionTemplate analyticDistributionTemplate =
+          templateId != null ? em.find(AnalyticDistributionTemplate.class, templateId) : null;
+
+      MoveLine debitMoveLine =
+          new MoveLine(
+              move,
+              partner,
+              em.find(Account.class, entry.getChargeAccountId()),
+              date,
+              null,
+              ++counter,
+              entry.getDepreciation(),
+              BigDecimal.ZERO,
+              entry.getName(),
+              entry.getReference(),
+              null,
+              BigDecimal.ZERO,
+              date);
+      this.addAnalyticToMoveLine(analyticDistributionTemplate, debitMoveLine);
+      em.persist(debitMoveLine);
+
+      if (creditPerFixedAsset) {
+        MoveLine creditMoveLine =
+            new MoveLine(
+                move,
+                partner,
+                em.find(Account.class, depreciationAccountId),
+                date,
+                null,
+                ++counter,
+                BigDecimal.ZERO,
+                entry.getDepreciation(),
+                entry.getName(),
+                entry.getReference(),
+                null,
+                BigDecimal.ZERO,
+                date);
+        this.addAnalyticToMoveLine(analyticDistributionTemplate, creditMoveLine);
+        em.persist(creditMoveLine);
+      } else {
+        totalAmount = totalAmount.add(entry.getDepreciation());
+      }
+
+      if (++entryCount % SAVE_BATCH_SIZE == 0) {
+        em.flush();
+        em.clear();
+      }
+    }
+
+    if (!creditPerFixedAsset) {
+      MoveLine creditMoveLine =
+          new MoveLine(
+              em.getReference(Move.class, moveId),
+              null,
+              em.find(Account.class, depreciationAccountId),
+              date,
+              null,
+              ++counter,
+              BigDecimal.ZERO,
+              totalAmount,
+              null,
+              null,
+              null,
+              BigDecimal.ZERO,
+              date);
+      em.persist(creditMoveLine);
+    }
+    em.flush();
+
+    setGroupRealized(entryList, em.getReference(Move.class, moveId));
+    em.clear();
+
+    return em.find(Move.class, moveId);
+  }
+
+  /**
+   * Realize the fixed asset lines of a grouped move with bulk updates: link the lines to the move,
+   * decrease the residual values and set the fixed assets without planned lines as depreciated.
+   */
+  protected void setGroupRealized(List<FixedAssetDepreciationEntry> entryList, Move move) {
+    EntityManager em = JPA.em();
+    List<Long> fixedAssetLineIdList =
+        entryList.stream()
+            .map(FixedAssetDepreciationEntry::getFixedAssetLineId)
+            .collect(Collectors.toList());
+    List<Long> fixedAssetIdList =
+        entryList.stream()
+            .map(FixedAssetDepreciationEntry::getFixedAssetId)
+            .distinct()
+            .collect(Collectors.toList());
+
+    for (List<Long> idList : Lists.partition(fixedAssetLineIdList, SAVE_BATCH_SIZE * 10)) {
+      em.createQuery(
+              "UPDATE FixedAsset self "
+                  + "SET self.residualValue = self.residualValue - "
+                  + "(SELECT SUM(line.depreciation) FROM FixedAssetLine line "
+                  + "WHERE line.fixedAsset = self AND line.id IN (:idList)), "
+                  + "self.version = self.version + 1 "
+                  + "WHERE self.id IN (SELECT line.fixedAsset.id FROM FixedAssetLine line "
+                  + "WHERE line.id IN (:idList))")
+          .setParameter("idList", idList)
+          .executeUpdate();
+
+      em.createQuery(
+              "UPDATE FixedAssetLine self "
+                  + "SET self.statusSelect = :statusRealized, "
+                  + "self.depreciationAccountMove = :move, "
+                  + "self.version = self.version + 1 "
+                  + "WHERE self.id IN (:idList)")
+          .setParameter("statusRealized", FixedAssetLineRepository.STATUS_REALIZED)
+          .setParameter("move", move)
+          .setParameter("idList", idList)
+          .executeUpdate();
+    }
+
+    for (List<Long> idList : Lists.partition(fixedAssetIdList, SAVE_BATCH_SIZE * 10)) {
+      em.createQuery(
+              "UPDATE FixedAsset self "
+                  + "SET self.statusSelect = :statusDepreciated, self.version = self.version + 1 "
+                  + "WHERE self.id IN (:idList) "
+                  + "AND self.disposalValue = 0 "
+                  + "AND NOT EXISTS (SELECT line.id FROM FixedAssetLine line "
+                  + "WHERE line.fixedAsset = self AND line.statusSelect = :statusPlanned)")
+          .setParameter("statusDepreciated", FixedAssetRepository.STATUS_DEPRECIATED)
+          .setParameter("statusPlanned", FixedAssetLineRepository.STATUS_PLANNED)
+          .setParameter("idList", idList)
+          .executeUpdate();
+    }
+  }
+
   @Transactional
   protected void addAnalyticToMoveLine(
       AnalyticDistributionTemplate analyticDistributionTemplate, MoveLine moveLine) {
@@ -0,0 +1,289 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.invoice;
+
+import com.axelor.apps.account.db.Invoice;
+import com.axelor.apps.account.db.InvoiceVentilationTask;
+import com.axelor.apps.account.db.repo.InvoiceRepository;
+import com.axelor.apps.account.db.repo.InvoiceVentilationTaskRepository;
+import com.axelor.apps.account.service.invoice.print.InvoicePrintService;
+import com.axelor.apps.report.engine.ReportSettings;
+import com.axelor.apps.tool.ParallelTool;
+import com.axelor.auth.AuthUtils;
+import com.axelor.db.JPA;
+import com.axelor.db.JpaSupport;
+import com.axelor.event.Observes;
+import com.axelor.events.ShutdownEvent;
+import com.axelor.events.StartupEvent;
+import com.axelor.exception.AxelorException;
+import com.axelor.exception.service.TraceBackService;
+import com.axelor.inject.Beans;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import org.apache.shiro.subject.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the work following an invoice ventilation, such as the PDF generation, once the ventilation
+ * is committed. Tasks are saved with the ventilation, so they are not lost on a restart, and failed
+ * tasks are retried a few times with an increasing delay. Each task runs as the user who ventilated
+ * the invoice.
+ */
+@Singleton
+public class InvoiceVentilationTaskService extends JpaSupport {
+
+  protected static final long PROCESS_DELAY = 2000;
+
+  protected static final long POLL_INTERVAL = 60000;
+
+  protected static final int PROCESS_BATCH_SIZE = 100;
+
+  protected static final int MAX_WORKERS =
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+  protected static final int MAX_ATTEMPTS = 5;
+
+  protected static final long RETRY_DELAY = 60;
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected final AtomicBoolean processScheduled = new AtomicBoolean();
+
+  protected final AtomicBoolean pollScheduled = new AtomicBoolean();
+
+  protected ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+  protected ExecutorService workers = Executors.newFixedThreadPool(MAX_WORKERS);
+
+  /**
+   * Add a task to the current transaction. The task is processed shortly after the transaction is
+   * committed, and is dropped with it on rollback.
+   *
+   * @param invoice the ventilated invoice
+   * @param typeSelect the type of task, see {@link InvoiceVentilationTaskRepository}
+   */
+  public void submit(Invoice invoice, int typeSelect) {
+    InvoiceVentilationTask task = new InvoiceVentilationTask();
+    task.setInvoice(invoice);
+    task.setTypeSelect(typeSelect);
+    task.setStatusSelect(InvoiceVentilationTaskRepository.STATUS_PENDING);
+    task.setAttemptCount(0);
+    task.setNextAttemptDateT(LocalDateTime.now());
+    task.setUser(AuthUtils.getUser());
+    getEntityManager().persist(task);
+
+    startPolling();
+    if (processScheduled.compareAndSet(false, true)) {
+      scheduler.schedule(this::processQueue, PROCESS_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Look for due tasks at regular intervals, for retries and tasks left by a previous run. */
+  protected void startPolling() {
+    if (pollScheduled.compareAndSet(false, true)) {
+      scheduler.scheduleWithFixedDelay(
+          this::processQueue, PROCESS_DELAY, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Process the due tasks with the workers, by batches. Always called from the scheduler thread, so
+   * two runs never overlap.
+   */
+  protected void processQueue() {
+    processScheduled.set(false);
+    final long startTime = System.currentTimeMillis();
+    int count = 0;
+
+    try {
+      Map<String, Subject> subjects = new HashMap<>();
+      List<Object[]> taskList;
+      while (!(taskList = getDueTasks()).isEmpty()) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Object[] task : taskList) {
+          Long taskId = (Long) task[0];
+          Subject subject = subjects.computeIfAbsent((String) task[1], ParallelTool::getSubject);
+          futures.add(
+              workers.submit(
+                  ParallelTool.asWorker(subject, Executors.callable(() -> processTask(taskId)))));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+        count += taskList.size();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      TraceBackService.trace(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+    } finally {
+      Beans.get(UnitOfWork.class).end();
+    }
+
+    if (count > 0) {
+      log.debug(
+          "{} invoice ventilation task(s) processed in {} ms",
+          count,
+          System.currentTimeMillis() - startTime);
+    }
+  }
+
+  /** Get the id of the due tasks with the code of the user who submitted them. */
+  protected List<Object[]> getDueTasks() {
+    return getEntityManager()
+        .createQuery(
+            "SELECT self.id, taskUser.code FROM InvoiceVentilationTask self "
+                + "LEFT JOIN self.user taskUser "
+                + "WHERE self.statusSelect = :statusPending "
+                + "AND self.nextAttemptDateT <= :now "
+                + "ORDER BY self.id",
+            Object[].class)
+        .setParameter("statusPending", InvoiceVentilationTaskRepository.STATUS_PENDING)
+        .setParameter("now", LocalDateTime.now())
+        .setMaxResults(PROCESS_BATCH_SIZE)
+        .getResultList();
+  }
+
+  /**
+   * Run a task from a worker thread. The task row is locked while it runs, so a task is never run
+   * twice when several servers share the database, and the task is set as done in the same
+   * transaction as its work.
+   */
+  protected void processTask(Long taskId) {
+    EntityManager em = getEntityManager();
+    EntityTransaction transaction = em.getTransaction();
+    try {
+      transaction.begin();
+      InvoiceVentilationTask task =
+          em.find(InvoiceVentilationTask.class, taskId, LockModeType.PESSIMISTIC_WRITE);
+      if (task != null
+          && task.getStatusSelect() == InvoiceVentilationTaskRepository.STATUS_PENDING) {
+        runTask(task);
+        task.setStatusSelect(InvoiceVentilationTaskRepository.STATUS_DONE);
+        task.setErrorMessage(null);
+      }
+      transaction.commit();
+    } catch (Exception e) {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+      JPA.clear();
+      failTask(taskId, e);
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  protected void runTask(InvoiceVentilationTask task) throws AxelorException {
+    Invoice invoice = task.getInvoice();
+
+    switch (task.getTypeSelect()) {
+      case InvoiceVentilationTaskRepository.TYPE_PRINT:
+        // The invoice may have been printed meanwhile, by the user or by a previous attempt.
+        getEntityManager().refresh(invoice, LockModeType.PESSIMISTIC_WRITE);
+        if (invoice.getPrintedPDF() != null) {
+          log.debug("Invoice {} is already printed", invoice.getInvoiceId());
+          break;
+        }
+        Beans.get(InvoicePrintService.class)
+            .printAndSave(
+                invoice,
+                InvoiceRepository.REPORT_TYPE_ORIGINAL_INVOICE,
+                ReportSettings.FORMAT_PDF,
+                null);
+        break;
+      default:
+        log.warn("Unknown invoice ventilation task type {}", task.getTypeSelect());
+    }
+  }
+
+  /** Schedule the next attempt of a failed task, or give up after {@link #MAX_ATTEMPTS}. */
+  protected void failTask(Long taskId, Exception exception) {
+    try {
+      inTransaction(
+          () -> {
+            InvoiceVentilationTask task =
+                getEntityManager().find(InvoiceVentilationTask.class, taskId);
+            if (task == null) {
+              return;
+            }
+            int attemptCount = task.getAttemptCount() + 1;
+            task.setAttemptCount(attemptCount);
+            task.setErrorMessage(exception.getMessage());
+            if (attemptCount >= MAX_ATTEMPTS) {
+              task.setStatusSelect(InvoiceVentilationTaskRepository.STATUS_FAILED);
+            } else {
+              task.setNextAttemptDateT(
+                  LocalDateTime.now().plusSeconds(RETRY_DELAY << (attemptCount - 1)));
+            }
+          });
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+    }
+
+    log.warn("Invoice ventilation task {} failed: {}", taskId, exception.getMessage());
+    TraceBackService.trace(exception);
+  }
+
+  /**
+   * This method starts looking for the tasks left by the previous run when the application starts.
+   * The service is bound as an eager singleton, so it is created before this event is fired.
+   *
+   * @param event startup event
+   */
+  protected void onApplicationStartup(@Observes StartupEvent event) {
+    startPolling();
+  }
+
+  /**
+   * This method stops the executors when the application stops. Pending tasks stay in the database
+   * and are processed after the next restart.
+   *
+   * @param event shutdown event
+   */
+  protected void onApplicationShutdown(@Observes ShutdownEvent event) {
+    log.debug("Shutting down invoice ventilation task executors..");
+    scheduler.shutdownNow();
+    workers.shutdown();
+    try {
+      workers.awaitTermination(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    log.debug("Invoice ventilation task executors stopped.");
+  }
+}
@@ -20,6 +20,7 @@ package com.axelor.apps.account.service.invoice.generator.batch;
 import com.axelor.apps.account.db.Invoice;
 import com.axelor.apps.account.exception.IExceptionMessage;
 import com.axelor.apps.account.service.invoice.InvoiceService;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.ExceptionOriginRepository;
@@ -27,6 +28,15 @@ import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.google.inject.Inject;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import javax.persistence.OptimisticLockException;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,46 +44,138 @@ public class BatchVentilation extends BatchWkf {
 
   static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int MAX_PARALLEL_PARTITIONS = 4;
+
+  protected static final int MAX_RECORD_ATTEMPTS = 3;
+
   @Inject
   public BatchVentilation(InvoiceService invoiceService) {
 
     super(invoiceService);
   }
 
+  /**
+   * Ventilate the invoices with a pool of workers. Invoices sharing the same company and operation
+   * type use the same sequences, so they are ventilated by the same worker, in order of date.
+   */
   @Override
   protected void process() {
 
-    for (Invoice invoice : invoices(batch.getInvoiceBatch(), true)) {
-
-      try {
-
-        invoiceService.ventilate(invoiceRepo.find(invoice.getId()));
-        updateInvoice(invoiceRepo.find(invoice.getId()));
+    Map<List<Object>, List<Long>> partitionMap = new LinkedHashMap<>();
+    invoices(batch.getInvoiceBatch(), true).stream()
+        .sorted(
+            Comparator.comparing(
+                    Invoice::getInvoiceDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Invoice::getId))
+        .forEach(
+            invoice ->
+                partitionMap
+                    .computeIfAbsent(
+                        Arrays.asList(
+                            invoice.getCompany() != null ? invoice.getCompany().getId() : null,
+                            invoice.getOperationTypeSelect()),
+                        key -> new ArrayList<>())
+                    .add(invoice.getId()));
+    JPA.clear();
+
+    List<Callable<Map<Long, Exception>>> tasks = new ArrayList<>();
+    for (List<Long> invoiceIdList : partitionMap.values()) {
+      tasks.add(() -> ventilatePartition(invoiceIdList));
+    }
 
-      } catch (AxelorException e) {
+    // Workers run as the batch user, who is recorded as the user who ventilated the invoices.
+    ParallelTool.run(
+        tasks,
+        MAX_PARALLEL_PARTITIONS,
+        (resultMap, i) -> {
+          for (Map.Entry<Long, Exception> result : resultMap.entrySet()) {
+            recordResult(result.getKey(), result.getValue());
+          }
+        },
+        (e, i) -> {
+          TraceBackService.trace(e, ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
+          incrementAnomaly();
+        });
+  }
 
-        TraceBackService.trace(
-            new AxelorException(
-                e, e.getCategory(), I18n.get("Invoice") + " %s", invoice.getInvoiceId()),
-            ExceptionOriginRepository.INVOICE_ORIGIN,
-            batch.getId());
-        incrementAnomaly();
+  /**
+   * Ventilate the invoices of a partition from a worker thread, one invoice per transaction.
+   *
+   * @return the error of each invoice, null when it was ventilated.
+   */
+  protected Map<Long, Exception> ventilatePartition(List<Long> invoiceIdList) {
+    Map<Long, Exception> resultMap = new LinkedHashMap<>();
 
+    for (Long invoiceId : invoiceIdList) {
+      try {
+        invoiceService.ventilate(invoiceRepo.find(invoiceId));
+        resultMap.put(invoiceId, null);
       } catch (Exception e) {
+        resultMap.put(invoiceId, e);
+      } finally {
+        JPA.clear();
+      }
+    }
 
-        TraceBackService.trace(
-            new Exception(String.format(I18n.get("Invoice") + " %s", invoice.getInvoiceId()), e),
-            ExceptionOriginRepository.INVOICE_ORIGIN,
-            batch.getId());
-        incrementAnomaly();
+    return resultMap;
+  }
 
-      } finally {
+  /** Record the result of an invoice, a failure never stops the recording of the other ones. */
+  protected void recordResult(Long invoiceId, Exception exception) {
+    try {
+      if (exception == null) {
+        addToBatch(invoiceId);
+        incrementDone();
+      } else {
+        traceAnomaly(invoiceRepo.find(invoiceId), exception);
+      }
+    } catch (Exception e) {
+      TraceBackService.trace(e, ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
+    } finally {
+      JPA.clear();
+    }
+  }
 
+  /**
+   * Link the invoice to the batch in its own transaction. The ventilation tasks of the invoice may
+   * update it at the same time, so an optimistic lock failure is retried on a fresh copy.
+   */
+  protected void addToBatch(Long invoiceId) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        JPA.runInTransaction(
+            () -> invoiceRepo.find(invoiceId).addBatchSetItem(batchRepo.find(batch.getId())));
+        return;
+      } catch (RuntimeException e) {
         JPA.clear();
+        if (attempt >= MAX_RECORD_ATTEMPTS
+            || ExceptionUtils.indexOfType(e, OptimisticLockException.class) == -1) {
+          throw e;
+        }
       }
     }
   }
 
+  protected void traceAnomaly(Invoice invoice, Exception e) {
+
+    if (e instanceof AxelorException) {
+      TraceBackService.trace(
+          new AxelorException(
+              e,
+              ((AxelorException) e).getCategory(),
+              I18n.get("Invoice") + " %s",
+              invoice.getInvoiceId()),
+          ExceptionOriginRepository.INVOICE_ORIGIN,
+          batch.getId());
+    } else {
+      TraceBackService.trace(
+          new Exception(String.format(I18n.get("Invoice") + " %s", invoice.getInvoiceId()), e),
+          ExceptionOriginRepository.INVOICE_ORIGIN,
+          batch.getId());
+    }
+    incrementAnomaly();
+  }
+
   @Override
   protected void stop() {
 
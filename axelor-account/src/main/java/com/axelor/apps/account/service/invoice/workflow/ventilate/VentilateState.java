@@ -213,9 +213,9 @@ public class VentilateState extends WorkflowInvoice {
       query += "AND EXTRACT (year from self.invoiceDate) = :year ";
       params.put("year", invoice.getInvoiceDate().getYear());
     }
-    if (invoiceRepo.all().filter(query).bind(params).count() > 0) {
-      Invoice lastInvoice =
-          invoiceRepo.all().filter(query).bind(params).order("invoiceDate").fetchOne();
+    Invoice lastInvoice =
+        invoiceRepo.all().filter(query).bind(params).order("invoiceDate").fetchOne();
+    if (lastInvoice != null) {
       if (sequence.getMonthlyResetOk()) {
         throw new AxelorException(
             sequence,
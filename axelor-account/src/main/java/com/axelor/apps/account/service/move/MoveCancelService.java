@@ -21,6 +21,7 @@ import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
+import com.axelor.apps.account.service.AccountBalanceSnapshotService;
 import com.axelor.apps.account.service.config.AccountConfigService;
 import com.axelor.apps.base.db.repo.PeriodRepository;
 import com.axelor.exception.AxelorException;
@@ -34,13 +35,17 @@ public class MoveCancelService {
 
   protected MoveRepository moveRepository;
   protected AccountConfigService accountConfigService;
+  protected AccountBalanceSnapshotService accountBalanceSnapshotService;
 
   @Inject
   public MoveCancelService(
-      AccountConfigService accountConfigService, MoveRepository moveRepository) {
+      AccountConfigService accountConfigService,
+      MoveRepository moveRepository,
+      AccountBalanceSnapshotService accountBalanceSnapshotService) {
 
     this.accountConfigService = accountConfigService;
     this.moveRepository = moveRepository;
+    this.accountBalanceSnapshotService = accountBalanceSnapshotService;
   }
 
   @Transactional(rollbackOn = {Exception.class})
@@ -76,6 +81,10 @@ public class MoveCancelService {
           I18n.get(IExceptionMessage.MOVE_CANCEL_4));
     }
 
+    if (move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK) {
+      accountBalanceSnapshotService.removeMove(move);
+    }
+
     try {
 
       if (move.getStatusSelect() == MoveRepository.STATUS_NEW
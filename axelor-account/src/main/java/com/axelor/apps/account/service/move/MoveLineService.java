@@ -104,6 +104,8 @@ public interface MoveLineService {
   public MoveLine findConsolidateMoveLine(
       Map<List<Object>, MoveLine> map, MoveLine moveLine, List<Object> keys);
 
+  public List<Object> getConsolidateKeys(MoveLine moveLine);
+
   public List<MoveLine> consolidateMoveLines(List<MoveLine> moveLines);
 
   public MoveLine getCreditCustomerMoveLine(Invoice invoice);
@@ -52,6 +52,7 @@ import com.axelor.apps.base.service.config.CompanyConfigService;
 import com.axelor.apps.tool.StringTool;
 import com.axelor.common.ObjectUtils;
 import com.axelor.db.JPA;
+import com.axelor.db.Model;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.exception.service.TraceBackService;
@@ -68,6 +69,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -635,62 +637,60 @@ public class MoveLineServiceImpl implements MoveLineService {
   @Override
   public MoveLine findConsolidateMoveLine(
       Map<List<Object>, MoveLine> map, MoveLine moveLine, List<Object> keys) {
-    if (map != null && !map.isEmpty()) {
+    return map != null ? map.get(keys) : null;
+  }
 
-      Map<List<Object>, MoveLine> copyMap = new HashMap<List<Object>, MoveLine>(map);
-      while (!copyMap.isEmpty()) {
+  /**
+   * Keys used to consolidate move lines: lines can only be merged if they share the same account,
+   * partner, tax line, analytic distribution template and analytic distribution.
+   *
+   * @param moveLine
+   * @return
+   */
+  @Override
+  public List<Object> getConsolidateKeys(MoveLine moveLine) {
 
-        if (map.containsKey(keys)) {
+    List<Object> keys = new ArrayList<Object>();
 
-          MoveLine moveLineIt = map.get(keys);
-          int count = 0;
-          if (moveLineIt.getAnalyticMoveLineList() == null
-              && moveLine.getAnalyticMoveLineList() == null) {
-            return moveLineIt;
-          } else if (moveLineIt.getAnalyticMoveLineList() == null
-              || moveLine.getAnalyticMoveLineList() == null) {
-            break;
-          }
-          List<AnalyticMoveLine> list1 = moveLineIt.getAnalyticMoveLineList();
-          List<AnalyticMoveLine> list2 = moveLine.getAnalyticMoveLineList();
-          List<AnalyticMoveLine> copyList = new ArrayList<AnalyticMoveLine>(list1);
-          if (list1.size() == list2.size()) {
-            for (AnalyticMoveLine analyticDistributionLine : list2) {
-              for (AnalyticMoveLine analyticDistributionLineIt : copyList) {
-                if (analyticDistributionLine
-                        .getAnalyticAxis()
-                        .equals(analyticDistributionLineIt.getAnalyticAxis())
-                    && analyticDistributionLine
-                        .getAnalyticAccount()
-                        .equals(analyticDistributionLineIt.getAnalyticAccount())
-                    && analyticDistributionLine
-                        .getAccount()
-                        .equals(analyticDistributionLineIt.getAccount())
-                    && analyticDistributionLine
-                        .getPercentage()
-                        .equals(analyticDistributionLineIt.getPercentage())
-                    && ((analyticDistributionLine.getAnalyticJournal() == null
-                            && analyticDistributionLineIt.getAnalyticJournal() == null)
-                        || analyticDistributionLine
-                            .getAnalyticJournal()
-                            .equals(analyticDistributionLineIt.getAnalyticJournal()))) {
-                  copyList.remove(analyticDistributionLineIt);
-                  count++;
-                  break;
-                }
-              }
-            }
-            if (count == list1.size()) {
-              return moveLineIt;
-            }
-          }
-        } else {
-          return null;
-        }
-      }
-    }
+    keys.add(moveLine.getAccount());
+    keys.add(moveLine.getPartner());
+    keys.add(moveLine.getTaxLine());
+    keys.add(moveLine.getAnalyticDistributionTemplate());
+    keys.add(
+        this.getSortedAnalyticMoveLines(moveLine).stream()
+            .map(this::getAnalyticKey)
+            .collect(Collectors.toList()));
 
-    return null;
+    return keys;
+  }
+
+  /**
+   * Key of an analytic move line, independent from its amount, used to compare the analytic
+   * distribution of two move lines.
+   */
+  protected String getAnalyticKey(AnalyticMoveLine analyticMoveLine) {
+    return String.join(
+        "|",
+        String.valueOf(getId(analyticMoveLine.getAnalyticAxis())),
+        String.valueOf(getId(analyticMoveLine.getAnalyticAccount())),
+        String.valueOf(getId(analyticMoveLine.getAccount())),
+        String.valueOf(getId(analyticMoveLine.getAnalyticJournal())),
+        analyticMoveLine.getPercentage() != null
+            ? analyticMoveLine.getPercentage().stripTrailingZeros().toPlainString()
+            : "");
+  }
+
+  protected Long getId(Model model) {
+    return model != null ? model.getId() : null;
+  }
+
+  protected List<AnalyticMoveLine> getSortedAnalyticMoveLines(MoveLine moveLine) {
+    if (ObjectUtils.isEmpty(moveLine.getAnalyticMoveLineList())) {
+      return new ArrayList<>();
+    }
+    return moveLine.getAnalyticMoveLineList().stream()
+        .sorted(Comparator.comparing(this::getAnalyticKey))
+        .collect(Collectors.toList());
   }
 
   /**
@@ -701,16 +701,12 @@ public class MoveLineServiceImpl implements MoveLineService {
   @Override
   public List<MoveLine> consolidateMoveLines(List<MoveLine> moveLines) {
 
-    Map<List<Object>, MoveLine> map = new HashMap<List<Object>, MoveLine>();
+    Map<List<Object>, MoveLine> map = new LinkedHashMap<List<Object>, MoveLine>();
     MoveLine consolidateMoveLine = null;
 
     for (MoveLine moveLine : moveLines) {
 
-      List<Object> keys = new ArrayList<Object>();
-
-      keys.add(moveLine.getAccount());
-      keys.add(moveLine.getTaxLine());
-      keys.add(moveLine.getAnalyticDistributionTemplate());
+      List<Object> keys = this.getConsolidateKeys(moveLine);
 
       consolidateMoveLine = this.findConsolidateMoveLine(map, moveLine, keys);
       if (consolidateMoveLine != null) {
@@ -743,36 +739,14 @@ public class MoveLineServiceImpl implements MoveLineService {
         consolidateMoveLine.setCredit(consolidateMoveLine.getCredit().add(moveLine.getCredit()));
         consolidateMoveLine.setDebit(consolidateMoveLine.getDebit().add(moveLine.getDebit()));
 
-        if (consolidateMoveLine.getAnalyticMoveLineList() != null
-            && !consolidateMoveLine.getAnalyticMoveLineList().isEmpty()) {
-          for (AnalyticMoveLine analyticDistributionLine :
-              consolidateMoveLine.getAnalyticMoveLineList()) {
-            for (AnalyticMoveLine analyticDistributionLineIt : moveLine.getAnalyticMoveLineList()) {
-              if (analyticDistributionLine
-                      .getAnalyticAxis()
-                      .equals(analyticDistributionLineIt.getAnalyticAxis())
-                  && analyticDistributionLine
-                      .getAnalyticAccount()
-                      .equals(analyticDistributionLineIt.getAnalyticAccount())
-                  && analyticDistributionLine
-                      .getAccount()
-                      .equals(analyticDistributionLineIt.getAccount())
-                  && analyticDistributionLine
-                      .getPercentage()
-                      .equals(analyticDistributionLineIt.getPercentage())
-                  && ((analyticDistributionLine.getAnalyticJournal() == null
-                          && analyticDistributionLineIt.getAnalyticJournal() == null)
-                      || analyticDistributionLine
-                          .getAnalyticJournal()
-                          .equals(analyticDistributionLineIt.getAnalyticJournal()))) {
-                analyticDistributionLine.setAmount(
-                    analyticDistributionLine
-                        .getAmount()
-                        .add(analyticDistributionLineIt.getAmount()));
-                break;
-              }
-            }
-          }
+        // Same keys means same analytic distribution: once sorted, both lists match line by line.
+        List<AnalyticMoveLine> analyticMoveLineList =
+            this.getSortedAnalyticMoveLines(consolidateMoveLine);
+        List<AnalyticMoveLine> analyticMoveLineItList = this.getSortedAnalyticMoveLines(moveLine);
+        for (int i = 0; i < analyticMoveLineList.size(); i++) {
+          AnalyticMoveLine analyticDistributionLine = analyticMoveLineList.get(i);
+          analyticDistributionLine.setAmount(
+              analyticDistributionLine.getAmount().add(analyticMoveLineItList.get(i).getAmount()));
         }
       } else {
         map.put(keys, moveLine);
@@ -24,6 +24,7 @@ import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.repo.AccountRepository;
 import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.account.exception.IExceptionMessage;
+import com.axelor.apps.account.service.AccountBalanceSnapshotService;
 import com.axelor.apps.account.service.config.AccountConfigService;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Partner;
@@ -62,6 +63,7 @@ public class MoveValidateService {
   protected AccountRepository accountRepository;
   protected PartnerRepository partnerRepository;
   protected AppBaseService appBaseService;
+  protected AccountBalanceSnapshotService accountBalanceSnapshotService;
 
   @Inject
   public MoveValidateService(
@@ -71,7 +73,8 @@ public class MoveValidateService {
       MoveRepository moveRepository,
       AccountRepository accountRepository,
       PartnerRepository partnerRepository,
-      AppBaseService appBaseService) {
+      AppBaseService appBaseService,
+      AccountBalanceSnapshotService accountBalanceSnapshotService) {
 
     this.accountConfigService = accountConfigService;
     this.moveSequenceService = moveSequenceService;
@@ -80,6 +83,7 @@ public class MoveValidateService {
     this.accountRepository = accountRepository;
     this.partnerRepository = partnerRepository;
     this.appBaseService = appBaseService;
+    this.accountBalanceSnapshotService = accountBalanceSnapshotService;
   }
 
   /**
@@ -240,10 +244,18 @@ public class MoveValidateService {
 
     this.freezeAccountAndPartnerFieldsOnMoveLines(move);
 
+    boolean accountedOk =
+        move.getStatusSelect() == MoveRepository.STATUS_DAYBOOK
+            || move.getStatusSelect() == MoveRepository.STATUS_VALIDATED;
+
     this.updateValidateStatus(move, dayBookMode);
 
     moveRepository.save(move);
 
+    if (!accountedOk) {
+      accountBalanceSnapshotService.addMove(move);
+    }
+
     if (updateCustomerAccount) {
       moveCustAccountService.updateCustomerAccount(move);
     }
@@ -0,0 +1,281 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AccountConfig;
+import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.AccountRepository;
+import com.axelor.apps.account.db.repo.MoveRepository;
+import com.axelor.apps.account.service.config.AccountConfigService;
+import com.axelor.apps.account.service.move.MoveCreateService;
+import com.axelor.apps.account.service.move.MoveLineService;
+import com.axelor.apps.account.service.move.MoveValidateService;
+import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.Year;
+import com.axelor.exception.AxelorException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+
+public class TestAccountingCloseAnnualService {
+
+  protected static final LocalDate END_OF_YEAR_DATE = LocalDate.of(2020, 12, 31);
+  protected static final LocalDate REPORTED_BALANCE_DATE = LocalDate.of(2021, 1, 1);
+
+  protected AccountingCloseAnnualServiceImpl accountingCloseAnnualService;
+  protected MoveCreateService moveCreateService;
+  protected MoveLineService moveLineService;
+  protected AccountConfigService accountConfigService;
+  protected ReconcileService reconcileService;
+  protected AccountRepository accountRepository;
+
+  protected Company company;
+  protected Account closureAccount;
+  protected Account openingAccount;
+
+  /*
+   * Prepare dependencies by mocking them
+   */
+  @Before
+  public void prepare() throws AxelorException {
+    moveCreateService = mock(MoveCreateService.class);
+    moveLineService = mock(MoveLineService.class);
+    accountConfigService = mock(AccountConfigService.class);
+    reconcileService = mock(ReconcileService.class);
+    accountRepository = mock(AccountRepository.class);
+
+    accountingCloseAnnualService =
+        new AccountingCloseAnnualServiceImpl(
+            moveCreateService,
+            moveLineService,
+            accountConfigService,
+            mock(MoveRepository.class),
+            mock(MoveValidateService.class),
+            reconcileService,
+            mock(AccountService.class),
+            accountRepository);
+
+    company = new Company();
+    company.setId(1L);
+    closureAccount = createAccount(100L, company);
+    openingAccount = createAccount(101L, company);
+
+    prepareAccountConfigService();
+    prepareMoveCreateService();
+    prepareMoveLineService();
+  }
+
+  protected void prepareAccountConfigService() throws AxelorException {
+    AccountConfig accountConfig = new AccountConfig();
+    when(accountConfigService.getAccountConfig(any(Company.class))).thenReturn(accountConfig);
+    when(accountConfigService.getYearClosureAccount(accountConfig)).thenReturn(closureAccount);
+    when(accountConfigService.getYearOpeningAccount(accountConfig)).thenReturn(openingAccount);
+  }
+
+  protected void prepareMoveCreateService() throws AxelorException {
+    when(moveCreateService.createMove(
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            anyInt(),
+            anyBoolean(),
+            anyBoolean(),
+            anyBoolean()))
+        .then(
+            (Answer<Move>)
+                invocation -> {
+                  Move move = new Move();
+                  move.setCompany((Company) invocation.getArguments()[1]);
+                  move.setDate((LocalDate) invocation.getArguments()[4]);
+                  return move;
+                });
+  }
+
+  protected void prepareMoveLineService() throws AxelorException {
+    when(moveLineService.createMoveLine(
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            anyBoolean(),
+            any(),
+            any(),
+            any(),
+            anyInt(),
+            any(),
+            any()))
+        .then(
+            (Answer<MoveLine>)
+                invocation -> {
+                  Object[] arguments = invocation.getArguments();
+                  BigDecimal amount = (BigDecimal) arguments[4];
+                  boolean isDebit = (boolean) arguments[6];
+                  MoveLine moveLine = new MoveLine();
+                  moveLine.setPartner((Partner) arguments[1]);
+                  moveLine.setAccount((Account) arguments[2]);
+                  moveLine.setDebit(isDebit ? amount : BigDecimal.ZERO);
+                  moveLine.setCredit(isDebit ? BigDecimal.ZERO : amount);
+                  moveLine.setCounter((int) arguments[10]);
+                  return moveLine;
+                });
+  }
+
+  @Test
+  public void testCloseAndOpenMovesWithCounterpart() throws AxelorException {
+    Account customerAccount = createAccount(1L, company);
+    Account supplierAccount = createAccount(2L, company);
+    Map<Pair<Long, Long>, BigDecimal> balanceMap = new LinkedHashMap<>();
+    balanceMap.put(Pair.of(1L, null), new BigDecimal("100.00"));
+    balanceMap.put(Pair.of(2L, null), new BigDecimal("-30.00"));
+
+    List<Move> moveList = generateMoves(balanceMap, true, true);
+
+    Assert.assertEquals(2, moveList.size());
+
+    Move closeYearMove = moveList.get(0);
+    Assert.assertEquals(END_OF_YEAR_DATE, closeYearMove.getDate());
+    Assert.assertEquals(3, closeYearMove.getMoveLineList().size());
+    assertMoveLine(closeYearMove.getMoveLineList().get(0), customerAccount, "0", "100.00");
+    assertMoveLine(closeYearMove.getMoveLineList().get(1), supplierAccount, "30.00", "0");
+    assertMoveLine(closeYearMove.getMoveLineList().get(2), closureAccount, "70.00", "0");
+    assertBalanced(closeYearMove);
+
+    Move openYearMove = moveList.get(1);
+    Assert.assertEquals(REPORTED_BALANCE_DATE, openYearMove.getDate());
+    Assert.assertEquals(3, openYearMove.getMoveLineList().size());
+    assertMoveLine(openYearMove.getMoveLineList().get(0), customerAccount, "100.00", "0");
+    assertMoveLine(openYearMove.getMoveLineList().get(1), supplierAccount, "0", "30.00");
+    assertMoveLine(openYearMove.getMoveLineList().get(2), openingAccount, "0", "70.00");
+    assertBalanced(openYearMove);
+
+    verify(reconcileService, times(3)).reconcile(any(), any(), anyBoolean(), anyBoolean());
+  }
+
+  @Test
+  public void testNoCounterpartWhenBalancesCancelOut() throws AxelorException {
+    createAccount(1L, company);
+    createAccount(2L, company);
+    Map<Pair<Long, Long>, BigDecimal> balanceMap = new LinkedHashMap<>();
+    balanceMap.put(Pair.of(1L, null), new BigDecimal("45.00"));
+    balanceMap.put(Pair.of(2L, null), new BigDecimal("-45.00"));
+
+    List<Move> moveList = generateMoves(balanceMap, true, false);
+
+    Assert.assertEquals(1, moveList.size());
+    Assert.assertEquals(2, moveList.get(0).getMoveLineList().size());
+    assertBalanced(moveList.get(0));
+    verify(reconcileService, never()).reconcile(any(), any(), anyBoolean(), anyBoolean());
+  }
+
+  @Test
+  public void testZeroBalancesAreSkipped() throws AxelorException {
+    Account customerAccount = createAccount(1L, company);
+    createAccount(2L, company);
+    Map<Pair<Long, Long>, BigDecimal> balanceMap = new LinkedHashMap<>();
+    balanceMap.put(Pair.of(1L, null), new BigDecimal("12.50"));
+    balanceMap.put(Pair.of(2L, null), BigDecimal.ZERO);
+
+    List<Move> moveList = generateMoves(balanceMap, true, false);
+
+    Assert.assertEquals(1, moveList.size());
+    Assert.assertEquals(2, moveList.get(0).getMoveLineList().size());
+    assertMoveLine(moveList.get(0).getMoveLineList().get(0), customerAccount, "0", "12.50");
+    assertMoveLine(moveList.get(0).getMoveLineList().get(1), closureAccount, "12.50", "0");
+  }
+
+  @Test
+  public void testOneMovePerCompany() throws AxelorException {
+    Company otherCompany = new Company();
+    otherCompany.setId(2L);
+    createAccount(1L, company);
+    createAccount(2L, otherCompany);
+    Map<Pair<Long, Long>, BigDecimal> balanceMap = new LinkedHashMap<>();
+    balanceMap.put(Pair.of(1L, null), new BigDecimal("10.00"));
+    balanceMap.put(Pair.of(2L, null), new BigDecimal("20.00"));
+
+    List<Move> moveList = generateMoves(balanceMap, true, false);
+
+    Assert.assertEquals(2, moveList.size());
+    Assert.assertEquals(company, moveList.get(0).getCompany());
+    Assert.assertEquals(otherCompany, moveList.get(1).getCompany());
+    assertBalanced(moveList.get(0));
+    assertBalanced(moveList.get(1));
+  }
+
+  protected List<Move> generateMoves(
+      Map<Pair<Long, Long>, BigDecimal> balanceMap, boolean closeYear, boolean openYear)
+      throws AxelorException {
+    return accountingCloseAnnualService.generateCloseAnnualAccounts(
+        new Year(),
+        balanceMap,
+        END_OF_YEAR_DATE,
+        REPORTED_BALANCE_DATE,
+        "origin",
+        "description",
+        closeYear,
+        openYear);
+  }
+
+  protected Account createAccount(Long id, Company company) {
+    Account account = new Account();
+    account.setId(id);
+    account.setCompany(company);
+    when(accountRepository.find(id)).thenReturn(account);
+    return account;
+  }
+
+  protected void assertMoveLine(MoveLine moveLine, Account account, String debit, String credit) {
+    Assert.assertEquals(account, moveLine.getAccount());
+    Assert.assertEquals(0, new BigDecimal(debit).compareTo(moveLine.getDebit()));
+    Assert.assertEquals(0, new BigDecimal(credit).compareTo(moveLine.getCredit()));
+  }
+
+  protected void assertBalanced(Move move) {
+    BigDecimal debit = BigDecimal.ZERO;
+    BigDecimal credit = BigDecimal.ZERO;
+    for (MoveLine moveLine : move.getMoveLineList()) {
+      debit = debit.add(moveLine.getDebit());
+      credit = credit.add(moveLine.getCredit());
+    }
+    Assert.assertEquals(0, debit.compareTo(credit));
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.account.service.move;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.account.db.Account;
+import com.axelor.apps.account.db.AnalyticAccount;
+import com.axelor.apps.account.db.AnalyticAxis;
+import com.axelor.apps.account.db.AnalyticJournal;
+import com.axelor.apps.account.db.AnalyticMoveLine;
+import com.axelor.apps.account.db.MoveLine;
+import com.axelor.apps.account.db.repo.MoveLineRepository;
+import com.axelor.apps.account.service.AccountManagementAccountService;
+import com.axelor.apps.account.service.AnalyticMoveLineService;
+import com.axelor.apps.account.service.FiscalPositionAccountService;
+import com.axelor.apps.account.service.TaxAccountService;
+import com.axelor.apps.account.service.TaxPaymentMoveLineService;
+import com.axelor.apps.account.service.app.AppAccountService;
+import com.axelor.apps.base.service.CurrencyService;
+import com.axelor.apps.base.service.config.CompanyConfigService;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMoveLineConsolidateKeys {
+
+  protected MoveLineService moveLineService;
+
+  protected Account account;
+  protected AnalyticAxis analyticAxis;
+  protected AnalyticJournal analyticJournal;
+  protected AnalyticAccount firstAnalyticAccount;
+  protected AnalyticAccount secondAnalyticAccount;
+
+  @Before
+  public void prepare() {
+    moveLineService =
+        new MoveLineServiceImpl(
+            mock(AccountManagementAccountService.class),
+            mock(TaxAccountService.class),
+            mock(FiscalPositionAccountService.class),
+            mock(AppAccountService.class),
+            mock(AnalyticMoveLineService.class),
+            mock(CurrencyService.class),
+            mock(CompanyConfigService.class),
+            mock(MoveLineRepository.class),
+            mock(TaxPaymentMoveLineService.class));
+
+    account = new Account();
+    account.setId(1L);
+    analyticAxis = new AnalyticAxis();
+    analyticAxis.setId(1L);
+    analyticJournal = new AnalyticJournal();
+    analyticJournal.setId(1L);
+    firstAnalyticAccount = new AnalyticAccount();
+    firstAnalyticAccount.setId(1L);
+    secondAnalyticAccount = new AnalyticAccount();
+    secondAnalyticAccount.setId(2L);
+  }
+
+  @Test
+  public void testSameKeysWithoutAnalytic() {
+    Assert.assertEquals(
+        moveLineService.getConsolidateKeys(createMoveLine()),
+        moveLineService.getConsolidateKeys(createMoveLine()));
+  }
+
+  @Test
+  public void testAnalyticOrderDoesNotChangeKeys() {
+    MoveLine moveLine =
+        createMoveLine(
+            createAnalyticMoveLine(firstAnalyticAccount, "30", "30.00"),
+            createAnalyticMoveLine(secondAnalyticAccount, "70", "70.00"));
+    MoveLine otherMoveLine =
+        createMoveLine(
+            createAnalyticMoveLine(secondAnalyticAccount, "70", "70.00"),
+            createAnalyticMoveLine(firstAnalyticAccount, "30", "30.00"));
+
+    Assert.assertEquals(
+        moveLineService.getConsolidateKeys(moveLine),
+        moveLineService.getConsolidateKeys(otherMoveLine));
+  }
+
+  @Test
+  public void testAnalyticAmountDoesNotChangeKeys() {
+    MoveLine moveLine =
+        createMoveLine(
+            createAnalyticMoveLine(firstAnalyticAccount, "30", "30.00"),
+            createAnalyticMoveLine(secondAnalyticAccount, "70", "70.00"));
+    MoveLine otherMoveLine =
+        createMoveLine(
+            createAnalyticMoveLine(firstAnalyticAccount, "30.00", "60.00"),
+            createAnalyticMoveLine(secondAnalyticAccount, "70.00", "140.00"));
+
+    Assert.assertEquals(
+        moveLineService.getConsolidateKeys(moveLine),
+        moveLineService.getConsolidateKeys(otherMoveLine));
+  }
+
+  @Test
+  public void testAnalyticPercentageChangesKeys() {
+    MoveLine moveLine =
+        createMoveLine(
+            createAnalyticMoveLine(firstAnalyticAccount, "30", "30.00"),
+            createAnalyticMoveLine(secondAnalyticAccount, "70", "70.00"));
+    MoveLine otherMoveLine =
+        createMoveLine(
+            createAnalyticMoveLine(firstAnalyticAccount, "40", "40.00"),
+            createAnalyticMoveLine(secondAnalyticAccount, "60", "60.00"));
+
+    Assert.assertNotEquals(
+        moveLineService.getConsolidateKeys(moveLine),
+        moveLineService.getConsolidateKeys(otherMoveLine));
+  }
+
+  @Test
+  public void testAnalyticAccountChangesKeys() {
+    MoveLine moveLine =
+        createMoveLine(createAnalyticMoveLine(firstAnalyticAccount, "100", "100.00"));
+    MoveLine otherMoveLine =
+        createMoveLine(createAnalyticMoveLine(secondAnalyticAccount, "100", "100.00"));
+
+    Assert.assertNotEquals(
+        moveLineService.getConsolidateKeys(moveLine),
+        moveLineService.getConsolidateKeys(otherMoveLine));
+  }
+
+  @Test
+  public void testMissingAnalyticChangesKeys() {
+    MoveLine moveLine =
+        createMoveLine(createAnalyticMoveLine(firstAnalyticAccount, "100", "100.00"));
+
+    Assert.assertNotEquals(
+        moveLineService.getConsolidateKeys(moveLine),
+        moveLineService.getConsolidateKeys(createMoveLine()));
+  }
+
+  protected MoveLine createMoveLine(AnalyticMoveLine... analyticMoveLines) {
+    MoveLine moveLine = new MoveLine();
+    moveLine.setAccount(account);
+    moveLine.setAnalyticMoveLineList(new ArrayList<>(Arrays.asList(analyticMoveLines)));
+    return moveLine;
+  }
+
+  protected AnalyticMoveLine createAnalyticMoveLine(
+      AnalyticAccount analyticAccount, String percentage, String amount) {
+    AnalyticMoveLine analyticMoveLine = new AnalyticMoveLine();
+    analyticMoveLine.setAnalyticAxis(analyticAxis);
+    analyticMoveLine.setAnalyticAccount(analyticAccount);
+    analyticMoveLine.setAnalyticJournal(analyticJournal);
+    analyticMoveLine.setAccount(account);
+    analyticMoveLine.setPercentage(new BigDecimal(percentage));
+    analyticMoveLine.setAmount(new BigDecimal(amount));
+    return analyticMoveLine;
+  }
+}
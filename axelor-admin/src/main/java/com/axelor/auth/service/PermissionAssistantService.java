@@ -27,6 +27,8 @@ import com.axelor.auth.db.repo.GroupRepository;
 import com.axelor.auth.db.repo.PermissionAssistantRepository;
 import com.axelor.auth.db.repo.PermissionRepository;
 import com.axelor.auth.db.repo.RoleRepository;
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
@@ -37,7 +39,6 @@ import com.axelor.meta.db.MetaModel;
 import com.axelor.meta.db.MetaPermission;
 import com.axelor.meta.db.MetaPermissionRule;
 import com.axelor.meta.db.repo.MetaFieldRepository;
-import com.axelor.meta.db.repo.MetaModelRepository;
 import com.axelor.meta.db.repo.MetaPermissionRepository;
 import com.axelor.meta.db.repo.MetaPermissionRuleRepository;
 import com.google.common.base.Strings;
@@ -61,11 +62,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.io.output.FileWriterWithEncoding;
 import org.slf4j.Logger;
@@ -83,16 +87,27 @@ public class PermissionAssistantService {
 
   @Inject private GroupRepository groupRepository;
 
-  @Inject private MetaModelRepository modelRepository;
-
   @Inject private MetaFieldRepository fieldRepository;
 
   @Inject private MetaFiles metaFiles;
 
   @Inject private RoleRepository roleRepo;
 
+  private static final int SAVE_BATCH_SIZE = 100;
+
   private String errorLog = "";
 
+  // Lookups loaded once per import, so that cells are checked without queries.
+  private Set<String> modelNameSet;
+
+  private Map<String, Permission> permissionMap;
+
+  private Map<String, MetaPermission> metaPermissionMap;
+
+  private Map<String, MetaPermissionRule> ruleMap;
+
+  private Set<Model> changedRecordSet = new LinkedHashSet<>();
+
   private Collection<String> header =
       Arrays.asList(/*$$(*/ "Object" /*)*/, /*$$(*/ "Field" /*)*/, /*$$(*/ "Title" /*)*/);
 
@@ -437,7 +452,7 @@ public class PermissionAssistantService {
               groupMap,
               permissionAssistant.getMetaField(),
               permissionAssistant.getFieldPermission());
-          saveGroups(groupMap);
+          saveChangedRecords();
         } else if (permissionAssistant.getTypeSelect()
             == PermissionAssistantRepository.TYPE_ROLES) {
           Map<String, Role> roleMap = checkBadRoles(groupRow);
@@ -447,7 +462,7 @@ public class PermissionAssistantService {
               roleMap,
               permissionAssistant.getMetaField(),
               permissionAssistant.getFieldPermission());
-          saveRoles(roleMap);
+          saveChangedRecords();
         }
       }
 
@@ -460,19 +475,76 @@ public class PermissionAssistantService {
     return errorLog;
   }
 
+  /** Save the records created or modified by the import, flushing them by batches. */
   @Transactional
-  public void saveGroups(Map<String, Group> groupMap) {
+  public void saveChangedRecords() {
+
+    LOG.debug("Saving {} changed records", changedRecordSet.size());
 
-    for (Group group : groupMap.values()) {
-      groupRepository.save(group);
+    int count = 0;
+    for (Model record : changedRecordSet) {
+      JPA.save(record);
+      if (++count % SAVE_BATCH_SIZE == 0) {
+        JPA.flush();
+      }
     }
+    changedRecordSet.clear();
   }
 
-  @Transactional
-  public void saveRoles(Map<String, Role> roleMap) {
+  private Set<String> getModelNameSet() {
+    if (modelNameSet == null) {
+      modelNameSet =
+          new HashSet<>(
+              JPA.em()
+                  .createQuery("SELECT self.fullName FROM MetaModel self", String.class)
+                  .getResultList());
+    }
+    return modelNameSet;
+  }
+
+  private Map<String, Permission> getPermissionMap() {
+    if (permissionMap == null) {
+      permissionMap = new HashMap<>();
+      for (Permission permission : permissionRepository.all().fetch()) {
+        permissionMap.putIfAbsent(permission.getName(), permission);
+      }
+    }
+    return permissionMap;
+  }
+
+  private Map<String, MetaPermission> getMetaPermissionMap() {
+    if (metaPermissionMap == null) {
+      metaPermissionMap = new HashMap<>();
+      for (MetaPermission metaPermission : metaPermissionRepository.all().fetch()) {
+        metaPermissionMap.putIfAbsent(metaPermission.getName(), metaPermission);
+      }
+    }
+    return metaPermissionMap;
+  }
+
+  private Map<String, MetaPermissionRule> getRuleMap() {
+    if (ruleMap == null) {
+      ruleMap = new HashMap<>();
+      for (MetaPermissionRule rule :
+          JPA.em()
+              .createQuery(
+                  "SELECT self FROM MetaPermissionRule self JOIN FETCH self.metaPermission",
+                  MetaPermissionRule.class)
+              .getResultList()) {
+        ruleMap.putIfAbsent(getRuleKey(rule.getMetaPermission().getName(), rule.getField()), rule);
+      }
+    }
+    return ruleMap;
+  }
+
+  private String getRuleKey(String metaPermissionName, String field) {
+    return metaPermissionName + ":" + field;
+  }
 
-    for (Role role : roleMap.values()) {
-      roleRepo.save(role);
+  /** Mark an existing record as modified by the import, new records are saved with their owner. */
+  private void markChanged(Model record, boolean changed) {
+    if (changed && record.getId() != null) {
+      changedRecordSet.add(record);
     }
   }
 
@@ -480,11 +552,18 @@ public class PermissionAssistantService {
 
     List<String> badGroups = new ArrayList<String>();
     Map<String, Group> groupMap = new HashMap<String, Group>();
+    Map<String, Group> groupByCode =
+        groupRepository
+            .all()
+            .filter("self.code IN ?1", getColumnNames(groupRow))
+            .fetch()
+            .stream()
+            .collect(Collectors.toMap(Group::getCode, group -> group, (g1, g2) -> g1));
 
     for (Integer glen = header.size() + 1; glen < groupRow.length; glen += groupHeader.size()) {
 
       String groupName = groupRow[glen];
-      Group group = groupRepository.all().filter("self.code = ?1", groupName).fetchOne();
+      Group group = groupByCode.get(groupName);
       if (group == null) {
         badGroups.add(groupName);
       } else {
@@ -503,12 +582,19 @@ public class PermissionAssistantService {
 
     List<String> badroles = new ArrayList<String>();
     Map<String, Role> roleMap = new HashMap<String, Role>();
+    Map<String, Role> roleByName =
+        roleRepo
+            .all()
+            .filter("self.name IN ?1", getColumnNames(roleRow))
+            .fetch()
+            .stream()
+            .collect(Collectors.toMap(Role::getName, role -> role, (r1, r2) -> r1));
 
     for (Integer len = header.size() + 1; len < roleRow.length; len += groupHeader.size()) {
 
       String roleName = roleRow[len];
-      Role role = roleRepo.all().filter("self.name = ?1", roleName).fetchOne();
-      if (roleName == null) {
+      Role role = roleByName.get(roleName);
+      if (role == null) {
         badroles.add(roleName);
       } else {
         roleMap.put(roleName, role);
@@ -522,11 +608,22 @@ public class PermissionAssistantService {
     return roleMap;
   }
 
-  private String checkObject(String objectName) {
+  /** Get the names of the groups or roles given in the first row of the file. */
+  private List<String> getColumnNames(String[] groupRow) {
 
-    MetaModel model = modelRepository.all().filter("self.fullName = ?1", objectName).fetchOne();
+    List<String> names = new ArrayList<>();
+    for (int index = header.size() + 1; index < groupRow.length; index += groupHeader.size()) {
+      names.add(groupRow[index]);
+    }
+    // an empty list is not valid in an IN clause
+    names.add("");
+
+    return names;
+  }
 
-    if (model == null) {
+  private String checkObject(String objectName) {
+
+    if (!getModelNameSet().contains(objectName)) {
       errorLog += "\n" + String.format(I18n.get(IMessage.NO_OBJECT), objectName);
       return null;
     }
@@ -624,8 +721,7 @@ public class PermissionAssistantService {
     String[] objectNames = objectName.split("\\.");
     String groupName = group.getCode();
     String permName = getPermissionName(null, objectNames[objectNames.length - 1], group.getCode());
-    MetaPermission metaPermission =
-        metaPermissionRepository.all().filter("self.name = ?1", permName).fetchOne();
+    MetaPermission metaPermission = getMetaPermissionMap().get(permName);
 
     if (metaPermission == null) {
       LOG.debug("Create metaPermission group: {}, object: {}", groupName, objectName);
@@ -633,8 +729,10 @@ public class PermissionAssistantService {
       metaPermission = new MetaPermission();
       metaPermission.setName(permName);
       metaPermission.setObject(objectName);
+      getMetaPermissionMap().put(permName, metaPermission);
 
       group.addMetaPermission(metaPermission);
+      changedRecordSet.add(group);
     }
 
     return metaPermission;
@@ -645,8 +743,7 @@ public class PermissionAssistantService {
     String[] objectNames = objectName.split("\\.");
     String roleName = role.getName();
     String permName = getPermissionName(null, objectNames[objectNames.length - 1], roleName);
-    MetaPermission metaPermission =
-        metaPermissionRepository.all().filter("self.name = ?1", permName).fetchOne();
+    MetaPermission metaPermission = getMetaPermissionMap().get(permName);
 
     if (metaPermission == null) {
       LOG.debug("Create metaPermission role: {}, object: {}", roleName, objectName);
@@ -654,8 +751,10 @@ public class PermissionAssistantService {
       metaPermission = new MetaPermission();
       metaPermission.setName(permName);
       metaPermission.setObject(objectName);
+      getMetaPermissionMap().put(permName, metaPermission);
 
       role.addMetaPermission(metaPermission);
+      changedRecordSet.add(role);
     }
 
     return metaPermission;
@@ -664,21 +763,19 @@ public class PermissionAssistantService {
   public MetaPermission updateFieldPermission(
       MetaPermission metaPermission, String field, String[] row) {
 
-    MetaPermissionRule permissionRule =
-        ruleRepository
-            .all()
-            .filter(
-                "self.field = ?1 and self.metaPermission.name = ?2",
-                field,
-                metaPermission.getName())
-            .fetchOne();
+    String ruleKey = getRuleKey(metaPermission.getName(), field);
+    MetaPermissionRule permissionRule = getRuleMap().get(ruleKey);
 
     if (permissionRule == null) {
       permissionRule = new MetaPermissionRule();
       permissionRule.setMetaPermission(metaPermission);
       permissionRule.setField(field);
+      getRuleMap().put(ruleKey, permissionRule);
+      markChanged(metaPermission, true);
     }
 
+    List<Object> oldValues = getRuleValues(permissionRule);
+
     permissionRule.setCanRead(row[0].equalsIgnoreCase("x"));
     permissionRule.setCanWrite(row[1].equalsIgnoreCase("x"));
     permissionRule.setCanExport(row[4].equalsIgnoreCase("x"));
@@ -686,6 +783,8 @@ public class PermissionAssistantService {
     permissionRule.setHideIf(row[6]);
     metaPermission.addRule(permissionRule);
 
+    markChanged(permissionRule, !oldValues.equals(getRuleValues(permissionRule)));
+
     return metaPermission;
   }
 
@@ -695,8 +794,7 @@ public class PermissionAssistantService {
     String permName =
         getPermissionName(field, objectNames[objectNames.length - 1], group.getCode());
 
-    Permission permission =
-        permissionRepository.all().filter("self.name = ?1", permName).fetchOne();
+    Permission permission = getPermissionMap().get(permName);
     boolean newPermission = false;
 
     if (permission == null) {
@@ -704,8 +802,11 @@ public class PermissionAssistantService {
       permission = new Permission();
       permission.setName(permName);
       permission.setObject(objectName);
+      getPermissionMap().put(permName, permission);
     }
 
+    List<Object> oldValues = getPermissionValues(permission);
+
     permission.setCanRead(row[0].equalsIgnoreCase("x"));
     permission.setCanWrite(row[1].equalsIgnoreCase("x"));
     permission.setCanCreate(row[2].equalsIgnoreCase("x"));
@@ -714,7 +815,9 @@ public class PermissionAssistantService {
 
     if (newPermission) {
       group.addPermission(permission);
+      changedRecordSet.add(group);
     }
+    markChanged(permission, !oldValues.equals(getPermissionValues(permission)));
   }
 
   public void updatePermission(Role role, String objectName, MetaField field, String[] row) {
@@ -722,8 +825,7 @@ public class PermissionAssistantService {
     String[] objectNames = objectName.split("\\.");
     String permName = getPermissionName(field, objectNames[objectNames.length - 1], role.getName());
 
-    Permission permission =
-        permissionRepository.all().filter("self.name = ?1", permName).fetchOne();
+    Permission permission = getPermissionMap().get(permName);
     boolean newPermission = false;
 
     if (permission == null) {
@@ -731,8 +833,11 @@ public class PermissionAssistantService {
       permission = new Permission();
       permission.setName(permName);
       permission.setObject(objectName);
+      getPermissionMap().put(permName, permission);
     }
 
+    List<Object> oldValues = getPermissionValues(permission);
+
     permission.setCanRead(row[0].equalsIgnoreCase("x"));
     permission.setCanWrite(row[1].equalsIgnoreCase("x"));
     permission.setCanCreate(row[2].equalsIgnoreCase("x"));
@@ -743,6 +848,28 @@ public class PermissionAssistantService {
 
     if (newPermission) {
       role.addPermission(permission);
+      changedRecordSet.add(role);
     }
+    markChanged(permission, !oldValues.equals(getPermissionValues(permission)));
+  }
+
+  private List<Object> getPermissionValues(Permission permission) {
+    return Arrays.asList(
+        permission.getCanRead(),
+        permission.getCanWrite(),
+        permission.getCanCreate(),
+        permission.getCanRemove(),
+        permission.getCanExport(),
+        permission.getCondition(),
+        permission.getConditionParams());
+  }
+
+  private List<Object> getRuleValues(MetaPermissionRule rule) {
+    return Arrays.asList(
+        rule.getCanRead(),
+        rule.getCanWrite(),
+        rule.getCanExport(),
+        rule.getReadonlyIf(),
+        rule.getHideIf());
   }
 }
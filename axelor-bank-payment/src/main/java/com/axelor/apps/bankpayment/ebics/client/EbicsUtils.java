@@ -282,6 +282,28 @@ public class EbicsUtils {
    */
   private static byte[] encryptOrDecrypt(int mode, byte[] input, SecretKeySpec keySpec)
       throws AxelorException {
+    Cipher cipher;
+
+    cipher = createCipher(mode, keySpec);
+    try {
+      return cipher.doFinal(input);
+    } catch (GeneralSecurityException e) {
+      throw new AxelorException(
+          e.getCause(), TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, e.getMessage());
+    }
+  }
+
+  /**
+   * Creates the cipher used to encrypt or decrypt the order data according to key spec, to be used
+   * with a {@link javax.crypto.CipherInputStream} or a {@link javax.crypto.CipherOutputStream} for
+   * large data.
+   *
+   * @param mode the encryption-decryption mode.
+   * @param keySpec the key spec.
+   * @return the initialized cipher.
+   * @throws EbicsException
+   */
+  public static Cipher createCipher(int mode, SecretKeySpec keySpec) throws AxelorException {
     IvParameterSpec iv;
     Cipher cipher;
 
@@ -289,7 +311,7 @@ public class EbicsUtils {
     try {
       cipher = Cipher.getInstance("AES/CBC/ISO10126Padding", BouncyCastleProvider.PROVIDER_NAME);
       cipher.init(mode, keySpec, iv);
-      return cipher.doFinal(input);
+      return cipher;
     } catch (GeneralSecurityException e) {
       throw new AxelorException(
           e.getCause(), TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, e.getMessage());
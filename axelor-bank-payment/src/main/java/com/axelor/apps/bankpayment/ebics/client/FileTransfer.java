@@ -33,11 +33,12 @@ import com.axelor.apps.bankpayment.ebics.xml.TransferResponseElement;
 import com.axelor.apps.bankpayment.ebics.xml.UInitializationRequestElement;
 import com.axelor.apps.bankpayment.ebics.xml.UTransferRequestElement;
 import com.axelor.exception.AxelorException;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
 import java.util.Date;
-import org.jdom.JDOMException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Handling of file transfers. Files can be transferred to and fetched from the bank. Every transfer
@@ -66,6 +67,8 @@ import org.jdom.JDOMException;
  */
 public class FileTransfer {
 
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
   /**
    * Constructs a new FileTransfer session
    *
@@ -95,47 +98,45 @@ public class FileTransfer {
 
     initializer = new UInitializationRequestElement(session, orderType, content, signature);
 
-    initializer.build();
-
-    initializer.validate();
-    ByteArrayOutputStream bout = new ByteArrayOutputStream();
     try {
-      initializer.save(bout);
-    } catch (JDOMException e) {
-      // TODO Bloc catch généré automatiquement
-      e.printStackTrace();
-    }
-    System.out.println(
-        "Requete ----------------------------------------------------------------------------");
-    System.out.println(bout.toString());
+      initializer.build();
 
-    httpCode = sender.send(new ByteArrayContentFactory(initializer.prettyPrint()));
+      initializer.validate();
+      LOG.debug(
+          "EBICS upload of order type {} in {} segment(s)",
+          orderType,
+          initializer.getSegmentNumber());
 
-    EbicsUtils.checkHttpCode(httpCode);
-    response =
-        new InitializationResponseElement(
-            sender.getResponseBody(),
-            orderType,
-            DefaultEbicsRootElement.generateName(orderType),
-            session.getUser());
-    response.build();
-    response.report(new EbicsRootElement[] {initializer, response});
-    state = new EbicsTransferState();
-    state.setNumSegments(initializer.getSegmentNumber());
-    state.setTransactionId(response.getTransactionId());
-    int segNumber = 1;
-    while (segNumber <= state.getNumSegments()) {
-      state.setSegmentNumber(segNumber);
-      if (segNumber == state.getSegmentNumber()) {
-        state.setLastSegment(true);
+      httpCode = sender.send(new ByteArrayContentFactory(initializer.prettyPrint()));
+
+      EbicsUtils.checkHttpCode(httpCode);
+      response =
+          new InitializationResponseElement(
+              sender.getResponseBody(),
+              orderType,
+              DefaultEbicsRootElement.generateName(orderType),
+              session.getUser());
+      response.build();
+      response.report(new EbicsRootElement[] {initializer, response});
+      state = new EbicsTransferState();
+      state.setNumSegments(initializer.getSegmentNumber());
+      state.setTransactionId(response.getTransactionId());
+      int segNumber = 1;
+      while (segNumber <= state.getNumSegments()) {
+        state.setSegmentNumber(segNumber);
+        if (segNumber == state.getNumSegments()) {
+          state.setLastSegment(true);
+        }
+        sendFile(
+            initializer.getContent(segNumber),
+            segNumber,
+            state.getLastSegment(),
+            state.getTransactionId(),
+            orderType);
+        segNumber++;
       }
-      sendFile(
-          initializer.getContent(segNumber),
-          segNumber,
-          state.getLastSegment(),
-          state.getTransactionId(),
-          orderType);
-      segNumber++;
+    } finally {
+      initializer.close();
     }
   }
 
@@ -217,25 +218,29 @@ public class FileTransfer {
     response.build();
     response.report(new EbicsRootElement[] {initializer, response});
     state = new EbicsTransferState();
-    state.setSegmentNumber(response.getSegmentsNumber());
+    state.setNumSegments(response.getSegmentsNumber());
     state.setTransactionId(response.getTransactionId());
-    state.setSegmentNumber(response.getSegmentNumber());
+    state.setSegmentNumber(response.getSegmentNumber() + 1);
     joiner = new Joiner(session.getUser());
-    joiner.append(response.getOrderData());
-    while (state.getSegmentNumber() <= state.getNumSegments()) {
-      if (state.getSegmentNumber() == state.getNumSegments()) {
-        state.setLastSegment(true);
+    try {
+      joiner.append(response.getOrderData());
+      while (state.getSegmentNumber() <= state.getNumSegments()) {
+        if (state.getSegmentNumber() == state.getNumSegments()) {
+          state.setLastSegment(true);
+        }
+        fetchFile(
+            orderType,
+            state.getSegmentNumber(),
+            state.getLastSegment(),
+            state.getTransactionId(),
+            joiner);
+        state.setSegmentNumber(state.getSegmentNumber() + 1);
       }
-      fetchFile(
-          orderType,
-          state.getSegmentNumber(),
-          state.getLastSegment(),
-          state.getTransactionId(),
-          joiner);
-      state.setSegmentNumber(state.getSegmentNumber() + 1);
-    }
 
-    joiner.writeTo(dest, response.getTransactionKey());
+      joiner.writeTo(dest, response.getTransactionKey());
+    } finally {
+      joiner.close();
+    }
     receipt =
         new ReceiptRequestElement(
             session, state.getTransactionId(), DefaultEbicsRootElement.generateName(orderType));
@@ -0,0 +1,67 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.ebics.io;
+
+import com.axelor.apps.bankpayment.ebics.interfaces.ContentFactory;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * File content factory that delivers a portion of a file, so that a segment of a large file can be
+ * sent without loading the whole file in memory.
+ */
+public class FileContentFactory implements ContentFactory {
+
+  /**
+   * Constructs a new <code>FileContentFactory</code> with a given portion of a file.
+   *
+   * @param file the file
+   * @param offset the position of the portion in the file
+   * @param length the length of the portion
+   */
+  public FileContentFactory(File file, long offset, long length) {
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  public InputStream getContent() throws IOException {
+    InputStream input = new BufferedInputStream(new FileInputStream(file));
+
+    try {
+      ByteStreams.skipFully(input, offset);
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
+    return ByteStreams.limit(input, length);
+  }
+
+  // --------------------------------------------------------------------
+  // DATA MEMBERS
+  // --------------------------------------------------------------------
+
+  private File file;
+  private long offset;
+  private long length;
+}
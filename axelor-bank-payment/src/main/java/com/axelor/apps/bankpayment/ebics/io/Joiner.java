@@ -23,14 +23,27 @@ import com.axelor.apps.bankpayment.ebics.service.EbicsUserService;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.inject.Beans;
-import java.io.ByteArrayOutputStream;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.GeneralSecurityException;
+import java.util.zip.InflaterInputStream;
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * A simple mean to join downloaded segments from the bank ebics server.
  *
+ * <p>The segments are appended to a temporary file, which is decrypted and unzipped as a stream by
+ * {@link #writeTo(OutputStream, byte[])} and then deleted.
+ *
  * @author Hachani
  */
 public class Joiner {
@@ -39,16 +52,25 @@ public class Joiner {
    * Constructs a new <code>Joiner</code> object.
    *
    * @param user the ebics user.
+   * @throws AxelorException
    */
-  public Joiner(EbicsUser user) {
+  public Joiner(EbicsUser user) throws AxelorException {
     this.user = user;
-    buffer = new ByteArrayOutputStream();
+    try {
+      bufferFile = File.createTempFile("ebics", ".download");
+      buffer = new BufferedOutputStream(new FileOutputStream(bufferFile));
+    } catch (IOException e) {
+      if (bufferFile != null) {
+        bufferFile.delete();
+      }
+      throw new AxelorException(
+          e.getCause(), TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, e.getMessage());
+    }
   }
 
   public void append(byte[] data) throws AxelorException {
     try {
       buffer.write(data);
-      buffer.flush();
     } catch (IOException e) {
       throw new AxelorException(
           e.getCause(), TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, e.getMessage());
@@ -63,14 +85,10 @@ public class Joiner {
    * @throws EbicsException
    */
   public void writeTo(OutputStream output, byte[] transactionKey) throws AxelorException {
-    try {
-      byte[] decrypted;
+    SecretKeySpec keySpec;
 
-      buffer.close();
-      decrypted =
-          Beans.get(EbicsUserService.class).decrypt(user, buffer.toByteArray(), transactionKey);
-      output.write(EbicsUtils.unzip(decrypted));
-      output.close();
+    try {
+      keySpec = Beans.get(EbicsUserService.class).decryptTransactionKey(user, transactionKey);
     } catch (GeneralSecurityException e) {
       throw new AxelorException(
           e.getCause(), TraceBackRepository.CATEGORY_INCONSISTENCY, e.getMessage());
@@ -78,6 +96,45 @@ public class Joiner {
       throw new AxelorException(
           e.getCause(), TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, e.getMessage());
     }
+
+    writeTo(output, keySpec);
+  }
+
+  /**
+   * Writes the joined part to an output stream, decrypted with the given key.
+   *
+   * @param output the output stream.
+   * @param keySpec the decrypted transaction key
+   * @throws EbicsException
+   */
+  public void writeTo(OutputStream output, SecretKeySpec keySpec) throws AxelorException {
+    Cipher cipher = EbicsUtils.createCipher(Cipher.DECRYPT_MODE, keySpec);
+
+    try {
+      buffer.close();
+      try (InputStream input =
+          new InflaterInputStream(
+              new CipherInputStream(
+                  new BufferedInputStream(new FileInputStream(bufferFile)), cipher))) {
+        ByteStreams.copy(input, output);
+      }
+      output.close();
+    } catch (IOException e) {
+      throw new AxelorException(
+          e.getCause(), TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, e.getMessage());
+    } finally {
+      close();
+    }
+  }
+
+  /** Deletes the temporary file of the joined segments. */
+  public void close() {
+    try {
+      buffer.close();
+    } catch (IOException e) {
+      // the file is deleted anyway
+    }
+    bufferFile.delete();
   }
 
   // --------------------------------------------------------------------
@@ -85,5 +142,6 @@ public class Joiner {
   // --------------------------------------------------------------------
 
   private EbicsUser user;
-  private ByteArrayOutputStream buffer;
+  private File bufferFile;
+  private OutputStream buffer;
 }
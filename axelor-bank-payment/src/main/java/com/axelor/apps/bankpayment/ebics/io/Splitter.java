@@ -21,11 +21,23 @@ import com.axelor.apps.bankpayment.ebics.client.EbicsUtils;
 import com.axelor.apps.bankpayment.ebics.interfaces.ContentFactory;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
  * A mean to split a given input file to 1MB portions. this i useful to handle big file uploading.
  *
+ * <p>The compressed and encrypted content is written to a temporary file, from which the segments
+ * are read one by one. The file is deleted by {@link #close()}.
+ *
  * @author Hachani
  */
 public class Splitter {
@@ -65,15 +77,26 @@ public class Splitter {
    */
   public final void readInput(boolean isCompressionEnabled, SecretKeySpec keySpec)
       throws AxelorException {
+    Cipher cipher = EbicsUtils.createCipher(Cipher.ENCRYPT_MODE, keySpec);
+    Deflater compressor = new Deflater(Deflater.BEST_COMPRESSION);
+
     try {
+      content = File.createTempFile("ebics", ".upload");
+      OutputStream output =
+          new CipherOutputStream(new BufferedOutputStream(new FileOutputStream(content)), cipher);
       if (isCompressionEnabled) {
-        input = EbicsUtils.zip(input);
+        output = new DeflaterOutputStream(output, compressor);
+      }
+      try (OutputStream stream = output) {
+        stream.write(input);
       }
-      content = EbicsUtils.encrypt(input, keySpec);
       segmentation();
-    } catch (Exception e) {
+    } catch (IOException e) {
+      close();
       throw new AxelorException(
           e.getCause(), TraceBackRepository.CATEGORY_CONFIGURATION_ERROR, e.getMessage());
+    } finally {
+      compressor.end();
     }
   }
 
@@ -88,13 +111,14 @@ public class Splitter {
    */
   private void segmentation() {
 
-    numSegments = content.length / 1048576; // (1024 * 1024)
+    contentLength = content.length();
+    numSegments = (int) (contentLength / SEGMENT_MAX_SIZE);
 
-    if (content.length % 1048576 != 0) {
+    if (contentLength % SEGMENT_MAX_SIZE != 0) {
       numSegments++;
     }
 
-    segmentSize = content.length / numSegments;
+    segmentSize = (contentLength + numSegments - 1) / numSegments;
   }
 
   /**
@@ -104,27 +128,17 @@ public class Splitter {
    * @return
    */
   public ContentFactory getContent(int segmentNumber) {
-    byte[] segment;
-    int offset;
+    long offset;
+    long length;
 
     offset = segmentSize * (segmentNumber - 1);
-    if (content.length < segmentSize + offset) {
-      segment = new byte[content.length - offset];
+    if (segmentNumber == numSegments) {
+      length = contentLength - offset;
     } else {
-      segment = new byte[segmentSize];
+      length = segmentSize;
     }
 
-    System.arraycopy(content, offset, segment, 0, segment.length);
-    return new ByteArrayContentFactory(segment);
-  }
-
-  /**
-   * Returns the hole content.
-   *
-   * @return the input content.
-   */
-  public byte[] getContent() {
-    return content;
+    return new FileContentFactory(content, offset, length);
   }
 
   /**
@@ -136,12 +150,23 @@ public class Splitter {
     return numSegments;
   }
 
+  /** Deletes the temporary file of the content. */
+  public void close() {
+    if (content != null) {
+      content.delete();
+      content = null;
+    }
+  }
+
   // --------------------------------------------------------------------
   // DATA MEMBERS
   // --------------------------------------------------------------------
 
+  private static final long SEGMENT_MAX_SIZE = 1048576; // (1024 * 1024)
+
   private byte[] input;
-  private byte[] content;
-  private int segmentSize;
+  private File content;
+  private long contentLength;
+  private long segmentSize;
   private int numSegments;
 }
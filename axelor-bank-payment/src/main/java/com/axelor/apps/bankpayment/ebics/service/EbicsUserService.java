@@ -187,6 +187,19 @@ public class EbicsUserService {
    */
   public byte[] decrypt(EbicsUser user, byte[] encryptedData, byte[] transactionKey)
       throws AxelorException, GeneralSecurityException, IOException {
+    return decryptData(encryptedData, decryptTransactionKey(user, transactionKey).getEncoded());
+  }
+
+  /**
+   * Decrypts the transaction key of a download with the user's private key, to decrypt the order
+   * data as a stream.
+   *
+   * @param user the ebics user
+   * @param transactionKey the encrypted transaction key
+   * @return the secret key of the order data
+   */
+  public SecretKeySpec decryptTransactionKey(EbicsUser user, byte[] transactionKey)
+      throws AxelorException, GeneralSecurityException, IOException {
     Cipher cipher;
     int blockSize;
     ByteArrayOutputStream outputStream;
@@ -200,7 +213,7 @@ public class EbicsUserService {
       outputStream.write(cipher.doFinal(transactionKey, j * blockSize, blockSize));
     }
 
-    return decryptData(encryptedData, outputStream.toByteArray());
+    return new SecretKeySpec(outputStream.toByteArray(), "EAS");
   }
 
   /**
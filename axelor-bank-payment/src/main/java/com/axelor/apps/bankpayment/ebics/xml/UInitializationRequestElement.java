@@ -46,14 +46,12 @@ import com.axelor.apps.bankpayment.ebics.client.OrderAttribute;
 import com.axelor.apps.bankpayment.ebics.interfaces.ContentFactory;
 import com.axelor.apps.bankpayment.ebics.io.Splitter;
 import com.axelor.exception.AxelorException;
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
 import javax.crypto.spec.SecretKeySpec;
 import javax.xml.XMLConstants;
-import org.jdom.JDOMException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -205,10 +203,6 @@ public class UInitializationRequestElement extends InitializationRequestElement
             "http://www.w3.org/2001/04/xmlenc#sha256",
             decodeHex(KeyUtil.getKeyDigest(session.getBankE002Key())));
 
-    System.out.println(
-        "signature ----------------------------------------------------------------------------");
-    System.out.println(userSignature.toString());
-
     // USE PREVALIDATION
     //    PreValidation preValidation = PreValidation.Factory.newInstance();
     //    preValidation.setAuthenticate(true);
@@ -233,18 +227,6 @@ public class UInitializationRequestElement extends InitializationRequestElement
 
     request = EbicsXmlFactory.createEbicsRequest(1, "H003", header, body);
     document = EbicsXmlFactory.createEbicsRequestDocument(request);
-
-    ByteArrayOutputStream bout = new ByteArrayOutputStream();
-    try {
-      this.save(bout);
-    } catch (JDOMException e) {
-      // TODO Bloc catch généré automatiquement
-      e.printStackTrace();
-    }
-
-    System.out.println(
-        "Requete signature ----------------------------------------------------------------------------");
-    System.out.println(bout.toString());
   }
 
   @Override
@@ -282,6 +264,11 @@ public class UInitializationRequestElement extends InitializationRequestElement
     return splitter.getSegmentNumber();
   }
 
+  /** Deletes the temporary file of the segments, once they are sent. */
+  public void close() {
+    splitter.close();
+  }
+
   // --------------------------------------------------------------------
   // DATA MEMBERS
   // --------------------------------------------------------------------
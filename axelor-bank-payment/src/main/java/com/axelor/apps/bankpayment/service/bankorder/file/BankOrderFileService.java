@@ -29,6 +29,7 @@ import com.axelor.apps.base.db.Currency;
 import com.axelor.apps.base.service.app.AppService;
 import com.axelor.apps.tool.file.FileTool;
 import com.axelor.apps.tool.xml.Marschaller;
+import com.axelor.apps.tool.xml.StreamingMarschaller;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -42,8 +43,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.namespace.QName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,6 +76,13 @@ public class BankOrderFileService {
   protected String context;
   protected String fileExtension;
 
+  /**
+   * Local name of the element of {@link #fileToCreate} to which the transactions are appended one
+   * by one by {@link #writeStreamedElements(StreamingMarschaller)}. If null, the whole file is
+   * marshalled at once.
+   */
+  protected String streamedElementName;
+
   public BankOrderFileService(BankOrder bankOrder) {
 
     this.paymentMode = bankOrder.getPaymentMode();
@@ -131,6 +141,9 @@ public class BankOrderFileService {
 
     switch (fileExtension) {
       case FILE_EXTENSION_XML:
+        if (streamedElementName != null) {
+          return generateStreamedFile();
+        }
         return Marschaller.marschalFile(
             fileToCreate, context, this.getFolderPath(), this.computeFileName());
 
@@ -155,6 +168,38 @@ public class BankOrderFileService {
     }
   }
 
+  /**
+   * Write the order XML file with its transactions marshalled one by one, so that only one
+   * transaction is held in memory at a time.
+   */
+  protected File generateStreamedFile()
+      throws JAXBException, IOException, AxelorException, DatatypeConfigurationException {
+
+    try (StreamingMarschaller marschaller =
+        new StreamingMarschaller(
+            Marschaller.getContext(context), this.getFolderPath(), this.computeFileName())) {
+      marschaller.marschalHead(fileToCreate, streamedElementName);
+      writeStreamedElements(marschaller);
+      return marschaller.finish();
+    }
+  }
+
+  /**
+   * Marshal the transactions of the order, to be overridden by the formats setting {@link
+   * #streamedElementName}.
+   */
+  protected void writeStreamedElements(StreamingMarschaller marschaller)
+      throws JAXBException, AxelorException, DatatypeConfigurationException {}
+
+  /**
+   * Create an element named in the namespace of the document, to be marshalled by {@link
+   * #writeStreamedElements(StreamingMarschaller)}.
+   */
+  protected <T> JAXBElement<T> createStreamedElement(String localName, Class<T> type, T value) {
+    String namespaceURI = ((JAXBElement<?>) fileToCreate).getName().getNamespaceURI();
+    return new JAXBElement<>(new QName(namespaceURI, localName), type, value);
+  }
+
   public String computeFileName() {
 
     return String.format(
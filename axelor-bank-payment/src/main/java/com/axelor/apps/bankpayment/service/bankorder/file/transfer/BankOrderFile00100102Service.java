@@ -43,6 +43,7 @@ import com.axelor.apps.bankpayment.xsd.sepa.pain_001_001_02.ServiceLevel1Code;
 import com.axelor.apps.bankpayment.xsd.sepa.pain_001_001_02.ServiceLevel2Choice;
 import com.axelor.apps.base.db.Bank;
 import com.axelor.apps.base.db.BankDetails;
+import com.axelor.apps.tool.xml.StreamingMarschaller;
 import com.axelor.exception.AxelorException;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
@@ -127,89 +128,6 @@ public class BankOrderFile00100102Service extends BankOrderFileService {
     pmtInf.setDbtrAcct(dbtrAcct);
     pmtInf.setDbtrAgt(dbtrAgt);
 
-    CreditTransferTransactionInformation1 cdtTrfTxInf = null;
-    PaymentIdentification1 pmtId = null;
-    AmountType2Choice amt = null;
-    CurrencyAndAmount instdAmt = null;
-    PartyIdentification8 cbtr = null;
-    CashAccount7 cbtrAcct = null;
-    BranchAndFinancialInstitutionIdentification3 cbtrAgt = null;
-    RemittanceInformation1 rmtInf = null;
-
-    for (BankOrderLine bankOrderLine : bankOrderLineList) {
-
-      BankDetails receiverBankDetails = bankOrderLine.getReceiverBankDetails();
-
-      // Reference
-      pmtId = factory.createPaymentIdentification1();
-      //			pmtId.setInstrId(bankOrderLine.getSequence());
-      pmtId.setEndToEndId(bankOrderLine.getSequence());
-
-      // Amount
-      instdAmt = factory.createCurrencyAndAmount();
-      instdAmt.setCcy(bankOrderCurrency.getCode());
-      instdAmt.setValue(bankOrderLine.getBankOrderAmount());
-
-      amt = factory.createAmountType2Choice();
-      amt.setInstdAmt(instdAmt);
-
-      // Receiver
-      cbtr = factory.createPartyIdentification8();
-      cbtr.setNm(receiverBankDetails.getOwnerName());
-
-      // IBAN
-      iban = factory.createAccountIdentification3Choice();
-      iban.setIBAN(receiverBankDetails.getIban());
-
-      cbtrAcct = factory.createCashAccount7();
-      cbtrAcct.setId(iban);
-
-      // BIC
-      finInstnId = factory.createFinancialInstitutionIdentification5Choice();
-
-      fillBic(finInstnId, receiverBankDetails.getBank());
-
-      cbtrAgt = factory.createBranchAndFinancialInstitutionIdentification3();
-      cbtrAgt.setFinInstnId(finInstnId);
-
-      rmtInf = factory.createRemittanceInformation1();
-
-      String ustrd = "";
-      if (!Strings.isNullOrEmpty(bankOrderLine.getReceiverReference())) {
-        ustrd += bankOrderLine.getReceiverReference();
-      }
-      if (!Strings.isNullOrEmpty(bankOrderLine.getReceiverLabel())) {
-        if (!Strings.isNullOrEmpty(ustrd)) {
-          ustrd += " - ";
-        }
-        ustrd += bankOrderLine.getReceiverLabel();
-      }
-
-      if (!Strings.isNullOrEmpty(ustrd)) {
-        rmtInf.getUstrd().add(ustrd);
-      }
-
-      //			StructuredRemittanceInformation6 strd = factory.createStructuredRemittanceInformation6();
-      //
-      //			CreditorReferenceInformation1 cdtrRefInf = factory.createCreditorReferenceInformation1();
-      //			cdtrRefInf.setCdtrRef(bankOrderLine.getReceiverReference());
-      //
-      //			strd.setCdtrRefInf(cdtrRefInf);
-      //
-      //			rmtInf.getStrd().add(strd);
-
-      // Transaction
-      cdtTrfTxInf = factory.createCreditTransferTransactionInformation1();
-      cdtTrfTxInf.setPmtId(pmtId);
-      cdtTrfTxInf.setAmt(amt);
-      cdtTrfTxInf.setCdtr(cbtr);
-      cdtTrfTxInf.setCdtrAcct(cbtrAcct);
-      cdtTrfTxInf.setCdtrAgt(cbtrAgt);
-      cdtTrfTxInf.setRmtInf(rmtInf);
-
-      pmtInf.getCdtTrfTxInf().add(cdtTrfTxInf);
-    }
-
     // Header
     GroupHeader1 grpHdr = factory.createGroupHeader1();
 
@@ -239,10 +157,103 @@ public class BankOrderFile00100102Service extends BankOrderFileService {
     xml.setPain00100102(pain00100102);
 
     fileToCreate = factory.createDocument(xml);
+    streamedElementName = "PmtInf";
 
     return super.generateFile();
   }
 
+  @Override
+  protected void writeStreamedElements(StreamingMarschaller marschaller) throws JAXBException {
+
+    ObjectFactory factory = new ObjectFactory();
+
+    for (BankOrderLine bankOrderLine : bankOrderLineList) {
+      marschaller.marschalElement(
+          createStreamedElement(
+              "CdtTrfTxInf",
+              CreditTransferTransactionInformation1.class,
+              createCdtTrfTxInf(factory, bankOrderLine)));
+    }
+  }
+
+  protected CreditTransferTransactionInformation1 createCdtTrfTxInf(
+      ObjectFactory factory, BankOrderLine bankOrderLine) {
+
+    BankDetails receiverBankDetails = bankOrderLine.getReceiverBankDetails();
+
+    // Reference
+    PaymentIdentification1 pmtId = factory.createPaymentIdentification1();
+    //		pmtId.setInstrId(bankOrderLine.getSequence());
+    pmtId.setEndToEndId(bankOrderLine.getSequence());
+
+    // Amount
+    CurrencyAndAmount instdAmt = factory.createCurrencyAndAmount();
+    instdAmt.setCcy(bankOrderCurrency.getCode());
+    instdAmt.setValue(bankOrderLine.getBankOrderAmount());
+
+    AmountType2Choice amt = factory.createAmountType2Choice();
+    amt.setInstdAmt(instdAmt);
+
+    // Receiver
+    PartyIdentification8 cbtr = factory.createPartyIdentification8();
+    cbtr.setNm(receiverBankDetails.getOwnerName());
+
+    // IBAN
+    AccountIdentification3Choice iban = factory.createAccountIdentification3Choice();
+    iban.setIBAN(receiverBankDetails.getIban());
+
+    CashAccount7 cbtrAcct = factory.createCashAccount7();
+    cbtrAcct.setId(iban);
+
+    // BIC
+    FinancialInstitutionIdentification5Choice finInstnId =
+        factory.createFinancialInstitutionIdentification5Choice();
+
+    fillBic(finInstnId, receiverBankDetails.getBank());
+
+    BranchAndFinancialInstitutionIdentification3 cbtrAgt =
+        factory.createBranchAndFinancialInstitutionIdentification3();
+    cbtrAgt.setFinInstnId(finInstnId);
+
+    RemittanceInformation1 rmtInf = factory.createRemittanceInformation1();
+
+    String ustrd = "";
+    if (!Strings.isNullOrEmpty(bankOrderLine.getReceiverReference())) {
+      ustrd += bankOrderLine.getReceiverReference();
+    }
+    if (!Strings.isNullOrEmpty(bankOrderLine.getReceiverLabel())) {
+      if (!Strings.isNullOrEmpty(ustrd)) {
+        ustrd += " - ";
+      }
+      ustrd += bankOrderLine.getReceiverLabel();
+    }
+
+    if (!Strings.isNullOrEmpty(ustrd)) {
+      rmtInf.getUstrd().add(ustrd);
+    }
+
+    //		StructuredRemittanceInformation6 strd = factory.createStructuredRemittanceInformation6();
+    //
+    //		CreditorReferenceInformation1 cdtrRefInf = factory.createCreditorReferenceInformation1();
+    //		cdtrRefInf.setCdtrRef(bankOrderLine.getReceiverReference());
+    //
+    //		strd.setCdtrRefInf(cdtrRefInf);
+    //
+    //		rmtInf.getStrd().add(strd);
+
+    // Transaction
+    CreditTransferTransactionInformation1 cdtTrfTxInf =
+        factory.createCreditTransferTransactionInformation1();
+    cdtTrfTxInf.setPmtId(pmtId);
+    cdtTrfTxInf.setAmt(amt);
+    cdtTrfTxInf.setCdtr(cbtr);
+    cdtTrfTxInf.setCdtrAcct(cbtrAcct);
+    cdtTrfTxInf.setCdtrAgt(cbtrAgt);
+    cdtTrfTxInf.setRmtInf(rmtInf);
+
+    return cdtTrfTxInf;
+  }
+
   /**
    * Method to fill the BIC information. If the BIC is not provided or in Iban only mode, we put
    * NOTPROVIDED value. In this case, the bank ignore the BIC and use the Iban only.
@@ -41,6 +41,7 @@ import com.axelor.apps.bankpayment.xsd.sepa.pain_001_001_03.RemittanceInformatio
 import com.axelor.apps.bankpayment.xsd.sepa.pain_001_001_03.ServiceLevel8Choice;
 import com.axelor.apps.base.db.Bank;
 import com.axelor.apps.base.db.BankDetails;
+import com.axelor.apps.tool.xml.StreamingMarschaller;
 import com.axelor.exception.AxelorException;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
@@ -125,89 +126,6 @@ public class BankOrderFile00100103Service extends BankOrderFileService {
     pmtInf.setDbtrAcct(dbtrAcct);
     pmtInf.setDbtrAgt(dbtrAgt);
 
-    CreditTransferTransactionInformation10 cdtTrfTxInf = null;
-    PaymentIdentification1 pmtId = null;
-    AmountType3Choice amt = null;
-    ActiveOrHistoricCurrencyAndAmount instdAmt = null;
-    PartyIdentification32 cbtr = null;
-    CashAccount16 cbtrAcct = null;
-    BranchAndFinancialInstitutionIdentification4 cbtrAgt = null;
-    RemittanceInformation5 rmtInf = null;
-
-    for (BankOrderLine bankOrderLine : bankOrderLineList) {
-
-      BankDetails receiverBankDetails = bankOrderLine.getReceiverBankDetails();
-
-      // Reference
-      pmtId = factory.createPaymentIdentification1();
-      //			pmtId.setInstrId(bankOrderLine.getSequence());
-      pmtId.setEndToEndId(bankOrderLine.getSequence());
-
-      // Amount
-      instdAmt = factory.createActiveOrHistoricCurrencyAndAmount();
-      instdAmt.setCcy(bankOrderCurrency.getCode());
-      instdAmt.setValue(bankOrderLine.getBankOrderAmount());
-
-      amt = factory.createAmountType3Choice();
-      amt.setInstdAmt(instdAmt);
-
-      // Receiver
-      cbtr = factory.createPartyIdentification32();
-      cbtr.setNm(receiverBankDetails.getOwnerName());
-
-      // IBAN
-      iban = factory.createAccountIdentification4Choice();
-      iban.setIBAN(receiverBankDetails.getIban());
-
-      cbtrAcct = factory.createCashAccount16();
-      cbtrAcct.setId(iban);
-
-      // BIC
-      finInstnId = factory.createFinancialInstitutionIdentification7();
-
-      fillBic(finInstnId, receiverBankDetails.getBank());
-
-      cbtrAgt = factory.createBranchAndFinancialInstitutionIdentification4();
-      cbtrAgt.setFinInstnId(finInstnId);
-
-      rmtInf = factory.createRemittanceInformation5();
-
-      String ustrd = "";
-      if (!Strings.isNullOrEmpty(bankOrderLine.getReceiverReference())) {
-        ustrd += bankOrderLine.getReceiverReference();
-      }
-      if (!Strings.isNullOrEmpty(bankOrderLine.getReceiverLabel())) {
-        if (!Strings.isNullOrEmpty(ustrd)) {
-          ustrd += " - ";
-        }
-        ustrd += bankOrderLine.getReceiverLabel();
-      }
-
-      if (!Strings.isNullOrEmpty(ustrd)) {
-        rmtInf.getUstrd().add(ustrd);
-      }
-
-      //			StructuredRemittanceInformation7 strd = factory.createStructuredRemittanceInformation7();
-      //
-      //			CreditorReferenceInformation2 cdtrRefInf = factory.createCreditorReferenceInformation2();
-      //			cdtrRefInf.setRef(bankOrderLine.getReceiverReference());
-      //
-      //			strd.setCdtrRefInf(cdtrRefInf);
-      //
-      //			rmtInf.getStrd().add(strd);
-
-      // Transaction
-      cdtTrfTxInf = factory.createCreditTransferTransactionInformation10();
-      cdtTrfTxInf.setPmtId(pmtId);
-      cdtTrfTxInf.setAmt(amt);
-      cdtTrfTxInf.setCdtr(cbtr);
-      cdtTrfTxInf.setCdtrAcct(cbtrAcct);
-      cdtTrfTxInf.setCdtrAgt(cbtrAgt);
-      cdtTrfTxInf.setRmtInf(rmtInf);
-
-      pmtInf.getCdtTrfTxInf().add(cdtTrfTxInf);
-    }
-
     // Header
     GroupHeader32 grpHdr = factory.createGroupHeader32();
 
@@ -237,10 +155,104 @@ public class BankOrderFile00100103Service extends BankOrderFileService {
     xml.setCstmrCdtTrfInitn(customerCreditTransferInitiationV03);
 
     fileToCreate = factory.createDocument(xml);
+    streamedElementName = "PmtInf";
 
     return super.generateFile();
   }
 
+  @Override
+  protected void writeStreamedElements(StreamingMarschaller marschaller) throws JAXBException {
+
+    ObjectFactory factory = new ObjectFactory();
+
+    for (BankOrderLine bankOrderLine : bankOrderLineList) {
+      marschaller.marschalElement(
+          createStreamedElement(
+              "CdtTrfTxInf",
+              CreditTransferTransactionInformation10.class,
+              createCdtTrfTxInf(factory, bankOrderLine)));
+    }
+  }
+
+  protected CreditTransferTransactionInformation10 createCdtTrfTxInf(
+      ObjectFactory factory, BankOrderLine bankOrderLine) {
+
+    BankDetails receiverBankDetails = bankOrderLine.getReceiverBankDetails();
+
+    // Reference
+    PaymentIdentification1 pmtId = factory.createPaymentIdentification1();
+    //		pmtId.setInstrId(bankOrderLine.getSequence());
+    pmtId.setEndToEndId(bankOrderLine.getSequence());
+
+    // Amount
+    ActiveOrHistoricCurrencyAndAmount instdAmt =
+        factory.createActiveOrHistoricCurrencyAndAmount();
+    instdAmt.setCcy(bankOrderCurrency.getCode());
+    instdAmt.setValue(bankOrderLine.getBankOrderAmount());
+
+    AmountType3Choice amt = factory.createAmountType3Choice();
+    amt.setInstdAmt(instdAmt);
+
+    // Receiver
+    PartyIdentification32 cbtr = factory.createPartyIdentification32();
+    cbtr.setNm(receiverBankDetails.getOwnerName());
+
+    // IBAN
+    AccountIdentification4Choice iban = factory.createAccountIdentification4Choice();
+    iban.setIBAN(receiverBankDetails.getIban());
+
+    CashAccount16 cbtrAcct = factory.createCashAccount16();
+    cbtrAcct.setId(iban);
+
+    // BIC
+    FinancialInstitutionIdentification7 finInstnId =
+        factory.createFinancialInstitutionIdentification7();
+
+    fillBic(finInstnId, receiverBankDetails.getBank());
+
+    BranchAndFinancialInstitutionIdentification4 cbtrAgt =
+        factory.createBranchAndFinancialInstitutionIdentification4();
+    cbtrAgt.setFinInstnId(finInstnId);
+
+    RemittanceInformation5 rmtInf = factory.createRemittanceInformation5();
+
+    String ustrd = "";
+    if (!Strings.isNullOrEmpty(bankOrderLine.getReceiverReference())) {
+      ustrd += bankOrderLine.getReceiverReference();
+    }
+    if (!Strings.isNullOrEmpty(bankOrderLine.getReceiverLabel())) {
+      if (!Strings.isNullOrEmpty(ustrd)) {
+        ustrd += " - ";
+      }
+      ustrd += bankOrderLine.getReceiverLabel();
+    }
+
+    if (!Strings.isNullOrEmpty(ustrd)) {
+      rmtInf.getUstrd().add(ustrd);
+    }
+
+    //		StructuredRemittanceInformation7 strd = factory.createStructuredRemittanceInformation7();
+    //
+    //		CreditorReferenceInformation2 cdtrRefInf = factory.createCreditorReferenceInformation2();
+    //		cdtrRefInf.setRef(bankOrderLine.getReceiverReference());
+    //
+    //		strd.setCdtrRefInf(cdtrRefInf);
+    //
+    //		rmtInf.getStrd().add(strd);
+
+    // Transaction
+    CreditTransferTransactionInformation10 cdtTrfTxInf =
+        factory.createCreditTransferTransactionInformation10();
+    cdtTrfTxInf.setPmtId(pmtId);
+    cdtTrfTxInf.setAmt(amt);
+    cdtTrfTxInf.setCdtr(cbtr);
+    cdtTrfTxInf.setCdtrAcct(cbtrAcct);
+    cdtTrfTxInf.setCdtrAgt(cbtrAgt);
+    cdtTrfTxInf.setRmtInf(rmtInf);
+
+    return cdtTrfTxInf;
+  }
+
   /**
    * Method to fill the BIC information. If the BIC is not provided or in Iban only mode, we put
    * NOTPROVIDED value. In this case, the bank ignore the BIC and use the Iban only.
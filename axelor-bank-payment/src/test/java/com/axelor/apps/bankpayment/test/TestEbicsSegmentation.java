@@ -0,0 +1,77 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.bankpayment.test;
+
+import com.axelor.apps.bankpayment.ebics.io.IOUtils;
+import com.axelor.apps.bankpayment.ebics.io.Joiner;
+import com.axelor.apps.bankpayment.ebics.io.Splitter;
+import com.axelor.exception.AxelorException;
+import java.io.ByteArrayOutputStream;
+import java.security.Security;
+import java.util.Random;
+import javax.crypto.spec.SecretKeySpec;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestEbicsSegmentation {
+
+  @BeforeClass
+  public static void addProvider() {
+    Security.addProvider(new BouncyCastleProvider());
+  }
+
+  @Test
+  public void splitAndJoinSmallFile() throws AxelorException {
+    splitAndJoin(1000, 1);
+  }
+
+  @Test
+  public void splitAndJoinLargeFile() throws AxelorException {
+    // random data is not compressible, so the encrypted content needs several segments
+    splitAndJoin(3 * 1024 * 1024 + 17, 4);
+  }
+
+  protected void splitAndJoin(int size, int expectedSegmentNumber) throws AxelorException {
+    byte[] input = new byte[size];
+    new Random(size).nextBytes(input);
+    SecretKeySpec keySpec = new SecretKeySpec(new byte[16], "EAS");
+
+    Splitter splitter = new Splitter(input);
+    Joiner joiner = new Joiner(null);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    try {
+      splitter.readInput(true, keySpec);
+      Assert.assertEquals(expectedSegmentNumber, splitter.getSegmentNumber());
+
+      for (int segment = 1; segment <= splitter.getSegmentNumber(); segment++) {
+        byte[] content = IOUtils.getFactoryContent(splitter.getContent(segment));
+        Assert.assertTrue(content.length <= 1048576);
+        joiner.append(content);
+      }
+      joiner.writeTo(output, keySpec);
+    } finally {
+      splitter.close();
+      joiner.close();
+    }
+
+    Assert.assertArrayEquals(input, output.toByteArray());
+  }
+}
@@ -17,14 +17,13 @@
  */
 package com.axelor.apps.base.service;
 
-import static com.axelor.apps.base.service.administration.AbstractBatch.FETCH_LIMIT;
-
 import com.axelor.apps.ReportFactory;
 import com.axelor.apps.base.db.ABCAnalysis;
 import com.axelor.apps.base.db.ABCAnalysisClass;
 import com.axelor.apps.base.db.ABCAnalysisLine;
 import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.Sequence;
+import com.axelor.apps.base.db.Unit;
 import com.axelor.apps.base.db.repo.ABCAnalysisClassRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisLineRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisRepository;
@@ -33,21 +32,22 @@ import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.base.report.IReport;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.report.engine.ReportSettings;
-import com.axelor.apps.tool.StringTool;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class ABCAnalysisServiceImpl implements ABCAnalysisService {
   protected ABCAnalysisLineRepository abcAnalysisLineRepository;
@@ -65,6 +65,8 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
 
   private final String abcAnalysisSequenceCode = "abcAnalysis";
 
+  protected static final int SAVE_BATCH_SIZE = 500;
+
   private List<ABCAnalysisClass> abcAnalysisClassList;
 
   @Inject
@@ -125,8 +127,10 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
     reset(abcAnalysis);
     start(abcAnalysis);
     getAbcAnalysisClassList(abcAnalysis);
-    createAllABCAnalysisLine(abcAnalysis);
-    doAnalysis(abcAnalysisRepository.find(abcAnalysis.getId()));
+    List<ABCAnalysisLine> abcAnalysisLineList = computeABCAnalysisLines(abcAnalysis);
+    doAnalysis(abcAnalysisLineList);
+    saveABCAnalysisLines(abcAnalysis.getId(), abcAnalysisLineList);
+    JPA.clear();
     finish(abcAnalysisRepository.find(abcAnalysis.getId()));
   }
 
@@ -146,38 +150,49 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
     this.abcAnalysisClassList = abcAnalysisClassQuery.fetch();
   }
 
-  private Set<Product> getProductSet(ABCAnalysis abcAnalysis) {
-    Set<Product> productList = new HashSet<>();
-    String productCategoryQuery = getProductCategoryQuery();
-    String productFamilyQuery = getProductFamilyQuery();
+  /**
+   * Build the JPQL condition selecting the analyzed products on the given alias.
+   *
+   * @return the condition, or null if no product is selected
+   */
+  protected String getProductFilter(
+      ABCAnalysis abcAnalysis, String alias, Map<String, Object> params) {
+    List<String> conditions = new ArrayList<>();
 
     if (!abcAnalysis.getProductSet().isEmpty()) {
-      productList.addAll(abcAnalysis.getProductSet());
+      conditions.add(alias + ".id IN (:productIds)");
+      params.put(
+          "productIds",
+          abcAnalysis.getProductSet().stream().map(Product::getId).collect(Collectors.toList()));
     }
 
     if (!abcAnalysis.getProductCategorySet().isEmpty()) {
-      productList.addAll(
-          productRepository
-              .all()
-              .filter(
-                  productCategoryQuery,
-                  abcAnalysis.getProductCategorySet(),
-                  ProductRepository.PRODUCT_TYPE_STORABLE)
-              .fetch());
+      conditions.add(
+          toProductCondition(getProductCategoryQuery(), alias, ":productCategorySet"));
+      params.put("productCategorySet", abcAnalysis.getProductCategorySet());
+      params.put("productTypeStorable", ProductRepository.PRODUCT_TYPE_STORABLE);
     }
 
     if (!abcAnalysis.getProductFamilySet().isEmpty()) {
-      productList.addAll(
-          productRepository
-              .all()
-              .filter(
-                  productFamilyQuery,
-                  abcAnalysis.getProductFamilySet(),
-                  ProductRepository.PRODUCT_TYPE_STORABLE)
-              .fetch());
+      conditions.add(toProductCondition(getProductFamilyQuery(), alias, ":productFamilySet"));
+      params.put("productFamilySet", abcAnalysis.getProductFamilySet());
+      params.put("productTypeStorable", ProductRepository.PRODUCT_TYPE_STORABLE);
     }
 
-    return productList;
+    if (conditions.isEmpty()) {
+      return null;
+    }
+
+    return "(" + String.join(" OR ", conditions) + ")";
+  }
+
+  private String toProductCondition(String productQuery, String alias, String setParam) {
+    return "("
+        + productQuery
+            .replace("self.", alias + ".")
+            .replace("?1", setParam)
+            .replace("?2", ":productTypeStorable")
+        + ")";
   }
 
   protected String getProductCategoryQuery() {
@@ -188,88 +203,137 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
     return "self.productFamily in (?1) AND self.productTypeSelect = ?2 AND self.dtype = 'Product'";
   }
 
-  protected void createAllABCAnalysisLine(ABCAnalysis abcAnalysis) throws AxelorException {
-    int offset = 0;
+  /**
+   * Get the quantity and the worth of the analyzed products, grouped by product and unit.
+   *
+   * <p>Each row contains the product id, the product unit id, the unit id of the quantity, the
+   * quantity and the worth. The base analysis has no source of quantities, sale, purchase and
+   * stock analyses override this method with their own aggregate query.
+   *
+   * @param abcAnalysis the analysis
+   * @param productFilter condition on the {@code product} alias selecting the analyzed products
+   * @param params parameters of the product filter
+   */
+  protected List<List<Object>> getProductQtyWorthList(
+      ABCAnalysis abcAnalysis, String productFilter, Map<String, Object> params) {
+    return new ArrayList<>();
+  }
 
-    List<Product> productList;
-    Query<Product> productQuery =
-        productRepository
-            .all()
-            .filter("self.id IN (" + StringTool.getIdListString(getProductSet(abcAnalysis)) + ")");
+  @SuppressWarnings("unchecked")
+  protected List<List<Object>> fetchProductQtyWorthList(
+      String query, Map<String, Object> params) {
+    javax.persistence.Query qtyWorthQuery = JPA.em().createQuery(query);
+    params.forEach(qtyWorthQuery::setParameter);
+    return qtyWorthQuery.getResultList();
+  }
 
-    while (!(productList = productQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      abcAnalysis = abcAnalysisRepository.find(abcAnalysis.getId());
-      offset += productList.size();
+  protected int getQtyScale() {
+    return 5;
+  }
+
+  /** Compute the non empty lines of the analysis, sorted by decreasing worth. */
+  protected List<ABCAnalysisLine> computeABCAnalysisLines(ABCAnalysis abcAnalysis)
+      throws AxelorException {
+    Map<String, Object> params = new HashMap<>();
+    String productFilter = getProductFilter(abcAnalysis, "product", params);
+
+    if (productFilter == null) {
+      return new ArrayList<>();
+    }
 
-      for (Product product : productList) {
-        product = productRepository.find(product.getId());
-        createABCAnalysisLineForEachProduct(abcAnalysis, product);
+    Map<Long, BigDecimal[]> qtyWorthMap = new HashMap<>();
+
+    for (List<Object> row : getProductQtyWorthList(abcAnalysis, productFilter, params)) {
+      Long productId = (Long) row.get(0);
+      Long productUnitId = (Long) row.get(1);
+      Long unitId = (Long) row.get(2);
+      BigDecimal qty = row.get(3) != null ? (BigDecimal) row.get(3) : BigDecimal.ZERO;
+      BigDecimal worth = row.get(4) != null ? (BigDecimal) row.get(4) : BigDecimal.ZERO;
+
+      if (unitId == null || !unitId.equals(productUnitId)) {
+        Product product = productRepository.find(productId);
+        qty =
+            unitConversionService.convert(
+                unitId != null ? JPA.find(Unit.class, unitId) : null,
+                product.getUnit(),
+                qty,
+                getQtyScale(),
+                product);
       }
 
-      JPA.clear();
+      BigDecimal[] qtyWorth =
+          qtyWorthMap.computeIfAbsent(
+              productId, id -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+      qtyWorth[0] = qtyWorth[0].add(qty);
+      qtyWorth[1] = qtyWorth[1].add(worth);
     }
-  }
 
-  @Transactional(rollbackOn = {Exception.class})
-  protected void createABCAnalysisLineForEachProduct(ABCAnalysis abcAnalysis, Product product)
-      throws AxelorException {
-    Optional<ABCAnalysisLine> optionalAbcAnalysisLine = createABCAnalysisLine(abcAnalysis, product);
-    optionalAbcAnalysisLine.ifPresent(
-        abcAnalysisLine -> {
-          abcAnalysisLine = abcAnalysisLineRepository.find(abcAnalysisLine.getId());
-          if (abcAnalysisLine.getDecimalWorth().compareTo(BigDecimal.ZERO) == 0
-              && abcAnalysisLine.getDecimalQty().compareTo(BigDecimal.ZERO) == 0) {
-            abcAnalysisLineRepository.remove(
-                abcAnalysisLineRepository.find(abcAnalysisLine.getId()));
-          }
-        });
-  }
+    totalQty = BigDecimal.ZERO;
+    totalWorth = BigDecimal.ZERO;
+    List<ABCAnalysisLine> abcAnalysisLineList = new ArrayList<>();
 
-  @Transactional(rollbackOn = {Exception.class})
-  protected Optional<ABCAnalysisLine> createABCAnalysisLine(
-      ABCAnalysis abcAnalysis, Product product) throws AxelorException {
-    ABCAnalysisLine abcAnalysisLine = new ABCAnalysisLine();
+    for (Map.Entry<Long, BigDecimal[]> entry : qtyWorthMap.entrySet()) {
+      BigDecimal qty = entry.getValue()[0];
+      BigDecimal worth = entry.getValue()[1];
+      if (qty.signum() == 0 && worth.signum() == 0) {
+        continue;
+      }
 
-    abcAnalysisLine.setAbcAnalysis(abcAnalysis);
-    abcAnalysisLine.setProduct(product);
+      ABCAnalysisLine abcAnalysisLine = new ABCAnalysisLine();
+      abcAnalysisLine.setProduct(JPA.em().getReference(Product.class, entry.getKey()));
+      abcAnalysisLine.setDecimalQty(qty);
+      abcAnalysisLine.setDecimalWorth(worth);
+      abcAnalysisLineList.add(abcAnalysisLine);
 
-    abcAnalysisLineRepository.save(abcAnalysisLine);
+      totalQty = totalQty.add(qty);
+      totalWorth = totalWorth.add(worth);
+    }
 
-    return Optional.of(abcAnalysisLine);
-  }
+    abcAnalysisLineList.sort(
+        Comparator.comparing(ABCAnalysisLine::getDecimalWorth)
+            .reversed()
+            .thenComparing(abcAnalysisLine -> abcAnalysisLine.getProduct().getId()));
 
-  @Transactional
-  protected void setQtyWorth(
-      ABCAnalysisLine abcAnalysisLine, BigDecimal decimalQty, BigDecimal decimalWorth) {
-    abcAnalysisLine.setDecimalQty(decimalQty);
-    abcAnalysisLine.setDecimalWorth(decimalWorth);
-    abcAnalysisLineRepository.save(abcAnalysisLine);
+    return abcAnalysisLineList;
   }
 
-  protected void doAnalysis(ABCAnalysis abcAnalysis) {
-    List<ABCAnalysisLine> abcAnalysisLineList;
-    int offset = 0;
-    Query<ABCAnalysisLine> query =
-        abcAnalysisLineRepository
-            .all()
-            .filter("self.abcAnalysis.id = :abcAnalysisId")
-            .bind("abcAnalysisId", abcAnalysis.getId())
-            .order("-decimalWorth")
-            .order("id");
+  protected void doAnalysis(List<ABCAnalysisLine> abcAnalysisLineList) {
+    cumulatedQty = BigDecimal.valueOf(0, 3);
+    cumulatedWorth = BigDecimal.valueOf(0, 3);
+
+    for (ABCAnalysisLine abcAnalysisLine : abcAnalysisLineList) {
+      computePercentage(abcAnalysisLine);
+      setABCAnalysisClass(abcAnalysisLine);
+    }
+  }
 
-    while (!(abcAnalysisLineList = query.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      offset += abcAnalysisLineList.size();
-      abcAnalysisLineList.forEach(this::analyzeLine);
+  protected void saveABCAnalysisLines(
+      Long abcAnalysisId, List<ABCAnalysisLine> abcAnalysisLineList) {
+    for (List<ABCAnalysisLine> batch : Lists.partition(abcAnalysisLineList, SAVE_BATCH_SIZE)) {
+      saveABCAnalysisLineBatch(abcAnalysisId, batch);
       JPA.clear();
     }
   }
 
   @Transactional
-  protected void analyzeLine(ABCAnalysisLine abcAnalysisLine) {
-    computePercentage(abcAnalysisLine);
-    setABCAnalysisClass(abcAnalysisLine);
+  protected void saveABCAnalysisLineBatch(
+      Long abcAnalysisId, List<ABCAnalysisLine> abcAnalysisLineList) {
+    ABCAnalysis abcAnalysis = abcAnalysisRepository.find(abcAnalysisId);
+    Map<Long, ABCAnalysisClass> abcAnalysisClassMap = new HashMap<>();
+
+    for (ABCAnalysisLine abcAnalysisLine : abcAnalysisLineList) {
+      abcAnalysisLine.setAbcAnalysis(abcAnalysis);
+      abcAnalysisLine.setProduct(
+          JPA.em().getReference(Product.class, abcAnalysisLine.getProduct().getId()));
+      if (abcAnalysisLine.getAbcAnalysisClass() != null) {
+        abcAnalysisLine.setAbcAnalysisClass(
+            abcAnalysisClassMap.computeIfAbsent(
+                abcAnalysisLine.getAbcAnalysisClass().getId(), abcAnalysisClassRepository::find));
+      }
+      abcAnalysisLineRepository.save(abcAnalysisLine);
+    }
 
-    abcAnalysisLineRepository.save(abcAnalysisLine);
+    JPA.flush();
   }
 
   private void computePercentage(ABCAnalysisLine abcAnalysisLine) {
@@ -312,21 +376,12 @@ public class ABCAnalysisServiceImpl implements ABCAnalysisService {
       maxQty = maxQty.add(abcAnalysisClass.getQty());
       maxWorth = maxWorth.add(abcAnalysisClass.getWorth());
       if (lineCumulatedQty.compareTo(maxQty) <= 0 && lineCumulatedWorth.compareTo(maxWorth) <= 0) {
-        abcAnalysisLine.setAbcAnalysisClass(
-            abcAnalysisClassRepository.find(abcAnalysisClass.getId()));
+        abcAnalysisLine.setAbcAnalysisClass(abcAnalysisClass);
         break;
       }
     }
   }
 
-  protected void incTotalQty(BigDecimal totalQty) {
-    this.totalQty = this.totalQty.add(totalQty);
-  }
-
-  protected void incTotalWorth(BigDecimal totalWorth) {
-    this.totalWorth = this.totalWorth.add(totalWorth);
-  }
-
   private void incCumulatedQty(BigDecimal cumulatedQty) {
     this.cumulatedQty = this.cumulatedQty.add(cumulatedQty);
   }
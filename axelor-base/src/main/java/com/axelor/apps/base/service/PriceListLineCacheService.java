@@ -0,0 +1,336 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service;
+
+import com.axelor.apps.base.db.PriceList;
+import com.axelor.apps.base.db.PriceListLine;
+import com.axelor.db.JPA;
+import com.google.inject.Singleton;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.transaction.Synchronization;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+/**
+ * Keeps, for each price list, its lines indexed by product and by product category and sorted by
+ * minimum quantity, so that finding the lines applicable to a quantity does not query the database.
+ * Indexes are built on first use and dropped once a transaction saving or removing the price list
+ * or one of its lines is completed. An index read while such a change is in progress is not kept,
+ * so the cache never holds uncommitted or outdated lines.
+ */
+@Singleton
+public class PriceListLineCacheService {
+
+  private final Map<Long, PriceListIndex> cache = new ConcurrentHashMap<>();
+
+  /** Incremented on each change, to detect the indexes read while a change was in progress. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** Price lists and lines changed by the transaction of the current thread. */
+  private final ThreadLocal<Set<Long>> pendingPriceListIds = ThreadLocal.withInitial(HashSet::new);
+
+  private final ThreadLocal<Set<Long>> pendingPriceListLineIds =
+      ThreadLocal.withInitial(HashSet::new);
+
+  /**
+   * Get the lines of the price list for the given product, applicable to the given quantity.
+   *
+   * @param priceList the price list
+   * @param productId the product id
+   * @param qty the quantity
+   * @return the applicable lines, sorted by ascending minimum quantity
+   */
+  public List<PriceListLineEntry> getProductEntries(
+      PriceList priceList, Long productId, BigDecimal qty) {
+    return getIndex(priceList)
+        .productEntries
+        .getOrDefault(productId, PriceListLineEntries.EMPTY)
+        .getEntries(qty);
+  }
+
+  /**
+   * Get the lines of the price list for the given product category, applicable to the given
+   * quantity.
+   *
+   * @param priceList the price list
+   * @param productCategoryId the product category id
+   * @param qty the quantity
+   * @return the applicable lines, sorted by ascending minimum quantity
+   */
+  public List<PriceListLineEntry> getProductCategoryEntries(
+      PriceList priceList, Long productCategoryId, BigDecimal qty) {
+    return getIndex(priceList)
+        .productCategoryEntries
+        .getOrDefault(productCategoryId, PriceListLineEntries.EMPTY)
+        .getEntries(qty);
+  }
+
+  public void invalidate(Long priceListId) {
+    if (priceListId != null) {
+      cache.remove(priceListId);
+    }
+  }
+
+  /**
+   * Drop the index of the given price list and of any price list still holding the given line,
+   * which is the case when the line has been moved to another price list.
+   *
+   * @param priceListLineId the price list line id
+   * @param priceListId the id of the current price list of the line
+   */
+  public void invalidateLine(Long priceListLineId, Long priceListId) {
+    invalidate(priceListId);
+    if (priceListLineId != null) {
+      cache.values().removeIf(index -> index.priceListLineIds.contains(priceListLineId));
+    }
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+  }
+
+  /**
+   * Drop the index of the given price list, and of any price list still holding the given line,
+   * once the current transaction is completed. Until then, the indexes of the price list read by
+   * the current thread are not kept.
+   *
+   * @param priceListLineId the price list line id, or null if a price list changed
+   * @param priceListId the id of the price list
+   */
+  public void invalidateOnCompletion(Long priceListLineId, Long priceListId) {
+    generation.incrementAndGet();
+
+    Transaction transaction = JPA.em().unwrap(Session.class).getTransaction();
+    if (!transaction.isActive()) {
+      invalidateLine(priceListLineId, priceListId);
+      return;
+    }
+
+    Set<Long> priceListIds = pendingPriceListIds.get();
+    Set<Long> priceListLineIds = pendingPriceListLineIds.get();
+    boolean isFirstChange = priceListIds.isEmpty() && priceListLineIds.isEmpty();
+    if (priceListId != null) {
+      priceListIds.add(priceListId);
+    }
+    if (priceListLineId != null) {
+      priceListLineIds.add(priceListLineId);
+    }
+
+    if (isFirstChange) {
+      transaction.registerSynchronization(
+          new Synchronization() {
+            @Override
+            public void beforeCompletion() {}
+
+            @Override
+            public void afterCompletion(int status) {
+              // On rollback too: the current thread may have indexed its uncommitted lines.
+              generation.incrementAndGet();
+              invalidate(priceListIds, priceListLineIds);
+              pendingPriceListIds.remove();
+              pendingPriceListLineIds.remove();
+            }
+          });
+    }
+  }
+
+  protected void invalidate(Set<Long> priceListIds, Set<Long> lineIds) {
+    priceListIds.forEach(cache::remove);
+    if (!lineIds.isEmpty()) {
+      cache.values().removeIf(index -> !Collections.disjoint(index.priceListLineIds, lineIds));
+    }
+  }
+
+  protected PriceListIndex getIndex(PriceList priceList) {
+    Long priceListId = priceList.getId();
+    if (pendingPriceListIds.get().contains(priceListId)) {
+      // The current transaction changed the price list, read its own lines without keeping them.
+      return buildIndex(priceListId);
+    }
+
+    PriceListIndex index = cache.get(priceListId);
+    if (index != null) {
+      return index;
+    }
+
+    long startGeneration = generation.get();
+    index = buildIndex(priceListId);
+    if (generation.get() == startGeneration) {
+      cache.putIfAbsent(priceListId, index);
+    }
+    return index;
+  }
+
+  protected PriceListIndex buildIndex(Long priceListId) {
+    List<Object[]> rows =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, product.id, productCategory.id, self.minQty, self.typeSelect, "
+                    + "self.amountTypeSelect, self.amount "
+                    + "FROM PriceListLine self "
+                    + "LEFT JOIN self.product product "
+                    + "LEFT JOIN self.productCategory productCategory "
+                    + "WHERE self.priceList.id = :priceListId",
+                Object[].class)
+            .setParameter("priceListId", priceListId)
+            .getResultList();
+
+    Map<Long, List<PriceListLineEntry>> productEntries = new HashMap<>();
+    Map<Long, List<PriceListLineEntry>> productCategoryEntries = new HashMap<>();
+    Set<Long> priceListLineIds = new HashSet<>();
+
+    for (Object[] row : rows) {
+      Long id = (Long) row[0];
+      Long productId = (Long) row[1];
+      Long productCategoryId = (Long) row[2];
+      BigDecimal minQty = (BigDecimal) row[3];
+      priceListLineIds.add(id);
+
+      if (minQty == null) {
+        continue;
+      }
+
+      PriceListLineEntry entry =
+          new PriceListLineEntry(
+              id, minQty, (Integer) row[4], (Integer) row[5], (BigDecimal) row[6]);
+
+      if (productId != null) {
+        productEntries.computeIfAbsent(productId, key -> new ArrayList<>()).add(entry);
+      }
+      if (productCategoryId != null) {
+        productCategoryEntries
+            .computeIfAbsent(productCategoryId, key -> new ArrayList<>())
+            .add(entry);
+      }
+    }
+
+    return new PriceListIndex(
+        toEntriesMap(productEntries), toEntriesMap(productCategoryEntries), priceListLineIds);
+  }
+
+  protected Map<Long, PriceListLineEntries> toEntriesMap(
+      Map<Long, List<PriceListLineEntry>> entryListMap) {
+    Map<Long, PriceListLineEntries> entriesMap = new HashMap<>();
+    entryListMap.forEach(
+        (key, entryList) -> entriesMap.put(key, new PriceListLineEntries(entryList)));
+    return entriesMap;
+  }
+
+  protected static class PriceListIndex {
+
+    private final Map<Long, PriceListLineEntries> productEntries;
+    private final Map<Long, PriceListLineEntries> productCategoryEntries;
+    private final Set<Long> priceListLineIds;
+
+    protected PriceListIndex(
+        Map<Long, PriceListLineEntries> productEntries,
+        Map<Long, PriceListLineEntries> productCategoryEntries,
+        Set<Long> priceListLineIds) {
+      this.productEntries = productEntries;
+      this.productCategoryEntries = productCategoryEntries;
+      this.priceListLineIds = priceListLineIds;
+    }
+  }
+
+  /** Lines of a price list for one product or category, sorted by ascending minimum quantity. */
+  protected static class PriceListLineEntries {
+
+    private static final PriceListLineEntries EMPTY =
+        new PriceListLineEntries(Collections.emptyList());
+
+    private final PriceListLineEntry[] entries;
+    private final BigDecimal[] minQties;
+
+    protected PriceListLineEntries(List<PriceListLineEntry> entryList) {
+      entries = entryList.toArray(new PriceListLineEntry[0]);
+      Arrays.sort(entries, Comparator.comparing(PriceListLineEntry::getMinQty));
+      minQties = new BigDecimal[entries.length];
+      for (int i = 0; i < entries.length; i++) {
+        minQties[i] = entries[i].getMinQty();
+      }
+    }
+
+    /** Get the entries whose minimum quantity is lower than or equal to the given quantity. */
+    protected List<PriceListLineEntry> getEntries(BigDecimal qty) {
+      if (qty == null || entries.length == 0) {
+        return Collections.emptyList();
+      }
+      int low = 0;
+      int high = minQties.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (minQties[middle].compareTo(qty) <= 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return Collections.unmodifiableList(Arrays.asList(entries).subList(0, low));
+    }
+  }
+
+  /** Copy of the values of a price list line needed to compute a discounted price. */
+  public static class PriceListLineEntry {
+
+    private final Long id;
+    private final BigDecimal minQty;
+    private final PriceListLine priceListLine;
+
+    protected PriceListLineEntry(
+        Long id,
+        BigDecimal minQty,
+        Integer typeSelect,
+        Integer amountTypeSelect,
+        BigDecimal amount) {
+      this.id = id;
+      this.minQty = minQty;
+      this.priceListLine = new PriceListLine();
+      priceListLine.setMinQty(minQty);
+      priceListLine.setTypeSelect(typeSelect);
+      priceListLine.setAmountTypeSelect(amountTypeSelect);
+      priceListLine.setAmount(amount);
+    }
+
+    public Long getId() {
+      return id;
+    }
+
+    public BigDecimal getMinQty() {
+      return minQty;
+    }
+
+    /**
+     * Get a detached price list line holding the values of the entry, to be used only to compute
+     * prices.
+     */
+    public PriceListLine getPriceListLine() {
+      return priceListLine;
+    }
+  }
+}
@@ -24,11 +24,11 @@ import com.axelor.apps.base.db.repo.AppBaseRepository;
 import com.axelor.apps.base.db.repo.PriceListLineRepository;
 import com.axelor.apps.base.db.repo.PriceListRepository;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
+import com.axelor.apps.base.service.PriceListLineCacheService.PriceListLineEntry;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
-import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.math.BigDecimal;
@@ -46,55 +46,55 @@ public class PriceListService {
 
   @Inject protected AppBaseService appBaseService;
 
+  @Inject protected PriceListLineCacheService priceListLineCacheService;
+
   public PriceListLine getPriceListLine(
       Product product, BigDecimal qty, PriceList priceList, BigDecimal price) {
 
-    PriceListLine priceListLine = null;
-    List<PriceListLine> priceListLineList = null;
-
-    BigDecimal tempDiscountPrevious = null;
-    BigDecimal tempDiscountCurrent = null;
-
-    if (product != null && priceList != null) {
-      priceListLineList =
-          Beans.get(PriceListLineRepository.class)
-              .all()
-              .filter(
-                  "self.product = ?1 AND self.minQty <= ?2 AND self.priceList.id = ?3 ORDER BY self.minQty DESC",
-                  product,
-                  qty,
-                  priceList.getId())
-              .fetch();
-      if ((priceListLineList == null || priceListLineList.isEmpty())
-          && product.getProductCategory() != null) {
-        priceListLineList =
-            priceListLineRepo
-                .all()
-                .filter(
-                    "self.productCategory = ?1 AND self.minQty <= ?2 AND self.priceList.id = ?3 ORDER BY self.minQty DESC",
-                    product.getProductCategory(),
-                    qty,
-                    priceList.getId())
-                .fetch();
-      }
+    if (product == null || priceList == null || priceList.getId() == null) {
+      return null;
     }
 
-    if (priceListLineList != null && !priceListLineList.isEmpty()) {
-      if (priceListLineList.size() > 1) {
-        for (PriceListLine tempPriceListLine : priceListLineList) {
-          tempDiscountCurrent = this.getUnitPriceDiscounted(tempPriceListLine, price);
+    List<PriceListLineEntry> entryList =
+        priceListLineCacheService.getProductEntries(priceList, product.getId(), qty);
+    if (entryList.isEmpty() && product.getProductCategory() != null) {
+      entryList =
+          priceListLineCacheService.getProductCategoryEntries(
+              priceList, product.getProductCategory().getId(), qty);
+    }
 
-          if (tempDiscountPrevious == null
-              || tempDiscountPrevious.compareTo(tempDiscountCurrent) == 1) {
-            tempDiscountPrevious = tempDiscountCurrent;
-            priceListLine = tempPriceListLine;
-          }
-        }
-      } else {
-        priceListLine = priceListLineList.get(0);
+    PriceListLineEntry entry = this.getBestEntry(entryList, price);
+
+    return entry != null ? priceListLineRepo.find(entry.getId()) : null;
+  }
+
+  /**
+   * Among the given entries, sorted by ascending min quantity, get the one giving the lowest
+   * discounted price. When several entries give the same price, the one with the highest min
+   * quantity is kept.
+   */
+  protected PriceListLineEntry getBestEntry(List<PriceListLineEntry> entryList, BigDecimal price) {
+
+    if (entryList.isEmpty()) {
+      return null;
+    }
+    if (entryList.size() == 1) {
+      return entryList.get(0);
+    }
+
+    PriceListLineEntry bestEntry = null;
+    BigDecimal bestDiscountedPrice = null;
+
+    for (int i = entryList.size() - 1; i >= 0; i--) {
+      PriceListLineEntry entry = entryList.get(i);
+      BigDecimal discountedPrice = this.getUnitPriceDiscounted(entry.getPriceListLine(), price);
+
+      if (bestDiscountedPrice == null || bestDiscountedPrice.compareTo(discountedPrice) > 0) {
+        bestDiscountedPrice = discountedPrice;
+        bestEntry = entry;
       }
     }
-    return priceListLine;
+    return bestEntry;
   }
 
   public int getDiscountTypeSelect(PriceListLine priceListLine) {
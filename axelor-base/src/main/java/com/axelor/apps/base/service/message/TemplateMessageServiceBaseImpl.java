@@ -23,6 +23,7 @@ import com.axelor.apps.base.db.BirtTemplateParameter;
 import com.axelor.apps.base.exceptions.IExceptionMessage;
 import com.axelor.apps.message.db.Template;
 import com.axelor.apps.message.service.MessageService;
+import com.axelor.apps.message.service.TemplateCacheService;
 import com.axelor.apps.message.service.TemplateContextService;
 import com.axelor.apps.message.service.TemplateMessageServiceImpl;
 import com.axelor.apps.report.engine.ReportSettings;
@@ -57,8 +58,10 @@ public class TemplateMessageServiceBaseImpl extends TemplateMessageServiceImpl {
 
   @Inject
   public TemplateMessageServiceBaseImpl(
-      MessageService messageService, TemplateContextService templateContextService) {
-    super(messageService, templateContextService);
+      MessageService messageService,
+      TemplateContextService templateContextService,
+      TemplateCacheService templateCacheService) {
+    super(messageService, templateContextService, templateCacheService);
   }
 
   @Override
@@ -0,0 +1,40 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.tax;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accounts and taxes resolved for products during one mass generation. A cache is created by the
+ * run and dropped with it, so changes to the account management made meanwhile are only seen by
+ * the next run. Only ids are kept, each worker loading the records in its own session.
+ */
+public class AccountManagementCache {
+
+  private final Map<List<Object>, Long> idMap = new ConcurrentHashMap<>();
+
+  public Long get(List<Object> key) {
+    return idMap.get(key);
+  }
+
+  public void put(List<Object> key, Long id) {
+    idMap.put(key, id);
+  }
+}
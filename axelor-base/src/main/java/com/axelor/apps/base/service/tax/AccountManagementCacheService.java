@@ -0,0 +1,114 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.base.service.tax;
+
+import com.axelor.db.JPA;
+import com.axelor.db.Model;
+import com.axelor.exception.AxelorException;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Resolves the accounts and taxes of products through the {@link AccountManagementCache} of the
+ * run the current thread works for. Threads that do not work for a run never use a cache.
+ */
+@Singleton
+public class AccountManagementCacheService {
+
+  private final ThreadLocal<AccountManagementCache> currentCache = new ThreadLocal<>();
+
+  /**
+   * Run the given task with the given cache for the resolutions made by the current thread.
+   *
+   * @param cache the cache of the run
+   * @param task the task of the run
+   * @return the result of the task
+   * @throws Exception if the task fails
+   */
+  public <T> T callWith(AccountManagementCache cache, Callable<T> task) throws Exception {
+    AccountManagementCache previousCache = currentCache.get();
+    currentCache.set(cache);
+    try {
+      return task.call();
+    } finally {
+      if (previousCache != null) {
+        currentCache.set(previousCache);
+      } else {
+        currentCache.remove();
+      }
+    }
+  }
+
+  /**
+   * Get the record resolved for the given key, resolving it with the given loader if the current
+   * thread does not work for a run or if it has not been resolved yet.
+   *
+   * @param klass the class of the resolved record
+   * @param loader the resolution to use when the record is not cached
+   * @param keyParts the values the resolution depends on, records being identified by their id
+   * @return the resolved record
+   * @throws AxelorException if the resolution fails
+   */
+  public <T extends Model> T get(Class<T> klass, Loader<T> loader, Object... keyParts)
+      throws AxelorException {
+    AccountManagementCache cache = currentCache.get();
+    List<Object> key = cache != null ? getKey(klass, keyParts) : null;
+    if (key == null) {
+      return loader.load();
+    }
+
+    Long id = cache.get(key);
+    if (id != null) {
+      T value = JPA.find(klass, id);
+      if (value != null) {
+        return value;
+      }
+    }
+
+    T value = loader.load();
+    if (value != null && value.getId() != null) {
+      cache.put(key, value.getId());
+    }
+    return value;
+  }
+
+  /** Get the cache key, or null if one of the records is not saved yet. */
+  protected List<Object> getKey(Class<?> klass, Object... keyParts) {
+    List<Object> key = new ArrayList<>(keyParts.length + 1);
+    key.add(klass);
+    for (Object keyPart : keyParts) {
+      if (keyPart instanceof Model) {
+        Long id = ((Model) keyPart).getId();
+        if (id == null) {
+          return null;
+        }
+        key.add(id);
+      } else {
+        key.add(keyPart);
+      }
+    }
+    return key;
+  }
+
+  @FunctionalInterface
+  public interface Loader<T> {
+    T load() throws AxelorException;
+  }
+}
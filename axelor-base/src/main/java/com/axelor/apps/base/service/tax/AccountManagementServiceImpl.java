@@ -46,6 +46,8 @@ public class AccountManagementServiceImpl implements AccountManagementService {
 
   private TaxService taxService;
 
+  @Inject protected AccountManagementCacheService accountManagementCacheService;
+
   @Inject
   public AccountManagementServiceImpl(
       FiscalPositionService fiscalPositionService, TaxService taxService) {
@@ -144,6 +146,18 @@ public class AccountManagementServiceImpl implements AccountManagementService {
   public Tax getProductTax(
       Product product, Company company, FiscalPosition fiscalPosition, boolean isPurchase)
       throws AxelorException {
+    return accountManagementCacheService.get(
+        Tax.class,
+        () -> resolveProductTax(product, company, fiscalPosition, isPurchase),
+        product,
+        company,
+        fiscalPosition,
+        isPurchase);
+  }
+
+  protected Tax resolveProductTax(
+      Product product, Company company, FiscalPosition fiscalPosition, boolean isPurchase)
+      throws AxelorException {
 
     LOG.debug(
         "Get the tax for the product {} (company : {}, purchase : {}, fiscal position : {})",
@@ -219,6 +233,23 @@ public class AccountManagementServiceImpl implements AccountManagementService {
       FiscalPosition fiscalPosition,
       boolean isPurchase)
       throws AxelorException {
+    return accountManagementCacheService.get(
+        TaxLine.class,
+        () -> resolveTaxLine(date, product, company, fiscalPosition, isPurchase),
+        date,
+        product,
+        company,
+        fiscalPosition,
+        isPurchase);
+  }
+
+  protected TaxLine resolveTaxLine(
+      LocalDate date,
+      Product product,
+      Company company,
+      FiscalPosition fiscalPosition,
+      boolean isPurchase)
+      throws AxelorException {
 
     TaxLine taxLine =
         taxService.getTaxLine(
@@ -23,52 +23,22 @@ import com.axelor.apps.production.db.ManufOrder;
 import com.axelor.apps.production.db.repo.ManufOrderRepository;
 import com.axelor.apps.production.service.app.AppProductionService;
 import com.axelor.apps.project.db.Project;
-import com.axelor.apps.project.db.repo.ProjectRepository;
-import com.axelor.apps.project.service.ProjectServiceImpl;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.inject.Beans;
+import com.google.common.collect.Lists;
 import com.google.inject.persist.Transactional;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import org.apache.commons.collections.CollectionUtils;
 
 public class InvoicingProjectServiceBusinessProdImpl extends InvoicingProjectService {
 
   @Override
-  public void setLines(InvoicingProject invoicingProject, Project project, int counter) {
-
-    AppProductionService appProductionService = Beans.get(AppProductionService.class);
-
-    if (!appProductionService.isApp("production")
-        || !appProductionService.getAppProduction().getManageBusinessProduction()) {
-      super.setLines(invoicingProject, project, counter);
-      return;
-    }
-
-    if (counter > ProjectServiceImpl.MAX_LEVEL_OF_PROJECT) {
-      return;
-    }
-    counter++;
-
-    this.fillLines(invoicingProject, project);
-
-    if (!invoicingProject.getConsolidatePhaseWhenInvoicing()) {
-      return;
-    }
-
-    List<Project> projectChildrenList =
-        Beans.get(ProjectRepository.class).all().filter("self.parentProject = ?1", project).fetch();
-
-    for (Project projectChild : projectChildrenList) {
-      this.setLines(invoicingProject, projectChild, counter);
-    }
-    return;
-  }
-
-  @Override
-  public void fillLines(InvoicingProject invoicingProject, Project project) {
-    super.fillLines(invoicingProject, project);
+  public void fillLines(InvoicingProject invoicingProject, List<Long> projectIdList) {
+    super.fillLines(invoicingProject, projectIdList);
 
     AppProductionService appProductionService = Beans.get(AppProductionService.class);
     if (!appProductionService.isApp("production")
@@ -88,8 +58,8 @@ public class InvoicingProjectServiceBusinessProdImpl extends InvoicingProjectSer
               Beans.get(ManufOrderRepository.class)
                   .all()
                   .filter(
-                      "self.productionOrder.project = ?1 AND (self.realStartDateT < ?2)",
-                      project,
+                      "self.productionOrder.project.id IN (?1) AND (self.realStartDateT < ?2)",
+                      projectIdList,
                       deadlineDateToDateTime)
                   .fetch());
     } else {
@@ -98,7 +68,7 @@ public class InvoicingProjectServiceBusinessProdImpl extends InvoicingProjectSer
           .addAll(
               Beans.get(ManufOrderRepository.class)
                   .all()
-                  .filter("self.productionOrder.project = ?1", project)
+                  .filter("self.productionOrder.project.id IN (?1)", projectIdList)
                   .fetch());
     }
   }
@@ -116,24 +86,32 @@ public class InvoicingProjectServiceBusinessProdImpl extends InvoicingProjectSer
   }
 
   @Override
-  public int countToInvoice(Project project) {
+  public Map<Long, Integer> countToInvoice(List<Long> projectIdList) {
 
     AppProductionService appProductionService = Beans.get(AppProductionService.class);
-    int toInvoiceCount = super.countToInvoice(project);
-    if (!appProductionService.isApp("production")
+    Map<Long, Integer> toInvoiceCountMap = super.countToInvoice(projectIdList);
+    if (projectIdList.isEmpty()
+        || !appProductionService.isApp("production")
         || !appProductionService.getAppProduction().getManageBusinessProduction()) {
-      return toInvoiceCount;
+      return toInvoiceCountMap;
     }
 
-    int productionOrderCount =
-        (int)
-            Beans.get(ManufOrderRepository.class)
-                .all()
-                .filter("self.productionOrder.project = ?1", project)
-                .count();
-    toInvoiceCount += productionOrderCount;
+    for (List<Long> idList : Lists.partition(projectIdList, COUNT_PARTITION_SIZE)) {
+      List<Object[]> rows =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.productionOrder.project.id, COUNT(self) FROM ManufOrder self "
+                      + "WHERE self.productionOrder.project.id IN (:projectIdList) "
+                      + "GROUP BY self.productionOrder.project.id",
+                  Object[].class)
+              .setParameter("projectIdList", idList)
+              .getResultList();
+      for (Object[] row : rows) {
+        toInvoiceCountMap.merge((Long) row[0], ((Number) row[1]).intValue(), Integer::sum);
+      }
+    }
 
-    return toInvoiceCount;
+    return toInvoiceCountMap;
   }
 
   @Transactional(rollbackOn = {AxelorException.class, Exception.class})
@@ -47,7 +47,6 @@ import com.axelor.apps.hr.db.repo.TimesheetLineRepository;
 import com.axelor.apps.hr.service.expense.ExpenseService;
 import com.axelor.apps.hr.service.timesheet.TimesheetService;
 import com.axelor.apps.project.db.Project;
-import com.axelor.apps.project.db.repo.ProjectRepository;
 import com.axelor.apps.project.service.ProjectServiceImpl;
 import com.axelor.apps.purchase.db.PurchaseOrderLine;
 import com.axelor.apps.purchase.db.repo.PurchaseOrderLineRepository;
@@ -57,6 +56,7 @@ import com.axelor.apps.sale.db.repo.SaleOrderLineRepository;
 import com.axelor.apps.sale.db.repo.SaleOrderRepository;
 import com.axelor.apps.supplychain.service.invoice.generator.InvoiceLineGeneratorSupplyChain;
 import com.axelor.apps.tool.file.PdfTool;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -65,12 +65,14 @@ import com.axelor.meta.MetaFiles;
 import com.axelor.meta.db.MetaFile;
 import com.axelor.team.db.TeamTask;
 import com.axelor.team.db.repo.TeamTaskRepository;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.File;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -95,6 +97,8 @@ public class InvoicingProjectService {
 
   protected static final String DATE_FORMAT_YYYYMMDDHHMM = "YYYYMMddHHmm";
 
+  protected static final int COUNT_PARTITION_SIZE = 1000;
+
   @Transactional(rollbackOn = {Exception.class})
   public Invoice generateInvoice(InvoicingProject invoicingProject) throws AxelorException {
     Project project = invoicingProject.getProject();
@@ -313,34 +317,55 @@ public class InvoicingProjectService {
     if (counter > ProjectServiceImpl.MAX_LEVEL_OF_PROJECT) {
       return;
     }
-    counter++;
 
-    this.fillLines(invoicingProject, project);
+    List<Long> projectIdList =
+        invoicingProject.getConsolidatePhaseWhenInvoicing()
+            ? getProjectTreeIdList(project, ProjectServiceImpl.MAX_LEVEL_OF_PROJECT - counter)
+            : Collections.singletonList(project.getId());
 
-    if (!invoicingProject.getConsolidatePhaseWhenInvoicing()) {
-      return;
-    }
-
-    List<Project> projectChildrenList =
-        Beans.get(ProjectRepository.class).all().filter("self.parentProject = ?1", project).fetch();
+    this.fillLines(invoicingProject, projectIdList);
+  }
 
-    for (Project projectChild : projectChildrenList) {
-      this.setLines(invoicingProject, projectChild, counter);
+  /**
+   * Get the ids of the project and of all its sub-projects, down to the given depth, with one query
+   * per level.
+   */
+  protected List<Long> getProjectTreeIdList(Project project, int maxDepth) {
+    List<Long> projectIdList = new ArrayList<>();
+    List<Long> levelIdList = Collections.singletonList(project.getId());
+
+    for (int depth = 0; !levelIdList.isEmpty(); depth++) {
+      projectIdList.addAll(levelIdList);
+      if (depth >= maxDepth) {
+        break;
+      }
+      levelIdList =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.id FROM Project self WHERE self.parentProject.id IN (:parentIdList)",
+                  Long.class)
+              .setParameter("parentIdList", levelIdList)
+              .getResultList();
     }
 
-    return;
+    return projectIdList;
   }
 
   public void fillLines(InvoicingProject invoicingProject, Project project) {
+    this.fillLines(invoicingProject, Collections.singletonList(project.getId()));
+  }
+
+  /** Add the items to invoice of all the given projects, with one query per item type. */
+  public void fillLines(InvoicingProject invoicingProject, List<Long> projectIdList) {
     String commonQuery =
-        "self.project = :project AND self.toInvoice = true AND self.invoiced = false";
+        "self.project.id IN (:projectIdList) AND self.toInvoice = true AND self.invoiced = false";
 
     StringBuilder solQueryBuilder = new StringBuilder(commonQuery);
     solQueryBuilder.append(
         " AND (self.saleOrder.statusSelect = :statusConfirmed OR self.saleOrder.statusSelect = :statusCompleted)");
 
     Map<String, Object> solQueryMap = new HashMap<>();
-    solQueryMap.put("project", project);
+    solQueryMap.put("projectIdList", projectIdList);
     solQueryMap.put("statusConfirmed", SaleOrderRepository.STATUS_ORDER_CONFIRMED);
     solQueryMap.put("statusCompleted", SaleOrderRepository.STATUS_ORDER_COMPLETED);
 
@@ -349,19 +374,19 @@ public class InvoicingProjectService {
         " AND (self.purchaseOrder.statusSelect = 3 OR self.purchaseOrder.statusSelect = 4)");
 
     Map<String, Object> polQueryMap = new HashMap<>();
-    polQueryMap.put("project", project);
+    polQueryMap.put("projectIdList", projectIdList);
 
     StringBuilder logTimesQueryBuilder = new StringBuilder(commonQuery);
 
     Map<String, Object> logTimesQueryMap = new HashMap<>();
-    logTimesQueryMap.put("project", project);
+    logTimesQueryMap.put("projectIdList", projectIdList);
 
     StringBuilder expenseLineQueryBuilder = new StringBuilder(commonQuery);
     expenseLineQueryBuilder.append(
         " AND (self.expense.statusSelect = :statusValidated OR self.expense.statusSelect = :statusReimbursed)");
 
     Map<String, Object> expenseLineQueryMap = new HashMap<>();
-    expenseLineQueryMap.put("project", project);
+    expenseLineQueryMap.put("projectIdList", projectIdList);
     expenseLineQueryMap.put("statusValidated", ExpenseRepository.STATUS_VALIDATED);
     expenseLineQueryMap.put("statusReimbursed", ExpenseRepository.STATUS_REIMBURSED);
 
@@ -369,7 +394,7 @@ public class InvoicingProjectService {
     taskQueryBuilder.append(" AND self.invoicingType = :invoicingTypePackage");
 
     Map<String, Object> taskQueryMap = new HashMap<>();
-    taskQueryMap.put("project", project);
+    taskQueryMap.put("projectIdList", projectIdList);
     taskQueryMap.put("invoicingTypePackage", TeamTaskRepository.INVOICING_TYPE_PACKAGE);
 
     if (invoicingProject.getDeadlineDate() != null) {
@@ -451,29 +476,52 @@ public class InvoicingProjectService {
   }
 
   public int countToInvoice(Project project) {
+    return countToInvoice(Collections.singletonList(project.getId()))
+        .getOrDefault(project.getId(), 0);
+  }
 
-    int toInvoiceCount = 0;
-
-    String query = "self.project = ?1";
-
-    if (project.getIsShowPhasesElements()) {
-      query = "(self.project = ?1 OR self.project.parentProject = ?1)";
+  /**
+   * Count the items to invoice of each project, with one query for all the projects. Items of the
+   * sub-projects are counted with their parent when it shows the phases elements.
+   *
+   * @param projectIdList ids of the projects to count.
+   * @return the number of items to invoice per project id.
+   */
+  public Map<Long, Integer> countToInvoice(List<Long> projectIdList) {
+    Map<Long, Integer> toInvoiceCountMap = new HashMap<>();
+    if (projectIdList.isEmpty()) {
+      return toInvoiceCountMap;
     }
 
-    query += " AND self.toInvoice = true AND self.invoiced = false";
-
-    toInvoiceCount += Beans.get(SaleOrderLineRepository.class).all().filter(query, project).count();
-
-    toInvoiceCount +=
-        Beans.get(PurchaseOrderLineRepository.class).all().filter(query, project).count();
-
-    toInvoiceCount += Beans.get(ExpenseLineRepository.class).all().filter(query, project).count();
-
-    toInvoiceCount += Beans.get(TimesheetLineRepository.class).all().filter(query, project).count();
-
-    toInvoiceCount += Beans.get(TeamTaskRepository.class).all().filter(query, project).count();
+    String itemFilter =
+        "(item.project = project "
+            + "OR (project.isShowPhasesElements = TRUE AND item.project.parentProject = project)) "
+            + "AND item.toInvoice = TRUE AND item.invoiced = FALSE";
+    StringBuilder queryBuilder = new StringBuilder("SELECT project.id");
+    for (String itemEntity :
+        Arrays.asList(
+            "SaleOrderLine", "PurchaseOrderLine", "ExpenseLine", "TimesheetLine", "TeamTask")) {
+      queryBuilder.append(
+          String.format(", (SELECT COUNT(item) FROM %s item WHERE %s)", itemEntity, itemFilter));
+    }
+    queryBuilder.append(" FROM Project project WHERE project.id IN (:projectIdList)");
+
+    for (List<Long> idList : Lists.partition(projectIdList, COUNT_PARTITION_SIZE)) {
+      List<Object[]> rows =
+          JPA.em()
+              .createQuery(queryBuilder.toString(), Object[].class)
+              .setParameter("projectIdList", idList)
+              .getResultList();
+      for (Object[] row : rows) {
+        int toInvoiceCount = 0;
+        for (int i = 1; i < row.length; i++) {
+          toInvoiceCount += ((Number) row[i]).intValue();
+        }
+        toInvoiceCountMap.put((Long) row[0], toInvoiceCount);
+      }
+    }
 
-    return toInvoiceCount;
+    return toInvoiceCountMap;
   }
 
   public void generateAnnex(InvoicingProject invoicingProject) throws AxelorException, IOException {
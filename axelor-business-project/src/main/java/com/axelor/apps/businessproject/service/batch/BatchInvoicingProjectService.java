@@ -19,6 +19,7 @@ package com.axelor.apps.businessproject.service.batch;
 
 import com.axelor.apps.base.service.administration.AbstractBatch;
 import com.axelor.apps.businessproject.db.InvoicingProject;
+import com.axelor.apps.businessproject.db.repo.ProjectInvoicingAssistantBatchRepository;
 import com.axelor.apps.businessproject.exception.IExceptionMessage;
 import com.axelor.apps.businessproject.service.InvoicingProjectService;
 import com.axelor.apps.project.db.Project;
@@ -31,6 +32,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 public class BatchInvoicingProjectService extends AbstractBatch {
 
@@ -70,11 +72,20 @@ public class BatchInvoicingProjectService extends AbstractBatch {
             .bind("statusFinished", ProjectRepository.STATE_FINISHED)
             .fetch();
 
+    int consolidatePhaseSelect =
+        batch.getProjectInvoicingAssistantBatch().getConsolidatePhaseSelect();
+    Map<Long, Integer> toInvoiceCountMap =
+        invoicingProjectService.countToInvoice(
+            projectList.stream().map(Project::getId).collect(Collectors.toList()));
+
     for (Project project : projectList) {
+      if (!isConsolidated(project, consolidatePhaseSelect)
+          && toInvoiceCountMap.getOrDefault(project.getId(), 0) == 0) {
+        continue;
+      }
       try {
         InvoicingProject invoicingProject =
-            invoicingProjectService.generateInvoicingProject(
-                project, batch.getProjectInvoicingAssistantBatch().getConsolidatePhaseSelect());
+            invoicingProjectService.generateInvoicingProject(project, consolidatePhaseSelect);
 
         if (invoicingProject != null && invoicingProject.getId() != null) {
           incrementDone();
@@ -98,6 +109,19 @@ public class BatchInvoicingProjectService extends AbstractBatch {
         batch, generatedInvoicingProjectList, "generatedInvoicingProjectSet", contextValues);
   }
 
+  /**
+   * Items of the sub-projects are only counted down to the first level, so the count can only be
+   * used to skip the projects that are not consolidated.
+   */
+  protected boolean isConsolidated(Project project, int consolidatePhaseSelect) {
+    if (consolidatePhaseSelect
+        == ProjectInvoicingAssistantBatchRepository.CONSOLIDATE_PHASE_DEFAULT_VALUE) {
+      return project.getConsolidatePhaseWhenInvoicing();
+    }
+    return consolidatePhaseSelect
+        != ProjectInvoicingAssistantBatchRepository.CONSOLIDATE_PHASE_DONT_CONSOLIDATE;
+  }
+
   @Override
   protected void stop() {
 
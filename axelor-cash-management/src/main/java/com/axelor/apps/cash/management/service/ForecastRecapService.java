@@ -20,6 +20,7 @@ package com.axelor.apps.cash.management.service;
 import com.axelor.apps.ReportFactory;
 import com.axelor.apps.account.db.Invoice;
 import com.axelor.apps.account.db.repo.InvoiceRepository;
+import com.axelor.apps.base.db.Currency;
 import com.axelor.apps.base.service.CurrencyService;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.cash.management.db.Forecast;
@@ -47,12 +48,14 @@ import com.axelor.apps.sale.db.SaleOrder;
 import com.axelor.apps.sale.db.repo.SaleOrderRepository;
 import com.axelor.apps.supplychain.db.Timetable;
 import com.axelor.apps.supplychain.db.repo.TimetableRepository;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.apps.tool.StringTool;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
@@ -66,6 +69,9 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.persistence.TypedQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,6 +80,9 @@ public class ForecastRecapService {
 
   private final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int MAX_PARALLEL_SOURCES = 4;
+  protected static final int SAVE_BATCH_SIZE = 100;
+
   protected AppBaseService appBaseService;
   protected ForecastRepository forecastRepo;
   protected ForecastRecapLineRepository forecastRecapLineRepo;
@@ -120,47 +129,165 @@ public class ForecastRecapService {
     this.expenseRepo = expenseRepo;
   }
 
-  @Transactional
-  public void reset(ForecastRecap forecastRecap) {
-    forecastRecap.clearForecastRecapLineList();
-    forecastRecap.setCurrentBalance(forecastRecap.getStartingBalance());
-
+  public void populate(ForecastRecap forecastRecap) throws AxelorException {
     today = appBaseService.getTodayDate(forecastRecap.getCompany());
-    forecastRecapRepo.save(forecastRecap);
+    // initialized here as the sources may be computed in other threads
+    forecastRecap.getCompany().getCurrency();
+
+    Map<Long, BigDecimal> exchangeRateMap = new ConcurrentHashMap<>();
+    List<Long> forecastIdList = Collections.synchronizedList(new ArrayList<>());
+    List<Callable<List<ForecastRecapLine>>> sourceList = new ArrayList<>();
+
+    if (forecastRecap.getOpportunitiesTypeSelect() != null
+        && forecastRecap.getOpportunitiesTypeSelect()
+            > ForecastRecapRepository.OPPORTUNITY_TYPE_NO) {
+      sourceList.add(() -> this.populateWithOpportunities(forecastRecap, exchangeRateMap));
+    }
+    sourceList.add(() -> this.populateWithInvoices(forecastRecap, exchangeRateMap));
+    sourceList.add(() -> this.populateWithSalaries(forecastRecap));
+    sourceList.add(() -> this.populateWithSaleOrders(forecastRecap, exchangeRateMap));
+    sourceList.add(() -> this.populateWithPurchaseOrders(forecastRecap, exchangeRateMap));
+    sourceList.add(() -> this.populateWithForecasts(forecastRecap, forecastIdList));
+    sourceList.add(() -> this.populateWithExpenses(forecastRecap));
+
+    List<ForecastRecapLine> forecastRecapLineList = this.computeSources(sourceList);
+
+    this.computeForecastRecapLineBalance(forecastRecap, forecastRecapLineList);
+    this.save(
+        forecastRecap,
+        forecastRecapLineList,
+        forecastRecap.getIsReport() ? Collections.emptyList() : forecastIdList);
   }
 
+  /**
+   * Compute the lines of each source, in parallel if there are several of them. The sources only
+   * read data, the lines are saved afterwards by {@link #save(ForecastRecap, List, List)}.
+   *
+   * @param sourceList the sources of the lines
+   * @return the lines of all sources, in the order of the sources
+   * @throws AxelorException
+   */
+  protected List<ForecastRecapLine> computeSources(
+      List<Callable<List<ForecastRecapLine>>> sourceList) throws AxelorException {
+
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
+    List<Throwable> errorList = new ArrayList<>();
+
+    boolean completed =
+        ParallelTool.run(
+            sourceList,
+            MAX_PARALLEL_SOURCES,
+            (lineList, i) -> forecastRecapLineList.addAll(lineList),
+            (e, i) -> errorList.add(e));
+
+    if (!errorList.isEmpty()) {
+      if (errorList.get(0) instanceof AxelorException) {
+        throw (AxelorException) errorList.get(0);
+      }
+      throw new AxelorException(errorList.get(0), TraceBackRepository.CATEGORY_INCONSISTENCY);
+    }
+    if (!completed) {
+      throw new AxelorException(
+          new InterruptedException(), TraceBackRepository.CATEGORY_INCONSISTENCY);
+    }
+
+    return forecastRecapLineList;
+  }
+
+  /**
+   * Replace the lines of the forecast recap by the given ones, inserted by batches, and mark the
+   * given forecasts as realized.
+   *
+   * @param forecastRecap the forecast recap
+   * @param forecastRecapLineList the new lines, with their balance computed
+   * @param forecastIdList the forecasts included in the lines
+   */
   @Transactional
-  public void finish(ForecastRecap forecastRecap) {
-    this.computeForecastRecapLineBalance(forecastRecap);
+  public void save(
+      ForecastRecap forecastRecap,
+      List<ForecastRecapLine> forecastRecapLineList,
+      List<Long> forecastIdList) {
+
+    forecastRecap = forecastRecapRepo.find(forecastRecap.getId());
+    forecastRecap.clearForecastRecapLineList();
+    JPA.flush();
+
+    int count = 0;
+    for (ForecastRecapLine forecastRecapLine : forecastRecapLineList) {
+      forecastRecapLine.setForecastRecap(forecastRecap);
+      forecastRecapLine.setForecastRecapLineType(
+          JPA.em()
+              .getReference(
+                  ForecastRecapLineType.class,
+                  forecastRecapLine.getForecastRecapLineType().getId()));
+      JPA.em().persist(forecastRecapLine);
+
+      if (++count % SAVE_BATCH_SIZE == 0) {
+        JPA.flush();
+      }
+    }
+
+    for (List<Long> idList : Lists.partition(forecastIdList, SAVE_BATCH_SIZE)) {
+      JPA.em()
+          .createQuery(
+              "UPDATE Forecast self SET self.realizationDate = self.estimatedDate, "
+                  + "self.version = self.version + 1 "
+                  + "WHERE self.id IN (:idList) AND self.estimatedDate > :today")
+          .setParameter("idList", idList)
+          .setParameter("today", today)
+          .executeUpdate();
+      JPA.em()
+          .createQuery(
+              "UPDATE Forecast self SET self.realizationDate = :today, "
+                  + "self.version = self.version + 1 "
+                  + "WHERE self.id IN (:idList) AND self.estimatedDate <= :today")
+          .setParameter("idList", idList)
+          .setParameter("today", today)
+          .executeUpdate();
+    }
+
+    forecastRecap.setCurrentBalance(
+        forecastRecapLineList.isEmpty()
+            ? forecastRecap.getStartingBalance()
+            : forecastRecapLineList.get(forecastRecapLineList.size() - 1).getBalance());
     forecastRecap.setEndingBalance(forecastRecap.getCurrentBalance());
     forecastRecap.setCalculationDate(today);
     forecastRecap.setIsComplete(true);
     forecastRecapRepo.save(forecastRecap);
   }
 
-  public void populate(ForecastRecap forecastRecap) throws AxelorException {
-    this.reset(forecastRecapRepo.find(forecastRecap.getId()));
+  /**
+   * Convert an amount to the currency of the company of the forecast recap, at today's rate. The
+   * rates are cached in the given map for the computation of the forecast recap.
+   */
+  protected BigDecimal convertToCompanyCurrency(
+      ForecastRecap forecastRecap,
+      Currency currency,
+      BigDecimal amount,
+      Map<Long, BigDecimal> exchangeRateMap)
+      throws AxelorException {
 
-    if (forecastRecap.getOpportunitiesTypeSelect() != null
-        && forecastRecap.getOpportunitiesTypeSelect()
-            > ForecastRecapRepository.OPPORTUNITY_TYPE_NO) {
-      this.populateWithOpportunities(forecastRecapRepo.find(forecastRecap.getId()));
+    Currency companyCurrency = forecastRecap.getCompany().getCurrency();
+    if (currency == null
+        || companyCurrency == null
+        || currency.getId().equals(companyCurrency.getId())) {
+      return amount;
     }
-    this.populateWithInvoices(forecastRecapRepo.find(forecastRecap.getId()));
-    this.populateWithSalaries(forecastRecapRepo.find(forecastRecap.getId()));
-    this.populateWithSaleOrders(forecastRecapRepo.find(forecastRecap.getId()));
-    this.populateWithPurchaseOrders(forecastRecapRepo.find(forecastRecap.getId()));
-    if (forecastRecap.getIsReport()) {
-      this.populateWithForecastsNoSave(forecastRecap);
-    } else {
-      this.populateWithForecasts(forecastRecapRepo.find(forecastRecap.getId()));
+
+    BigDecimal exchangeRate = exchangeRateMap.get(currency.getId());
+    if (exchangeRate == null) {
+      exchangeRate =
+          currencyService.getCurrencyConversionRate(
+              currency, JPA.find(Currency.class, companyCurrency.getId()), today);
+      exchangeRateMap.put(currency.getId(), exchangeRate);
     }
-    this.populateWithExpenses(forecastRecapRepo.find(forecastRecap.getId()));
 
-    this.finish(forecastRecapRepo.find(forecastRecap.getId()));
+    return currencyService.getAmountCurrencyConvertedUsingExchangeRate(amount, exchangeRate);
   }
 
-  public void populateWithOpportunities(ForecastRecap forecastRecap) throws AxelorException {
+  public List<ForecastRecapLine> populateWithOpportunities(
+      ForecastRecap forecastRecap, Map<Long, BigDecimal> exchangeRateMap) throws AxelorException {
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
     List<Opportunity> opportunityList = new ArrayList<Opportunity>();
     ForecastRecapLineType opportunityForecastRecapLineType =
         this.getForecastRecapLineType(ForecastRecapLineTypeRepository.ELEMENT_OPPORTUNITY);
@@ -181,48 +308,25 @@ public class ForecastRecapService {
                 statusList)
             .fetch();
     for (Opportunity opportunity : opportunityList) {
-      BigDecimal amountCompanyCurr = BigDecimal.ZERO;
-      opportunity = opportunityRepo.find(opportunity.getId());
+      BigDecimal amount;
       if (forecastRecap.getOpportunitiesTypeSelect()
           == ForecastRecapRepository.OPPORTUNITY_TYPE_BASE) {
-        amountCompanyCurr =
-            currencyService
-                .getAmountCurrencyConvertedAtDate(
-                    opportunity.getCurrency(),
-                    opportunity.getCompany().getCurrency(),
-                    opportunity
-                        .getAmount()
-                        .multiply(opportunity.getProbability())
-                        .divide(new BigDecimal(100), 2, RoundingMode.HALF_UP),
-                    today)
-                .setScale(2, RoundingMode.HALF_UP);
+        amount = opportunity.getAmount();
       } else if (forecastRecap.getOpportunitiesTypeSelect()
           == ForecastRecapRepository.OPPORTUNITY_TYPE_BEST) {
-        amountCompanyCurr =
-            currencyService
-                .getAmountCurrencyConvertedAtDate(
-                    opportunity.getCurrency(),
-                    opportunity.getCompany().getCurrency(),
-                    opportunity
-                        .getBestCase()
-                        .multiply(opportunity.getProbability())
-                        .divide(new BigDecimal(100), 2, RoundingMode.HALF_UP),
-                    today)
-                .setScale(2, RoundingMode.HALF_UP);
-
+        amount = opportunity.getBestCase();
       } else {
-        amountCompanyCurr =
-            currencyService
-                .getAmountCurrencyConvertedAtDate(
-                    opportunity.getCurrency(),
-                    opportunity.getCompany().getCurrency(),
-                    opportunity
-                        .getWorstCase()
-                        .multiply(opportunity.getProbability())
-                        .divide(new BigDecimal(100), 2, RoundingMode.HALF_UP),
-                    today)
-                .setScale(2, RoundingMode.HALF_UP);
+        amount = opportunity.getWorstCase();
       }
+      BigDecimal amountCompanyCurr =
+          this.convertToCompanyCurrency(
+                  forecastRecap,
+                  opportunity.getCurrency(),
+                  amount
+                      .multiply(opportunity.getProbability())
+                      .divide(new BigDecimal(100), 2, RoundingMode.HALF_UP),
+                  exchangeRateMap)
+              .setScale(2, RoundingMode.HALF_UP);
       this.createForecastRecapLine(
           opportunity.getExpectedCloseDate(),
           opportunityForecastRecapLineType.getTypeSelect(),
@@ -230,10 +334,10 @@ public class ForecastRecapService {
           Opportunity.class.getName(),
           opportunity.getId(),
           opportunity.getName(),
-          forecastRecapLineTypeRepo.find(opportunityForecastRecapLineType.getId()),
-          forecastRecapRepo.find(forecastRecap.getId()));
-      JPA.clear();
+          opportunityForecastRecapLineType,
+          forecastRecapLineList);
     }
+    return forecastRecapLineList;
   }
 
   public void getOpportunities(
@@ -325,7 +429,9 @@ public class ForecastRecapService {
     }
   }
 
-  public void populateWithInvoices(ForecastRecap forecastRecap) throws AxelorException {
+  public List<ForecastRecapLine> populateWithInvoices(
+      ForecastRecap forecastRecap, Map<Long, BigDecimal> exchangeRateMap) throws AxelorException {
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
     List<Invoice> invoiceList = new ArrayList<Invoice>();
     ForecastRecapLineType invoiceForecastRecapLineType =
         this.getForecastRecapLineType(ForecastRecapLineTypeRepository.ELEMENT_INVOICE);
@@ -352,38 +458,26 @@ public class ForecastRecapService {
                 forecastRecap.getToDate())
             .fetch();
     for (Invoice invoice : invoiceList) {
-      invoice = invoiceRepo.find(invoice.getId());
-      BigDecimal amount;
-      if (invoice.getMove() == null) {
-        amount =
-            currencyService
-                .getAmountCurrencyConvertedAtDate(
-                    invoice.getCurrency(),
-                    forecastRecap.getCompany().getCurrency(),
-                    invoice.getCompanyInTaxTotal(),
-                    today)
-                .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
-      } else {
-        amount =
-            currencyService
-                .getAmountCurrencyConvertedAtDate(
-                    invoice.getCurrency(),
-                    forecastRecap.getCompany().getCurrency(),
-                    invoice.getCompanyInTaxTotalRemaining(),
-                    today)
-                .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
-      }
+      BigDecimal amount =
+          this.convertToCompanyCurrency(
+                  forecastRecap,
+                  invoice.getCurrency(),
+                  invoice.getMove() == null
+                      ? invoice.getCompanyInTaxTotal()
+                      : invoice.getCompanyInTaxTotalRemaining(),
+                  exchangeRateMap)
+              .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
       this.createForecastRecapLine(
           invoice.getEstimatedPaymentDate(),
           invoiceForecastRecapLineType.getTypeSelect(),
           amount,
-          invoice.getClass().getName(),
+          Invoice.class.getName(),
           invoice.getId(),
           invoice.getInvoiceId(),
-          forecastRecapLineTypeRepo.find(invoiceForecastRecapLineType.getId()),
-          forecastRecapRepo.find(forecastRecap.getId()));
-      JPA.clear();
+          invoiceForecastRecapLineType,
+          forecastRecapLineList);
     }
+    return forecastRecapLineList;
   }
 
   public void getInvoices(
@@ -432,19 +526,28 @@ public class ForecastRecapService {
     }
   }
 
-  public void populateWithSalaries(ForecastRecap forecastRecap) throws AxelorException {
-    List<Employee> employeeList = new ArrayList<Employee>();
+  public List<ForecastRecapLine> populateWithSalaries(ForecastRecap forecastRecap)
+      throws AxelorException {
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
     ForecastRecapLineType salaryForecastRecapLineType =
         this.getForecastRecapLineType(ForecastRecapLineTypeRepository.ELEMENT_SALARY);
-    employeeList =
-        employeeRepo
-            .all()
-            .filter(
-                "self.mainEmploymentContract.payCompany = ?1 AND self.mainEmploymentContract.monthlyGlobalCost != 0"
-                    + (forecastRecap.getBankDetails() != null ? " AND self.bankDetails = ?2" : ""),
-                forecastRecap.getCompany(),
-                forecastRecap.getBankDetails())
-            .fetch();
+    TypedQuery<Object[]> employeeQuery =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, contactPartner.fullName, contract.monthlyGlobalCost "
+                    + "FROM Employee self "
+                    + "JOIN self.mainEmploymentContract contract "
+                    + "LEFT JOIN self.contactPartner contactPartner "
+                    + "WHERE contract.payCompany = :company AND contract.monthlyGlobalCost != 0"
+                    + (forecastRecap.getBankDetails() != null
+                        ? " AND self.bankDetails = :bankDetails"
+                        : ""),
+                Object[].class)
+            .setParameter("company", forecastRecap.getCompany());
+    if (forecastRecap.getBankDetails() != null) {
+      employeeQuery.setParameter("bankDetails", forecastRecap.getBankDetails());
+    }
+    List<Object[]> employeeList = employeeQuery.getResultList();
 
     LocalDate itDate =
         LocalDate.parse(forecastRecap.getFromDate().toString(), DateTimeFormatter.ISO_DATE);
@@ -455,27 +558,28 @@ public class ForecastRecapService {
                   ? itDate.lengthOfMonth()
                   : salaryForecastRecapLineType.getPayDaySelect());
       if (itDate.isEqual(payDay)) {
-        for (Employee employee : employeeList) {
-          employeeRepo.find(employee.getId());
+        for (Object[] employee : employeeList) {
           this.createForecastRecapLine(
               itDate,
               salaryForecastRecapLineType.getTypeSelect(),
-              employee.getMainEmploymentContract().getMonthlyGlobalCost(),
-              employee.getClass().getName(),
-              employee.getId(),
-              employee.getName(),
-              forecastRecapLineTypeRepo.find(salaryForecastRecapLineType.getId()),
-              forecastRecapRepo.find(forecastRecap.getId()));
-          JPA.clear();
+              (BigDecimal) employee[2],
+              Employee.class.getName(),
+              (Long) employee[0],
+              employee[1] != null ? (String) employee[1] : "",
+              salaryForecastRecapLineType,
+              forecastRecapLineList);
         }
         itDate = itDate.plusMonths(1);
       } else {
         itDate = payDay;
       }
     }
+    return forecastRecapLineList;
   }
 
-  public void populateWithSaleOrders(ForecastRecap forecastRecap) throws AxelorException {
+  public List<ForecastRecapLine> populateWithSaleOrders(
+      ForecastRecap forecastRecap, Map<Long, BigDecimal> exchangeRateMap) throws AxelorException {
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
     ForecastRecapLineType saleOrderForecastRecapLineType =
         this.getForecastRecapLineType(ForecastRecapLineTypeRepository.ELEMENT_SALE_ORDER);
     List<Integer> statusList =
@@ -484,7 +588,9 @@ public class ForecastRecapService {
     if (statusList.isEmpty()) {
       statusList.add(SaleOrderRepository.STATUS_ORDER_CONFIRMED);
     }
-    this.populateWithTimetables(forecastRecap, saleOrderForecastRecapLineType, statusList);
+    forecastRecapLineList.addAll(
+        this.populateWithTimetables(
+            forecastRecap, saleOrderForecastRecapLineType, statusList, exchangeRateMap));
     if (saleOrderForecastRecapLineType.getEstimatedDuration() != null) {
       saleOrderList =
           saleOrderRepo
@@ -527,14 +633,12 @@ public class ForecastRecapService {
               .fetch();
     }
     for (SaleOrder saleOrder : saleOrderList) {
-      saleOrder = saleOrderRepo.find(saleOrder.getId());
       BigDecimal amount =
-          currencyService
-              .getAmountCurrencyConvertedAtDate(
+          this.convertToCompanyCurrency(
+                  forecastRecap,
                   saleOrder.getCurrency(),
-                  forecastRecap.getCompany().getCurrency(),
                   saleOrder.getInTaxTotal(),
-                  today)
+                  exchangeRateMap)
               .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
 
       this.createForecastRecapLine(
@@ -545,16 +649,18 @@ public class ForecastRecapService {
               : saleOrder.getExpectedRealisationDate(),
           saleOrderForecastRecapLineType.getTypeSelect(),
           amount,
-          saleOrder.getClass().getName(),
+          SaleOrder.class.getName(),
           saleOrder.getId(),
           saleOrder.getSaleOrderSeq(),
-          forecastRecapLineTypeRepo.find(saleOrderForecastRecapLineType.getId()),
-          forecastRecapRepo.find(forecastRecap.getId()));
-      JPA.clear();
+          saleOrderForecastRecapLineType,
+          forecastRecapLineList);
     }
+    return forecastRecapLineList;
   }
 
-  public void populateWithPurchaseOrders(ForecastRecap forecastRecap) throws AxelorException {
+  public List<ForecastRecapLine> populateWithPurchaseOrders(
+      ForecastRecap forecastRecap, Map<Long, BigDecimal> exchangeRateMap) throws AxelorException {
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
     ForecastRecapLineType purchaseOrderForecastRecapLineType =
         this.getForecastRecapLineType(ForecastRecapLineTypeRepository.ELEMENT_PURCHASE_ORDER);
     List<Integer> statusList =
@@ -563,7 +669,9 @@ public class ForecastRecapService {
     if (statusList.isEmpty()) {
       statusList.add(PurchaseOrderRepository.STATUS_VALIDATED);
     }
-    this.populateWithTimetables(forecastRecap, purchaseOrderForecastRecapLineType, statusList);
+    forecastRecapLineList.addAll(
+        this.populateWithTimetables(
+            forecastRecap, purchaseOrderForecastRecapLineType, statusList, exchangeRateMap));
     if (purchaseOrderForecastRecapLineType.getEstimatedDuration() != null) {
       purchaseOrderList =
           purchaseOrderRepo
@@ -606,14 +714,12 @@ public class ForecastRecapService {
               .fetch();
     }
     for (PurchaseOrder purchaseOrder : purchaseOrderList) {
-      purchaseOrder = purchaseOrderRepo.find(purchaseOrder.getId());
       BigDecimal amount =
-          currencyService
-              .getAmountCurrencyConvertedAtDate(
+          this.convertToCompanyCurrency(
+                  forecastRecap,
                   purchaseOrder.getCurrency(),
-                  forecastRecap.getCompany().getCurrency(),
                   purchaseOrder.getInTaxTotal(),
-                  today)
+                  exchangeRateMap)
               .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
 
       this.createForecastRecapLine(
@@ -624,20 +730,22 @@ public class ForecastRecapService {
               : purchaseOrder.getExpectedRealisationDate(),
           purchaseOrderForecastRecapLineType.getTypeSelect(),
           amount,
-          purchaseOrder.getClass().getName(),
+          PurchaseOrder.class.getName(),
           purchaseOrder.getId(),
           purchaseOrder.getPurchaseOrderSeq(),
-          forecastRecapLineTypeRepo.find(purchaseOrderForecastRecapLineType.getId()),
-          forecastRecapRepo.find(forecastRecap.getId()));
-      JPA.clear();
+          purchaseOrderForecastRecapLineType,
+          forecastRecapLineList);
     }
+    return forecastRecapLineList;
   }
 
-  public void populateWithTimetables(
+  public List<ForecastRecapLine> populateWithTimetables(
       ForecastRecap forecastRecap,
       ForecastRecapLineType forecastRecapLineType,
-      List<Integer> statusList)
+      List<Integer> statusList,
+      Map<Long, BigDecimal> exchangeRateMap)
       throws AxelorException {
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
     List<Timetable> timetableList = new ArrayList<Timetable>();
     if (forecastRecapLineType.getElementSelect()
         == ForecastRecapLineTypeRepository.ELEMENT_SALE_ORDER) {
@@ -677,14 +785,12 @@ public class ForecastRecapService {
     if (forecastRecapLineType.getElementSelect()
         == ForecastRecapLineTypeRepository.ELEMENT_SALE_ORDER) {
       for (Timetable timetable : timetableList) {
-        timetable = timetableRepo.find(timetable.getId());
         BigDecimal amountCompanyCurr =
-            currencyService
-                .getAmountCurrencyConvertedAtDate(
+            this.convertToCompanyCurrency(
+                    forecastRecap,
                     timetable.getSaleOrder().getCurrency(),
-                    forecastRecap.getCompany().getCurrency(),
                     timetable.getAmount(),
-                    today)
+                    exchangeRateMap)
                 .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
         this.createForecastRecapLine(
             timetable.getEstimatedDate(),
@@ -693,21 +799,18 @@ public class ForecastRecapService {
             SaleOrder.class.getName(),
             timetable.getSaleOrder().getId(),
             timetable.getSaleOrder().getSaleOrderSeq(),
-            forecastRecapLineTypeRepo.find(forecastRecapLineType.getId()),
-            forecastRecapRepo.find(forecastRecap.getId()));
-        JPA.clear();
+            forecastRecapLineType,
+            forecastRecapLineList);
       }
     } else if (forecastRecapLineType.getElementSelect()
         == ForecastRecapLineTypeRepository.ELEMENT_PURCHASE_ORDER) {
       for (Timetable timetable : timetableList) {
-        timetable = timetableRepo.find(timetable.getId());
         BigDecimal amountCompanyCurr =
-            currencyService
-                .getAmountCurrencyConvertedAtDate(
+            this.convertToCompanyCurrency(
+                    forecastRecap,
                     timetable.getPurchaseOrder().getCurrency(),
-                    forecastRecap.getCompany().getCurrency(),
                     timetable.getAmount(),
-                    today)
+                    exchangeRateMap)
                 .setScale(AppBaseService.DEFAULT_NB_DECIMAL_DIGITS, RoundingMode.HALF_UP);
         this.createForecastRecapLine(
             timetable.getEstimatedDate(),
@@ -716,11 +819,11 @@ public class ForecastRecapService {
             PurchaseOrder.class.getName(),
             timetable.getPurchaseOrder().getId(),
             timetable.getPurchaseOrder().getPurchaseOrderSeq(),
-            forecastRecapLineTypeRepo.find(forecastRecapLineType.getId()),
-            forecastRecapRepo.find(forecastRecap.getId()));
-        JPA.clear();
+            forecastRecapLineType,
+            forecastRecapLineList);
       }
     }
+    return forecastRecapLineList;
   }
 
   public void getTimetablesOrOrders(
@@ -834,8 +937,13 @@ public class ForecastRecapService {
     }
   }
 
-  @Transactional
-  public void populateWithForecasts(ForecastRecap forecastRecap) throws AxelorException {
+  /**
+   * Create the lines of the forecasts which are not realized yet. The forecasts are added to the
+   * given list, to be marked as realized when the forecast recap is saved.
+   */
+  public List<ForecastRecapLine> populateWithForecasts(
+      ForecastRecap forecastRecap, List<Long> forecastIdList) throws AxelorException {
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
     List<Forecast> forecastList = new ArrayList<Forecast>();
     ForecastRecapLineType forecastForecastRecapLineType =
         this.getForecastRecapLineType(ForecastRecapLineTypeRepository.ELEMENT_FORECAST);
@@ -851,53 +959,9 @@ public class ForecastRecapService {
                 forecastRecap.getBankDetails())
             .fetch();
     for (Forecast forecast : forecastList) {
-      forecast = forecastRepo.find(forecast.getId());
-      ForecastReason forecastReason = forecast.getForecastReason();
-      LocalDate realizationDate =
-          forecast
-                  .getEstimatedDate()
-                  .isAfter(appBaseService.getTodayDate(forecastRecap.getCompany()))
-              ? forecast.getEstimatedDate()
-              : appBaseService.getTodayDate(forecastRecap.getCompany());
-      this.createForecastRecapLine(
-          realizationDate,
-          forecast.getAmount().compareTo(BigDecimal.ZERO) == -1 ? 2 : 1,
-          forecast.getAmount().abs(),
-          ForecastReason.class.getName(),
-          forecastReason.getId(),
-          forecastReason.getReason(),
-          forecastRecapLineTypeRepo.find(forecastForecastRecapLineType.getId()),
-          forecastRecapRepo.find(forecastRecap.getId()));
-      forecast.setRealizationDate(realizationDate);
-      forecastRepo.save(forecast);
-      JPA.clear();
-    }
-  }
-
-  public void populateWithForecastsNoSave(ForecastRecap forecastRecap) throws AxelorException {
-    ForecastRecapLineType forecastForecastRecapLineType =
-        this.getForecastRecapLineType(ForecastRecapLineTypeRepository.ELEMENT_FORECAST);
-    List<Forecast> forecastList = new ArrayList<Forecast>();
-    forecastList =
-        forecastRepo
-            .all()
-            .filter(
-                "self.estimatedDate < ?1 AND self.company = ?2"
-                    + (forecastRecap.getBankDetails() != null ? " AND self.bankDetails = ?3" : "")
-                    + " AND self.realizationDate IS NULL",
-                forecastRecap.getToDate(),
-                forecastRecap.getCompany(),
-                forecastRecap.getBankDetails())
-            .fetch();
-    for (Forecast forecast : forecastList) {
-      forecast = forecastRepo.find(forecast.getId());
       ForecastReason forecastReason = forecast.getForecastReason();
       LocalDate realizationDate =
-          forecast
-                  .getEstimatedDate()
-                  .isAfter(appBaseService.getTodayDate(forecastRecap.getCompany()))
-              ? forecast.getEstimatedDate()
-              : appBaseService.getTodayDate(forecastRecap.getCompany());
+          forecast.getEstimatedDate().isAfter(today) ? forecast.getEstimatedDate() : today;
       this.createForecastRecapLine(
           realizationDate,
           forecast.getAmount().compareTo(BigDecimal.ZERO) == -1 ? 2 : 1,
@@ -905,10 +969,11 @@ public class ForecastRecapService {
           ForecastReason.class.getName(),
           forecastReason.getId(),
           forecastReason.getReason(),
-          forecastRecapLineTypeRepo.find(forecastForecastRecapLineType.getId()),
-          forecastRecapRepo.find(forecastRecap.getId()));
-      JPA.clear();
+          forecastForecastRecapLineType,
+          forecastRecapLineList);
+      forecastIdList.add(forecast.getId());
     }
+    return forecastRecapLineList;
   }
 
   public void getForecasts(
@@ -953,7 +1018,9 @@ public class ForecastRecapService {
     }
   }
 
-  public void populateWithExpenses(ForecastRecap forecastRecap) throws AxelorException {
+  public List<ForecastRecapLine> populateWithExpenses(ForecastRecap forecastRecap)
+      throws AxelorException {
+    List<ForecastRecapLine> forecastRecapLineList = new ArrayList<>();
     ForecastRecapLineType expenseForecastRecapLineType =
         this.getForecastRecapLineType(ForecastRecapLineTypeRepository.ELEMENT_EXPENSE);
     List<Integer> statusList =
@@ -977,7 +1044,6 @@ public class ForecastRecapService {
             .fetch();
 
     for (Expense expense : expenseList) {
-      expense = expenseRepo.find(expense.getId());
       this.createForecastRecapLine(
           expense.getValidationDate(),
           expenseForecastRecapLineType.getTypeSelect(),
@@ -985,13 +1051,12 @@ public class ForecastRecapService {
           Expense.class.getName(),
           expense.getId(),
           expense.getExpenseSeq(),
-          forecastRecapLineTypeRepo.find(expenseForecastRecapLineType.getId()),
-          forecastRecapRepo.find(forecastRecap.getId()));
-      JPA.clear();
+          expenseForecastRecapLineType,
+          forecastRecapLineList);
     }
+    return forecastRecapLineList;
   }
 
-  @Transactional
   public void createForecastRecapLine(
       LocalDate date,
       int type,
@@ -1000,7 +1065,7 @@ public class ForecastRecapService {
       Long relatedToSelectId,
       String relatedToSelectName,
       ForecastRecapLineType forecastRecapLineType,
-      ForecastRecap forecastRecap) {
+      List<ForecastRecapLine> forecastRecapLineList) {
     ForecastRecapLine forecastRecapLine = new ForecastRecapLine();
     forecastRecapLine.setEstimatedDate(date);
     forecastRecapLine.setTypeSelect(type);
@@ -1009,43 +1074,26 @@ public class ForecastRecapService {
     forecastRecapLine.setRelatedToSelectId(relatedToSelectId);
     forecastRecapLine.setRelatedToSelectName(relatedToSelectName);
     forecastRecapLine.setForecastRecapLineType(forecastRecapLineType);
-    forecastRecap.addForecastRecapLineListItem(forecastRecapLine);
-    forecastRecapRepo.save(forecastRecap);
+    forecastRecapLineList.add(forecastRecapLine);
   }
 
-  public void computeForecastRecapLineBalance(ForecastRecap forecastRecap) {
-
-    List<ForecastRecapLine> forecastRecapLines = forecastRecap.getForecastRecapLineList();
+  /**
+   * Sort the lines by date and type, and compute their running balance from the starting balance
+   * of the forecast recap. Lines of the same date and type keep the order of their sources.
+   */
+  public void computeForecastRecapLineBalance(
+      ForecastRecap forecastRecap, List<ForecastRecapLine> forecastRecapLineList) {
 
-    Collections.sort(
-        forecastRecapLines,
-        new Comparator<ForecastRecapLine>() {
-          @Override
-          public int compare(
-              ForecastRecapLine forecastRecapLine1, ForecastRecapLine forecastRecapLine2) {
-            int compareEstimatedDate =
-                forecastRecapLine1
-                    .getEstimatedDate()
-                    .compareTo(forecastRecapLine2.getEstimatedDate());
-            int compareTypeSelect =
-                forecastRecapLine1
-                    .getForecastRecapLineType()
-                    .getSequence()
-                    .compareTo(forecastRecapLine2.getForecastRecapLineType().getSequence());
-            int compareId = forecastRecapLine1.getId().compareTo(forecastRecapLine2.getId());
-            if (compareEstimatedDate == 0) {
-              return compareTypeSelect == 0 ? compareId : compareTypeSelect;
-            }
-            return compareEstimatedDate;
-          }
-        });
+    forecastRecapLineList.sort(
+        Comparator.comparing(ForecastRecapLine::getEstimatedDate)
+            .thenComparing(
+                forecastRecapLine -> forecastRecapLine.getForecastRecapLineType().getSequence()));
 
-    for (ForecastRecapLine forecastRecapLine : forecastRecapLines) {
-      forecastRecap.setCurrentBalance(
-          forecastRecap.getCurrentBalance().add(forecastRecapLine.getAmount()));
-      forecastRecapLine.setBalance(forecastRecap.getCurrentBalance());
+    BigDecimal balance = forecastRecap.getStartingBalance();
+    for (ForecastRecapLine forecastRecapLine : forecastRecapLineList) {
+      balance = balance.add(forecastRecapLine.getAmount());
+      forecastRecapLine.setBalance(balance);
     }
-    forecastRecap.setForecastRecapLineList(forecastRecapLines);
   }
 
   public String getForecastRecapFileLink(Long forecastRecapId, String reportType)
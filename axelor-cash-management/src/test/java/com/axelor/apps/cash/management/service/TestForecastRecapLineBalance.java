@@ -0,0 +1,145 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.cash.management.service;
+
+import static org.mockito.Mockito.mock;
+
+import com.axelor.apps.account.db.repo.InvoiceRepository;
+import com.axelor.apps.base.service.CurrencyService;
+import com.axelor.apps.base.service.app.AppBaseService;
+import com.axelor.apps.cash.management.db.ForecastRecap;
+import com.axelor.apps.cash.management.db.ForecastRecapLine;
+import com.axelor.apps.cash.management.db.ForecastRecapLineType;
+import com.axelor.apps.cash.management.db.repo.ForecastRecapLineRepository;
+import com.axelor.apps.cash.management.db.repo.ForecastRecapLineTypeRepository;
+import com.axelor.apps.cash.management.db.repo.ForecastRecapRepository;
+import com.axelor.apps.cash.management.db.repo.ForecastRepository;
+import com.axelor.apps.crm.db.repo.OpportunityRepository;
+import com.axelor.apps.hr.db.repo.EmployeeRepository;
+import com.axelor.apps.hr.db.repo.ExpenseRepository;
+import com.axelor.apps.purchase.db.repo.PurchaseOrderRepository;
+import com.axelor.apps.sale.db.repo.SaleOrderRepository;
+import com.axelor.apps.supplychain.db.repo.TimetableRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestForecastRecapLineBalance {
+
+  protected ForecastRecapService forecastRecapService;
+
+  protected ForecastRecapLineType invoiceType;
+  protected ForecastRecapLineType salaryType;
+
+  @Before
+  public void prepare() {
+    forecastRecapService =
+        new ForecastRecapService(
+            mock(AppBaseService.class),
+            mock(ForecastRepository.class),
+            mock(ForecastRecapLineRepository.class),
+            mock(CurrencyService.class),
+            mock(ForecastRecapLineTypeRepository.class),
+            mock(ForecastRecapRepository.class),
+            mock(OpportunityRepository.class),
+            mock(InvoiceRepository.class),
+            mock(EmployeeRepository.class),
+            mock(SaleOrderRepository.class),
+            mock(PurchaseOrderRepository.class),
+            mock(TimetableRepository.class),
+            mock(ExpenseRepository.class));
+
+    invoiceType = new ForecastRecapLineType();
+    invoiceType.setSequence(1);
+    salaryType = new ForecastRecapLineType();
+    salaryType.setSequence(2);
+  }
+
+  @Test
+  public void testBalanceStartsFromStartingBalance() {
+    ForecastRecap forecastRecap = createForecastRecap("1000.00");
+    ForecastRecapLine firstLine = createLine(LocalDate.of(2021, 1, 10), invoiceType, "200.00");
+    ForecastRecapLine secondLine = createLine(LocalDate.of(2021, 1, 20), salaryType, "-500.00");
+    List<ForecastRecapLine> lineList = new ArrayList<>(Arrays.asList(firstLine, secondLine));
+
+    forecastRecapService.computeForecastRecapLineBalance(forecastRecap, lineList);
+
+    Assert.assertEquals(new BigDecimal("1200.00"), firstLine.getBalance());
+    Assert.assertEquals(new BigDecimal("700.00"), secondLine.getBalance());
+  }
+
+  @Test
+  public void testLinesAreSortedByDateThenType() {
+    ForecastRecap forecastRecap = createForecastRecap("0.00");
+    ForecastRecapLine lateLine = createLine(LocalDate.of(2021, 2, 1), invoiceType, "10.00");
+    ForecastRecapLine salaryLine = createLine(LocalDate.of(2021, 1, 15), salaryType, "-30.00");
+    ForecastRecapLine invoiceLine = createLine(LocalDate.of(2021, 1, 15), invoiceType, "50.00");
+    List<ForecastRecapLine> lineList =
+        new ArrayList<>(Arrays.asList(lateLine, salaryLine, invoiceLine));
+
+    forecastRecapService.computeForecastRecapLineBalance(forecastRecap, lineList);
+
+    Assert.assertEquals(Arrays.asList(invoiceLine, salaryLine, lateLine), lineList);
+    Assert.assertEquals(new BigDecimal("50.00"), invoiceLine.getBalance());
+    Assert.assertEquals(new BigDecimal("20.00"), salaryLine.getBalance());
+    Assert.assertEquals(new BigDecimal("30.00"), lateLine.getBalance());
+  }
+
+  @Test
+  public void testLinesOfSameDateAndTypeKeepSourceOrder() {
+    ForecastRecap forecastRecap = createForecastRecap("0.00");
+    ForecastRecapLine firstLine = createLine(LocalDate.of(2021, 3, 1), invoiceType, "100.00");
+    ForecastRecapLine secondLine = createLine(LocalDate.of(2021, 3, 1), invoiceType, "-40.00");
+    List<ForecastRecapLine> lineList = new ArrayList<>(Arrays.asList(firstLine, secondLine));
+
+    forecastRecapService.computeForecastRecapLineBalance(forecastRecap, lineList);
+
+    Assert.assertEquals(Arrays.asList(firstLine, secondLine), lineList);
+    Assert.assertEquals(new BigDecimal("100.00"), firstLine.getBalance());
+    Assert.assertEquals(new BigDecimal("60.00"), secondLine.getBalance());
+  }
+
+  @Test
+  public void testNoLines() {
+    List<ForecastRecapLine> lineList = new ArrayList<>();
+
+    forecastRecapService.computeForecastRecapLineBalance(createForecastRecap("500.00"), lineList);
+
+    Assert.assertTrue(lineList.isEmpty());
+  }
+
+  protected ForecastRecap createForecastRecap(String startingBalance) {
+    ForecastRecap forecastRecap = new ForecastRecap();
+    forecastRecap.setStartingBalance(new BigDecimal(startingBalance));
+    return forecastRecap;
+  }
+
+  protected ForecastRecapLine createLine(
+      LocalDate estimatedDate, ForecastRecapLineType forecastRecapLineType, String amount) {
+    ForecastRecapLine forecastRecapLine = new ForecastRecapLine();
+    forecastRecapLine.setEstimatedDate(estimatedDate);
+    forecastRecapLine.setForecastRecapLineType(forecastRecapLineType);
+    forecastRecapLine.setAmount(new BigDecimal(amount));
+    return forecastRecapLine;
+  }
+}
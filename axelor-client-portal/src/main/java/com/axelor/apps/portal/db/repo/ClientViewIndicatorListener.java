@@ -0,0 +1,58 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.portal.db.repo;
+
+import com.axelor.apps.account.db.Invoice;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.helpdesk.db.Ticket;
+import com.axelor.apps.portal.service.ClientViewIndicatorCacheService;
+import com.axelor.apps.project.db.Project;
+import com.axelor.apps.sale.db.SaleOrder;
+import com.axelor.apps.stock.db.StockMove;
+import com.axelor.inject.Beans;
+import com.axelor.team.db.TeamTask;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class ClientViewIndicatorListener {
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  private void onPostSave(Object document) {
+    Partner partner = null;
+    if (document instanceof SaleOrder) {
+      partner = ((SaleOrder) document).getClientPartner();
+    } else if (document instanceof StockMove) {
+      partner = ((StockMove) document).getPartner();
+    } else if (document instanceof Invoice) {
+      partner = ((Invoice) document).getPartner();
+    } else if (document instanceof Ticket) {
+      partner = ((Ticket) document).getCustomer();
+    } else if (document instanceof Project) {
+      partner = ((Project) document).getClientPartner();
+    } else if (document instanceof TeamTask && ((TeamTask) document).getProject() != null) {
+      partner = ((TeamTask) document).getProject().getClientPartner();
+    }
+
+    if (partner != null) {
+      Beans.get(ClientViewIndicatorCacheService.class).invalidatePartner(partner.getId());
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.portal.service;
+
+import com.axelor.auth.db.User;
+import com.google.inject.Singleton;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the client portal indicators of each user for a short time, so that loading the portal
+ * dashboard several times does not compute them again. Entries are dropped when a document of the
+ * partner of the user is saved or removed, or when the user changes.
+ */
+@Singleton
+public class ClientViewIndicatorCacheService {
+
+  protected static final long TIME_TO_LIVE_MILLIS = 60_000L;
+
+  private final Map<Long, CachedIndicators> cache = new ConcurrentHashMap<>();
+
+  /**
+   * Get the indicators of the given user, computing them only if they are not cached or expired.
+   *
+   * @param user the portal user
+   * @param loader computes the indicators of the user
+   * @return a copy of the indicators
+   */
+  public Map<String, Object> getIndicators(User user, Supplier<Map<String, Object>> loader) {
+    if (user.getId() == null) {
+      return loader.get();
+    }
+
+    List<Object> stamp = getStamp(user);
+    long now = System.currentTimeMillis();
+    CachedIndicators cachedIndicators = cache.get(user.getId());
+
+    if (cachedIndicators == null || !cachedIndicators.matches(stamp, now)) {
+      cachedIndicators =
+          new CachedIndicators(
+              stamp, getPartnerId(user), loader.get(), now + TIME_TO_LIVE_MILLIS);
+      cache.put(user.getId(), cachedIndicators);
+    }
+
+    return new HashMap<>(cachedIndicators.indicators);
+  }
+
+  /**
+   * Drop the indicators of the users linked to the given partner.
+   *
+   * @param partnerId the id of the partner of a document
+   */
+  public void invalidatePartner(Long partnerId) {
+    if (partnerId != null) {
+      cache.values().removeIf(cached -> partnerId.equals(cached.partnerId));
+    }
+  }
+
+  public void invalidate(Long userId) {
+    if (userId != null) {
+      cache.remove(userId);
+    }
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+  }
+
+  /**
+   * Get the values the indicators depend on besides the documents: any change of the user, of its
+   * partner, of its active company or of its language gives a different stamp.
+   */
+  protected List<Object> getStamp(User user) {
+    return Arrays.asList(
+        user.getVersion(),
+        getPartnerId(user),
+        user.getActiveCompany() != null ? user.getActiveCompany().getId() : null,
+        user.getLanguage());
+  }
+
+  protected Long getPartnerId(User user) {
+    return user.getPartner() != null ? user.getPartner().getId() : null;
+  }
+
+  protected static class CachedIndicators {
+
+    private final List<Object> stamp;
+    private final Long partnerId;
+    private final Map<String, Object> indicators;
+    private final long expirationTime;
+
+    protected CachedIndicators(
+        List<Object> stamp, Long partnerId, Map<String, Object> indicators, long expirationTime) {
+      this.stamp = stamp;
+      this.partnerId = partnerId;
+      this.indicators = indicators;
+      this.expirationTime = expirationTime;
+    }
+
+    protected boolean matches(List<Object> stamp, long now) {
+      return now < expirationTime && this.stamp.equals(stamp);
+    }
+  }
+}
@@ -30,6 +30,7 @@ import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.auth.db.User;
 import com.axelor.db.JpaSecurity;
+import com.axelor.db.Model;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.axelor.rpc.filter.Filter;
@@ -39,6 +40,7 @@ import com.axelor.team.db.repo.TeamTaskRepository;
 import com.google.inject.Inject;
 import java.math.BigDecimal;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -54,6 +56,8 @@ public class ClientViewServiceImpl implements ClientViewService {
   protected TeamTaskRepository teamTaskRepo;
   protected JpaSecurity security;
 
+  @Inject protected ClientViewIndicatorCacheService clientViewIndicatorCacheService;
+
   protected static final DateTimeFormatter DATE_FORMATTER =
       DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
@@ -84,8 +88,12 @@ public class ClientViewServiceImpl implements ClientViewService {
 
   @Override
   public Map<String, Object> updateClientViewIndicators() {
-    Map<String, Object> map = new HashMap<>();
     User user = getClientUser();
+    return clientViewIndicatorCacheService.getIndicators(user, () -> computeIndicators(user));
+  }
+
+  protected Map<String, Object> computeIndicators(User user) {
+    Map<String, Object> map = new HashMap<>();
     /* SaleOrder */
     map.put("$ordersInProgress", getOrdersInProgressIndicator(user));
     map.put("$myQuotation", getQuotationsIndicator(user));
@@ -115,146 +123,128 @@ public class ClientViewServiceImpl implements ClientViewService {
 
   /* SaleOrder Indicators */
   protected Integer getOrdersInProgressIndicator(User user) {
-    List<Filter> filters = getOrdersInProgressOfUser(user);
-    List<SaleOrder> saleOrderList = Filter.and(filters).build(SaleOrder.class).fetch();
-    return !saleOrderList.isEmpty() ? saleOrderList.size() : 0;
+    return count(SaleOrder.class, getOrdersInProgressOfUser(user));
   }
 
   protected Integer getQuotationsIndicator(User user) {
-    List<Filter> filters = getQuotationsOfUser(user);
-    List<SaleOrder> saleOrderList = Filter.and(filters).build(SaleOrder.class).fetch();
-    return !saleOrderList.isEmpty() ? saleOrderList.size() : 0;
+    return count(SaleOrder.class, getQuotationsOfUser(user));
   }
 
   protected String getLastOrderIndicator(User user) {
-    List<Filter> filters = getLastOrderOfUser(user);
-    SaleOrder saleOrder =
-        Filter.and(filters).build(SaleOrder.class).order("-confirmationDateTime").fetchOne();
-    if (saleOrder == null) {
-      return I18n.get(CLIENT_PORTAL_NO_DATE);
-    }
-    return saleOrder.getConfirmationDateTime() != null
-        ? saleOrder.getConfirmationDateTime().format(DATE_FORMATTER)
-        : I18n.get(CLIENT_PORTAL_NO_DATE);
+    return formatDate(
+        getFirstValue(
+            SaleOrder.class,
+            "confirmationDateTime",
+            "-confirmationDateTime",
+            getLastOrderOfUser(user)));
   }
 
   /* StockMove Indicators */
   protected String getLastDeliveryIndicator(User user) {
-    List<Filter> filters = getLastDeliveryOfUser(user);
-    StockMove stockMove = Filter.and(filters).build(StockMove.class).order("-realDate").fetchOne();
-    if (stockMove == null) {
-      return I18n.get(CLIENT_PORTAL_NO_DATE);
-    }
-    return stockMove.getRealDate() != null
-        ? stockMove.getRealDate().format(DATE_FORMATTER)
-        : I18n.get(CLIENT_PORTAL_NO_DATE);
+    return formatDate(
+        getFirstValue(StockMove.class, "realDate", "-realDate", getLastDeliveryOfUser(user)));
   }
 
   protected String getNextDeliveryIndicator(User user) {
-    List<Filter> filters = getNextDeliveryOfUser(user);
-    StockMove stockMove =
-        Filter.and(filters).build(StockMove.class).order("estimatedDate").fetchOne();
-    if (stockMove == null) {
-      return I18n.get(CLIENT_PORTAL_NO_DATE);
-    }
-    return stockMove.getEstimatedDate() != null
-        ? stockMove.getEstimatedDate().format(DATE_FORMATTER)
-        : I18n.get(CLIENT_PORTAL_NO_DATE);
+    return formatDate(
+        getFirstValue(
+            StockMove.class, "estimatedDate", "estimatedDate", getNextDeliveryOfUser(user)));
   }
 
   protected Integer getPlannedDeliveriesIndicator(User user) {
-    List<Filter> filters = getPlannedDeliveriesOfUser(user);
-    List<StockMove> stockMoveList = Filter.and(filters).build(StockMove.class).fetch();
-    return !stockMoveList.isEmpty() ? stockMoveList.size() : 0;
+    return count(StockMove.class, getPlannedDeliveriesOfUser(user));
   }
 
   protected Integer getReversionsIndicator(User user) {
-    List<Filter> filters = getReversionsOfUser(user);
-    List<StockMove> stockMoveList = Filter.and(filters).build(StockMove.class).fetch();
-    return !stockMoveList.isEmpty() ? stockMoveList.size() : 0;
+    return count(StockMove.class, getReversionsOfUser(user));
   }
 
   /* Invoice Indicators */
   protected Integer getOverdueInvoicesIndicator(User user) {
-    List<Filter> filters = getOverdueInvoicesOfUser(user);
-    List<Invoice> invoiceList = Filter.and(filters).build(Invoice.class).fetch();
-    return !invoiceList.isEmpty() ? invoiceList.size() : 0;
+    return count(Invoice.class, getOverdueInvoicesOfUser(user));
   }
 
   protected Integer getAwaitingInvoicesIndicator(User user) {
-    List<Filter> filters = getAwaitingInvoicesOfUser(user);
-    List<Invoice> invoiceList = Filter.and(filters).build(Invoice.class).fetch();
-    return !invoiceList.isEmpty() ? invoiceList.size() : 0;
+    return count(Invoice.class, getAwaitingInvoicesOfUser(user));
   }
 
   protected String getTotalRemainingIndicator(User user) {
     List<Filter> filters = getTotalRemainingOfUser(user);
-    List<Invoice> invoiceList = Filter.and(filters).build(Invoice.class).fetch();
-    if (!invoiceList.isEmpty()) {
-      BigDecimal total =
-          invoiceList.stream()
-              .map(Invoice::getAmountRemaining)
-              .reduce((x, y) -> x.add(y))
-              .orElse(BigDecimal.ZERO);
-      return total.toString() + invoiceList.get(0).getCurrency().getSymbol();
+    List<Map> rowList =
+        Filter.and(filters)
+            .build(Invoice.class)
+            .select("amountRemaining", "currency.symbol")
+            .fetch(0, 0);
+    if (!rowList.isEmpty()) {
+      BigDecimal total = BigDecimal.ZERO;
+      for (Map row : rowList) {
+        if (row.get("amountRemaining") != null) {
+          total = total.add((BigDecimal) row.get("amountRemaining"));
+        }
+      }
+      return total.toString() + rowList.get(0).get("currency.symbol");
     }
     return BigDecimal.ZERO.toString();
   }
 
   protected Integer getRefundIndicator(User user) {
-    List<Filter> filters = getRefundOfUser(user);
-    List<Invoice> invoiceList = Filter.and(filters).build(Invoice.class).fetch();
-    return !invoiceList.isEmpty() ? invoiceList.size() : 0;
+    return count(Invoice.class, getRefundOfUser(user));
   }
 
   /* Helpdesk Indicators */
   protected Integer getCustomerTicketsIndicator(User user) {
-    List<Filter> filters = getTicketsOfUser(user);
-    List<Ticket> ticketList = Filter.and(filters).build(Ticket.class).fetch();
-    return !ticketList.isEmpty() ? ticketList.size() : 0;
+    return count(Ticket.class, getTicketsOfUser(user));
   }
 
   protected Integer getCompanyTicketsIndicator(User user) {
-    List<Filter> filters = getCompanyTicketsOfUser(user);
-    List<Ticket> ticketList = Filter.and(filters).build(Ticket.class).fetch();
-    return !ticketList.isEmpty() ? ticketList.size() : 0;
+    return count(Ticket.class, getCompanyTicketsOfUser(user));
   }
 
   protected Integer getResolvedTicketsIndicator(User user) {
-    List<Filter> filters = getResolvedTicketsOfUser(user);
-    List<Ticket> ticketList = Filter.and(filters).build(Ticket.class).fetch();
-    return !ticketList.isEmpty() ? ticketList.size() : 0;
+    return count(Ticket.class, getResolvedTicketsOfUser(user));
   }
 
   protected Object getLateTicketsIndicator(User user) {
-    List<Filter> filters = getLateTicketsOfUser(user);
-    List<Ticket> ticketList = Filter.and(filters).build(Ticket.class).fetch();
-    return !ticketList.isEmpty() ? ticketList.size() : 0;
+    return count(Ticket.class, getLateTicketsOfUser(user));
   }
 
   /* Project Indicators */
   protected Integer getTotalProjectsIndicator(User user) {
-    List<Filter> filters = getTotalProjectsOfUser(user);
-    List<Project> projectList = Filter.and(filters).build(Project.class).fetch();
-    return !projectList.isEmpty() ? projectList.size() : 0;
+    return count(Project.class, getTotalProjectsOfUser(user));
   }
 
   protected Integer getNewTasksIndicator(User user) {
-    List<Filter> filters = getNewTasksOfUser(user);
-    List<TeamTask> teamTaskList = Filter.and(filters).build(TeamTask.class).fetch();
-    return !teamTaskList.isEmpty() ? teamTaskList.size() : 0;
+    return count(TeamTask.class, getNewTasksOfUser(user));
   }
 
   protected Integer getTasksInProgressIndicator(User user) {
-    List<Filter> filters = getTasksInProgressOfUser(user);
-    List<TeamTask> teamTaskList = Filter.and(filters).build(TeamTask.class).fetch();
-    return !teamTaskList.isEmpty() ? teamTaskList.size() : 0;
+    return count(TeamTask.class, getTasksInProgressOfUser(user));
   }
 
   protected Integer getTasksDueIndicator(User user) {
-    List<Filter> filters = getTasksDueOfUser(user);
-    List<TeamTask> teamTaskList = Filter.and(filters).build(TeamTask.class).fetch();
-    return !teamTaskList.isEmpty() ? teamTaskList.size() : 0;
+    return count(TeamTask.class, getTasksDueOfUser(user));
+  }
+
+  protected Integer count(Class<? extends Model> klass, List<Filter> filters) {
+    return (int) Filter.and(filters).build(klass).count();
+  }
+
+  /**
+   * Get the value of the given field in the first record matching the filters, reading only this
+   * field.
+   */
+  protected Object getFirstValue(
+      Class<? extends Model> klass, String fieldName, String order, List<Filter> filters) {
+    List<Map> rowList =
+        Filter.and(filters).build(klass).order(order).select(fieldName).fetch(1, 0);
+    return rowList.isEmpty() ? null : rowList.get(0).get(fieldName);
+  }
+
+  protected String formatDate(Object date) {
+    if (date instanceof TemporalAccessor) {
+      return DATE_FORMATTER.format((TemporalAccessor) date);
+    }
+    return I18n.get(CLIENT_PORTAL_NO_DATE);
   }
 
   /* SaleOrder Query */
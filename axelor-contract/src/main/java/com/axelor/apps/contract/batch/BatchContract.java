@@ -21,6 +21,7 @@ import com.axelor.apps.base.service.batch.BatchStrategy;
 import com.axelor.apps.contract.db.Contract;
 import com.axelor.apps.contract.db.repo.ContractBatchRepository;
 import com.axelor.apps.contract.db.repo.ContractRepository;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.db.JPA;
 import com.axelor.db.Query;
 import com.axelor.exception.service.TraceBackService;
@@ -28,10 +29,15 @@ import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 public class BatchContract extends BatchStrategy {
 
+  protected static final int MAX_PARALLEL_CONTRACTS = 4;
+
   protected ContractRepository repository;
 
   @Inject
@@ -65,6 +71,11 @@ public class BatchContract extends BatchStrategy {
               batch.getContractBatch().getActionSelect()));
 
       Query<Contract> query = factory.prepare(batch);
+      if (factory.isParallel()) {
+        processInParallel(factory, query);
+        return;
+      }
+
       List<Contract> contracts;
 
       while (!(contracts = query.fetch(FETCH_LIMIT)).isEmpty()) {
@@ -86,6 +97,58 @@ public class BatchContract extends BatchStrategy {
     }
   }
 
+  /**
+   * Process the contracts with a pool of workers, each contract in its own transaction. Results are
+   * recorded on the batch in the order of the contracts.
+   */
+  protected void processInParallel(BatchContractFactory factory, Query<Contract> query) {
+    List<Long> contractIdList =
+        query.select("id").fetch(0, 0).stream()
+            .map(m -> (Long) m.get("id"))
+            .collect(Collectors.toList());
+    if (contractIdList.isEmpty()) {
+      return;
+    }
+
+    List<Callable<Exception>> tasks = new ArrayList<>();
+    for (Long contractId : contractIdList) {
+      tasks.add(() -> processContract(factory, contractId));
+    }
+
+    ParallelTool.run(
+        tasks,
+        MAX_PARALLEL_CONTRACTS,
+        (exception, i) -> recordResult(contractIdList, i, exception),
+        (e, i) ->
+            recordResult(
+                contractIdList, i, e instanceof Exception ? (Exception) e : new Exception(e)));
+  }
+
+  /** Process a contract from a worker thread, returning the error if any. */
+  protected Exception processContract(BatchContractFactory factory, Long contractId) {
+    try {
+      factory.process(repository.find(contractId));
+      return null;
+    } catch (Exception e) {
+      return e;
+    }
+  }
+
+  protected void recordResult(List<Long> contractIdList, int index, Exception exception) {
+    findBatch();
+    Contract contract = repository.find(contractIdList.get(index));
+    if (exception == null) {
+      incrementDone(contract);
+    } else {
+      TraceBackService.trace(exception);
+      incrementAnomaly(contract);
+    }
+
+    if ((index + 1) % FETCH_LIMIT == 0) {
+      JPA.clear();
+    }
+  }
+
   protected void incrementDone(Contract contract) {
     contract.addBatchSetItem(batch);
     super.incrementDone();
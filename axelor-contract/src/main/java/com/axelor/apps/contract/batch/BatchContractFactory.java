@@ -42,4 +42,9 @@ abstract class BatchContractFactory {
   abstract Query<Contract> prepare(Batch batch);
 
   abstract void process(Contract contract) throws AxelorException;
+
+  /** Whether contracts can be processed at the same time, each one in its own transaction. */
+  boolean isParallel() {
+    return false;
+  }
 }
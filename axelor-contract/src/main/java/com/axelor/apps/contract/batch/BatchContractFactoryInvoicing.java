@@ -56,4 +56,9 @@ public class BatchContractFactoryInvoicing extends BatchContractFactory {
   public void process(Contract contract) throws AxelorException {
     service.invoicingContract(contract);
   }
+
+  @Override
+  boolean isParallel() {
+    return true;
+  }
 }
@@ -35,4 +35,8 @@ public interface IExceptionMessage {
       "There is no contract associated with this version." /*)*/;
   String CONTRACT_MISSING_FIRST_PERIOD = /*$$(*/
       "Please fill the first period end date and the invoice frequency." /*)*/;
+  String CONSUMPTION_RECORD_INCOMPLETE = /*$$(*/
+      "A consumption record must have a contract, a product, a date and a quantity." /*)*/;
+  String CONTRACT_CONSUMPTION_ALREADY_INVOICED = /*$$(*/
+      "Some consumptions of this contract have already been invoiced, please try again." /*)*/;
 }
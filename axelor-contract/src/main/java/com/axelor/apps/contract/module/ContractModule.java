@@ -22,6 +22,8 @@ import com.axelor.apps.contract.db.repo.AbstractContractRepository;
 import com.axelor.apps.contract.db.repo.ContractBatchContractRepository;
 import com.axelor.apps.contract.db.repo.ContractBatchRepository;
 import com.axelor.apps.contract.db.repo.ContractRepository;
+import com.axelor.apps.contract.service.ConsumptionLineRollupService;
+import com.axelor.apps.contract.service.ConsumptionLineRollupServiceImpl;
 import com.axelor.apps.contract.service.ConsumptionLineService;
 import com.axelor.apps.contract.service.ConsumptionLineServiceImpl;
 import com.axelor.apps.contract.service.ContractLineService;
@@ -40,6 +42,7 @@ public class ContractModule extends AxelorModule {
     bind(ContractVersionService.class).to(ContractVersionServiceImpl.class);
     bind(ContractLineService.class).to(ContractLineServiceImpl.class);
     bind(ConsumptionLineService.class).to(ConsumptionLineServiceImpl.class);
+    bind(ConsumptionLineRollupService.class).to(ConsumptionLineRollupServiceImpl.class);
     bind(ContractBatchRepository.class).to(ContractBatchContractRepository.class);
   }
 }
@@ -0,0 +1,34 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.contract.service;
+
+import com.axelor.exception.AxelorException;
+
+public interface ConsumptionLineRollupService {
+
+  /**
+   * Aggregate usage records per contract, product, reference, unit and day, and append the totals
+   * to the consumption rollups. Records are read once and saved by chunks, so the records can be
+   * streamed from a file or a queue.
+   *
+   * @param records usage records to ingest.
+   * @return the number of ingested records.
+   * @throws AxelorException if a record misses its contract, product, date or quantity.
+   */
+  int ingest(Iterable<ConsumptionRecord> records) throws AxelorException;
+}
@@ -0,0 +1,130 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.contract.service;
+
+import com.axelor.apps.base.db.Product;
+import com.axelor.apps.base.db.Unit;
+import com.axelor.apps.contract.db.ConsumptionLineRollup;
+import com.axelor.apps.contract.db.Contract;
+import com.axelor.apps.contract.exception.IExceptionMessage;
+import com.axelor.db.JPA;
+import com.axelor.exception.AxelorException;
+import com.axelor.exception.db.repo.TraceBackRepository;
+import com.axelor.i18n.I18n;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+
+@Singleton
+public class ConsumptionLineRollupServiceImpl implements ConsumptionLineRollupService {
+
+  /** Number of records aggregated in memory before the rollups are saved. */
+  protected static final int INGEST_CHUNK_SIZE = 1000;
+
+  @Override
+  public int ingest(Iterable<ConsumptionRecord> records) throws AxelorException {
+    Map<List<Object>, ConsumptionLineRollup> rollupMap = new LinkedHashMap<>();
+    Map<Long, Object[]> productMap = new HashMap<>();
+    int count = 0;
+
+    for (ConsumptionRecord record : records) {
+      if (record.getContractId() == null
+          || record.getProductId() == null
+          || record.getDate() == null
+          || record.getQty() == null) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_MISSING_FIELD,
+            I18n.get(IExceptionMessage.CONSUMPTION_RECORD_INCOMPLETE));
+      }
+
+      Object[] product =
+          productMap.computeIfAbsent(record.getProductId(), this::getProductNameAndUnit);
+      String reference =
+          record.getReference() != null ? record.getReference() : (String) product[0];
+      Long unitId = record.getUnitId() != null ? record.getUnitId() : (Long) product[1];
+
+      ConsumptionLineRollup rollup =
+          rollupMap.computeIfAbsent(
+              Arrays.asList(
+                  record.getContractId(),
+                  record.getProductId(),
+                  reference,
+                  unitId,
+                  record.getDate()),
+              key -> createRollup(record, reference, unitId));
+      rollup.setQty(rollup.getQty().add(record.getQty()));
+      rollup.setRecordCount(rollup.getRecordCount() + 1);
+
+      if (++count % INGEST_CHUNK_SIZE == 0) {
+        saveRollups(rollupMap.values());
+        rollupMap.clear();
+      }
+    }
+
+    if (!rollupMap.isEmpty()) {
+      saveRollups(rollupMap.values());
+    }
+
+    return count;
+  }
+
+  protected Object[] getProductNameAndUnit(Long productId) {
+    List<Object[]> rows =
+        JPA.em()
+            .createQuery(
+                "SELECT self.name, unit.id FROM Product self "
+                    + "LEFT JOIN self.unit unit "
+                    + "WHERE self.id = :productId",
+                Object[].class)
+            .setParameter("productId", productId)
+            .getResultList();
+    return rows.isEmpty() ? new Object[2] : rows.get(0);
+  }
+
+  protected ConsumptionLineRollup createRollup(
+      ConsumptionRecord record, String reference, Long unitId) {
+    EntityManager em = JPA.em();
+    ConsumptionLineRollup rollup = new ConsumptionLineRollup();
+    rollup.setContract(em.getReference(Contract.class, record.getContractId()));
+    rollup.setProduct(em.getReference(Product.class, record.getProductId()));
+    rollup.setReference(reference);
+    if (unitId != null) {
+      rollup.setUnit(em.getReference(Unit.class, unitId));
+    }
+    rollup.setPeriodDate(record.getDate());
+    rollup.setQty(BigDecimal.ZERO);
+    rollup.setRecordCount(0);
+    return rollup;
+  }
+
+  /** Rollups are only appended, so concurrent ingestions never update the same row. */
+  @Transactional
+  protected void saveRollups(Collection<ConsumptionLineRollup> rollups) {
+    EntityManager em = JPA.em();
+    rollups.forEach(em::persist);
+    em.flush();
+    em.clear();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.contract.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/** A usage record sent to {@link ConsumptionLineRollupService#ingest(Iterable)}. */
+public class ConsumptionRecord {
+
+  private Long contractId;
+  private Long productId;
+  private String reference;
+  private Long unitId;
+  private LocalDate date;
+  private BigDecimal qty;
+
+  public ConsumptionRecord(Long contractId, Long productId, LocalDate date, BigDecimal qty) {
+    this.contractId = contractId;
+    this.productId = productId;
+    this.date = date;
+    this.qty = qty;
+  }
+
+  public Long getContractId() {
+    return contractId;
+  }
+
+  public Long getProductId() {
+    return productId;
+  }
+
+  /** Reference of the consumption contract line, the product name when empty. */
+  public String getReference() {
+    return reference;
+  }
+
+  public void setReference(String reference) {
+    this.reference = reference;
+  }
+
+  /** Unit of the quantity, the product unit when empty. */
+  public Long getUnitId() {
+    return unitId;
+  }
+
+  public void setUnitId(Long unitId) {
+    this.unitId = unitId;
+  }
+
+  public LocalDate getDate() {
+    return date;
+  }
+
+  public BigDecimal getQty() {
+    return qty;
+  }
+}
@@ -157,6 +157,16 @@ public interface ContractService {
    */
   Multimap<ContractLine, ConsumptionLine> mergeConsumptionLines(Contract contract);
 
+  /**
+   * Sum the ingested consumptions of the contract per product, reference and day, and add them to
+   * the associated consumption contract lines. Consumptions without contract line are flagged in
+   * error.
+   *
+   * @param contract contain consumption contract lines.
+   * @return Multimap of the ids of the ingested consumptions merged per contract line.
+   */
+  Multimap<ContractLine, Long> mergeConsumptionRollups(Contract contract);
+
   default List<ContractVersion> getVersions(Contract contract) {
     List<ContractVersion> versions = contract.getVersionHistory();
     if (versions == null) {
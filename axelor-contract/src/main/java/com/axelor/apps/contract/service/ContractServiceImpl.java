@@ -32,6 +32,7 @@ import com.axelor.apps.account.service.invoice.InvoiceService;
 import com.axelor.apps.account.service.invoice.InvoiceServiceImpl;
 import com.axelor.apps.account.service.invoice.generator.InvoiceGenerator;
 import com.axelor.apps.account.service.invoice.generator.InvoiceLineGenerator;
+import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.repo.PriceListLineRepository;
 import com.axelor.apps.base.db.repo.PriceListRepository;
 import com.axelor.apps.base.service.DurationService;
@@ -50,11 +51,14 @@ import com.axelor.apps.contract.exception.IExceptionMessage;
 import com.axelor.apps.contract.generator.InvoiceGeneratorContract;
 import com.axelor.apps.tool.date.DateTool;
 import com.axelor.auth.AuthUtils;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -63,12 +67,19 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.persistence.TypedQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -442,14 +453,20 @@ public class ContractServiceImpl extends ContractRepository implements ContractS
       }
     }
 
-    // Compute all consumption lines
+    // Compute all consumption lines and ingested consumptions
     Multimap<ContractLine, ConsumptionLine> consLines = mergeConsumptionLines(contract);
-    for (Entry<ContractLine, Collection<ConsumptionLine>> entries : consLines.asMap().entrySet()) {
-      ContractLine line = entries.getKey();
+    Multimap<ContractLine, Long> rollupIds = mergeConsumptionRollups(contract);
+    Set<ContractLine> consumedLines = new LinkedHashSet<>(consLines.keySet());
+    consumedLines.addAll(rollupIds.keySet());
+    Map<ContractLine, InvoiceLine> rollupInvoiceLines = new HashMap<>();
+    for (ContractLine line : consumedLines) {
       InvoiceLine invoiceLine = generate(invoice, line);
-      entries.getValue().stream()
+      consLines.get(line).stream()
           .peek(cons -> cons.setInvoiceLine(invoiceLine))
           .forEach(cons -> cons.setIsInvoiced(true));
+      if (rollupIds.containsKey(line)) {
+        rollupInvoiceLines.put(line, invoiceLine);
+      }
       line.setQty(BigDecimal.ZERO);
       contractLineService.computeTotal(line);
     }
@@ -462,7 +479,16 @@ public class ContractServiceImpl extends ContractRepository implements ContractS
     // Increase invoice period date
     increaseInvoiceDates(contract);
 
-    return invoiceRepository.save(invoice);
+    invoice = invoiceRepository.save(invoice);
+
+    if (!rollupInvoiceLines.isEmpty()) {
+      JPA.flush();
+      for (Entry<ContractLine, InvoiceLine> entry : rollupInvoiceLines.entrySet()) {
+        setConsumptionRollupsInvoiced(rollupIds.get(entry.getKey()), entry.getValue());
+      }
+    }
+
+    return invoice;
   }
 
   public Invoice generateInvoice(Contract contract) throws AxelorException {
@@ -512,6 +538,96 @@ public class ContractServiceImpl extends ContractRepository implements ContractS
     return mergedLines;
   }
 
+  @Override
+  public Multimap<ContractLine, Long> mergeConsumptionRollups(Contract contract) {
+    Multimap<ContractLine, Long> mergedIds = HashMultimap.create();
+    boolean isConsumptionBeforeEndDate =
+        contract.getCurrentContractVersion().getIsConsumptionBeforeEndDate();
+
+    // Rollups are summed in memory from the exact rows read here: rows ingested concurrently
+    // are not part of this selection and are left for the next invoice.
+    TypedQuery<Object[]> query =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, self.product.id, self.reference, self.periodDate, self.qty "
+                    + "FROM ConsumptionLineRollup self "
+                    + "WHERE self.contract = :contract "
+                    + "AND self.isInvoiced = FALSE "
+                    + (isConsumptionBeforeEndDate ? "AND self.periodDate < :endDate " : "")
+                    + "ORDER BY self.id",
+                Object[].class)
+            .setParameter("contract", contract);
+    if (isConsumptionBeforeEndDate) {
+      query.setParameter("endDate", contract.getInvoicePeriodEndDate());
+    }
+
+    Map<List<Object>, BigDecimal> qtyMap = new LinkedHashMap<>();
+    Multimap<List<Object>, Long> idMap = ArrayListMultimap.create();
+    for (Object[] row : query.getResultList()) {
+      List<Object> key = Arrays.asList(row[1], row[2], row[3]);
+      qtyMap.merge(key, (BigDecimal) row[4], BigDecimal::add);
+      idMap.put(key, (Long) row[0]);
+    }
+
+    for (Entry<List<Object>, BigDecimal> entry : qtyMap.entrySet()) {
+      Product product = JPA.em().getReference(Product.class, (Long) entry.getKey().get(0));
+      String reference = (String) entry.getKey().get(1);
+      LocalDate date = (LocalDate) entry.getKey().get(2);
+      Collection<Long> ids = idMap.get(entry.getKey());
+
+      ContractVersion version = contract.getCurrentContractVersion();
+      if (isFullProrated(contract)) {
+        version = versionService.getContractVersion(contract, date);
+      }
+
+      ContractLine matchLine =
+          version != null ? contractLineRepo.findOneBy(version, product, reference, true) : null;
+      if (matchLine == null) {
+        setConsumptionRollupsInError(ids);
+      } else {
+        matchLine.setQty(matchLine.getQty().add(entry.getValue()));
+        contractLineService.computeTotal(matchLine);
+        mergedIds.putAll(matchLine, ids);
+      }
+    }
+
+    return mergedIds;
+  }
+
+  protected void setConsumptionRollupsInError(Collection<Long> ids) {
+    for (List<Long> idList : Lists.partition(new ArrayList<>(ids), 1000)) {
+      JPA.em()
+          .createQuery(
+              "UPDATE ConsumptionLineRollup self "
+                  + "SET self.isError = TRUE, self.version = self.version + 1 "
+                  + "WHERE self.id IN :idList AND self.isInvoiced = FALSE")
+          .setParameter("idList", idList)
+          .executeUpdate();
+    }
+  }
+
+  protected void setConsumptionRollupsInvoiced(Collection<Long> ids, InvoiceLine invoiceLine)
+      throws AxelorException {
+    for (List<Long> idList : Lists.partition(new ArrayList<>(ids), 1000)) {
+      int updated =
+          JPA.em()
+              .createQuery(
+                  "UPDATE ConsumptionLineRollup self "
+                      + "SET self.isInvoiced = TRUE, self.isError = FALSE, "
+                      + "self.invoiceLine = :invoiceLine, self.version = self.version + 1 "
+                      + "WHERE self.id IN :idList AND self.isInvoiced = FALSE")
+              .setParameter("invoiceLine", invoiceLine)
+              .setParameter("idList", idList)
+              .executeUpdate();
+      // Another invoicing of the contract already took some of these consumptions.
+      if (updated != idList.size()) {
+        throw new AxelorException(
+            TraceBackRepository.CATEGORY_INCONSISTENCY,
+            I18n.get(IExceptionMessage.CONTRACT_CONSUMPTION_ALREADY_INVOICED));
+      }
+    }
+  }
+
   InvoiceLineService invoiceLineService = Beans.get(InvoiceLineService.class);
 
   public InvoiceLine generate(Invoice invoice, ContractLine line) throws AxelorException {
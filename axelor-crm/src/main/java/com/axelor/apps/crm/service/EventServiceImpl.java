@@ -35,6 +35,7 @@ import com.axelor.apps.message.db.repo.EmailAddressRepository;
 import com.axelor.apps.message.service.MessageService;
 import com.axelor.apps.message.service.TemplateMessageService;
 import com.axelor.auth.db.User;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -52,9 +53,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -78,6 +83,8 @@ public class EventServiceImpl implements EventService {
 
   private static final int ITERATION_LIMIT = 1000;
 
+  protected static final int RECURRENT_EVENT_BATCH_SIZE = 100;
+
   @Inject
   public EventServiceImpl(
       EventAttendeeService eventAttendeeService,
@@ -336,56 +343,80 @@ public class EventServiceImpl implements EventService {
   @Transactional
   public void applyChangesToAll(Event event) {
 
-    Event child = eventRepo.all().filter("self.parentEvent.id = ?1", event.getId()).fetchOne();
-    Event parent = event.getParentEvent();
-    Event copyEvent = eventRepo.copy(event, false);
-    while (child != null) {
-      child.setSubject(event.getSubject());
-      child.setCalendar(event.getCalendar());
-      child.setStartDateTime(child.getStartDateTime().withHour(event.getStartDateTime().getHour()));
-      child.setStartDateTime(
-          child.getStartDateTime().withMinute(event.getStartDateTime().getMinute()));
-      child.setEndDateTime(child.getEndDateTime().withHour(event.getEndDateTime().getHour()));
-      child.setEndDateTime(child.getEndDateTime().withMinute(event.getEndDateTime().getMinute()));
-      child.setDuration(event.getDuration());
-      child.setUser(event.getUser());
-      child.setTeam(event.getTeam());
-      child.setDisponibilitySelect(event.getDisponibilitySelect());
-      child.setVisibilitySelect(event.getVisibilitySelect());
-      child.setDescription(event.getDescription());
-      child.setPartner(event.getPartner());
-      child.setContactPartner(event.getContactPartner());
-      child.setLead(event.getLead());
-      child.setTypeSelect(event.getTypeSelect());
-      child.setLocation(event.getLocation());
-      eventRepo.save(child);
-      copyEvent = child;
-      child = eventRepo.all().filter("self.parentEvent.id = ?1", copyEvent.getId()).fetchOne();
+    List<Long> recurrentEventIdList = getRecurrentEventIdList(event);
+    int count = 0;
+
+    for (Long recurrentEventId : recurrentEventIdList) {
+      Event recurrentEvent = eventRepo.find(recurrentEventId);
+      applyChanges(event, recurrentEvent);
+      eventRepo.save(recurrentEvent);
+
+      if (++count % RECURRENT_EVENT_BATCH_SIZE == 0) {
+        JPA.flush();
+        JPA.clear();
+        event = eventRepo.find(event.getId());
+      }
     }
-    while (parent != null) {
-      Event nextParent = parent.getParentEvent();
-      parent.setSubject(event.getSubject());
-      parent.setCalendar(event.getCalendar());
-      parent.setStartDateTime(
-          parent.getStartDateTime().withHour(event.getStartDateTime().getHour()));
-      parent.setStartDateTime(
-          parent.getStartDateTime().withMinute(event.getStartDateTime().getMinute()));
-      parent.setEndDateTime(parent.getEndDateTime().withHour(event.getEndDateTime().getHour()));
-      parent.setEndDateTime(parent.getEndDateTime().withMinute(event.getEndDateTime().getMinute()));
-      parent.setDuration(event.getDuration());
-      parent.setUser(event.getUser());
-      parent.setTeam(event.getTeam());
-      parent.setDisponibilitySelect(event.getDisponibilitySelect());
-      parent.setVisibilitySelect(event.getVisibilitySelect());
-      parent.setDescription(event.getDescription());
-      parent.setPartner(event.getPartner());
-      parent.setContactPartner(event.getContactPartner());
-      parent.setLead(event.getLead());
-      parent.setTypeSelect(event.getTypeSelect());
-      parent.setLocation(event.getLocation());
-      eventRepo.save(parent);
-      parent = nextParent;
+  }
+
+  /**
+   * Get the ids of the other events of the recurrence of the given event: its parents and all the
+   * events descending from them.
+   *
+   * @param event an event
+   * @return the ids of the other events of the recurrence
+   */
+  protected List<Long> getRecurrentEventIdList(Event event) {
+    Set<Long> recurrentEventIdSet = new LinkedHashSet<>();
+
+    Event rootEvent = event;
+    while (rootEvent.getParentEvent() != null
+        && recurrentEventIdSet.add(rootEvent.getParentEvent().getId())) {
+      rootEvent = rootEvent.getParentEvent();
     }
+
+    List<Long> parentIdList = Collections.singletonList(rootEvent.getId());
+    while (!parentIdList.isEmpty()) {
+      parentIdList =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.id FROM Event self WHERE self.parentEvent.id IN (:parentIds)",
+                  Long.class)
+              .setParameter("parentIds", parentIdList)
+              .getResultList()
+              .stream()
+              .filter(recurrentEventIdSet::add)
+              .collect(Collectors.toList());
+    }
+
+    recurrentEventIdSet.remove(event.getId());
+    return new ArrayList<>(recurrentEventIdSet);
+  }
+
+  protected void applyChanges(Event event, Event recurrentEvent) {
+    recurrentEvent.setSubject(event.getSubject());
+    recurrentEvent.setCalendar(event.getCalendar());
+    recurrentEvent.setStartDateTime(
+        recurrentEvent
+            .getStartDateTime()
+            .withHour(event.getStartDateTime().getHour())
+            .withMinute(event.getStartDateTime().getMinute()));
+    recurrentEvent.setEndDateTime(
+        recurrentEvent
+            .getEndDateTime()
+            .withHour(event.getEndDateTime().getHour())
+            .withMinute(event.getEndDateTime().getMinute()));
+    recurrentEvent.setDuration(event.getDuration());
+    recurrentEvent.setUser(event.getUser());
+    recurrentEvent.setTeam(event.getTeam());
+    recurrentEvent.setDisponibilitySelect(event.getDisponibilitySelect());
+    recurrentEvent.setVisibilitySelect(event.getVisibilitySelect());
+    recurrentEvent.setDescription(event.getDescription());
+    recurrentEvent.setPartner(event.getPartner());
+    recurrentEvent.setContactPartner(event.getContactPartner());
+    recurrentEvent.setLead(event.getLead());
+    recurrentEvent.setTypeSelect(event.getTypeSelect());
+    recurrentEvent.setLocation(event.getLocation());
   }
 
   @Override
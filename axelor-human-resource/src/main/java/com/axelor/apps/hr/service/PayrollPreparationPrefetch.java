@@ -0,0 +1,88 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.hr.service;
+
+import com.axelor.apps.hr.db.EmployeeBonusMgtLine;
+import com.axelor.apps.hr.db.Expense;
+import com.axelor.apps.hr.db.ExtraHoursLine;
+import com.axelor.apps.hr.db.LeaveRequest;
+import com.axelor.apps.hr.db.LunchVoucherMgtLine;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leaves, extra hours, expenses, lunch vouchers and bonuses of several employees for one period,
+ * loaded with one query per kind of record and grouped by employee id, to fill in the payroll
+ * preparations of these employees without querying once per employee.
+ */
+public class PayrollPreparationPrefetch {
+
+  private final Map<Long, List<LeaveRequest>> leaveRequestMap = new HashMap<>();
+  private final Map<Long, List<ExtraHoursLine>> extraHoursLineMap = new HashMap<>();
+  private final Map<Long, List<Expense>> expenseMap = new HashMap<>();
+  private final Map<Long, List<LunchVoucherMgtLine>> lunchVoucherMgtLineMap = new HashMap<>();
+  private final Map<Long, List<EmployeeBonusMgtLine>> employeeBonusMgtLineMap = new HashMap<>();
+
+  protected void addLeaveRequest(Long employeeId, LeaveRequest leaveRequest) {
+    leaveRequestMap.computeIfAbsent(employeeId, key -> new ArrayList<>()).add(leaveRequest);
+  }
+
+  protected void addExtraHoursLine(Long employeeId, ExtraHoursLine extraHoursLine) {
+    extraHoursLineMap.computeIfAbsent(employeeId, key -> new ArrayList<>()).add(extraHoursLine);
+  }
+
+  protected void addExpense(Long employeeId, Expense expense) {
+    expenseMap.computeIfAbsent(employeeId, key -> new ArrayList<>()).add(expense);
+  }
+
+  protected void addLunchVoucherMgtLine(Long employeeId, LunchVoucherMgtLine lunchVoucherMgtLine) {
+    lunchVoucherMgtLineMap
+        .computeIfAbsent(employeeId, key -> new ArrayList<>())
+        .add(lunchVoucherMgtLine);
+  }
+
+  protected void addEmployeeBonusMgtLine(
+      Long employeeId, EmployeeBonusMgtLine employeeBonusMgtLine) {
+    employeeBonusMgtLineMap
+        .computeIfAbsent(employeeId, key -> new ArrayList<>())
+        .add(employeeBonusMgtLine);
+  }
+
+  public List<LeaveRequest> getLeaveRequestList(Long employeeId) {
+    return leaveRequestMap.getOrDefault(employeeId, Collections.emptyList());
+  }
+
+  public List<ExtraHoursLine> getExtraHoursLineList(Long employeeId) {
+    return extraHoursLineMap.getOrDefault(employeeId, Collections.emptyList());
+  }
+
+  public List<Expense> getExpenseList(Long employeeId) {
+    return expenseMap.getOrDefault(employeeId, Collections.emptyList());
+  }
+
+  public List<LunchVoucherMgtLine> getLunchVoucherMgtLineList(Long employeeId) {
+    return lunchVoucherMgtLineMap.getOrDefault(employeeId, Collections.emptyList());
+  }
+
+  public List<EmployeeBonusMgtLine> getEmployeeBonusMgtLineList(Long employeeId) {
+    return employeeBonusMgtLineMap.getOrDefault(employeeId, Collections.emptyList());
+  }
+}
@@ -45,6 +45,7 @@ import com.axelor.apps.hr.exception.IExceptionMessage;
 import com.axelor.apps.hr.service.config.HRConfigService;
 import com.axelor.apps.hr.service.leave.LeaveService;
 import com.axelor.apps.tool.file.CsvTool;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -60,6 +61,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -121,21 +123,156 @@ public class PayrollPreparationService {
     return payrollLeaveList;
   }
 
+  /**
+   * Fill in a new payroll preparation with the records loaded by {@link #prefetch(Period,
+   * Collection)}, without any query per employee.
+   *
+   * @param payrollPreparation a payroll preparation not saved yet
+   * @param prefetch the records of the employees of the period
+   * @return the leaves of the payroll preparation
+   * @throws AxelorException
+   */
+  public List<PayrollLeave> fillInPayrollPreparation(
+      PayrollPreparation payrollPreparation, PayrollPreparationPrefetch prefetch)
+      throws AxelorException {
+
+    Long employeeId = payrollPreparation.getEmployee().getId();
+
+    List<PayrollLeave> payrollLeaveList =
+        fillInLeaves(payrollPreparation, prefetch.getLeaveRequestList(employeeId));
+
+    payrollPreparation.setDuration(
+        this.computeWorkingDaysNumber(payrollPreparation, payrollLeaveList));
+
+    payrollPreparation.setExpenseAmount(
+        this.computeExpenseAmount(payrollPreparation, prefetch.getExpenseList(employeeId)));
+    payrollPreparation.setLunchVoucherNumber(
+        this.computeLunchVoucherNumber(
+            payrollPreparation, prefetch.getLunchVoucherMgtLineList(employeeId)));
+    payrollPreparation.setEmployeeBonusAmount(
+        computeEmployeeBonusAmount(
+            payrollPreparation, prefetch.getEmployeeBonusMgtLineList(employeeId)));
+    payrollPreparation.setExtraHoursNumber(
+        computeExtraHoursNumber(payrollPreparation, prefetch.getExtraHoursLineList(employeeId)));
+
+    return payrollLeaveList;
+  }
+
+  /**
+   * Load the validated leaves, extra hours, expenses, lunch vouchers and bonuses of the given
+   * employees for the period, which are not yet in a payroll preparation. One query is run per kind
+   * of record, whatever the number of employees.
+   *
+   * @param period a pay period
+   * @param employeeIdList ids of employees
+   * @return the records grouped by employee
+   */
+  public PayrollPreparationPrefetch prefetch(Period period, Collection<Long> employeeIdList) {
+    PayrollPreparationPrefetch prefetch = new PayrollPreparationPrefetch();
+    if (employeeIdList.isEmpty()) {
+      return prefetch;
+    }
+    LocalDate fromDate = period.getFromDate();
+    LocalDate toDate = period.getToDate();
+
+    for (Object[] row :
+        JPA.em()
+            .createQuery(
+                "SELECT self, employee.id FROM LeaveRequest self "
+                    + "JOIN self.user user JOIN user.employee employee "
+                    + "WHERE employee.id IN :employeeIdList AND self.statusSelect = :statusSelect "
+                    + "AND ((self.fromDateT BETWEEN :fromDate AND :toDate "
+                    + "OR self.toDateT BETWEEN :fromDate AND :toDate) "
+                    + "OR (:toDate BETWEEN self.fromDateT AND self.toDateT "
+                    + "OR :fromDate BETWEEN self.fromDateT AND self.toDateT))",
+                Object[].class)
+            .setParameter("employeeIdList", employeeIdList)
+            .setParameter("statusSelect", LeaveRequestRepository.STATUS_VALIDATED)
+            .setParameter("fromDate", fromDate)
+            .setParameter("toDate", toDate)
+            .getResultList()) {
+      prefetch.addLeaveRequest((Long) row[1], (LeaveRequest) row[0]);
+    }
+
+    for (Object[] row :
+        JPA.em()
+            .createQuery(
+                "SELECT self, employee.id FROM ExtraHoursLine self "
+                    + "JOIN self.user user JOIN user.employee employee "
+                    + "WHERE employee.id IN :employeeIdList AND self.extraHours.statusSelect = 3 "
+                    + "AND self.date BETWEEN :fromDate AND :toDate "
+                    + "AND self.payrollPreparation IS NULL",
+                Object[].class)
+            .setParameter("employeeIdList", employeeIdList)
+            .setParameter("fromDate", fromDate)
+            .setParameter("toDate", toDate)
+            .getResultList()) {
+      prefetch.addExtraHoursLine((Long) row[1], (ExtraHoursLine) row[0]);
+    }
+
+    for (Object[] row :
+        JPA.em()
+            .createQuery(
+                "SELECT self, employee.id FROM Expense self "
+                    + "JOIN self.user user JOIN user.employee employee "
+                    + "WHERE employee.id IN :employeeIdList AND self.statusSelect = :statusSelect "
+                    + "AND self.payrollPreparation IS NULL "
+                    + "AND self.companyCbSelect = :companyCbSelect "
+                    + "AND self.validationDate BETWEEN :fromDate AND :toDate",
+                Object[].class)
+            .setParameter("employeeIdList", employeeIdList)
+            .setParameter("statusSelect", ExpenseRepository.STATUS_VALIDATED)
+            .setParameter("companyCbSelect", ExpenseRepository.COMPANY_CB_PAYMENT_NO)
+            .setParameter("fromDate", fromDate)
+            .setParameter("toDate", toDate)
+            .getResultList()) {
+      prefetch.addExpense((Long) row[1], (Expense) row[0]);
+    }
+
+    for (LunchVoucherMgtLine lunchVoucherMgtLine :
+        JPA.em()
+            .createQuery(
+                "SELECT self FROM LunchVoucherMgtLine self "
+                    + "WHERE self.employee.id IN :employeeIdList "
+                    + "AND self.lunchVoucherMgt.statusSelect = 3 "
+                    + "AND self.payrollPreparation IS NULL "
+                    + "AND self.lunchVoucherMgt.payPeriod.id = :periodId",
+                LunchVoucherMgtLine.class)
+            .setParameter("employeeIdList", employeeIdList)
+            .setParameter("periodId", period.getId())
+            .getResultList()) {
+      prefetch.addLunchVoucherMgtLine(
+          lunchVoucherMgtLine.getEmployee().getId(), lunchVoucherMgtLine);
+    }
+
+    for (EmployeeBonusMgtLine employeeBonusMgtLine :
+        JPA.em()
+            .createQuery(
+                "SELECT self FROM EmployeeBonusMgtLine self "
+                    + "WHERE self.employee.id IN :employeeIdList "
+                    + "AND self.employeeBonusMgt.statusSelect = :statusSelect "
+                    + "AND self.payrollPreparation IS NULL "
+                    + "AND self.employeeBonusMgt.payPeriod.id = :periodId",
+                EmployeeBonusMgtLine.class)
+            .setParameter("employeeIdList", employeeIdList)
+            .setParameter("statusSelect", EmployeeBonusMgtRepository.STATUS_CALCULATED)
+            .setParameter("periodId", period.getId())
+            .getResultList()) {
+      prefetch.addEmployeeBonusMgtLine(
+          employeeBonusMgtLine.getEmployee().getId(), employeeBonusMgtLine);
+    }
+
+    return prefetch;
+  }
+
   public List<PayrollLeave> fillInLeaves(PayrollPreparation payrollPreparation)
       throws AxelorException {
 
-    List<PayrollLeave> payrollLeaveList = new ArrayList<>();
     LocalDate fromDate = payrollPreparation.getPeriod().getFromDate();
     LocalDate toDate = payrollPreparation.getPeriod().getToDate();
     Employee employee = payrollPreparation.getEmployee();
 
-    if (employee.getWeeklyPlanning() == null) {
-      throw new AxelorException(
-          payrollPreparation,
-          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-          I18n.get(IExceptionMessage.EMPLOYEE_PLANNING),
-          employee.getName());
-    }
+    checkWeeklyPlanning(payrollPreparation);
 
     List<LeaveRequest> leaveRequestList =
         leaveRequestRepo
@@ -148,6 +285,20 @@ public class PayrollPreparationService {
                 LeaveRequestRepository.STATUS_VALIDATED)
             .fetch();
 
+    return fillInLeaves(payrollPreparation, leaveRequestList);
+  }
+
+  public List<PayrollLeave> fillInLeaves(
+      PayrollPreparation payrollPreparation, List<LeaveRequest> leaveRequestList)
+      throws AxelorException {
+
+    List<PayrollLeave> payrollLeaveList = new ArrayList<>();
+    LocalDate fromDate = payrollPreparation.getPeriod().getFromDate();
+    LocalDate toDate = payrollPreparation.getPeriod().getToDate();
+    Employee employee = payrollPreparation.getEmployee();
+
+    checkWeeklyPlanning(payrollPreparation);
+
     for (LeaveRequest leaveRequest : leaveRequestList) {
 
       PayrollLeave payrollLeave = new PayrollLeave();
@@ -173,6 +324,19 @@ public class PayrollPreparationService {
     return payrollLeaveList;
   }
 
+  protected void checkWeeklyPlanning(PayrollPreparation payrollPreparation)
+      throws AxelorException {
+    Employee employee = payrollPreparation.getEmployee();
+
+    if (employee.getWeeklyPlanning() == null) {
+      throw new AxelorException(
+          payrollPreparation,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.EMPLOYEE_PLANNING),
+          employee.getName());
+    }
+  }
+
   public BigDecimal computeWorkingDaysNumber(
       PayrollPreparation payrollPreparation, List<PayrollLeave> payrollLeaveList) {
     LocalDate fromDate = payrollPreparation.getPeriod().getFromDate();
@@ -201,8 +365,7 @@ public class PayrollPreparationService {
   public BigDecimal computeExtraHoursNumber(PayrollPreparation payrollPreparation) {
     LocalDate fromDate = payrollPreparation.getPeriod().getFromDate();
     LocalDate toDate = payrollPreparation.getPeriod().getToDate();
-    BigDecimal extraHoursNumber = BigDecimal.ZERO;
-    for (ExtraHoursLine extraHoursLine :
+    List<ExtraHoursLine> extraHoursLineList =
         Beans.get(ExtraHoursLineRepository.class)
             .all()
             .filter(
@@ -211,7 +374,14 @@ public class PayrollPreparationService {
                 fromDate,
                 toDate,
                 payrollPreparation.getId())
-            .fetch()) {
+            .fetch();
+    return computeExtraHoursNumber(payrollPreparation, extraHoursLineList);
+  }
+
+  public BigDecimal computeExtraHoursNumber(
+      PayrollPreparation payrollPreparation, List<ExtraHoursLine> extraHoursLineList) {
+    BigDecimal extraHoursNumber = BigDecimal.ZERO;
+    for (ExtraHoursLine extraHoursLine : extraHoursLineList) {
       payrollPreparation.addExtraHoursLineListItem(extraHoursLine);
       extraHoursNumber = extraHoursNumber.add(extraHoursLine.getQty());
     }
@@ -219,7 +389,6 @@ public class PayrollPreparationService {
   }
 
   public BigDecimal computeExpenseAmount(PayrollPreparation payrollPreparation) {
-    BigDecimal expenseAmount = BigDecimal.ZERO;
     List<Expense> expenseList =
         Beans.get(ExpenseRepository.class)
             .all()
@@ -236,6 +405,12 @@ public class PayrollPreparationService {
                 payrollPreparation.getPeriod().getFromDate(),
                 payrollPreparation.getPeriod().getToDate())
             .fetch();
+    return computeExpenseAmount(payrollPreparation, expenseList);
+  }
+
+  public BigDecimal computeExpenseAmount(
+      PayrollPreparation payrollPreparation, List<Expense> expenseList) {
+    BigDecimal expenseAmount = BigDecimal.ZERO;
     for (Expense expense : expenseList) {
       expenseAmount = expenseAmount.add(expense.getInTaxTotal());
       payrollPreparation.addExpenseListItem(expense);
@@ -244,7 +419,6 @@ public class PayrollPreparationService {
   }
 
   public BigDecimal computeLunchVoucherNumber(PayrollPreparation payrollPreparation) {
-    BigDecimal lunchVoucherNumber = BigDecimal.ZERO;
     List<LunchVoucherMgtLine> lunchVoucherList =
         Beans.get(LunchVoucherMgtLineRepository.class)
             .all()
@@ -254,6 +428,12 @@ public class PayrollPreparationService {
                 payrollPreparation.getId(),
                 payrollPreparation.getPeriod())
             .fetch();
+    return computeLunchVoucherNumber(payrollPreparation, lunchVoucherList);
+  }
+
+  public BigDecimal computeLunchVoucherNumber(
+      PayrollPreparation payrollPreparation, List<LunchVoucherMgtLine> lunchVoucherList) {
+    BigDecimal lunchVoucherNumber = BigDecimal.ZERO;
     for (LunchVoucherMgtLine lunchVoucherMgtLine : lunchVoucherList) {
       lunchVoucherNumber =
           lunchVoucherNumber.add(new BigDecimal(lunchVoucherMgtLine.getLunchVoucherNumber()));
@@ -265,7 +445,6 @@ public class PayrollPreparationService {
   }
 
   public BigDecimal computeEmployeeBonusAmount(PayrollPreparation payrollPreparation) {
-    BigDecimal employeeBonusAmount = BigDecimal.ZERO;
     List<EmployeeBonusMgtLine> employeeBonusList =
         Beans.get(EmployeeBonusMgtLineRepository.class)
             .all()
@@ -280,6 +459,12 @@ public class PayrollPreparationService {
                 payrollPreparation.getPeriod(),
                 EmployeeBonusMgtRepository.STATUS_CALCULATED)
             .fetch();
+    return computeEmployeeBonusAmount(payrollPreparation, employeeBonusList);
+  }
+
+  public BigDecimal computeEmployeeBonusAmount(
+      PayrollPreparation payrollPreparation, List<EmployeeBonusMgtLine> employeeBonusList) {
+    BigDecimal employeeBonusAmount = BigDecimal.ZERO;
     for (EmployeeBonusMgtLine employeeBonusMgtLine : employeeBonusList) {
       payrollPreparation.addEmployeeBonusMgtLineListItem(employeeBonusMgtLine);
       employeeBonusAmount = employeeBonusAmount.add(employeeBonusMgtLine.getAmount());
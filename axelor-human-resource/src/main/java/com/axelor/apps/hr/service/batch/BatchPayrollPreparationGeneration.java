@@ -17,6 +17,7 @@
  */
 package com.axelor.apps.hr.service.batch;
 
+import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.Company;
 import com.axelor.apps.base.db.Period;
 import com.axelor.apps.base.db.repo.CompanyRepository;
@@ -28,7 +29,9 @@ import com.axelor.apps.hr.db.repo.EmploymentContractRepository;
 import com.axelor.apps.hr.db.repo.HrBatchRepository;
 import com.axelor.apps.hr.db.repo.PayrollPreparationRepository;
 import com.axelor.apps.hr.exception.IExceptionMessage;
+import com.axelor.apps.hr.service.PayrollPreparationPrefetch;
 import com.axelor.apps.hr.service.PayrollPreparationService;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.ExceptionOriginRepository;
@@ -39,9 +42,16 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
-import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import javax.persistence.TypedQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +59,10 @@ public class BatchPayrollPreparationGeneration extends BatchStrategy {
 
   protected final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  protected static final int CHUNK_SIZE = 50;
+
+  protected static final int MAX_PARALLEL_CHUNKS = 4;
+
   protected int duplicateAnomaly;
   protected int configurationAnomaly;
   protected int total;
@@ -136,69 +150,172 @@ public class BatchPayrollPreparationGeneration extends BatchStrategy {
 
   public void generatePayrollPreparations(List<Employee> employeeList) {
 
-    for (Employee employee : employeeList) {
-      try {
-        employee = employeeRepository.find(employee.getId());
-        hrBatch = hrBatchRepository.find(batch.getHrBatch().getId());
-        if (hrBatch.getCompany() != null) {
-          company = companyRepository.find(hrBatch.getCompany().getId());
-        }
-        if (employee.getMainEmploymentContract() != null
-            && employee.getMainEmploymentContract().getStatus()
-                != EmploymentContractRepository.STATUS_CLOSED) {
-          createPayrollPreparation(employee);
+    List<Long> employeeIdList =
+        employeeList.stream().map(Employee::getId).collect(Collectors.toList());
+    Long periodId = hrBatch.getPeriod().getId();
+    Long companyId = company != null ? company.getId() : null;
+    JPA.clear();
+
+    List<Callable<Map<Long, Exception>>> tasks = new ArrayList<>();
+    for (List<Long> chunk : Lists.partition(employeeIdList, CHUNK_SIZE)) {
+      tasks.add(() -> generatePayrollPreparationChunk(chunk, periodId, companyId));
+    }
+
+    try {
+      ParallelTool.run(
+          tasks,
+          MAX_PARALLEL_CHUNKS,
+          (resultMap, i) -> resultMap.values().forEach(this::processResult),
+          (e, i) -> {
+            TraceBackService.trace(e, ExceptionOriginRepository.LEAVE_MANAGEMENT, batch.getId());
+            incrementAnomaly();
+          });
+    } finally {
+      total += employeeIdList.size();
+    }
+  }
+
+  protected void processResult(Exception exception) {
+    if (exception == null) {
+      incrementDone();
+      return;
+    }
+    TraceBackService.trace(exception, ExceptionOriginRepository.LEAVE_MANAGEMENT, batch.getId());
+    incrementAnomaly();
+    if (exception instanceof AxelorException) {
+      int category = ((AxelorException) exception).getCategory();
+      if (category == TraceBackRepository.CATEGORY_NO_UNIQUE_KEY) {
+        duplicateAnomaly++;
+      } else if (category == TraceBackRepository.CATEGORY_CONFIGURATION_ERROR) {
+        configurationAnomaly++;
+      }
+    }
+  }
+
+  /**
+   * Build the payroll preparations of a chunk of employees from a worker thread, with the records
+   * of the whole chunk loaded at once, then save them in a single transaction.
+   *
+   * @return for each employee with an open employment contract, the error raised while generating
+   *     its payroll preparation, or null if it has been generated
+   */
+  protected Map<Long, Exception> generatePayrollPreparationChunk(
+      List<Long> employeeIdList, Long periodId, Long companyId) {
+
+    Map<Long, Exception> resultMap = new LinkedHashMap<>();
+    try {
+      Period period = periodRepository.find(periodId);
+      Company currentCompany = companyId != null ? companyRepository.find(companyId) : null;
+
+      List<Employee> employeeList =
+          JPA.em()
+              .createQuery("SELECT self FROM Employee self WHERE self.id IN :ids", Employee.class)
+              .setParameter("ids", employeeIdList)
+              .getResultList()
+              .stream()
+              .filter(
+                  employee ->
+                      employee.getMainEmploymentContract() != null
+                          && employee.getMainEmploymentContract().getStatus()
+                              != EmploymentContractRepository.STATUS_CLOSED)
+              .collect(Collectors.toList());
+
+      if (employeeList.isEmpty()) {
+        return resultMap;
+      }
+
+      Set<Long> generatedEmployeeIdSet =
+          getGeneratedEmployeeIds(
+              period,
+              currentCompany,
+              employeeList.stream().map(Employee::getId).collect(Collectors.toList()));
+      PayrollPreparationPrefetch prefetch =
+          payrollPreparationService.prefetch(
+              period,
+              employeeList.stream()
+                  .map(Employee::getId)
+                  .filter(id -> !generatedEmployeeIdSet.contains(id))
+                  .collect(Collectors.toList()));
+
+      List<PayrollPreparation> payrollPreparationList = new ArrayList<>();
+      for (Employee employee : employeeList) {
+        try {
+          if (generatedEmployeeIdSet.contains(employee.getId())) {
+            throw new AxelorException(
+                employee,
+                TraceBackRepository.CATEGORY_NO_UNIQUE_KEY,
+                I18n.get(IExceptionMessage.PAYROLL_PREPARATION_DUPLICATE),
+                employee.getName(),
+                currentCompany != null ? currentCompany.getName() : null,
+                period.getName());
+          }
+          payrollPreparationList.add(
+              buildPayrollPreparation(employee, period, currentCompany, prefetch));
+          resultMap.put(employee.getId(), null);
+        } catch (AxelorException e) {
+          resultMap.put(employee.getId(), e);
         }
-      } catch (AxelorException e) {
-        TraceBackService.trace(e, ExceptionOriginRepository.LEAVE_MANAGEMENT, batch.getId());
-        incrementAnomaly();
-        if (e.getCategory() == TraceBackRepository.CATEGORY_NO_UNIQUE_KEY) {
-          duplicateAnomaly++;
-        } else if (e.getCategory() == TraceBackRepository.CATEGORY_CONFIGURATION_ERROR) {
-          configurationAnomaly++;
+      }
+
+      if (!payrollPreparationList.isEmpty()) {
+        try {
+          JPA.runInTransaction(() -> savePayrollPreparations(payrollPreparationList));
+        } catch (Exception e) {
+          for (PayrollPreparation payrollPreparation : payrollPreparationList) {
+            resultMap.put(payrollPreparation.getEmployee().getId(), e);
+          }
         }
-      } finally {
-        total++;
-        JPA.clear();
       }
+    } finally {
+      JPA.clear();
     }
+
+    return resultMap;
   }
 
-  @Transactional(rollbackOn = {Exception.class})
-  public void createPayrollPreparation(Employee employee) throws AxelorException {
-    String filter = "self.period = ?1 AND self.employee = ?2";
-    String companyFilter = filter + " AND self.company = ?3";
-
-    List<PayrollPreparation> payrollPreparationList =
-        payrollPreparationRepository
-            .all()
-            .filter(
-                (company != null) ? companyFilter : filter, hrBatch.getPeriod(), employee, company)
-            .fetch();
-    log.debug("list : " + payrollPreparationList);
-    if (!payrollPreparationList.isEmpty()) {
-      throw new AxelorException(
-          employee,
-          TraceBackRepository.CATEGORY_NO_UNIQUE_KEY,
-          I18n.get(IExceptionMessage.PAYROLL_PREPARATION_DUPLICATE),
-          employee.getName(),
-          (company != null) ? hrBatch.getCompany().getName() : null,
-          hrBatch.getPeriod().getName());
+  /** Get the ids of the given employees already having a payroll preparation for the period. */
+  protected Set<Long> getGeneratedEmployeeIds(
+      Period period, Company company, List<Long> employeeIdList) {
+    String query =
+        "SELECT self.employee.id FROM PayrollPreparation self "
+            + "WHERE self.period.id = :periodId AND self.employee.id IN :employeeIdList";
+    if (company != null) {
+      query += " AND self.company.id = :companyId";
     }
+    TypedQuery<Long> typedQuery =
+        JPA.em()
+            .createQuery(query, Long.class)
+            .setParameter("periodId", period.getId())
+            .setParameter("employeeIdList", employeeIdList);
+    if (company != null) {
+      typedQuery.setParameter("companyId", company.getId());
+    }
+    return new HashSet<>(typedQuery.getResultList());
+  }
+
+  protected PayrollPreparation buildPayrollPreparation(
+      Employee employee, Period period, Company company, PayrollPreparationPrefetch prefetch)
+      throws AxelorException {
     PayrollPreparation payrollPreparation = new PayrollPreparation();
     if (company != null) {
-      Company currentCompany = companyRepository.find(company.getId());
-      payrollPreparation.setCompany(currentCompany);
+      payrollPreparation.setCompany(company);
     } else {
       payrollPreparation.setCompany(employee.getMainEmploymentContract().getPayCompany());
     }
-    Period period = periodRepository.find(hrBatch.getPeriod().getId());
     payrollPreparation.setEmployee(employee);
     payrollPreparation.setEmploymentContract(employee.getMainEmploymentContract());
     payrollPreparation.setPeriod(period);
 
-    payrollPreparationService.fillInPayrollPreparation(payrollPreparation);
-    payrollPreparationRepository.save(payrollPreparation);
-    updateEmployee(employee);
+    payrollPreparationService.fillInPayrollPreparation(payrollPreparation, prefetch);
+    return payrollPreparation;
+  }
+
+  protected void savePayrollPreparations(List<PayrollPreparation> payrollPreparationList) {
+    Batch currentBatch = batchRepo.find(batch.getId());
+    for (PayrollPreparation payrollPreparation : payrollPreparationList) {
+      payrollPreparationRepository.save(payrollPreparation);
+      payrollPreparation.getEmployee().addBatchSetItem(currentBatch);
+    }
   }
 
   @Override
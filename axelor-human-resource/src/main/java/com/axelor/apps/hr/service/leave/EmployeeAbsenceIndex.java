@@ -0,0 +1,146 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.hr.service.leave;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Leaves of one user over a period, indexed by date so that checking whether a day is a leave day
+ * or finding the leaves overlapping a period does not query the database. Leaves are sorted by
+ * first day and each position keeps the latest last day of the leaves up to it, so a lookup stops
+ * as soon as no earlier leave can reach the searched period.
+ */
+public class EmployeeAbsenceIndex {
+
+  private final LocalDate fromDate;
+  private final LocalDate toDate;
+  private final AbsenceEntry[] entries;
+  private final LocalDate[] maxToDates;
+
+  public EmployeeAbsenceIndex(LocalDate fromDate, LocalDate toDate, List<AbsenceEntry> entryList) {
+    this.fromDate = fromDate;
+    this.toDate = toDate;
+    this.entries = entryList.toArray(new AbsenceEntry[0]);
+    this.maxToDates = new LocalDate[entries.length];
+
+    Arrays.sort(entries, Comparator.comparing(AbsenceEntry::getFromDate));
+    for (int i = 0; i < entries.length; i++) {
+      LocalDate entryToDate = entries[i].getToDate();
+      maxToDates[i] =
+          i > 0 && maxToDates[i - 1].isAfter(entryToDate) ? maxToDates[i - 1] : entryToDate;
+    }
+  }
+
+  public LocalDate getFromDate() {
+    return fromDate;
+  }
+
+  public LocalDate getToDate() {
+    return toDate;
+  }
+
+  public boolean covers(LocalDate date) {
+    return !date.isBefore(fromDate) && !date.isAfter(toDate);
+  }
+
+  public boolean isLeaveDay(LocalDate date) {
+    return !getLeaveIds(date, date, null).isEmpty();
+  }
+
+  public List<Long> getLeaveIds(LocalDate date) {
+    return getLeaveIds(date, date, null);
+  }
+
+  /**
+   * Get the leaves having at least one day in the given period.
+   *
+   * @param from the first day of the period
+   * @param to the last day of the period
+   * @param statusSelect the status of the leaves to get, null to get all of them
+   * @return the leave request ids, sorted by first day
+   */
+  public List<Long> getLeaveIds(LocalDate from, LocalDate to, Integer statusSelect) {
+    if (from.isBefore(fromDate) || to.isAfter(toDate)) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Period from %s to %s is not in the indexed period from %s to %s",
+              from, to, fromDate, toDate));
+    }
+
+    // number of leaves starting on or before the last day of the period
+    int low = 0;
+    int high = entries.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (entries[middle].getFromDate().isAfter(to)) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+
+    List<Long> leaveIdList = new ArrayList<>();
+    for (int i = low - 1; i >= 0 && !maxToDates[i].isBefore(from); i--) {
+      AbsenceEntry entry = entries[i];
+      if (!entry.getToDate().isBefore(from)
+          && (statusSelect == null || statusSelect.equals(entry.getStatusSelect()))) {
+        leaveIdList.add(entry.getLeaveRequestId());
+      }
+    }
+    Collections.reverse(leaveIdList);
+    return leaveIdList;
+  }
+
+  /** Days and status of a leave request. */
+  public static class AbsenceEntry {
+
+    private final Long leaveRequestId;
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final Integer statusSelect;
+
+    public AbsenceEntry(
+        Long leaveRequestId, LocalDate fromDate, LocalDate toDate, Integer statusSelect) {
+      this.leaveRequestId = leaveRequestId;
+      this.fromDate = fromDate;
+      this.toDate = toDate;
+      this.statusSelect = statusSelect;
+    }
+
+    public Long getLeaveRequestId() {
+      return leaveRequestId;
+    }
+
+    public LocalDate getFromDate() {
+      return fromDate;
+    }
+
+    public LocalDate getToDate() {
+      return toDate;
+    }
+
+    public Integer getStatusSelect() {
+      return statusSelect;
+    }
+  }
+}
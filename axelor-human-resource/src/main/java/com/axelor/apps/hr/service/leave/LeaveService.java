@@ -30,7 +30,9 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import javax.mail.MessagingException;
 
 public interface LeaveService {
@@ -123,4 +125,36 @@ public interface LeaveService {
    * @return
    */
   public List<LeaveRequest> getLeaves(User user, LocalDate date);
+
+  /**
+   * Gets the awaiting and validated leaves of the given user over the given period, loaded with
+   * one query.
+   *
+   * @param user
+   * @param fromDate the first day of the period
+   * @param toDate the last day of the period
+   * @return
+   */
+  public EmployeeAbsenceIndex getAbsenceIndex(User user, LocalDate fromDate, LocalDate toDate);
+
+  /**
+   * Gets the awaiting and validated leaves of the given users over the given period, loaded with
+   * one query.
+   *
+   * @param users
+   * @param fromDate the first day of the period
+   * @param toDate the last day of the period
+   * @return the leaves of each user, by user id
+   */
+  public Map<Long, EmployeeAbsenceIndex> getAbsenceIndexes(
+      Collection<User> users, LocalDate fromDate, LocalDate toDate);
+
+  /**
+   * Gets the leaves of the given index for the given date.
+   *
+   * @param absenceIndex
+   * @param date
+   * @return
+   */
+  public List<LeaveRequest> getLeaves(EmployeeAbsenceIndex absenceIndex, LocalDate date);
 }
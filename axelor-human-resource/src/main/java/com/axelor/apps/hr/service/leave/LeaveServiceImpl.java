@@ -36,12 +36,13 @@ import com.axelor.apps.hr.db.repo.LeaveReasonRepository;
 import com.axelor.apps.hr.db.repo.LeaveRequestRepository;
 import com.axelor.apps.hr.exception.IExceptionMessage;
 import com.axelor.apps.hr.service.config.HRConfigService;
+import com.axelor.apps.hr.service.leave.EmployeeAbsenceIndex.AbsenceEntry;
 import com.axelor.apps.hr.service.publicHoliday.PublicHolidayHrService;
 import com.axelor.apps.message.db.Message;
 import com.axelor.apps.message.service.TemplateMessageService;
 import com.axelor.auth.AuthUtils;
 import com.axelor.auth.db.User;
-import com.axelor.common.ObjectUtils;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -54,7 +55,11 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.mail.MessagingException;
 
 public class LeaveServiceImpl implements LeaveService {
@@ -902,43 +907,79 @@ public class LeaveServiceImpl implements LeaveService {
   }
 
   public boolean isLeaveDay(User user, LocalDate date) {
-    return ObjectUtils.notEmpty(getLeaves(user, date));
+    return getAbsenceIndex(user, date, date).isLeaveDay(date);
   }
 
   public List<LeaveRequest> getLeaves(User user, LocalDate date) {
+    return getLeaves(getAbsenceIndex(user, date, date), date);
+  }
+
+  public List<LeaveRequest> getLeaves(EmployeeAbsenceIndex absenceIndex, LocalDate date) {
     List<LeaveRequest> leavesList = new ArrayList<>();
-    List<LeaveRequest> leaves =
-        leaveRequestRepo
-            .all()
-            .filter("self.user = :userId AND self.statusSelect IN (:awaitingValidation,:validated)")
-            .bind("userId", user)
-            .bind("awaitingValidation", LeaveRequestRepository.STATUS_AWAITING_VALIDATION)
-            .bind("validated", LeaveRequestRepository.STATUS_VALIDATED)
-            .fetch();
-
-    if (ObjectUtils.notEmpty(leaves)) {
-      for (LeaveRequest leave : leaves) {
-        LocalDate from = leave.getFromDateT().toLocalDate();
-        LocalDate to = leave.getToDateT().toLocalDate();
-        if ((from.isBefore(date) && to.isAfter(date)) || from.isEqual(date) || to.isEqual(date)) {
-          leavesList.add(leave);
-        }
-      }
+    for (Long leaveRequestId : absenceIndex.getLeaveIds(date)) {
+      leavesList.add(leaveRequestRepo.find(leaveRequestId));
     }
     return leavesList;
   }
 
+  public EmployeeAbsenceIndex getAbsenceIndex(User user, LocalDate fromDate, LocalDate toDate) {
+    return getAbsenceIndexes(Collections.singletonList(user), fromDate, toDate).get(user.getId());
+  }
+
+  public Map<Long, EmployeeAbsenceIndex> getAbsenceIndexes(
+      Collection<User> users, LocalDate fromDate, LocalDate toDate) {
+    Map<Long, List<AbsenceEntry>> entryMap = new HashMap<>();
+    for (User user : users) {
+      entryMap.put(user.getId(), new ArrayList<>());
+    }
+
+    if (!entryMap.isEmpty()) {
+      List<Object[]> rows =
+          JPA.em()
+              .createQuery(
+                  "SELECT self.user.id, self.id, self.fromDateT, self.toDateT, self.statusSelect "
+                      + "FROM LeaveRequest self "
+                      + "WHERE self.user.id IN :userIds "
+                      + "AND self.statusSelect IN (:awaitingValidation, :validated) "
+                      + "AND self.fromDateT < :toDateT AND self.toDateT >= :fromDateT",
+                  Object[].class)
+              .setParameter("userIds", entryMap.keySet())
+              .setParameter("awaitingValidation", LeaveRequestRepository.STATUS_AWAITING_VALIDATION)
+              .setParameter("validated", LeaveRequestRepository.STATUS_VALIDATED)
+              .setParameter("fromDateT", fromDate.atStartOfDay())
+              .setParameter("toDateT", toDate.plusDays(1).atStartOfDay())
+              .getResultList();
+
+      for (Object[] row : rows) {
+        entryMap
+            .get((Long) row[0])
+            .add(
+                new AbsenceEntry(
+                    (Long) row[1],
+                    ((LocalDateTime) row[2]).toLocalDate(),
+                    ((LocalDateTime) row[3]).toLocalDate(),
+                    (Integer) row[4]));
+      }
+    }
+
+    Map<Long, EmployeeAbsenceIndex> absenceIndexMap = new HashMap<>();
+    entryMap.forEach(
+        (userId, entryList) ->
+            absenceIndexMap.put(userId, new EmployeeAbsenceIndex(fromDate, toDate, entryList)));
+    return absenceIndexMap;
+  }
+
   protected void isOverlapped(LeaveRequest leaveRequest) throws AxelorException {
-    List<LeaveRequest> leaveRequestList =
-        leaveRequestRepo
-            .all()
-            .filter(
-                "self.user = ?1 AND self.statusSelect = ?2",
-                leaveRequest.getUser(),
-                LeaveRequestRepository.STATUS_VALIDATED)
-            .fetch();
-    for (LeaveRequest leaveRequest2 : leaveRequestList) {
-      if (isOverlapped(leaveRequest, leaveRequest2)) {
+    LocalDate fromDate = leaveRequest.getFromDateT().toLocalDate();
+    LocalDate toDate = leaveRequest.getToDateT().toLocalDate();
+    if (toDate.isBefore(fromDate)) {
+      return;
+    }
+
+    EmployeeAbsenceIndex absenceIndex = getAbsenceIndex(leaveRequest.getUser(), fromDate, toDate);
+    for (Long leaveRequestId :
+        absenceIndex.getLeaveIds(fromDate, toDate, LeaveRequestRepository.STATUS_VALIDATED)) {
+      if (isOverlapped(leaveRequest, leaveRequestRepo.find(leaveRequestId))) {
         throw new AxelorException(
             leaveRequest,
             TraceBackRepository.CATEGORY_INCONSISTENCY,
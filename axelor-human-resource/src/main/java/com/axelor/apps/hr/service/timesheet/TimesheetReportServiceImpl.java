@@ -38,6 +38,7 @@ import com.axelor.apps.hr.db.repo.TimesheetRepository;
 import com.axelor.apps.hr.exception.IExceptionMessage;
 import com.axelor.apps.hr.service.app.AppHumanResourceService;
 import com.axelor.apps.hr.service.employee.EmployeeService;
+import com.axelor.apps.hr.service.leave.EmployeeAbsenceIndex;
 import com.axelor.apps.hr.service.leave.LeaveService;
 import com.axelor.apps.message.db.Message;
 import com.axelor.apps.message.db.Template;
@@ -125,6 +126,8 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
     List<User> users = getUsers(timesheetReport);
     LocalDate fromDate = timesheetReport.getFromDate();
     LocalDate toDate = timesheetReport.getToDate();
+    Map<Long, EmployeeAbsenceIndex> absenceIndexMap =
+        leaveService.getAbsenceIndexes(users, fromDate, toDate);
 
     for (User user : users) {
       Employee employee = user.getEmployee();
@@ -137,7 +140,9 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
                 employee.getWeeklyPlanning(),
                 employee.getPublicHolidayEventsPlanning());
         worksHour = getTotalWeekWorksHours(user, fromDate, toDate, publicHolidays);
-        workedHour = getTotalWeekWorkedHours(user, fromDate, toDate, publicHolidays);
+        workedHour =
+            getTotalWeekWorkedHours(
+                user, fromDate, toDate, publicHolidays, absenceIndexMap.get(user.getId()));
         if (worksHour.compareTo(workedHour) != 0) {
           userSet.add(user);
         }
@@ -183,6 +188,9 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
         extraHour = BigDecimal.ZERO;
     LocalDate fromDate = timesheetReport.getFromDate();
     LocalDate toDate = null;
+    Map<Long, EmployeeAbsenceIndex> absenceIndexMap =
+        leaveService.getAbsenceIndexes(
+            users, timesheetReport.getFromDate(), timesheetReport.getToDate());
     do {
       toDate = fromDate.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
       if (toDate.until(timesheetReport.getToDate()).getDays() < 0) {
@@ -203,7 +211,9 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
 
         worksHour = getTotalWeekWorksHours(user, fromDate, toDate, publicHolidays);
 
-        workedHour = getTotalWeekWorkedHours(user, fromDate, toDate, publicHolidays);
+        workedHour =
+            getTotalWeekWorkedHours(
+                user, fromDate, toDate, publicHolidays, absenceIndexMap.get(user.getId()));
         if (worksHour.compareTo(workedHour) == 1) {
           missingHour = worksHour.subtract(workedHour);
         } else if (worksHour.compareTo(workedHour) == -1) {
@@ -288,9 +298,13 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
             .collect(Collectors.toList());
 
     List<User> users = getUsers(timesheetReport);
+    Map<Long, EmployeeAbsenceIndex> absenceIndexMap =
+        leaveService.getAbsenceIndexes(
+            users, timesheetReport.getFromDate(), timesheetReport.getToDate());
 
     for (User user : users) {
       Employee employee = user.getEmployee();
+      EmployeeAbsenceIndex absenceIndex = absenceIndexMap.get(user.getId());
       BigDecimal dailyWorkingHours = employee.getDailyWorkHours();
       WeeklyPlanning weeklyPlanning = employee.getWeeklyPlanning();
 
@@ -321,7 +335,7 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
                       .multiply(BigDecimal.valueOf(daysInWeek / 5.00))
                       .setScale(2, RoundingMode.HALF_UP)
                   : employee.getWeeklyWorkHours();
-          Map<String, Object> map = getTimesheetMap(user, date, dailyWorkingHours);
+          Map<String, Object> map = getTimesheetMap(user, date, dailyWorkingHours, absenceIndex);
           map.put("weeklyWorkHours", weeklyWorkHours);
           map.put("weekNumber", weekNumber.toString());
           list.add(map);
@@ -334,7 +348,8 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
   }
 
   private Map<String, Object> getTimesheetMap(
-      User user, LocalDate date, BigDecimal dailyWorkingHours) throws AxelorException {
+      User user, LocalDate date, BigDecimal dailyWorkingHours, EmployeeAbsenceIndex absenceIndex)
+      throws AxelorException {
     Employee employee = user.getEmployee();
     BigDecimal worksHour = BigDecimal.ZERO, workedHour = BigDecimal.ZERO;
 
@@ -343,7 +358,8 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
     worksHour = getTotalWorksHours(user, date, isPublicHoliday, dailyWorkingHours);
 
     try {
-      workedHour = getTotalWorkedHours(user, date, isPublicHoliday, dailyWorkingHours);
+      workedHour =
+          getTotalWorkedHours(user, date, isPublicHoliday, dailyWorkingHours, absenceIndex);
     } catch (Exception e) {
       System.out.println(e);
     }
@@ -412,7 +428,11 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
   }
 
   private BigDecimal getTotalWorkedHours(
-      User user, LocalDate date, boolean isPublicHoliday, BigDecimal dailyWorkingHours)
+      User user,
+      LocalDate date,
+      boolean isPublicHoliday,
+      BigDecimal dailyWorkingHours,
+      EmployeeAbsenceIndex absenceIndex)
       throws AxelorException {
     BigDecimal totalHours = BigDecimal.ZERO;
 
@@ -436,14 +456,18 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
     if (isPublicHoliday) {
       totalHours = totalHours.add(dailyWorkingHours);
     } else {
-      totalHours = totalHours.add(getLeaveHours(user, date, dailyWorkingHours));
+      totalHours = totalHours.add(getLeaveHours(user, date, dailyWorkingHours, absenceIndex));
     }
 
     return totalHours.setScale(2, RoundingMode.HALF_UP);
   }
 
   private BigDecimal getTotalWeekWorkedHours(
-      User user, LocalDate fromDate, LocalDate toDate, BigDecimal publicHolidays)
+      User user,
+      LocalDate fromDate,
+      LocalDate toDate,
+      BigDecimal publicHolidays,
+      EmployeeAbsenceIndex absenceIndex)
       throws AxelorException {
     BigDecimal totalHours = BigDecimal.ZERO;
     Employee employee = user.getEmployee();
@@ -467,14 +491,19 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
             .setScale(2, RoundingMode.HALF_UP);
     totalHours = totalHours.add(publicHolidays.multiply(employee.getDailyWorkHours()));
     totalHours =
-        totalHours.add(getWeekLeaveHours(user, fromDate, toDate, employee.getDailyWorkHours()));
+        totalHours.add(
+            getWeekLeaveHours(user, fromDate, toDate, employee.getDailyWorkHours(), absenceIndex));
 
     return totalHours.setScale(2, RoundingMode.HALF_UP);
   }
 
-  private BigDecimal getLeaveHours(User user, LocalDate date, BigDecimal dailyWorkingHours)
+  private BigDecimal getLeaveHours(
+      User user, LocalDate date, BigDecimal dailyWorkingHours, EmployeeAbsenceIndex absenceIndex)
       throws AxelorException {
-    List<LeaveRequest> leavesList = leaveService.getLeaves(user, date);
+    List<LeaveRequest> leavesList =
+        absenceIndex != null && absenceIndex.covers(date)
+            ? leaveService.getLeaves(absenceIndex, date)
+            : leaveService.getLeaves(user, date);
     BigDecimal totalLeaveHours = BigDecimal.ZERO;
     for (LeaveRequest leave : leavesList) {
       BigDecimal leaveHours = leaveService.computeDuration(leave, date, date);
@@ -487,7 +516,11 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
   }
 
   private BigDecimal getWeekLeaveHours(
-      User user, LocalDate fromDate, LocalDate toDate, BigDecimal dailyWorkingHours)
+      User user,
+      LocalDate fromDate,
+      LocalDate toDate,
+      BigDecimal dailyWorkingHours,
+      EmployeeAbsenceIndex absenceIndex)
       throws AxelorException {
     BigDecimal leaveHours = BigDecimal.ZERO;
     do {
@@ -496,7 +529,8 @@ public class TimesheetReportServiceImpl implements TimesheetReportService {
           publicHolidayService.checkPublicHolidayDay(
               fromDate, user.getEmployee().getPublicHolidayEventsPlanning());
       if (!isPublicHoliday) {
-        leaveHours = leaveHours.add(getLeaveHours(user, fromDate, dailyWorkingHours));
+        leaveHours =
+            leaveHours.add(getLeaveHours(user, fromDate, dailyWorkingHours, absenceIndex));
       }
       fromDate = fromDate.plusDays(1);
     } while (fromDate.until(toDate).getDays() > -1);
@@ -51,6 +51,7 @@ import com.axelor.apps.hr.db.repo.TimesheetRepository;
 import com.axelor.apps.hr.exception.IExceptionMessage;
 import com.axelor.apps.hr.service.app.AppHumanResourceService;
 import com.axelor.apps.hr.service.config.HRConfigService;
+import com.axelor.apps.hr.service.leave.EmployeeAbsenceIndex;
 import com.axelor.apps.hr.service.leave.LeaveService;
 import com.axelor.apps.hr.service.publicHoliday.PublicHolidayHrService;
 import com.axelor.apps.hr.service.user.UserHrService;
@@ -205,6 +206,15 @@ public class TimesheetServiceImpl extends JpaSupport implements TimesheetService
 
     List<TimesheetLine> timesheetLines = timesheet.getTimesheetLineList();
     timesheetLines.sort(Comparator.comparing(TimesheetLine::getDate));
+    if (timesheetLines.isEmpty()) {
+      return;
+    }
+    EmployeeAbsenceIndex absenceIndex =
+        leaveService.getAbsenceIndex(
+            user,
+            timesheetLines.get(0).getDate(),
+            timesheetLines.get(timesheetLines.size() - 1).getDate());
+
     for (int i = 0; i < timesheetLines.size(); i++) {
 
       if (i + 1 < timesheetLines.size()) {
@@ -215,7 +225,7 @@ public class TimesheetServiceImpl extends JpaSupport implements TimesheetService
         while (ChronoUnit.DAYS.between(date1, date2) > 1) {
 
           if (isWorkedDay(missingDay, correspMap, dayPlanningList)
-              && !leaveService.isLeaveDay(user, missingDay)
+              && !absenceIndex.isLeaveDay(missingDay)
               && !publicHolidayHrService.checkPublicHolidayDay(missingDay, employee)) {
             throw new AxelorException(
                 TraceBackRepository.CATEGORY_MISSING_FIELD, "Line for %s is missing.", missingDay);
@@ -407,10 +417,14 @@ public class TimesheetServiceImpl extends JpaSupport implements TimesheetService
 
     LeaveService leaveService = Beans.get(LeaveService.class);
     PublicHolidayHrService publicHolidayHrService = Beans.get(PublicHolidayHrService.class);
+    if (fromDate.isAfter(toDate)) {
+      return timesheet;
+    }
+    EmployeeAbsenceIndex absenceIndex = leaveService.getAbsenceIndex(user, fromDate, toDate);
 
     while (!fromDate.isAfter(toDate)) {
       if (isWorkedDay(fromDate, correspMap, dayPlanningList)
-          && !leaveService.isLeaveDay(user, fromDate)
+          && !absenceIndex.isLeaveDay(fromDate)
           && !publicHolidayHrService.checkPublicHolidayDay(fromDate, employee)) {
 
         TimesheetLine timesheetLine =
@@ -1164,6 +1178,9 @@ public class TimesheetServiceImpl extends JpaSupport implements TimesheetService
             ? employee.getPublicHolidayEventsPlanning()
             : config.getPublicHolidayEventsPlanning();
 
+    EmployeeAbsenceIndex absenceIndex =
+        !fromDate.isAfter(toDate) ? leaveService.getAbsenceIndex(user, fromDate, toDate) : null;
+
     for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
       BigDecimal dayValueInHours =
           weeklyPlanningService.getWorkingDayValueInHours(
@@ -1175,7 +1192,7 @@ public class TimesheetServiceImpl extends JpaSupport implements TimesheetService
             user, date, timesheet, dayValueInHours, I18n.get(IExceptionMessage.TIMESHEET_HOLIDAY));
 
       } else if (appTimesheet.getCreateLinesForLeaves()) {
-        List<LeaveRequest> leaveList = leaveService.getLeaves(user, date);
+        List<LeaveRequest> leaveList = leaveService.getLeaves(absenceIndex, date);
         BigDecimal totalLeaveHours = BigDecimal.ZERO;
         if (ObjectUtils.notEmpty(leaveList)) {
           for (LeaveRequest leave : leaveList) {
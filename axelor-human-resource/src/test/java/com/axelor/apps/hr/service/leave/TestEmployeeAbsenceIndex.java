@@ -0,0 +1,131 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.hr.service.leave;
+
+import com.axelor.apps.hr.db.repo.LeaveRequestRepository;
+import com.axelor.apps.hr.service.leave.EmployeeAbsenceIndex.AbsenceEntry;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestEmployeeAbsenceIndex {
+
+  protected EmployeeAbsenceIndex absenceIndex;
+
+  /*
+   * Leave 1 covers the whole of January, leave 2 is a short leave inside it, leave 3 is awaiting
+   * validation and overlaps the end of January and leave 4 is in March.
+   */
+  @Before
+  public void prepare() {
+    absenceIndex =
+        new EmployeeAbsenceIndex(
+            LocalDate.of(2021, 1, 1),
+            LocalDate.of(2021, 3, 31),
+            Arrays.asList(
+                new AbsenceEntry(
+                    4L,
+                    LocalDate.of(2021, 3, 10),
+                    LocalDate.of(2021, 3, 12),
+                    LeaveRequestRepository.STATUS_VALIDATED),
+                new AbsenceEntry(
+                    2L,
+                    LocalDate.of(2021, 1, 5),
+                    LocalDate.of(2021, 1, 6),
+                    LeaveRequestRepository.STATUS_VALIDATED),
+                new AbsenceEntry(
+                    1L,
+                    LocalDate.of(2021, 1, 1),
+                    LocalDate.of(2021, 1, 31),
+                    LeaveRequestRepository.STATUS_VALIDATED),
+                new AbsenceEntry(
+                    3L,
+                    LocalDate.of(2021, 1, 30),
+                    LocalDate.of(2021, 2, 2),
+                    LeaveRequestRepository.STATUS_AWAITING_VALIDATION)));
+  }
+
+  @Test
+  public void testCovers() {
+    Assert.assertTrue(absenceIndex.covers(LocalDate.of(2021, 1, 1)));
+    Assert.assertTrue(absenceIndex.covers(LocalDate.of(2021, 3, 31)));
+    Assert.assertFalse(absenceIndex.covers(LocalDate.of(2020, 12, 31)));
+    Assert.assertFalse(absenceIndex.covers(LocalDate.of(2021, 4, 1)));
+  }
+
+  @Test
+  public void testIsLeaveDay() {
+    Assert.assertTrue(absenceIndex.isLeaveDay(LocalDate.of(2021, 1, 1)));
+    Assert.assertTrue(absenceIndex.isLeaveDay(LocalDate.of(2021, 2, 2)));
+    Assert.assertTrue(absenceIndex.isLeaveDay(LocalDate.of(2021, 3, 12)));
+    Assert.assertFalse(absenceIndex.isLeaveDay(LocalDate.of(2021, 2, 3)));
+    Assert.assertFalse(absenceIndex.isLeaveDay(LocalDate.of(2021, 3, 9)));
+    Assert.assertFalse(absenceIndex.isLeaveDay(LocalDate.of(2021, 3, 31)));
+  }
+
+  @Test
+  public void testLongLeaveFoundAfterShorterOne() {
+    Assert.assertEquals(
+        Collections.singletonList(1L), absenceIndex.getLeaveIds(LocalDate.of(2021, 1, 20)));
+    Assert.assertEquals(
+        Arrays.asList(1L, 2L), absenceIndex.getLeaveIds(LocalDate.of(2021, 1, 5)));
+  }
+
+  @Test
+  public void testGetLeaveIdsOfPeriodSortedByFirstDay() {
+    Assert.assertEquals(
+        Arrays.asList(1L, 2L, 3L),
+        absenceIndex.getLeaveIds(LocalDate.of(2021, 1, 6), LocalDate.of(2021, 2, 10), null));
+    Assert.assertEquals(
+        Arrays.asList(3L, 4L),
+        absenceIndex.getLeaveIds(LocalDate.of(2021, 2, 1), LocalDate.of(2021, 3, 10), null));
+  }
+
+  @Test
+  public void testGetLeaveIdsByStatus() {
+    Assert.assertEquals(
+        Arrays.asList(1L, 2L),
+        absenceIndex.getLeaveIds(
+            LocalDate.of(2021, 1, 1),
+            LocalDate.of(2021, 2, 28),
+            LeaveRequestRepository.STATUS_VALIDATED));
+    Assert.assertEquals(
+        Collections.singletonList(3L),
+        absenceIndex.getLeaveIds(
+            LocalDate.of(2021, 1, 1),
+            LocalDate.of(2021, 2, 28),
+            LeaveRequestRepository.STATUS_AWAITING_VALIDATION));
+  }
+
+  @Test
+  public void testEmptyIndex() {
+    EmployeeAbsenceIndex emptyIndex =
+        new EmployeeAbsenceIndex(
+            LocalDate.of(2021, 1, 1), LocalDate.of(2021, 1, 31), Collections.emptyList());
+
+    Assert.assertFalse(emptyIndex.isLeaveDay(LocalDate.of(2021, 1, 15)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPeriodOutsideIndex() {
+    absenceIndex.getLeaveIds(LocalDate.of(2021, 3, 20), LocalDate.of(2021, 4, 5), null);
+  }
+}
@@ -24,6 +24,7 @@ import com.axelor.apps.message.db.Template;
 import com.axelor.apps.message.db.repo.MessageRepository;
 import com.axelor.apps.message.db.repo.TemplateRepository;
 import com.axelor.apps.message.service.MessageService;
+import com.axelor.apps.message.service.TemplateCacheService;
 import com.axelor.apps.message.service.TemplateContextService;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
@@ -40,8 +41,10 @@ public class TemplateMessageServiceMarketingImpl extends TemplateMessageServiceB
 
   @Inject
   public TemplateMessageServiceMarketingImpl(
-      MessageService messageService, TemplateContextService templateContextService) {
-    super(messageService, templateContextService);
+      MessageService messageService,
+      TemplateContextService templateContextService,
+      TemplateCacheService templateCacheService) {
+    super(messageService, templateContextService, templateCacheService);
   }
 
   @Override
@@ -0,0 +1,37 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.message.db.repo;
+
+import com.axelor.apps.message.db.Template;
+import com.axelor.apps.message.service.TemplateCacheService;
+import com.axelor.inject.Beans;
+
+public class TemplateManagementRepository extends TemplateRepository {
+
+  @Override
+  public Template save(Template template) {
+    Beans.get(TemplateCacheService.class).invalidate(template.getId());
+    return super.save(template);
+  }
+
+  @Override
+  public void remove(Template template) {
+    Beans.get(TemplateCacheService.class).invalidate(template.getId());
+    super.remove(template);
+  }
+}
@@ -20,10 +20,15 @@ package com.axelor.apps.message.job;
 import com.axelor.apps.message.db.EmailAccount;
 import com.axelor.apps.message.db.repo.EmailAccountRepository;
 import com.axelor.apps.message.service.MailAccountService;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.exception.service.TraceBackService;
 import com.google.inject.Inject;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import javax.mail.MessagingException;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
@@ -35,6 +40,8 @@ public class FetchEmailJob implements Job {
 
   private final Logger log = LoggerFactory.getLogger(FetchEmailJob.class);
 
+  private static final int MAX_PARALLEL_ACCOUNTS = 4;
+
   @Inject private MailAccountService mailAccountService;
 
   @Inject private EmailAccountRepository mailAccountRepo;
@@ -42,17 +49,42 @@ public class FetchEmailJob implements Job {
   @Override
   public void execute(JobExecutionContext context) {
 
-    List<EmailAccount> mailAccounts =
-        mailAccountRepo.all().filter("self.isValid = true and self.serverTypeSelect > 1").fetch();
-
-    log.debug("Total email fetching accounts : {}", mailAccounts.size());
-    for (EmailAccount account : mailAccounts) {
-      try {
-        Integer total = mailAccountService.fetchEmails(account, true);
-        log.debug("Email fetched for account: {}, total: {} ", account.getName(), total);
-      } catch (MessagingException | IOException e) {
-        TraceBackService.trace(e);
-      }
+    List<Long> mailAccountIds =
+        mailAccountRepo
+            .all()
+            .filter("self.isValid = true and self.serverTypeSelect > 1")
+            .fetch()
+            .stream()
+            .map(EmailAccount::getId)
+            .collect(Collectors.toList());
+
+    log.debug("Total email fetching accounts : {}", mailAccountIds.size());
+    if (mailAccountIds.isEmpty()) {
+      return;
+    }
+
+    // accounts are independent, fetch them concurrently
+    List<Callable<Object>> tasks = new ArrayList<>();
+    for (Long mailAccountId : mailAccountIds) {
+      tasks.add(Executors.callable(() -> fetchEmails(mailAccountId)));
+    }
+
+    ParallelTool.run(
+        tasks, MAX_PARALLEL_ACCOUNTS, (result, i) -> {}, (e, i) -> TraceBackService.trace(e));
+  }
+
+  protected void fetchEmails(Long mailAccountId) {
+    EmailAccount account = mailAccountRepo.find(mailAccountId);
+    try {
+      long startTime = System.currentTimeMillis();
+      Integer total = mailAccountService.fetchEmails(account, true);
+      log.debug(
+          "Email fetched for account: {}, total: {}, duration: {} ms",
+          account.getName(),
+          total,
+          System.currentTimeMillis() - startTime);
+    } catch (MessagingException | IOException e) {
+      TraceBackService.trace(e);
     }
   }
 }
@@ -20,6 +20,8 @@ package com.axelor.apps.message.module;
 import com.axelor.app.AxelorModule;
 import com.axelor.apps.message.db.repo.MessageManagementRepository;
 import com.axelor.apps.message.db.repo.MessageRepository;
+import com.axelor.apps.message.db.repo.TemplateManagementRepository;
+import com.axelor.apps.message.db.repo.TemplateRepository;
 import com.axelor.apps.message.service.MailAccountService;
 import com.axelor.apps.message.service.MailAccountServiceImpl;
 import com.axelor.apps.message.service.MailServiceMessageImpl;
@@ -37,6 +39,7 @@ public class MessageModule extends AxelorModule {
     bind(TemplateMessageService.class).to(TemplateMessageServiceImpl.class);
     bind(MessageService.class).to(MessageServiceImpl.class);
     bind(MessageRepository.class).to(MessageManagementRepository.class);
+    bind(TemplateRepository.class).to(TemplateManagementRepository.class);
     bind(MailAccountService.class).to(MailAccountServiceImpl.class);
     bind(MailServiceImpl.class).to(MailServiceMessageImpl.class);
     // needed to use event notification methods
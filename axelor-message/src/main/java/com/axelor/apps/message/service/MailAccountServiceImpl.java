@@ -26,6 +26,7 @@ import com.axelor.apps.message.db.repo.MessageRepository;
 import com.axelor.apps.message.exception.IExceptionMessage;
 import com.axelor.apps.tool.date.DateTool;
 import com.axelor.apps.tool.service.CipherService;
+import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.exception.service.TraceBackService;
@@ -42,9 +43,13 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import javax.activation.DataSource;
@@ -57,6 +62,7 @@ import javax.mail.NoSuchProviderException;
 import javax.mail.Session;
 import javax.mail.Store;
 import javax.mail.Transport;
+import javax.mail.UIDFolder;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import javax.mail.search.FlagTerm;
@@ -69,6 +75,8 @@ public class MailAccountServiceImpl implements MailAccountService {
 
   static final int CHECK_CONF_TIMEOUT = 5000;
 
+  static final int FETCH_BATCH_SIZE = 50;
+
   @Inject protected EmailAccountRepository mailAccountRepo;
 
   @Inject private CipherService cipherService;
@@ -290,6 +298,8 @@ public class MailAccountServiceImpl implements MailAccountService {
               getSecurity(mailAccount));
     }
 
+    final long startTime = System.currentTimeMillis();
+
     MailReader reader = new MailReader(account);
     final Store store = reader.getStore();
     final Folder inbox = store.getFolder("INBOX");
@@ -297,40 +307,140 @@ public class MailAccountServiceImpl implements MailAccountService {
     // open as READ_WRITE to mark messages as seen
     inbox.open(Folder.READ_WRITE);
 
+    int count = 0;
+    try {
+      Long uidValidity = null;
+      long lastUid = 0L;
+      javax.mail.Message[] messages;
+
+      if (inbox instanceof UIDFolder) {
+        UIDFolder uidFolder = (UIDFolder) inbox;
+        uidValidity = uidFolder.getUIDValidity();
+
+        // only download messages received since the last run, unless the mailbox was recreated
+        if (uidValidity.equals(mailAccount.getUidValidity())
+            && mailAccount.getLastFetchedUid() != null) {
+          lastUid = mailAccount.getLastFetchedUid();
+          messages = uidFolder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
+        } else {
+          messages = searchMessages(inbox, unseenOnly);
+        }
+      } else {
+        messages = searchMessages(inbox, unseenOnly);
+      }
+
+      final FetchProfile profile = new FetchProfile();
+      profile.add(FetchProfile.Item.ENVELOPE);
+      profile.add(FetchProfile.Item.FLAGS);
+      profile.add(UIDFolder.FetchProfileItem.UID);
+
+      // actually fetch the messages
+      inbox.fetch(messages, profile);
+      log.debug("Total emails to check: {}", messages.length);
+
+      List<javax.mail.Message> batch = new ArrayList<>();
+      long batchLastUid = lastUid;
+
+      for (javax.mail.Message message : messages) {
+        if (inbox instanceof UIDFolder) {
+          long uid = ((UIDFolder) inbox).getUID(message);
+          // a UID range always returns at least the last message of the folder
+          if (uid <= lastUid) {
+            continue;
+          }
+          batchLastUid = Math.max(batchLastUid, uid);
+        }
+        if (message instanceof MimeMessage
+            && (!unseenOnly || !message.isSet(Flags.Flag.SEEN))) {
+          batch.add(message);
+        }
+        if (batch.size() >= FETCH_BATCH_SIZE) {
+          count += createMessages(mailAccount.getId(), batch, uidValidity, batchLastUid);
+          batch.clear();
+        }
+      }
+
+      count += createMessages(mailAccount.getId(), batch, uidValidity, batchLastUid);
+
+    } finally {
+      inbox.close(false);
+      store.close();
+      saveFetchDuration(mailAccount.getId(), System.currentTimeMillis() - startTime);
+    }
+
+    log.debug(
+        "Total emails fetched: {} for account {} in {} ms",
+        count,
+        mailAccount.getName(),
+        System.currentTimeMillis() - startTime);
+
+    return count;
+  }
+
+  protected javax.mail.Message[] searchMessages(Folder inbox, boolean unseenOnly)
+      throws MessagingException {
+
     // find all unseen messages
-    final FetchProfile profile = new FetchProfile();
-    javax.mail.Message[] messages;
     if (unseenOnly) {
       final FlagTerm unseen = new FlagTerm(new Flags(Flags.Flag.SEEN), false);
-      messages = inbox.search(unseen);
-    } else {
-      messages = inbox.getMessages();
+      return inbox.search(unseen);
     }
+    return inbox.getMessages();
+  }
 
-    profile.add(FetchProfile.Item.ENVELOPE);
+  /**
+   * Create the messages of a batch of fetched emails in a single transaction and remember the last
+   * fetched UID of the account, so that the next run starts after it.
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  protected int createMessages(
+      Long mailAccountId, List<javax.mail.Message> messages, Long uidValidity, long lastUid)
+      throws MessagingException, IOException {
 
-    // actually fetch the messages
-    inbox.fetch(messages, profile);
-    log.debug("Total emails unseen: {}", messages.length);
+    EmailAccount mailAccount = mailAccountRepo.find(mailAccountId);
+    Map<String, EmailAddress> emailAddressMap = new HashMap<>();
 
     int count = 0;
     for (javax.mail.Message message : messages) {
-      if (message instanceof MimeMessage) {
-        MailParser parser = new MailParser((MimeMessage) message);
-        parser.parse();
-        createMessage(mailAccount, parser, message.getSentDate());
-        count++;
-      }
+      MailParser parser = new MailParser((MimeMessage) message);
+      parser.parse();
+      createMessage(mailAccount, parser, message.getSentDate(), emailAddressMap);
+      count++;
+    }
+
+    if (uidValidity != null) {
+      mailAccount.setUidValidity(uidValidity);
+      mailAccount.setLastFetchedUid(lastUid);
     }
+    mailAccountRepo.save(mailAccount);
 
-    log.debug("Total emails fetched: {}", count);
+    JPA.flush();
+    JPA.clear();
 
     return count;
   }
 
+  @Transactional
+  protected void saveFetchDuration(Long mailAccountId, long duration) {
+    EmailAccount mailAccount = mailAccountRepo.find(mailAccountId);
+    mailAccount.setLastFetchDateT(LocalDateTime.now());
+    mailAccount.setLastFetchDuration(duration);
+    mailAccountRepo.save(mailAccount);
+  }
+
   @Transactional(rollbackOn = {Exception.class})
   public Message createMessage(EmailAccount mailAccount, MailParser parser, Date date)
       throws MessagingException {
+    return createMessage(mailAccount, parser, date, new HashMap<>());
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected Message createMessage(
+      EmailAccount mailAccount,
+      MailParser parser,
+      Date date,
+      Map<String, EmailAddress> emailAddressMap)
+      throws MessagingException {
 
     Message message = new Message();
 
@@ -338,11 +448,11 @@ public class MailAccountServiceImpl implements MailAccountService {
     message.setTypeSelect(MessageRepository.TYPE_SENT);
     message.setMediaTypeSelect(MessageRepository.MEDIA_TYPE_EMAIL);
 
-    message.setFromEmailAddress(getEmailAddress(parser.getFrom()));
-    message.setCcEmailAddressSet(getEmailAddressSet(parser.getCc()));
-    message.setBccEmailAddressSet(getEmailAddressSet(parser.getBcc()));
-    message.setToEmailAddressSet(getEmailAddressSet(parser.getTo()));
-    message.addReplyToEmailAddressSetItem(getEmailAddress(parser.getReplyTo()));
+    message.setFromEmailAddress(getEmailAddress(parser.getFrom(), emailAddressMap));
+    message.setCcEmailAddressSet(getEmailAddressSet(parser.getCc(), emailAddressMap));
+    message.setBccEmailAddressSet(getEmailAddressSet(parser.getBcc(), emailAddressMap));
+    message.setToEmailAddressSet(getEmailAddressSet(parser.getTo(), emailAddressMap));
+    message.addReplyToEmailAddressSetItem(getEmailAddress(parser.getReplyTo(), emailAddressMap));
 
     message.setContent(parser.getHtml());
     message.setSubject(parser.getSubject());
@@ -356,19 +466,23 @@ public class MailAccountServiceImpl implements MailAccountService {
     return message;
   }
 
-  private EmailAddress getEmailAddress(InternetAddress address) {
-
-    EmailAddress emailAddress = null;
-    emailAddress = emailAddressRepo.findByAddress(address.getAddress());
-    if (emailAddress == null) {
-      emailAddress = new EmailAddress();
-      emailAddress.setAddress(address.getAddress());
-    }
-
-    return emailAddress;
+  private EmailAddress getEmailAddress(
+      InternetAddress address, Map<String, EmailAddress> emailAddressMap) {
+
+    return emailAddressMap.computeIfAbsent(
+        address.getAddress(),
+        key -> {
+          EmailAddress emailAddress = emailAddressRepo.findByAddress(key);
+          if (emailAddress == null) {
+            emailAddress = new EmailAddress();
+            emailAddress.setAddress(key);
+          }
+          return emailAddress;
+        });
   }
 
-  private Set<EmailAddress> getEmailAddressSet(List<InternetAddress> addresses) {
+  private Set<EmailAddress> getEmailAddressSet(
+      List<InternetAddress> addresses, Map<String, EmailAddress> emailAddressMap) {
 
     Set<EmailAddress> addressSet = new HashSet<>();
 
@@ -378,7 +492,7 @@ public class MailAccountServiceImpl implements MailAccountService {
 
     for (InternetAddress address : addresses) {
 
-      EmailAddress emailAddress = getEmailAddress(address);
+      EmailAddress emailAddress = getEmailAddress(address, emailAddressMap);
 
       addressSet.add(emailAddress);
     }
@@ -0,0 +1,134 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.message.service;
+
+import com.axelor.apps.message.db.Template;
+import com.axelor.apps.message.db.repo.TemplateRepository;
+import com.axelor.inject.Beans;
+import com.axelor.text.GroovyTemplates;
+import com.axelor.text.StringTemplates;
+import com.axelor.text.Templates;
+import com.google.inject.Singleton;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the parsed templates of each {@link Template} field so that generating the same template
+ * for many records does not parse it again. Entries are keyed by template id and version and are
+ * dropped when the template is saved or removed.
+ */
+@Singleton
+public class TemplateCacheService {
+
+  private static final char TEMPLATE_DELIMITER = '$';
+
+  private final Map<Long, CachedTemplate> cache = new ConcurrentHashMap<>();
+
+  /**
+   * Get the template engine to use for the given template.
+   *
+   * @param template
+   * @return
+   */
+  public Templates getTemplates(Template template) {
+    if (template.getTemplateEngineSelect() == TemplateRepository.TEMPLATE_ENGINE_GROOVY_TEMPLATE) {
+      return Beans.get(GroovyTemplates.class);
+    }
+    return new StringTemplates(TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
+  }
+
+  /**
+   * Get the parsed template of a field of the given template, parsing it only if it is not already
+   * cached for the current version of the template.
+   *
+   * @param template the message template
+   * @param templates the template engine returned by {@link #getTemplates(Template)}
+   * @param field the name of the field the text comes from
+   * @param text the text of the field
+   * @return the parsed template
+   */
+  public com.axelor.text.Template fromText(
+      Template template, Templates templates, String field, String text) {
+
+    if (template.getId() == null) {
+      return templates.fromText(text);
+    }
+
+    CachedTemplate cachedTemplate =
+        cache.compute(
+            template.getId(),
+            (id, cached) ->
+                cached != null && cached.matches(template)
+                    ? cached
+                    : new CachedTemplate(template, templates));
+
+    return cachedTemplate.fromText(field, text);
+  }
+
+  public void invalidate(Long templateId) {
+    if (templateId != null) {
+      cache.remove(templateId);
+    }
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+  }
+
+  protected static class CachedTemplate {
+
+    private final Integer version;
+    private final Integer templateEngineSelect;
+    private final Templates templates;
+    private final Map<String, ParsedText> parsedTexts = new ConcurrentHashMap<>();
+
+    protected CachedTemplate(Template template, Templates templates) {
+      this.version = template.getVersion();
+      this.templateEngineSelect = template.getTemplateEngineSelect();
+      this.templates = templates;
+    }
+
+    protected boolean matches(Template template) {
+      return Objects.equals(version, template.getVersion())
+          && Objects.equals(templateEngineSelect, template.getTemplateEngineSelect());
+    }
+
+    protected com.axelor.text.Template fromText(String field, String text) {
+      ParsedText parsedText =
+          parsedTexts.compute(
+              field,
+              (key, parsed) ->
+                  parsed != null && parsed.text.equals(text)
+                      ? parsed
+                      : new ParsedText(text, templates.fromText(text)));
+      return parsedText.template;
+    }
+  }
+
+  protected static class ParsedText {
+
+    private final String text;
+    private final com.axelor.text.Template template;
+
+    protected ParsedText(String text, com.axelor.text.Template template) {
+      this.text = text;
+      this.template = template;
+    }
+  }
+}
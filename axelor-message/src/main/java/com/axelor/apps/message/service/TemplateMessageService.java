@@ -40,6 +40,9 @@ public interface TemplateMessageService {
       throws ClassNotFoundException, InstantiationException, IllegalAccessException,
           AxelorException, IOException;
 
+  public List<Long> generateMessages(List<Long> objectIds, Template template)
+      throws AxelorException;
+
   public Message generateAndSendMessage(Model model, Template template)
       throws MessagingException, IOException, AxelorException, ClassNotFoundException,
           InstantiationException, IllegalAccessException;
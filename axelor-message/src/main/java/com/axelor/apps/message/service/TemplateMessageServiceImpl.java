@@ -26,6 +26,7 @@ import com.axelor.apps.message.db.repo.EmailAddressRepository;
 import com.axelor.apps.message.db.repo.MessageRepository;
 import com.axelor.apps.message.db.repo.TemplateRepository;
 import com.axelor.apps.message.exception.IExceptionMessage;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.JPA;
 import com.axelor.db.Model;
@@ -41,8 +42,6 @@ import com.axelor.meta.db.MetaJsonModel;
 import com.axelor.meta.db.MetaJsonRecord;
 import com.axelor.meta.db.MetaModel;
 import com.axelor.rpc.Context;
-import com.axelor.text.GroovyTemplates;
-import com.axelor.text.StringTemplates;
 import com.axelor.text.Templates;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
@@ -53,10 +52,13 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import javax.mail.MessagingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,18 +66,23 @@ import org.slf4j.LoggerFactory;
 public class TemplateMessageServiceImpl implements TemplateMessageService {
 
   private static final String RECIPIENT_SEPARATOR = ";|,";
-  private static final char TEMPLATE_DELIMITER = '$';
+
+  protected static final int GENERATE_BATCH_SIZE = 100;
 
   private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   protected MessageService messageService;
   protected TemplateContextService templateContextService;
+  protected TemplateCacheService templateCacheService;
 
   @Inject
   public TemplateMessageServiceImpl(
-      MessageService messageService, TemplateContextService templateContextService) {
+      MessageService messageService,
+      TemplateContextService templateContextService,
+      TemplateCacheService templateCacheService) {
     this.messageService = messageService;
     this.templateContextService = templateContextService;
+    this.templateCacheService = templateCacheService;
   }
 
   @Override
@@ -93,15 +100,172 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
       throws ClassNotFoundException, InstantiationException, IllegalAccessException,
           AxelorException, IOException {
 
-    Templates templates;
-    Map<String, Object> templatesContext = Maps.newHashMap();
+    Templates templates = templateCacheService.getTemplates(template);
+    Map<String, Object> templatesContext =
+        initTemplatesContext(objectId, model, tag, template, template.getTemplateContextList());
 
-    if (template.getTemplateEngineSelect() == TemplateRepository.TEMPLATE_ENGINE_GROOVY_TEMPLATE) {
-      templates = Beans.get(GroovyTemplates.class);
+    log.debug("model : {}", model);
+    log.debug("tag : {}", tag);
+    log.debug("object id : {}", objectId);
+    log.debug("template : {}", template);
+
+    RenderedTemplate renderedTemplate = renderTemplate(template, templates, templatesContext);
+
+    EmailAccount mailAccount = getMailAccount();
+    EmailAddress fromAddress = null;
+    if (mailAccount == null) {
+      TraceBackService.trace(
+          new AxelorException(
+              TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+              I18n.get(IExceptionMessage.MAIL_ACCOUNT_6)));
     } else {
-      templates = new StringTemplates(TEMPLATE_DELIMITER, TEMPLATE_DELIMITER);
+      fromAddress = getEmailAddress(mailAccount.getFromAddress());
     }
 
+    Message message =
+        createMessage(objectId, model, template, renderedTemplate, mailAccount, fromAddress);
+    messageService.attachMetaFiles(message, getMetaFiles(template, templates, templatesContext));
+
+    return message;
+  }
+
+  /**
+   * Generate the messages of the given template for many records of its model.
+   *
+   * <p>Templates are rendered in parallel, each worker reading its records in its own transaction,
+   * then the messages are saved in batches of {@link #GENERATE_BATCH_SIZE}. The persistence context
+   * is cleared after each batch, so previously loaded entities become detached.
+   *
+   * @param objectIds ids of the records to generate the messages for
+   * @param template the template to use
+   * @return the ids of the generated messages
+   */
+  @Override
+  public List<Long> generateMessages(List<Long> objectIds, Template template)
+      throws AxelorException {
+
+    Object modelObj = template.getIsJson() ? template.getMetaJsonModel() : template.getMetaModel();
+    if (modelObj == null) {
+      throw new AxelorException(
+          template,
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.TEMPLATE_SERVICE_1));
+    }
+
+    final String model =
+        template.getIsJson()
+            ? ((MetaJsonModel) modelObj).getName()
+            : ((MetaModel) modelObj).getFullName();
+    final String tag =
+        template.getIsJson()
+            ? ((MetaJsonModel) modelObj).getName()
+            : ((MetaModel) modelObj).getName();
+    final Long templateId = template.getId();
+    final Templates templates = templateCacheService.getTemplates(template);
+
+    // Each worker renders with its own copy of the template and only returns plain strings, the
+    // entities it loads are never shared.
+    List<Callable<RenderedTemplate>> tasks = new ArrayList<>();
+    for (Long objectId : objectIds) {
+      tasks.add(
+          () -> {
+            RenderedTemplate[] result = new RenderedTemplate[1];
+            JPA.runInTransaction(
+                () -> {
+                  try {
+                    Template workerTemplate = Beans.get(TemplateRepository.class).find(templateId);
+                    Map<String, Object> templatesContext =
+                        initTemplatesContext(
+                            objectId,
+                            model,
+                            tag,
+                            workerTemplate,
+                            workerTemplate.getTemplateContextList());
+                    result[0] = renderTemplate(workerTemplate, templates, templatesContext);
+                  } catch (Exception e) {
+                    throw new RuntimeException(e);
+                  }
+                });
+            return result[0];
+          });
+    }
+
+    List<Long> messageIds = new ArrayList<>();
+    Map<Long, RenderedTemplate> batch = new LinkedHashMap<>();
+
+    boolean completed =
+        ParallelTool.run(
+            tasks,
+            Runtime.getRuntime().availableProcessors(),
+            (renderedTemplate, i) -> {
+              batch.put(objectIds.get(i), renderedTemplate);
+              if (batch.size() >= GENERATE_BATCH_SIZE) {
+                messageIds.addAll(persistMessages(batch, model, tag, templateId, templates));
+                batch.clear();
+                JPA.clear();
+              }
+            },
+            (e, i) -> TraceBackService.trace(e));
+
+    if (!completed) {
+      throw new AxelorException(
+          new InterruptedException(), TraceBackRepository.CATEGORY_INCONSISTENCY);
+    }
+
+    if (!batch.isEmpty()) {
+      messageIds.addAll(persistMessages(batch, model, tag, templateId, templates));
+      JPA.clear();
+    }
+
+    return messageIds;
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  protected List<Long> persistMessages(
+      Map<Long, RenderedTemplate> renderedTemplates,
+      String model,
+      String tag,
+      Long templateId,
+      Templates templates) {
+
+    Template template = Beans.get(TemplateRepository.class).find(templateId);
+    EmailAccount mailAccount = getMailAccount();
+    EmailAddress fromAddress =
+        mailAccount != null ? getEmailAddress(mailAccount.getFromAddress()) : null;
+
+    List<Long> messageIds = new ArrayList<>();
+
+    for (Map.Entry<Long, RenderedTemplate> entry : renderedTemplates.entrySet()) {
+      Long objectId = entry.getKey();
+      RenderedTemplate renderedTemplate = entry.getValue();
+      try {
+        // Attachments may be rendered from the context, rebuild it in this transaction.
+        Map<String, Object> templatesContext =
+            initTemplatesContext(objectId, model, tag, template, template.getTemplateContextList());
+
+        Message message =
+            createMessage(objectId, model, template, renderedTemplate, mailAccount, fromAddress);
+        messageService.attachMetaFiles(
+            message, getMetaFiles(template, templates, templatesContext));
+        messageIds.add(message.getId());
+      } catch (Exception e) {
+        TraceBackService.trace(e);
+      }
+    }
+
+    return messageIds;
+  }
+
+  protected Map<String, Object> initTemplatesContext(
+      Long objectId,
+      String model,
+      String tag,
+      Template template,
+      List<TemplateContext> templateContextList)
+      throws AxelorException, ClassNotFoundException {
+
+    Map<String, Object> templatesContext = Maps.newHashMap();
+
     Object modelObj = template.getIsJson() ? template.getMetaJsonModel() : template.getMetaModel();
 
     if (modelObj != null) {
@@ -118,104 +282,95 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
       }
       initMaker(objectId, model, tag, template.getIsJson(), templatesContext);
       computeTemplateContexts(
-          template.getTemplateContextList(),
-          objectId,
-          model,
-          template.getIsJson(),
-          templatesContext);
+          templateContextList, objectId, model, template.getIsJson(), templatesContext);
     }
 
-    log.debug("model : {}", model);
-    log.debug("tag : {}", tag);
-    log.debug("object id : {}", objectId);
-    log.debug("template : {}", template);
-
-    String content = "";
-    String subject = "";
-    String replyToRecipients = "";
-    String toRecipients = "";
-    String ccRecipients = "";
-    String bccRecipients = "";
-    String addressBlock = "";
-    int mediaTypeSelect;
-    String signature = "";
-
-    if (!Strings.isNullOrEmpty(template.getContent())) {
-      content = templates.fromText(template.getContent()).make(templatesContext).render();
-    }
-
-    if (!Strings.isNullOrEmpty(template.getAddressBlock())) {
-      addressBlock = templates.fromText(template.getAddressBlock()).make(templatesContext).render();
-    }
-
-    if (!Strings.isNullOrEmpty(template.getSubject())) {
-      subject = templates.fromText(template.getSubject()).make(templatesContext).render();
-      log.debug("Subject ::: {}", subject);
-    }
+    return templatesContext;
+  }
 
-    if (!Strings.isNullOrEmpty(template.getReplyToRecipients())) {
-      replyToRecipients =
-          templates.fromText(template.getReplyToRecipients()).make(templatesContext).render();
-      log.debug("Reply to ::: {}", replyToRecipients);
-    }
+  protected RenderedTemplate renderTemplate(
+      Template template, Templates templates, Map<String, Object> templatesContext) {
+
+    RenderedTemplate renderedTemplate = new RenderedTemplate();
+
+    renderedTemplate.content =
+        render(template, templates, "content", template.getContent(), templatesContext);
+    renderedTemplate.addressBlock =
+        render(template, templates, "addressBlock", template.getAddressBlock(), templatesContext);
+    renderedTemplate.subject =
+        render(template, templates, "subject", template.getSubject(), templatesContext);
+    log.debug("Subject ::: {}", renderedTemplate.subject);
+    renderedTemplate.replyToRecipients =
+        render(
+            template,
+            templates,
+            "replyToRecipients",
+            template.getReplyToRecipients(),
+            templatesContext);
+    log.debug("Reply to ::: {}", renderedTemplate.replyToRecipients);
+    renderedTemplate.toRecipients =
+        render(template, templates, "toRecipients", template.getToRecipients(), templatesContext);
+    log.debug("To ::: {}", renderedTemplate.toRecipients);
+    renderedTemplate.ccRecipients =
+        render(template, templates, "ccRecipients", template.getCcRecipients(), templatesContext);
+    log.debug("CC ::: {}", renderedTemplate.ccRecipients);
+    renderedTemplate.bccRecipients =
+        render(template, templates, "bccRecipients", template.getBccRecipients(), templatesContext);
+    log.debug("BCC ::: {}", renderedTemplate.bccRecipients);
+    renderedTemplate.mediaTypeSelect = this.getMediaTypeSelect(template);
+    log.debug("Media ::: {}", renderedTemplate.mediaTypeSelect);
+    renderedTemplate.signature =
+        render(template, templates, "signature", template.getSignature(), templatesContext);
+    log.debug("Signature ::: {}", renderedTemplate.signature);
+
+    return renderedTemplate;
+  }
 
-    if (template.getToRecipients() != null) {
-      toRecipients = templates.fromText(template.getToRecipients()).make(templatesContext).render();
-      log.debug("To ::: {}", toRecipients);
-    }
+  protected String render(
+      Template template,
+      Templates templates,
+      String field,
+      String text,
+      Map<String, Object> templatesContext) {
 
-    if (template.getCcRecipients() != null) {
-      ccRecipients = templates.fromText(template.getCcRecipients()).make(templatesContext).render();
-      log.debug("CC ::: {}", ccRecipients);
+    if (Strings.isNullOrEmpty(text)) {
+      return "";
     }
 
-    if (template.getBccRecipients() != null) {
-      bccRecipients =
-          templates.fromText(template.getBccRecipients()).make(templatesContext).render();
-      log.debug("BCC ::: {}", bccRecipients);
-    }
+    return templateCacheService
+        .fromText(template, templates, field, text)
+        .make(templatesContext)
+        .render();
+  }
 
-    mediaTypeSelect = this.getMediaTypeSelect(template);
-    log.debug("Media ::: {}", mediaTypeSelect);
+  protected Message createMessage(
+      Long objectId,
+      String model,
+      Template template,
+      RenderedTemplate renderedTemplate,
+      EmailAccount mailAccount,
+      EmailAddress fromAddress) {
 
-    if (template.getSignature() != null) {
-      signature = templates.fromText(template.getSignature()).make(templatesContext).render();
-      log.debug("Signature ::: {}", signature);
-    }
-    EmailAccount mailAccount = getMailAccount();
-    EmailAddress fromAddress = null;
-    if (mailAccount == null) {
-      TraceBackService.trace(
-          new AxelorException(
-              TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-              I18n.get(IExceptionMessage.MAIL_ACCOUNT_6)));
-    } else {
-      fromAddress = getEmailAddress(mailAccount.getFromAddress());
-    }
     Message message =
         messageService.createMessage(
             model,
             Math.toIntExact(objectId),
-            subject,
-            content,
+            renderedTemplate.subject,
+            renderedTemplate.content,
             fromAddress,
-            getEmailAddresses(replyToRecipients),
-            getEmailAddresses(toRecipients),
-            getEmailAddresses(ccRecipients),
-            getEmailAddresses(bccRecipients),
+            getEmailAddresses(renderedTemplate.replyToRecipients),
+            getEmailAddresses(renderedTemplate.toRecipients),
+            getEmailAddresses(renderedTemplate.ccRecipients),
+            getEmailAddresses(renderedTemplate.bccRecipients),
             null,
-            addressBlock,
-            mediaTypeSelect,
+            renderedTemplate.addressBlock,
+            renderedTemplate.mediaTypeSelect,
             mailAccount,
-            signature);
+            renderedTemplate.signature);
 
     message.setTemplate(Beans.get(TemplateRepository.class).find(template.getId()));
 
-    message = Beans.get(MessageRepository.class).save(message);
-
-    messageService.attachMetaFiles(message, getMetaFiles(template, templates, templatesContext));
-
-    return message;
+    return Beans.get(MessageRepository.class).save(message);
   }
 
   @Override
@@ -347,4 +502,17 @@ public class TemplateMessageServiceImpl implements TemplateMessageService {
 
     return null;
   }
+
+  /** Rendered fields of a template for one record. */
+  protected static class RenderedTemplate {
+    protected String content;
+    protected String subject;
+    protected String replyToRecipients;
+    protected String toRecipients;
+    protected String ccRecipients;
+    protected String bccRecipients;
+    protected String addressBlock;
+    protected int mediaTypeSelect;
+    protected String signature;
+  }
 }
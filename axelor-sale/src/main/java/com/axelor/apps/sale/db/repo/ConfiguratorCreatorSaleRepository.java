@@ -21,6 +21,7 @@ import com.axelor.apps.sale.db.ConfiguratorCreator;
 import com.axelor.apps.sale.exception.IExceptionMessage;
 import com.axelor.apps.sale.service.configurator.ConfiguratorCreatorImportService;
 import com.axelor.apps.sale.service.configurator.ConfiguratorCreatorService;
+import com.axelor.apps.sale.service.configurator.ConfiguratorFormulaCacheService;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
@@ -56,4 +57,10 @@ public class ConfiguratorCreatorSaleRepository extends ConfiguratorCreatorReposi
       throw new PersistenceException(e);
     }
   }
+
+  @Override
+  public void remove(ConfiguratorCreator entity) {
+    Beans.get(ConfiguratorFormulaCacheService.class).invalidate(entity.getId());
+    super.remove(entity);
+  }
 }
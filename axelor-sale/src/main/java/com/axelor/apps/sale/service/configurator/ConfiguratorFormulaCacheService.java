@@ -0,0 +1,199 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.sale.service.configurator;
+
+import com.axelor.apps.sale.db.ConfiguratorCreator;
+import com.axelor.apps.sale.db.ConfiguratorFormula;
+import com.axelor.meta.db.MetaJsonField;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps, for each {@link ConfiguratorCreator}, its formulas indexed by field name and the graph of
+ * the indicators depending on each attribute, so that a change of attribute only re-evaluates the
+ * indicators using it. Entries are rebuilt when the creator, its formulas or its attributes change.
+ */
+@Singleton
+public class ConfiguratorFormulaCacheService {
+
+  private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+  private final Map<Long, ConfiguratorFormulaPlan> cache = new ConcurrentHashMap<>();
+
+  /**
+   * Get the formulas of the given creator, building them only if they are not already cached for
+   * the current state of the creator.
+   *
+   * @param creator a configurator creator
+   * @return the formulas of the creator
+   */
+  public ConfiguratorFormulaPlan getPlan(ConfiguratorCreator creator) {
+    List<Object> stamp = getStamp(creator);
+
+    if (creator.getId() == null) {
+      return buildPlan(creator, stamp);
+    }
+
+    return cache.compute(
+        creator.getId(),
+        (id, plan) -> plan != null && plan.stamp.equals(stamp) ? plan : buildPlan(creator, stamp));
+  }
+
+  public void invalidate(Long creatorId) {
+    if (creatorId != null) {
+      cache.remove(creatorId);
+    }
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+  }
+
+  /**
+   * Get the values identifying the state of the creator: any change of the creator, of one of its
+   * formulas or of one of its attributes gives a different stamp.
+   */
+  protected List<Object> getStamp(ConfiguratorCreator creator) {
+    List<Object> stamp = new ArrayList<>();
+    stamp.add(creator.getVersion());
+    stamp.add(creator.getGenerateProduct());
+    for (ConfiguratorFormula formula : getFormulas(creator)) {
+      stamp.add(formula.getId());
+      stamp.add(formula.getVersion());
+    }
+    if (creator.getAttributes() != null) {
+      for (MetaJsonField attribute : creator.getAttributes()) {
+        stamp.add(attribute.getId());
+        stamp.add(attribute.getVersion());
+      }
+    }
+    return stamp;
+  }
+
+  protected List<? extends ConfiguratorFormula> getFormulas(ConfiguratorCreator creator) {
+    List<? extends ConfiguratorFormula> formulas =
+        creator.getGenerateProduct()
+            ? creator.getConfiguratorProductFormulaList()
+            : creator.getConfiguratorSOLineFormulaList();
+    return formulas != null ? formulas : Collections.emptyList();
+  }
+
+  protected ConfiguratorFormulaPlan buildPlan(ConfiguratorCreator creator, List<Object> stamp) {
+    Set<String> attributeNames = new HashSet<>();
+    if (creator.getAttributes() != null) {
+      for (MetaJsonField attribute : creator.getAttributes()) {
+        attributeNames.add(attribute.getName());
+      }
+    }
+
+    Map<String, String> formulaMap = new HashMap<>();
+    Map<String, Set<String>> dependentFieldMap = new HashMap<>();
+
+    for (ConfiguratorFormula formula : getFormulas(creator)) {
+      String fieldName = formula.getMetaField().getName();
+      if (formulaMap.containsKey(fieldName)) {
+        // the first formula of a field is the one used
+        continue;
+      }
+      formulaMap.put(fieldName, formula.getFormula());
+
+      for (String attributeName : getReferencedNames(formula.getFormula(), attributeNames)) {
+        dependentFieldMap.computeIfAbsent(attributeName, key -> new HashSet<>()).add(fieldName);
+      }
+    }
+
+    return new ConfiguratorFormulaPlan(stamp, attributeNames, formulaMap, dependentFieldMap);
+  }
+
+  /**
+   * Get the names among the given ones appearing as identifiers in the formula. Names appearing in
+   * string literals are also returned, which can only lead to an unneeded evaluation.
+   */
+  protected Set<String> getReferencedNames(String formula, Set<String> names) {
+    Set<String> referencedNames = new HashSet<>();
+    if (formula == null) {
+      return referencedNames;
+    }
+    Matcher matcher = IDENTIFIER_PATTERN.matcher(formula);
+    while (matcher.find()) {
+      if (names.contains(matcher.group())) {
+        referencedNames.add(matcher.group());
+      }
+    }
+    return referencedNames;
+  }
+
+  /** Formulas of a configurator creator and the fields depending on each attribute. */
+  public static class ConfiguratorFormulaPlan {
+
+    private final List<Object> stamp;
+    private final Set<String> attributeNames;
+    private final Map<String, String> formulaMap;
+    private final Map<String, Set<String>> dependentFieldMap;
+
+    protected ConfiguratorFormulaPlan(
+        List<Object> stamp,
+        Set<String> attributeNames,
+        Map<String, String> formulaMap,
+        Map<String, Set<String>> dependentFieldMap) {
+      this.stamp = stamp;
+      this.attributeNames = attributeNames;
+      this.formulaMap = formulaMap;
+      this.dependentFieldMap = dependentFieldMap;
+    }
+
+    /**
+     * Get the formula computing the given field.
+     *
+     * @param fieldName the name of a field of the generated product or sale order line
+     * @return the formula, or null if there is none
+     */
+    public String getFormula(String fieldName) {
+      return formulaMap.get(fieldName);
+    }
+
+    public boolean isAttribute(String name) {
+      return attributeNames.contains(name);
+    }
+
+    /**
+     * Get the fields whose formula uses at least one of the given attributes.
+     *
+     * @param attributeNames names of attributes
+     * @return the names of the fields to compute again
+     */
+    public Set<String> getDependentFields(Collection<String> attributeNames) {
+      Set<String> fieldNames = new LinkedHashSet<>();
+      for (String attributeName : attributeNames) {
+        fieldNames.addAll(dependentFieldMap.getOrDefault(attributeName, Collections.emptySet()));
+      }
+      return fieldNames;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import com.axelor.exception.AxelorException;
 import com.axelor.meta.db.MetaJsonField;
 import com.axelor.rpc.JsonContext;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import wslite.json.JSONException;
 
 public interface ConfiguratorService {
@@ -39,6 +40,22 @@ public interface ConfiguratorService {
   void updateIndicators(Configurator configurator, JsonContext attributes, JsonContext indicators)
       throws AxelorException;
 
+  /**
+   * Update the value of the indicators depending on the given attributes. All indicators are
+   * updated if the given names are null or are not all attributes of the configurator creator.
+   *
+   * @param configurator
+   * @param attributes
+   * @param indicators
+   * @param changedAttributeNames the names of the attributes which changed
+   */
+  void updateIndicators(
+      Configurator configurator,
+      JsonContext attributes,
+      JsonContext indicators,
+      Collection<String> changedAttributeNames)
+      throws AxelorException;
+
   /**
    * Give the result of a formula, with the script variables defined in the values map.
    *
@@ -23,7 +23,6 @@ import com.axelor.apps.base.db.repo.ProductRepository;
 import com.axelor.apps.base.service.app.AppBaseService;
 import com.axelor.apps.sale.db.Configurator;
 import com.axelor.apps.sale.db.ConfiguratorCreator;
-import com.axelor.apps.sale.db.ConfiguratorFormula;
 import com.axelor.apps.sale.db.ConfiguratorSOLineFormula;
 import com.axelor.apps.sale.db.SaleOrder;
 import com.axelor.apps.sale.db.SaleOrderLine;
@@ -31,6 +30,7 @@ import com.axelor.apps.sale.db.repo.ConfiguratorRepository;
 import com.axelor.apps.sale.db.repo.SaleOrderLineRepository;
 import com.axelor.apps.sale.db.repo.SaleOrderRepository;
 import com.axelor.apps.sale.exception.IExceptionMessage;
+import com.axelor.apps.sale.service.configurator.ConfiguratorFormulaCacheService.ConfiguratorFormulaPlan;
 import com.axelor.apps.sale.service.saleorder.SaleOrderComputeService;
 import com.axelor.apps.sale.service.saleorder.SaleOrderLineService;
 import com.axelor.apps.tool.MetaTool;
@@ -52,39 +52,83 @@ import com.axelor.script.ScriptHelper;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import groovy.lang.MissingPropertyException;
+import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ConfiguratorServiceImpl implements ConfiguratorService {
 
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
   protected AppBaseService appBaseService;
+  protected ConfiguratorFormulaCacheService configuratorFormulaCacheService;
 
   @Inject
-  public ConfiguratorServiceImpl(AppBaseService appBaseService) {
+  public ConfiguratorServiceImpl(
+      AppBaseService appBaseService,
+      ConfiguratorFormulaCacheService configuratorFormulaCacheService) {
     this.appBaseService = appBaseService;
+    this.configuratorFormulaCacheService = configuratorFormulaCacheService;
   }
 
   @Override
   public void updateIndicators(
       Configurator configurator, JsonContext jsonAttributes, JsonContext jsonIndicators)
       throws AxelorException {
-    if (configurator.getConfiguratorCreator() == null) {
+    updateIndicators(configurator, jsonAttributes, jsonIndicators, null);
+  }
+
+  @Override
+  public void updateIndicators(
+      Configurator configurator,
+      JsonContext jsonAttributes,
+      JsonContext jsonIndicators,
+      Collection<String> changedAttributeNames)
+      throws AxelorException {
+    ConfiguratorCreator creator = configurator.getConfiguratorCreator();
+    if (creator == null) {
       return;
     }
-    List<MetaJsonField> indicators = configurator.getConfiguratorCreator().getIndicators();
+    long startTime = System.currentTimeMillis();
+
+    ConfiguratorFormulaPlan plan = configuratorFormulaCacheService.getPlan(creator);
+    Set<String> fieldNames = null;
+    if (changedAttributeNames != null
+        && changedAttributeNames.stream().allMatch(plan::isAttribute)) {
+      fieldNames = plan.getDependentFields(changedAttributeNames);
+    }
+    ScriptHelper scriptHelper = jsonAttributes != null ? getScriptHelper(jsonAttributes) : null;
+
+    int computedCount = 0;
+    List<MetaJsonField> indicators = creator.getIndicators();
     for (MetaJsonField indicator : indicators) {
+      String fieldName = getFieldName(indicator.getName());
+      if (fieldNames != null && !fieldNames.contains(fieldName)) {
+        continue;
+      }
       try {
-        Object calculatedValue =
-            computeIndicatorValue(configurator, indicator.getName(), jsonAttributes);
+        Object calculatedValue = computeIndicatorValue(plan, fieldName, scriptHelper);
         checkType(calculatedValue, indicator);
         jsonIndicators.put(indicator.getName(), calculatedValue);
+        computedCount++;
       } catch (MissingPropertyException e) {
         // if a field is missing, the value needs to be set to null
         continue;
       }
     }
+
+    log.debug(
+        "Configurator {}: {} of {} indicators computed in {} ms",
+        configurator.getId(),
+        computedCount,
+        indicators.size(),
+        System.currentTimeMillis() - startTime);
   }
 
   @Override
@@ -259,40 +303,62 @@ public class ConfiguratorServiceImpl implements ConfiguratorService {
    */
   protected Object computeIndicatorValue(
       Configurator configurator, String indicatorName, JsonContext jsonAttributes) {
-    ConfiguratorCreator creator = configurator.getConfiguratorCreator();
-    List<? extends ConfiguratorFormula> formulas;
-    if (creator.getGenerateProduct()) {
-      formulas = creator.getConfiguratorProductFormulaList();
-    } else {
-      formulas = creator.getConfiguratorSOLineFormulaList();
-    }
-    String groovyFormula = null;
-    for (ConfiguratorFormula formula : formulas) {
-      String fieldName = indicatorName;
-      fieldName = fieldName.substring(0, fieldName.indexOf('_'));
-      MetaField metaField = formula.getMetaField();
-      if (metaField.getName().equals(fieldName)) {
-        groovyFormula = formula.getFormula();
-        break;
-      }
+    if (jsonAttributes == null) {
+      return null;
     }
-    if (groovyFormula == null || jsonAttributes == null) {
+    return computeIndicatorValue(
+        configuratorFormulaCacheService.getPlan(configurator.getConfiguratorCreator()),
+        getFieldName(indicatorName),
+        getScriptHelper(jsonAttributes));
+  }
+
+  /**
+   * Compute the value of the given field with its formula, using a script helper holding the
+   * values of the attributes.
+   *
+   * @param plan the formulas of the configurator creator
+   * @param fieldName the name of the field
+   * @param scriptHelper a script helper returned by {@link #getScriptHelper(JsonContext)}
+   * @return the computed value, or null if the field has no formula
+   */
+  protected Object computeIndicatorValue(
+      ConfiguratorFormulaPlan plan, String fieldName, ScriptHelper scriptHelper) {
+    String groovyFormula = plan.getFormula(fieldName);
+    if (groovyFormula == null || scriptHelper == null) {
       return null;
     }
-    return computeFormula(groovyFormula, jsonAttributes);
+    return scriptHelper.eval(groovyFormula);
+  }
+
+  /**
+   * Indicator names have this pattern : {field name}_{id}. Get the {field name}.
+   *
+   * @param indicatorName
+   * @return
+   */
+  protected String getFieldName(String indicatorName) {
+    return indicatorName.substring(0, indicatorName.indexOf('_'));
   }
 
   @Override
   public Object computeFormula(String groovyFormula, JsonContext values) {
+    return getScriptHelper(values).eval(groovyFormula);
+  }
+
+  /**
+   * Create a script helper on the given values, adding the current user and date.
+   *
+   * @param values
+   * @return
+   */
+  protected ScriptHelper getScriptHelper(JsonContext values) {
     User currentUser = AuthUtils.getUser();
     Company company = currentUser != null ? currentUser.getActiveCompany() : null;
 
     values.put("__user__", currentUser);
     values.put("__date__", appBaseService.getTodayDate(company));
     values.put("__datetime__", appBaseService.getTodayDateTime(company));
-    ScriptHelper scriptHelper = new GroovyScriptHelper(values);
-
-    return scriptHelper.eval(groovyFormula);
+    return new GroovyScriptHelper(values);
   }
 
   public boolean areCompatible(String targetClassName, String fromClassName) {
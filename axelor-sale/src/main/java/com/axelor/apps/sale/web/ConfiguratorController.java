@@ -32,13 +32,16 @@ import com.axelor.rpc.ActionRequest;
 import com.axelor.rpc.ActionResponse;
 import com.axelor.rpc.JsonContext;
 import com.google.inject.Singleton;
+import java.util.Collection;
+import java.util.Collections;
 
 @Singleton
 public class ConfiguratorController {
 
   /**
    * Called from configurator form view, set values for the indicators JSON field. call {@link
-   * ConfiguratorService#updateIndicators(Configurator, JsonContext, JsonContext)}
+   * ConfiguratorService#updateIndicators(Configurator, JsonContext, JsonContext, Collection)} with
+   * the attribute triggering the call, if any.
    *
    * @param request
    * @param response
@@ -47,10 +50,15 @@ public class ConfiguratorController {
     Configurator configurator = request.getContext().asType(Configurator.class);
     JsonContext jsonAttributes = (JsonContext) request.getContext().get("$attributes");
     JsonContext jsonIndicators = (JsonContext) request.getContext().get("$indicators");
+    String source = (String) request.getContext().get("_source");
     configurator = Beans.get(ConfiguratorRepository.class).find(configurator.getId());
     try {
       Beans.get(ConfiguratorService.class)
-          .updateIndicators(configurator, jsonAttributes, jsonIndicators);
+          .updateIndicators(
+              configurator,
+              jsonAttributes,
+              jsonIndicators,
+              source != null ? Collections.singletonList(source) : null);
       response.setValue("indicators", request.getContext().get("indicators"));
     } catch (Exception e) {
       TraceBackService.trace(response, e);
@@ -17,11 +17,7 @@
  */
 package com.axelor.apps.stock.service;
 
-import static com.axelor.apps.base.service.administration.AbstractBatch.FETCH_LIMIT;
-
 import com.axelor.apps.base.db.ABCAnalysis;
-import com.axelor.apps.base.db.ABCAnalysisLine;
-import com.axelor.apps.base.db.Product;
 import com.axelor.apps.base.db.repo.ABCAnalysisClassRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisLineRepository;
 import com.axelor.apps.base.db.repo.ABCAnalysisRepository;
@@ -30,15 +26,10 @@ import com.axelor.apps.base.service.ABCAnalysisServiceImpl;
 import com.axelor.apps.base.service.UnitConversionService;
 import com.axelor.apps.base.service.administration.SequenceService;
 import com.axelor.apps.stock.db.StockLocation;
-import com.axelor.apps.stock.db.StockLocationLine;
 import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
-import com.axelor.db.JPA;
-import com.axelor.db.Query;
-import com.axelor.exception.AxelorException;
 import com.google.inject.Inject;
-import java.math.BigDecimal;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 public class ABCAnalysisServiceStockImpl extends ABCAnalysisServiceImpl {
 
@@ -69,56 +60,21 @@ public class ABCAnalysisServiceStockImpl extends ABCAnalysisServiceImpl {
   }
 
   @Override
-  protected Optional<ABCAnalysisLine> createABCAnalysisLine(
-      ABCAnalysis abcAnalysis, Product product) throws AxelorException {
-    ABCAnalysisLine abcAnalysisLine = null;
+  protected List<List<Object>> getProductQtyWorthList(
+      ABCAnalysis abcAnalysis, String productFilter, Map<String, Object> params) {
     List<StockLocation> stockLocationList =
         stockLocationService.getAllLocationAndSubLocation(abcAnalysis.getStockLocation(), false);
-    BigDecimal productQty = BigDecimal.ZERO;
-    BigDecimal productWorth = BigDecimal.ZERO;
-    List<StockLocationLine> stockLocationLineList;
-    int offset = 0;
-
-    Query<StockLocationLine> stockLocationLineQuery =
-        stockLocationLineRepository
-            .all()
-            .filter(
-                "self.stockLocation IN :stockLocationList AND self.product.id = :productId AND self.currentQty != 0 ")
-            .bind("stockLocationList", stockLocationList)
-            .bind("productId", product.getId());
-
-    while (!(stockLocationLineList = stockLocationLineQuery.fetch(FETCH_LIMIT, offset)).isEmpty()) {
-      offset += stockLocationLineList.size();
-      abcAnalysis = abcAnalysisRepository.find(abcAnalysis.getId());
-
-      if (abcAnalysisLine == null) {
-        abcAnalysisLine = super.createABCAnalysisLine(abcAnalysis, product).get();
-      }
-
-      for (StockLocationLine stockLocationLine : stockLocationLineList) {
-        BigDecimal convertedQty =
-            unitConversionService.convert(
-                stockLocationLine.getUnit(),
-                product.getUnit(),
-                stockLocationLine.getCurrentQty(),
-                5,
-                product);
-        productQty = productQty.add(convertedQty);
-        productWorth = productWorth.add(stockLocationLine.getAvgPrice());
-      }
-
-      super.incTotalQty(productQty);
-      super.incTotalWorth(productWorth);
-
-      JPA.clear();
-    }
-
-    if (abcAnalysisLine != null) {
-      setQtyWorth(
-          abcAnalysisLineRepository.find(abcAnalysisLine.getId()), productQty, productWorth);
-    }
-
-    return Optional.ofNullable(abcAnalysisLine);
+    params.put("stockLocationList", stockLocationList);
+
+    return fetchProductQtyWorthList(
+        "SELECT new list(product.id, productUnit.id, unit.id, SUM(self.currentQty), SUM(self.avgPrice)) "
+            + "FROM StockLocationLine self JOIN self.product product LEFT JOIN product.unit productUnit "
+            + "LEFT JOIN self.unit unit "
+            + "WHERE self.stockLocation IN :stockLocationList AND self.currentQty != 0 "
+            + "AND "
+            + productFilter
+            + " GROUP BY product.id, productUnit.id, unit.id",
+        params);
   }
 
   @Override
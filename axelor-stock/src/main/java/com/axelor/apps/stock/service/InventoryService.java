@@ -32,6 +32,7 @@ import com.axelor.apps.stock.db.StockLocationLine;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.apps.stock.db.TrackingNumber;
+import com.axelor.apps.stock.db.repo.InventoryLineRepository;
 import com.axelor.apps.stock.db.repo.InventoryRepository;
 import com.axelor.apps.stock.db.repo.StockLocationLineRepository;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
@@ -40,6 +41,8 @@ import com.axelor.apps.stock.exception.IExceptionMessage;
 import com.axelor.apps.stock.service.config.StockConfigService;
 import com.axelor.apps.tool.file.CsvTool;
 import com.axelor.auth.AuthUtils;
+import com.axelor.db.JPA;
+import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
@@ -49,8 +52,10 @@ import com.axelor.meta.db.MetaFile;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import com.opencsv.CSVReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
@@ -66,8 +71,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -98,6 +105,9 @@ public class InventoryService {
   protected StockLocationLineRepository stockLocationLineRepository;
   protected TrackingNumberRepository trackingNumberRepository;
   protected AppBaseService appBaseService;
+  protected InventoryLineRepository inventoryLineRepo;
+
+  protected static final int IMPORT_BATCH_SIZE = 500;
 
   @Inject
   public InventoryService(
@@ -112,7 +122,8 @@ public class InventoryService {
       StockMoveLineService stockMoveLineService,
       StockLocationLineRepository stockLocationLineRepository,
       TrackingNumberRepository trackingNumberRepository,
-      AppBaseService appBaseService) {
+      AppBaseService appBaseService,
+      InventoryLineRepository inventoryLineRepo) {
     this.inventoryLineService = inventoryLineService;
     this.sequenceService = sequenceService;
     this.stockConfigService = stockConfigService;
@@ -125,6 +136,7 @@ public class InventoryService {
     this.stockLocationLineRepository = stockLocationLineRepository;
     this.trackingNumberRepository = trackingNumberRepository;
     this.appBaseService = appBaseService;
+    this.inventoryLineRepo = inventoryLineRepo;
   }
 
   public Inventory createInventory(
@@ -185,14 +197,63 @@ public class InventoryService {
   @Transactional(rollbackOn = {Exception.class})
   public Path importFile(Inventory inventory) throws AxelorException {
 
-    List<InventoryLine> inventoryLineList = inventory.getInventoryLineList();
     Path filePath = MetaFiles.getPath(inventory.getImportFile());
-    List<String[]> data = this.getDatas(filePath);
+    Long inventoryId = inventory.getId();
+    int qtyScale = appBaseService.getNbDecimalDigitForQty();
+    Map<String, Long> inventoryLineIdMap = this.getInventoryLineIdMap(inventoryId);
+
+    try (CSVReader reader = new CSVReader(new FileReader(filePath.toFile()), ';')) {
+      String[] headerLine = reader.readNext();
+      if (headerLine == null) {
+        throw new AxelorException(
+            new Throwable(I18n.get(IExceptionMessage.INVENTORY_3_DATA_NULL_OR_EMPTY)),
+            TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+            I18n.get(IExceptionMessage.INVENTORY_3));
+      }
+      ImportColumns columns = new ImportColumns(Arrays.asList(headerLine));
+
+      List<String[]> data = new ArrayList<>();
+      String[] line;
+      while ((line = reader.readNext()) != null) {
+        data.add(line);
+        if (data.size() >= IMPORT_BATCH_SIZE) {
+          this.importLines(inventoryId, data, columns, inventoryLineIdMap, qtyScale);
+          data.clear();
+        }
+      }
+      this.importLines(inventoryId, data, columns, inventoryLineIdMap, qtyScale);
 
-    HashMap<String, InventoryLine> inventoryLineMap = this.getInventoryLines(inventory);
-    List<String> headers = Arrays.asList(data.get(0));
+    } catch (IOException e) {
+      throw new AxelorException(
+          e.getCause(),
+          TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+          I18n.get(IExceptionMessage.INVENTORY_5));
+    }
 
-    data.remove(0); /* Skip headers */
+    return filePath;
+  }
+
+  /**
+   * Import a batch of lines of the inventory file. Products, tracking numbers and existing
+   * inventory lines needed by the batch are loaded with one query each.
+   */
+  protected void importLines(
+      Long inventoryId,
+      List<String[]> data,
+      ImportColumns columns,
+      Map<String, Long> inventoryLineIdMap,
+      int qtyScale)
+      throws AxelorException {
+
+    if (data.isEmpty()) {
+      return;
+    }
+
+    Inventory inventory = inventoryRepo.find(inventoryId);
+
+    Set<String> codes = new HashSet<>();
+    Set<String> trackingNumberSeqs = new HashSet<>();
+    List<Long> inventoryLineIds = new ArrayList<>();
 
     for (String[] line : data) {
       if (line.length < 6)
@@ -202,13 +263,68 @@ public class InventoryService {
             TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
             I18n.get(IExceptionMessage.INVENTORY_3));
 
-      String code = line[headers.indexOf(PRODUCT_CODE)].replace("\"", "");
-      String rack = line[headers.indexOf(RACK)].replace("\"", "");
-      String trackingNumberSeq = line[headers.indexOf(TRACKING_NUMBER)].replace("\"", "");
+      String code = columns.get(line, columns.code);
+      String trackingNumberSeq = columns.get(line, columns.trackingNumber);
+      Long inventoryLineId = inventoryLineIdMap.get(code + trackingNumberSeq);
+      if (inventoryLineId != null) {
+        inventoryLineIds.add(inventoryLineId);
+      } else {
+        codes.add(code);
+        if (!StringUtils.isEmpty(trackingNumberSeq)) {
+          trackingNumberSeqs.add(trackingNumberSeq);
+        }
+      }
+    }
+
+    Map<Long, InventoryLine> inventoryLineMap = new HashMap<>();
+    if (!inventoryLineIds.isEmpty()) {
+      inventoryLineRepo
+          .all()
+          .filter("self.id IN (:ids)")
+          .bind("ids", inventoryLineIds)
+          .fetch()
+          .forEach(inventoryLine -> inventoryLineMap.put(inventoryLine.getId(), inventoryLine));
+    }
+
+    Map<String, List<Product>> productMap = new HashMap<>();
+    if (!codes.isEmpty()) {
+      productRepo
+          .all()
+          .filter("self.code IN (:codes) AND self.dtype = 'Product'")
+          .bind("codes", codes)
+          .fetch()
+          .forEach(
+              product ->
+                  productMap
+                      .computeIfAbsent(product.getCode(), key -> new ArrayList<>())
+                      .add(product));
+    }
+
+    Map<Pair<Long, String>, TrackingNumber> trackingNumberMap = new HashMap<>();
+    if (!trackingNumberSeqs.isEmpty()) {
+      trackingNumberRepository
+          .all()
+          .filter("self.trackingNumberSeq IN (:seqs) AND self.product.code IN (:codes)")
+          .bind("seqs", trackingNumberSeqs)
+          .bind("codes", codes)
+          .fetch()
+          .forEach(
+              trackingNumber ->
+                  trackingNumberMap.put(
+                      Pair.of(
+                          trackingNumber.getProduct().getId(),
+                          trackingNumber.getTrackingNumberSeq()),
+                      trackingNumber));
+    }
+
+    for (String[] line : data) {
+      String code = columns.get(line, columns.code);
+      String rack = columns.get(line, columns.rack);
+      String trackingNumberSeq = columns.get(line, columns.trackingNumber);
 
       BigDecimal realQty;
       try {
-        realQty = new BigDecimal(line[headers.indexOf(REAL_QUANTITY)].replace("\"", ""));
+        realQty = new BigDecimal(columns.get(line, columns.realQty));
       } catch (NumberFormatException e) {
         throw new AxelorException(
             new Throwable(I18n.get(IExceptionMessage.INVENTORY_3_REAL_QUANTITY)),
@@ -217,13 +333,12 @@ public class InventoryService {
             I18n.get(IExceptionMessage.INVENTORY_3));
       }
 
-      String description = line[headers.indexOf(DESCRIPTION)].replace("\"", "");
+      String description = columns.get(line, columns.description);
 
-      int qtyScale = Beans.get(AppBaseService.class).getAppBase().getNbDecimalDigitForQty();
-      String key = code + trackingNumberSeq;
+      Long inventoryLineId = inventoryLineIdMap.get(code + trackingNumberSeq);
 
-      if (inventoryLineMap.containsKey(key)) {
-        InventoryLine inventoryLine = inventoryLineMap.get(key);
+      if (inventoryLineId != null) {
+        InventoryLine inventoryLine = inventoryLineMap.get(inventoryLineId);
         inventoryLine.setRealQty(realQty.setScale(qtyScale, RoundingMode.HALF_UP));
         inventoryLine.setDescription(description);
 
@@ -233,7 +348,7 @@ public class InventoryService {
       } else {
         BigDecimal currentQty;
         try {
-          currentQty = new BigDecimal(line[headers.indexOf(CURRENT_QUANTITY)].replace("\"", ""));
+          currentQty = new BigDecimal(columns.get(line, columns.currentQty));
         } catch (NumberFormatException e) {
           throw new AxelorException(
               new Throwable(I18n.get(IExceptionMessage.INVENTORY_3_CURRENT_QUANTITY)),
@@ -242,43 +357,66 @@ public class InventoryService {
               I18n.get(IExceptionMessage.INVENTORY_3));
         }
 
-        InventoryLine inventoryLine = new InventoryLine();
-        List<Product> productList =
-            productRepo
-                .all()
-                .filter("self.code = :code AND self.dtype = 'Product'")
-                .bind("code", code)
-                .fetch();
-        if (productList != null && !productList.isEmpty()) {
-          if (productList.size() > 1) {
-            throw new AxelorException(
-                inventory,
-                TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
-                I18n.get(IExceptionMessage.INVENTORY_12) + " " + code);
-          }
+        List<Product> productList = productMap.get(code);
+        if (productList != null && productList.size() > 1) {
+          throw new AxelorException(
+              inventory,
+              TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
+              I18n.get(IExceptionMessage.INVENTORY_12) + " " + code);
         }
-        Product product = productList.get(0);
+        Product product = productList != null ? productList.get(0) : null;
         if (product == null
             || !product.getProductTypeSelect().equals(ProductRepository.PRODUCT_TYPE_STORABLE))
           throw new AxelorException(
               inventory,
               TraceBackRepository.CATEGORY_CONFIGURATION_ERROR,
               I18n.get(IExceptionMessage.INVENTORY_4) + " " + code);
+
+        InventoryLine inventoryLine = new InventoryLine();
         inventoryLine.setProduct(product);
         inventoryLine.setInventory(inventory);
         inventoryLine.setRack(rack);
         inventoryLine.setCurrentQty(currentQty.setScale(qtyScale, RoundingMode.HALF_UP));
         inventoryLine.setRealQty(realQty.setScale(qtyScale, RoundingMode.HALF_UP));
         inventoryLine.setDescription(description);
-        inventoryLine.setTrackingNumber(
-            this.getTrackingNumber(trackingNumberSeq, product, realQty));
-        inventoryLineList.add(inventoryLine);
+        if (!StringUtils.isEmpty(trackingNumberSeq)) {
+          inventoryLine.setTrackingNumber(
+              trackingNumberMap.computeIfAbsent(
+                  Pair.of(product.getId(), trackingNumberSeq),
+                  key -> this.createTrackingNumber(trackingNumberSeq, product, realQty)));
+        }
+        inventoryLineRepo.save(inventoryLine);
       }
     }
-    inventory.setInventoryLineList(inventoryLineList);
 
-    inventoryRepo.save(inventory);
-    return filePath;
+    JPA.flush();
+    JPA.clear();
+  }
+
+  /** Get the ids of the lines of the inventory, by product code and tracking number. */
+  protected Map<String, Long> getInventoryLineIdMap(Long inventoryId) {
+    Map<String, Long> inventoryLineIdMap = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    List<List<Object>> results =
+        JPA.em()
+            .createQuery(
+                "SELECT new list(self.id, product.code, trackingNumber.trackingNumberSeq) "
+                    + "FROM InventoryLine self "
+                    + "LEFT JOIN self.product product "
+                    + "LEFT JOIN self.trackingNumber trackingNumber "
+                    + "WHERE self.inventory.id = :inventoryId")
+            .setParameter("inventoryId", inventoryId)
+            .getResultList();
+
+    for (List<Object> result : results) {
+      String key =
+          StringUtils.defaultString((String) result.get(1))
+              + StringUtils.defaultString((String) result.get(2));
+      inventoryLineIdMap.put(key, (Long) result.get(0));
+    }
+
+    return inventoryLineIdMap;
   }
 
   public List<String[]> getDatas(Path filePath) throws AxelorException {
@@ -334,16 +472,22 @@ public class InventoryService {
               .fetchOne();
 
       if (trackingNumber == null) {
-        trackingNumber = new TrackingNumber();
-        trackingNumber.setTrackingNumberSeq(sequence);
-        trackingNumber.setProduct(product);
-        trackingNumber.setCounter(realQty);
+        trackingNumber = createTrackingNumber(sequence, product, realQty);
       }
     }
 
     return trackingNumber;
   }
 
+  protected TrackingNumber createTrackingNumber(
+      String sequence, Product product, BigDecimal realQty) {
+    TrackingNumber trackingNumber = new TrackingNumber();
+    trackingNumber.setTrackingNumberSeq(sequence);
+    trackingNumber.setProduct(product);
+    trackingNumber.setCounter(realQty);
+    return trackingNumber;
+  }
+
   @Transactional(rollbackOn = {Exception.class})
   public void validateInventory(Inventory inventory) throws AxelorException {
 
@@ -563,38 +707,60 @@ public class InventoryService {
     }
 
     this.initInventoryLines(inventory);
+    inventoryRepo.save(inventory);
+    JPA.flush();
 
-    List<? extends StockLocationLine> stockLocationLineList = this.getStockLocationLines(inventory);
+    Long inventoryId = inventory.getId();
+    Set<Long> trackedProductIdSet = this.getTrackedProductIdSet(inventory.getStockLocation());
+    Query<StockLocationLine> stockLocationLineQuery =
+        this.getStockLocationLineQuery(inventory).order("id");
+
+    Boolean succeed = false;
+    List<StockLocationLine> stockLocationLineList;
+    int offset = 0;
+
+    while (!(stockLocationLineList = stockLocationLineQuery.fetch(IMPORT_BATCH_SIZE, offset))
+        .isEmpty()) {
+      offset += stockLocationLineList.size();
+      inventory = inventoryRepo.find(inventoryId);
 
-    if (stockLocationLineList != null) {
-      Boolean succeed = false;
       for (StockLocationLine stockLocationLine : stockLocationLineList) {
-        if (stockLocationLine.getTrackingNumber()
-            == null) { // if no tracking number on stockLocationLine, check if there is a tracking
-          // number on the product
-          long numberOfTrackingNumberOnAProduct =
-              stockLocationLineRepository
-                  .all()
-                  .filter(
-                      "self.product = ?1 AND self.trackingNumber IS NOT null AND self.detailsStockLocation = ?2",
-                      stockLocationLine.getProduct(),
-                      inventory.getStockLocation())
-                  .count();
-
-          if (numberOfTrackingNumberOnAProduct != 0) { // there is a tracking number on the product
-            continue;
-          }
+        // if no tracking number on stockLocationLine, check if there is a tracking number on the
+        // product
+        if (stockLocationLine.getTrackingNumber() == null
+            && trackedProductIdSet.contains(stockLocationLine.getProduct().getId())) {
+          continue;
         }
-        inventory.addInventoryLineListItem(this.createInventoryLine(inventory, stockLocationLine));
+        inventoryLineRepo.save(this.createInventoryLine(inventory, stockLocationLine));
         succeed = true;
       }
-      inventoryRepo.save(inventory);
-      return succeed;
+
+      JPA.flush();
+      JPA.clear();
     }
-    return null;
+
+    return succeed;
+  }
+
+  /** Get the products having at least one tracking number in the given stock location. */
+  protected Set<Long> getTrackedProductIdSet(StockLocation stockLocation) {
+    @SuppressWarnings("unchecked")
+    List<Long> productIdList =
+        JPA.em()
+            .createQuery(
+                "SELECT DISTINCT self.product.id FROM StockLocationLine self "
+                    + "WHERE self.trackingNumber IS NOT NULL "
+                    + "AND self.detailsStockLocation.id = :stockLocationId")
+            .setParameter("stockLocationId", stockLocation.getId())
+            .getResultList();
+    return new HashSet<>(productIdList);
   }
 
   public List<? extends StockLocationLine> getStockLocationLines(Inventory inventory) {
+    return getStockLocationLineQuery(inventory).fetch();
+  }
+
+  protected Query<StockLocationLine> getStockLocationLineQuery(Inventory inventory) {
 
     String query = "(self.stockLocation = ? OR self.detailsStockLocation = ?)";
     List<Object> params = new ArrayList<>();
@@ -636,7 +802,7 @@ public class InventoryService {
       params.add(inventory.getToRack());
     }
 
-    return stockLocationLineRepository.all().filter(query, params.toArray()).fetch();
+    return stockLocationLineRepository.all().filter(query, params.toArray());
   }
 
   public InventoryLine createInventoryLine(
@@ -753,4 +919,27 @@ public class InventoryService {
             ? "-" + StringUtils.abbreviate(entity.getDescription(), 10)
             : "");
   }
+
+  /** Indexes of the columns of an imported inventory file. */
+  protected class ImportColumns {
+    protected final int code;
+    protected final int rack;
+    protected final int trackingNumber;
+    protected final int currentQty;
+    protected final int realQty;
+    protected final int description;
+
+    protected ImportColumns(List<String> headers) {
+      code = headers.indexOf(PRODUCT_CODE);
+      rack = headers.indexOf(RACK);
+      trackingNumber = headers.indexOf(TRACKING_NUMBER);
+      currentQty = headers.indexOf(CURRENT_QUANTITY);
+      realQty = headers.indexOf(REAL_QUANTITY);
+      description = headers.indexOf(DESCRIPTION);
+    }
+
+    protected String get(String[] line, int column) {
+      return line[column].replace("\"", "");
+    }
+  }
 }
@@ -38,6 +38,7 @@ import com.axelor.studio.db.repo.StudioWkfNodeRepo;
 import com.axelor.studio.db.repo.StudioWkfRepository;
 import com.axelor.studio.db.repo.WkfNodeRepository;
 import com.axelor.studio.db.repo.WkfRepository;
+import com.axelor.studio.service.wkf.WkfTrackingQueueService;
 
 public class StudioModule extends AxelorModule {
 
@@ -53,5 +54,7 @@ public class StudioModule extends AxelorModule {
     bind(MetaJsonModelRepository.class).to(MetaJsonModelRepo.class);
     bind(WkfNodeRepository.class).to(StudioWkfNodeRepo.class);
     bind(SelectionBuilderRepository.class).to(SelectionBuilderRepo.class);
+    // needed to use event notification methods
+    bind(WkfTrackingQueueService.class);
   }
 }
@@ -0,0 +1,78 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.service.wkf;
+
+import java.time.LocalDateTime;
+
+/**
+ * Status change of a tracked record, captured on save and processed later as the user who saved the
+ * record.
+ */
+public class WkfTrackingEvent {
+
+  private final Long wkfId;
+  private final String recordModel;
+  private final Long recordId;
+  private final String status;
+  private final LocalDateTime dateTime;
+  private final String userCode;
+
+  public WkfTrackingEvent(
+      Long wkfId,
+      String recordModel,
+      Long recordId,
+      String status,
+      LocalDateTime dateTime,
+      String userCode) {
+    this.wkfId = wkfId;
+    this.recordModel = recordModel;
+    this.recordId = recordId;
+    this.status = status;
+    this.dateTime = dateTime;
+    this.userCode = userCode;
+  }
+
+  public Long getWkfId() {
+    return wkfId;
+  }
+
+  public String getRecordModel() {
+    return recordModel;
+  }
+
+  public Long getRecordId() {
+    return recordId;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public LocalDateTime getDateTime() {
+    return dateTime;
+  }
+
+  public String getUserCode() {
+    return userCode;
+  }
+
+  /** Key identifying the WkfTracking the event belongs to. */
+  public String getTrackingKey() {
+    return wkfId + ":" + recordModel + ":" + recordId;
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.studio.service.wkf;
+
+import com.axelor.apps.tool.ParallelTool;
+import com.axelor.db.JPA;
+import com.axelor.db.JpaSupport;
+import com.axelor.event.Observes;
+import com.axelor.events.ShutdownEvent;
+import com.axelor.exception.service.TraceBackService;
+import com.axelor.inject.Beans;
+import com.google.common.collect.Lists;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.shiro.subject.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the workflow tracking events captured on save and processes them in a separate thread.
+ * Events of the same {@link com.axelor.studio.db.WkfTracking} are processed together, and trackings
+ * are updated by batches, each batch in its own transaction. Trackings are updated as the user of
+ * their last event, so their audit fields are the same as when they were updated on save.
+ */
+@Singleton
+public class WkfTrackingQueueService extends JpaSupport {
+
+  protected static final long PROCESS_DELAY = 2000;
+
+  protected static final int PROCESS_BATCH_SIZE = 50;
+
+  private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected final Queue<WkfTrackingEvent> eventQueue = new ConcurrentLinkedQueue<>();
+
+  protected final AtomicBoolean processScheduled = new AtomicBoolean();
+
+  protected ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+  /**
+   * Add an event to the queue. The queue is processed after a short delay so that the events of
+   * successive saves are processed together.
+   *
+   * @param event the event to process
+   */
+  public void submit(WkfTrackingEvent event) {
+    eventQueue.add(event);
+    if (processScheduled.compareAndSet(false, true)) {
+      executor.schedule(this::processQueue, PROCESS_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Process all the events currently in the queue. */
+  protected void processQueue() {
+    processScheduled.set(false);
+
+    Map<String, List<WkfTrackingEvent>> eventMap = new LinkedHashMap<>();
+    WkfTrackingEvent event;
+    while ((event = eventQueue.poll()) != null) {
+      eventMap.computeIfAbsent(event.getTrackingKey(), key -> new ArrayList<>()).add(event);
+    }
+
+    if (eventMap.isEmpty()) {
+      return;
+    }
+
+    final long startTime = System.currentTimeMillis();
+
+    Map<String, List<List<WkfTrackingEvent>>> userEventMap = new LinkedHashMap<>();
+    for (List<WkfTrackingEvent> eventList : eventMap.values()) {
+      String userCode = eventList.get(eventList.size() - 1).getUserCode();
+      userEventMap.computeIfAbsent(userCode, key -> new ArrayList<>()).add(eventList);
+    }
+
+    try {
+      for (Map.Entry<String, List<List<WkfTrackingEvent>>> entry : userEventMap.entrySet()) {
+        Subject subject = ParallelTool.getSubject(entry.getKey());
+        for (List<List<WkfTrackingEvent>> batch :
+            Lists.partition(entry.getValue(), PROCESS_BATCH_SIZE)) {
+          processBatch(subject, batch);
+        }
+      }
+    } finally {
+      Beans.get(UnitOfWork.class).end();
+    }
+
+    log.debug(
+        "{} workflow tracking(s) updated in {} ms",
+        eventMap.size(),
+        System.currentTimeMillis() - startTime);
+  }
+
+  /** Update the trackings of a batch in one transaction, as the given user if any. */
+  protected void processBatch(Subject subject, List<List<WkfTrackingEvent>> batch) {
+    WkfTrackingService wkfTrackingService = Beans.get(WkfTrackingService.class);
+    Runnable update =
+        () ->
+            inTransaction(
+                () -> {
+                  for (List<WkfTrackingEvent> eventList : batch) {
+                    wkfTrackingService.updateTracking(eventList);
+                  }
+                });
+    try {
+      if (subject != null) {
+        subject.execute(update);
+      } else {
+        update.run();
+      }
+    } catch (Exception e) {
+      TraceBackService.trace(e);
+    } finally {
+      JPA.clear();
+    }
+  }
+
+  /**
+   * This method processes the remaining events and stops the executor when the application stops.
+   *
+   * @param event shutdown event
+   */
+  protected void onApplicationShutdown(@Observes ShutdownEvent event) {
+    log.debug("Shutting down workflow tracking executor..");
+    executor.shutdown();
+    try {
+      executor.awaitTermination(PROCESS_DELAY * 2, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    processQueue();
+    log.debug("Workflow tracking executor stopped.");
+  }
+}
@@ -17,6 +17,8 @@
  */
 package com.axelor.studio.service.wkf;
 
+import com.axelor.auth.AuthUtils;
+import com.axelor.auth.db.User;
 import com.axelor.common.Inflector;
 import com.axelor.db.EntityHelper;
 import com.axelor.db.Model;
@@ -45,6 +47,9 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import javax.script.SimpleBindings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,13 +80,10 @@ public class WkfTrackingService {
 
   @Inject private MetaJsonFieldRepository jsonFieldRepo;
 
-  private BigDecimal durationHrs;
-
-  private String oldStatus;
-
   /**
-   * Root method to access the service. It creates WkfTracking record. WkfTracking is linked with
-   * record of model and workflow of model.
+   * Root method to access the service. It reads the current status of the record and submits it
+   * to the {@link WkfTrackingQueueService}, which creates or updates the WkfTracking record linked
+   * with record of model and workflow of model.
    *
    * @param model Model having workflow.
    * @param modelId Record id of model to track.
@@ -109,24 +111,20 @@ public class WkfTrackingService {
       } else {
         ctx = new Context(model.getId(), object.getClass());
       }
-      ctx.put("wkfId", wkfId);
-      WkfTracking wkfTracking = getWorkflowTracking(ctx, object.getClass().getName());
+      Wkf wkf = wkfRepo.find(wkfId);
 
-      if (wkfTracking == null) {
+      if (wkf == null) {
         return;
       }
 
-      String wkfFieldName = Beans.get(WkfService.class).getWkfFieldInfo(wkfTracking.getWkf())[0];
+      String wkfFieldName = Beans.get(WkfService.class).getWkfFieldInfo(wkf)[0];
       String selectionFieldName = wkfFieldName;
       if (isPreview) {
         wkfFieldName =
-            jsonFieldRepo
-                .findByName("wkf" + wkfTracking.getWkf().getCode() + "wkf" + wkfFieldName)
-                .getName();
+            jsonFieldRepo.findByName("wkf" + wkf.getCode() + "wkf" + wkfFieldName).getName();
       }
       String selection =
-          "wkf."
-              + Inflector.getInstance().dasherize(wkfTracking.getWkf().getName()).replace("_", ".");
+          "wkf." + Inflector.getInstance().dasherize(wkf.getName()).replace("_", ".");
       selection +=
           "." + Inflector.getInstance().dasherize(selectionFieldName).replace("_", ".") + ".select";
 
@@ -145,37 +143,38 @@ public class WkfTrackingService {
         return;
       }
 
-      durationHrs = BigDecimal.ZERO;
-      WkfTrackingLine trackingLine = updateTrackingLine(wkfTracking, item.getTitle());
-      if (trackingLine != null) {
-        updateTrackingTotal(wkfTracking, item.getTitle());
-        updateTrackingTime(wkfTracking, item.getTitle());
-      }
+      User user = AuthUtils.getUser();
+      Beans.get(WkfTrackingQueueService.class)
+          .submit(
+              new WkfTrackingEvent(
+                  wkf.getId(),
+                  getRecordModel(ctx, object.getClass().getName()),
+                  (Long) ctx.get("id"),
+                  item.getTitle(),
+                  LocalDateTime.now(),
+                  user != null ? user.getCode() : null));
     }
   }
 
+  protected String getRecordModel(SimpleBindings ctx, String model) {
+
+    String jsonModel = (String) ctx.get("jsonModel");
+
+    log.debug("Context json model: {}", jsonModel);
+
+    return jsonModel != null ? jsonModel : model;
+  }
+
   /**
    * Method find or create WkfTracking for model record.
    *
+   * @param wkf Workflow of the model.
    * @param model Model of record.
    * @param modelId Id of record.
    * @return WkfTracking instance created/found.s
    */
   @Transactional
-  public WkfTracking getWorkflowTracking(SimpleBindings ctx, String model) {
-
-    String jsonModel = (String) ctx.get("jsonModel");
-
-    log.debug("Context json model: {}", jsonModel);
-
-    if (jsonModel != null) {
-      model = jsonModel;
-    }
-
-    Wkf wkf = wkfRepo.find((Long) ctx.get("wkfId"));
-    if (wkf == null) {
-      return null;
-    }
+  public WkfTracking getWorkflowTracking(Wkf wkf, String model, Long modelId) {
 
     WkfTracking wkfTracking =
         wkfTrackingRepo
@@ -184,14 +183,14 @@ public class WkfTrackingService {
                 "self.wkf = ?1 and self.recordModel = ?2 and self.recordId = ?3",
                 wkf,
                 model,
-                ctx.get("id"))
+                modelId)
             .fetchOne();
 
     if (wkfTracking == null) {
       wkfTracking = new WkfTracking();
       wkfTracking.setWkf(wkf);
       wkfTracking.setRecordModel(model);
-      wkfTracking.setRecordId((Long) ctx.get("id"));
+      wkfTracking.setRecordId(modelId);
       wkfTracking = wkfTrackingRepo.save(wkfTracking);
     }
 
@@ -199,110 +198,110 @@ public class WkfTrackingService {
   }
 
   /**
-   * Method add new WkfTrackingLine in WkfTracking for given status if that status is not last
-   * status added.
+   * Apply the given status changes, all related to the same record, to its WkfTracking. For each
+   * change to a status different from the last one, a WkfTrackingLine is added, the time spent in
+   * the previous status is added to its WkfTrackingTime and the count of the new status is
+   * incremented in its WkfTrackingTotal.
    *
-   * @param wkfTracking WkfTracking to update with new line.
-   * @param status Status to check for update.
-   * @return WkfTrackingLine created or return null if status not changed.
+   * @param eventList Status changes of a record, in the order they happened.
    */
   @Transactional
-  public WkfTrackingLine updateTrackingLine(WkfTracking wkfTracking, String status) {
+  public void updateTracking(List<WkfTrackingEvent> eventList) {
+
+    WkfTrackingEvent firstEvent = eventList.get(0);
+    Wkf wkf = wkfRepo.find(firstEvent.getWkfId());
+    if (wkf == null) {
+      return;
+    }
+
+    WkfTracking wkfTracking =
+        getWorkflowTracking(wkf, firstEvent.getRecordModel(), firstEvent.getRecordId());
 
     WkfTrackingLine trackingLine =
-        trackingLineRepo.all().filter("self.wkfTracking = ?1", wkfTracking).fetchOne();
+        trackingLineRepo.all().filter("self.wkfTracking = ?1", wkfTracking).order("-id").fetchOne();
+    LocalDateTime lastUpdated = trackingLine != null ? trackingLine.getCreatedOn() : null;
+
+    Map<String, WkfTrackingTotal> trackingTotalMap = new HashMap<>();
+    for (WkfTrackingTotal trackingTotal :
+        trackingTotalRepo.all().filter("self.wkfTracking = ?1", wkfTracking).fetch()) {
+      trackingTotalMap.putIfAbsent(trackingTotal.getStatus(), trackingTotal);
+    }
+
+    Map<String, WkfTrackingTime> trackingTimeMap = new HashMap<>();
+    for (WkfTrackingTime trackingTime :
+        trackingTimeRepo.all().filter("self.wkfTracking = ?1", wkfTracking).fetch()) {
+      trackingTimeMap.putIfAbsent(trackingTime.getStatus(), trackingTime);
+    }
+
+    for (WkfTrackingEvent event : eventList) {
 
-    if (trackingLine == null || !trackingLine.getStatus().equals(status)) {
+      String status = event.getStatus();
+
+      if (trackingLine != null && trackingLine.getStatus().equals(status)) {
+        continue;
+      }
 
-      LocalDateTime now = LocalDateTime.now();
+      LocalDateTime now = event.getDateTime();
 
       if (trackingLine != null) {
-        oldStatus = trackingLine.getStatus();
-        LocalDateTime lastUpdated = trackingLine.getCreatedOn();
         long minutes = Duration.between(lastUpdated, now).toMinutes();
         log.debug("Minutes between {} and {} : {}", lastUpdated, now, minutes);
-        durationHrs = new BigDecimal(minutes).divide(new BigDecimal(60), 2, RoundingMode.HALF_UP);
+        BigDecimal durationHrs =
+            new BigDecimal(minutes).divide(new BigDecimal(60), 2, RoundingMode.HALF_UP);
         log.debug("Hours between {} and {} : {}", lastUpdated, now, durationHrs);
         trackingLine.setTimeSpent(durationHrs);
         trackingLineRepo.save(trackingLine);
+
+        updateTrackingTime(trackingTimeMap.get(trackingLine.getStatus()), durationHrs);
       }
 
       trackingLine = new WkfTrackingLine();
       trackingLine.setWkfTracking(wkfTracking);
       trackingLine.setStatus(status);
-      trackingLine.setWkfTracking(wkfTracking);
-      return trackingLineRepo.save(trackingLine);
-    }
-
-    return null;
-  }
-
-  /**
-   * Update o2m to WkfTrackingTotal in WkfTracking. Create or Update WkfTrackingTotal for given
-   * status with updated count of status.
-   *
-   * @param wkfTracking WkfTracking to update for WkfTrackingTotal.
-   * @param status Status to check for total update.
-   */
-  @Transactional
-  public void updateTrackingTotal(WkfTracking wkfTracking, String status) {
+      trackingLine = trackingLineRepo.save(trackingLine);
+      lastUpdated = now;
 
-    WkfTrackingTotal trackingTotal =
-        trackingTotalRepo
-            .all()
-            .filter("self.wkfTracking = :wkfTracking and self.status = :status")
-            .bind("wkfTracking", wkfTracking)
-            .bind("status", status)
-            .fetchOne();
+      WkfTrackingTotal trackingTotal =
+          trackingTotalMap.computeIfAbsent(status, key -> createTrackingTotal(wkfTracking, key));
+      trackingTotal.setTotalCount(trackingTotal.getTotalCount() + 1);
+      trackingTotalRepo.save(trackingTotal);
 
-    if (trackingTotal == null) {
-      trackingTotal = new WkfTrackingTotal();
-      trackingTotal.setWkfTracking(wkfTracking);
-      trackingTotal.setTotalCount(0);
-      trackingTotal.setStatus(status);
+      trackingTimeMap.computeIfAbsent(status, key -> createTrackingTime(wkfTracking, key));
     }
+  }
 
-    trackingTotal.setTotalCount(trackingTotal.getTotalCount() + 1);
+  protected WkfTrackingTotal createTrackingTotal(WkfTracking wkfTracking, String status) {
+    WkfTrackingTotal trackingTotal = new WkfTrackingTotal();
+    trackingTotal.setWkfTracking(wkfTracking);
+    trackingTotal.setTotalCount(0);
+    trackingTotal.setStatus(status);
+    return trackingTotal;
+  }
 
-    trackingTotalRepo.save(trackingTotal);
+  protected WkfTrackingTime createTrackingTime(WkfTracking wkfTracking, String status) {
+    WkfTrackingTime trackingTime = new WkfTrackingTime();
+    trackingTime.setWkfTracking(wkfTracking);
+    trackingTime.setStatus(status);
+    return trackingTimeRepo.save(trackingTime);
   }
 
   /**
-   * This method create or update WkfTrackingTime record for given WkfTracking and status. For
-   * existing WkfTrackingTime it update total time in days and hours.
+   * Add the given duration to the total time in days and hours of the WkfTrackingTime.
    *
-   * @param wkfTracking WkfTracking to update for WkfTrackingTime.
-   * @param status Status to check for WkfTrackingTime.
+   * @param trackingTime WkfTrackingTime of the previous status, may be null.
+   * @param durationHrs Time spent in the previous status, in hours.
    */
-  @Transactional
-  public void updateTrackingTime(WkfTracking wkfTracking, String status) {
-
-    WkfTrackingTime trackingTime =
-        trackingTimeRepo
-            .all()
-            .filter("self.wkfTracking = ?1 and self.status = ?2", wkfTracking, oldStatus)
-            .fetchOne();
-
-    if (trackingTime != null) {
-      BigDecimal days = durationHrs.divide(new BigDecimal(24), 2, RoundingMode.HALF_UP);
-      BigDecimal totalTimeDays = trackingTime.getTotalTimeDays().add(days);
-      trackingTime.setTotalTimeDays(totalTimeDays);
-      BigDecimal totalTimeHrs = trackingTime.getTotalTimeHours().add(durationHrs);
-      trackingTime.setTotalTimeHours(totalTimeHrs);
-      trackingTimeRepo.save(trackingTime);
-    }
-
-    trackingTime =
-        trackingTimeRepo
-            .all()
-            .filter("self.wkfTracking = ?1 and self.status = ?2", wkfTracking, status)
-            .fetchOne();
+  protected void updateTrackingTime(WkfTrackingTime trackingTime, BigDecimal durationHrs) {
 
     if (trackingTime == null) {
-      trackingTime = new WkfTrackingTime();
-      trackingTime.setWkfTracking(wkfTracking);
-      trackingTime.setStatus(status);
-      trackingTimeRepo.save(trackingTime);
+      return;
     }
+
+    BigDecimal days = durationHrs.divide(new BigDecimal(24), 2, RoundingMode.HALF_UP);
+    BigDecimal totalTimeDays = trackingTime.getTotalTimeDays().add(days);
+    trackingTime.setTotalTimeDays(totalTimeDays);
+    BigDecimal totalTimeHrs = trackingTime.getTotalTimeHours().add(durationHrs);
+    trackingTime.setTotalTimeHours(totalTimeHrs);
+    trackingTimeRepo.save(trackingTime);
   }
 }
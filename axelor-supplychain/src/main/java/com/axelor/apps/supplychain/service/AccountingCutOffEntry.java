@@ -0,0 +1,108 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Not invoiced amount of a stock move line, with the ids needed to group it with other lines into
+ * a cut-off move. Built outside of any persistence context so it can be computed in parallel.
+ */
+public class AccountingCutOffEntry {
+
+  private final Long stockMoveId;
+  private final Long companyId;
+  private final Long partnerId;
+  private final Long currencyId;
+  private final Long productId;
+  private final boolean fixedAssets;
+  private final BigDecimal amount;
+
+  private Long accountId;
+  private Long taxLineId;
+  private Long analyticDistributionTemplateId;
+
+  public AccountingCutOffEntry(
+      Long stockMoveId,
+      Long companyId,
+      Long partnerId,
+      Long currencyId,
+      Long productId,
+      boolean fixedAssets,
+      BigDecimal amount) {
+    this.stockMoveId = stockMoveId;
+    this.companyId = companyId;
+    this.partnerId = partnerId;
+    this.currencyId = currencyId;
+    this.productId = productId;
+    this.fixedAssets = fixedAssets;
+    this.amount = amount;
+  }
+
+  public Long getStockMoveId() {
+    return stockMoveId;
+  }
+
+  public Long getCompanyId() {
+    return companyId;
+  }
+
+  public Long getPartnerId() {
+    return partnerId;
+  }
+
+  public Long getCurrencyId() {
+    return currencyId;
+  }
+
+  public Long getProductId() {
+    return productId;
+  }
+
+  public boolean isFixedAssets() {
+    return fixedAssets;
+  }
+
+  public BigDecimal getAmount() {
+    return amount;
+  }
+
+  public Long getAccountId() {
+    return accountId;
+  }
+
+  public void setAccountId(Long accountId) {
+    this.accountId = accountId;
+  }
+
+  public Long getTaxLineId() {
+    return taxLineId;
+  }
+
+  public void setTaxLineId(Long taxLineId) {
+    this.taxLineId = taxLineId;
+  }
+
+  public Long getAnalyticDistributionTemplateId() {
+    return analyticDistributionTemplateId;
+  }
+
+  public void setAnalyticDistributionTemplateId(Long analyticDistributionTemplateId) {
+    this.analyticDistributionTemplateId = analyticDistributionTemplateId;
+  }
+}
@@ -20,6 +20,8 @@ package com.axelor.apps.supplychain.service;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.base.db.Batch;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.StockMoveLine;
 import com.axelor.exception.AxelorException;
@@ -27,6 +29,7 @@ import com.axelor.meta.CallMethod;
 import com.google.inject.persist.Transactional;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 public interface AccountingCutOffService {
 
@@ -37,6 +40,9 @@ public interface AccountingCutOffService {
       Integer limit,
       Integer offset);
 
+  public List<Long> getStockMoveIds(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate);
+
   @Transactional(rollbackOn = {Exception.class})
   public List<Move> generateCutOffMoves(
       StockMove stockMove,
@@ -62,6 +68,53 @@ public interface AccountingCutOffService {
       boolean isReverse)
       throws AxelorException;
 
+  /**
+   * Compute the not invoiced amount of each line of the given stock moves. Only reads the stock
+   * moves and their origin, so it can be called from several threads at once.
+   *
+   * @param stockMoveIdList ids of the stock moves
+   * @return one entry per stock move line to include in the cut-off
+   */
+  public List<AccountingCutOffEntry> getCutOffEntries(
+      List<Long> stockMoveIdList,
+      int accountingCutOffTypeSelect,
+      boolean recoveredTax,
+      boolean ati,
+      boolean includeNotStockManagedProduct)
+      throws AxelorException;
+
+  /**
+   * Fill the account, tax line and analytic distribution template of the given entries, resolving
+   * them only once per product, company and fiscal position.
+   *
+   * @param entryList the entries to complete
+   * @return the errors of the entries which could not be resolved, by stock move id
+   */
+  public Map<Long, AxelorException> resolveCutOffEntries(
+      List<AccountingCutOffEntry> entryList,
+      int accountingCutOffTypeSelect,
+      boolean recoveredTax,
+      LocalDate originDate);
+
+  /**
+   * Generate a cut-off move and its reverse move for a group of resolved entries, one line being
+   * created per account, tax line and analytic distribution template.
+   *
+   * @param partner the partner of the moves, null if the entries are grouped per account only
+   * @return the move and its reverse move, or null if there is nothing to generate
+   */
+  @Transactional(rollbackOn = {Exception.class})
+  public List<Move> generateGroupedCutOffMoves(
+      Company company,
+      Partner partner,
+      Currency currency,
+      List<AccountingCutOffEntry> entryList,
+      LocalDate moveDate,
+      LocalDate reverseMoveDate,
+      int accountingCutOffTypeSelect,
+      String moveDescription)
+      throws AxelorException;
+
   @CallMethod
   List<Long> getStockMoveLines(Batch batch);
 }
@@ -23,6 +23,7 @@ import com.axelor.apps.account.db.Account;
 import com.axelor.apps.account.db.AccountConfig;
 import com.axelor.apps.account.db.AnalyticDistributionTemplate;
 import com.axelor.apps.account.db.AnalyticMoveLine;
+import com.axelor.apps.account.db.FiscalPosition;
 import com.axelor.apps.account.db.Move;
 import com.axelor.apps.account.db.MoveLine;
 import com.axelor.apps.account.db.Tax;
@@ -67,10 +68,14 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class AccountingCutOffServiceImpl implements AccountingCutOffService {
@@ -140,6 +145,29 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
       Integer limit,
       Integer offset) {
 
+    Query<StockMove> query = getStockMoveQuery(company, accountingCutOffTypeSelect, moveDate);
+
+    if (limit != null && offset != null) {
+      return query.order("id").fetch(limit, offset);
+    }
+
+    return query.order("id").fetch();
+  }
+
+  public List<Long> getStockMoveIds(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate) {
+    return getStockMoveQuery(company, accountingCutOffTypeSelect, moveDate)
+        .order("id")
+        .select("id")
+        .fetch(0, 0)
+        .stream()
+        .map(m -> (Long) m.get("id"))
+        .collect(Collectors.toList());
+  }
+
+  protected Query<StockMove> getStockMoveQuery(
+      Company company, int accountingCutOffTypeSelect, LocalDate moveDate) {
+
     int stockMoveTypeSelect = 0;
 
     if (accountingCutOffTypeSelect
@@ -172,11 +200,7 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
       query.bind("companyId", company.getId());
     }
 
-    if (limit != null && offset != null) {
-      return query.order("id").fetch(limit, offset);
-    }
-
-    return query.order("id").fetch();
+    return query;
   }
 
   @Transactional(rollbackOn = {Exception.class})
@@ -324,6 +348,347 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     return move;
   }
 
+  public List<AccountingCutOffEntry> getCutOffEntries(
+      List<Long> stockMoveIdList,
+      int accountingCutOffTypeSelect,
+      boolean recoveredTax,
+      boolean ati,
+      boolean includeNotStockManagedProduct)
+      throws AxelorException {
+
+    boolean isPurchase =
+        accountingCutOffTypeSelect
+            == SupplychainBatchRepository.ACCOUNTING_CUT_OFF_TYPE_SUPPLIER_INVOICES;
+    List<AccountingCutOffEntry> entryList = new ArrayList<>();
+
+    for (Long stockMoveId : stockMoveIdList) {
+      StockMove stockMove = stockMoverepository.find(stockMoveId);
+
+      if (stockMove.getOriginTypeSelect() == null
+          || stockMove.getOriginId() == null
+          || stockMove.getStockMoveLineList() == null) {
+        continue;
+      }
+
+      Partner partner = stockMove.getPartner();
+      Currency currency = null;
+      if (StockMoveRepository.ORIGIN_SALE_ORDER.equals(stockMove.getOriginTypeSelect())) {
+        SaleOrder saleOrder = saleOrderRepository.find(stockMove.getOriginId());
+        currency = saleOrder.getCurrency();
+        if (partner == null) {
+          partner = saleOrder.getClientPartner();
+        }
+      }
+      if (StockMoveRepository.ORIGIN_PURCHASE_ORDER.equals(stockMove.getOriginTypeSelect())) {
+        PurchaseOrder purchaseOrder = purchaseOrderRepository.find(stockMove.getOriginId());
+        currency = purchaseOrder.getCurrency();
+        if (partner == null) {
+          partner = purchaseOrder.getSupplierPartner();
+        }
+      }
+
+      for (StockMoveLine stockMoveLine : stockMove.getStockMoveLineList()) {
+        Product product = stockMoveLine.getProduct();
+
+        if (checkStockMoveLine(stockMoveLine, product, includeNotStockManagedProduct)) {
+          continue;
+        }
+
+        BigDecimal amount =
+            computeNotInvoicedAmount(stockMoveLine, isPurchase, recoveredTax, ati);
+
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) == 0) {
+          continue;
+        }
+
+        entryList.add(
+            new AccountingCutOffEntry(
+                stockMoveId,
+                stockMove.getCompany().getId(),
+                partner != null ? partner.getId() : null,
+                currency != null ? currency.getId() : null,
+                product.getId(),
+                isFixedAssets(stockMoveLine, isPurchase),
+                amount));
+      }
+    }
+
+    return entryList;
+  }
+
+  public Map<Long, AxelorException> resolveCutOffEntries(
+      List<AccountingCutOffEntry> entryList,
+      int accountingCutOffTypeSelect,
+      boolean recoveredTax,
+      LocalDate originDate) {
+
+    boolean isPurchase =
+        accountingCutOffTypeSelect
+            == SupplychainBatchRepository.ACCOUNTING_CUT_OFF_TYPE_SUPPLIER_INVOICES;
+    boolean useAnalytic =
+        appAccountService.getAppAccount().getAnalyticDistributionTypeSelect()
+            != AppAccountRepository.DISTRIBUTION_TYPE_FREE;
+
+    Map<List<Object>, Long> accountIdMap = new HashMap<>();
+    Map<List<Object>, Long> taxLineIdMap = new HashMap<>();
+    Map<List<Object>, Long> analyticDistributionTemplateIdMap = new HashMap<>();
+    Map<Long, AxelorException> errorMap = new HashMap<>();
+
+    for (AccountingCutOffEntry entry : entryList) {
+      if (errorMap.containsKey(entry.getStockMoveId())) {
+        continue;
+      }
+
+      Company company = JPA.find(Company.class, entry.getCompanyId());
+      Product product = JPA.find(Product.class, entry.getProductId());
+      Partner partner =
+          entry.getPartnerId() != null ? JPA.find(Partner.class, entry.getPartnerId()) : null;
+      FiscalPosition fiscalPosition = partner != null ? partner.getFiscalPosition() : null;
+      Long fiscalPositionId = fiscalPosition != null ? fiscalPosition.getId() : null;
+
+      try {
+        List<Object> accountKey =
+            Arrays.asList(
+                entry.getCompanyId(),
+                entry.getProductId(),
+                fiscalPositionId,
+                entry.isFixedAssets());
+        if (!accountIdMap.containsKey(accountKey)) {
+          Account account =
+              accountManagementAccountService.getProductAccount(
+                  product, company, fiscalPosition, isPurchase, entry.isFixedAssets());
+          accountIdMap.put(accountKey, account != null ? account.getId() : null);
+        }
+        entry.setAccountId(accountIdMap.get(accountKey));
+
+        if (recoveredTax) {
+          List<Object> taxLineKey =
+              Arrays.asList(entry.getCompanyId(), entry.getProductId(), fiscalPositionId);
+          if (!taxLineIdMap.containsKey(taxLineKey)) {
+            TaxLine taxLine =
+                accountManagementAccountService.getTaxLine(
+                    originDate, product, company, fiscalPosition, isPurchase);
+            taxLineIdMap.put(taxLineKey, taxLine != null ? taxLine.getId() : null);
+          }
+          entry.setTaxLineId(taxLineIdMap.get(taxLineKey));
+        }
+      } catch (AxelorException e) {
+        errorMap.put(entry.getStockMoveId(), e);
+        continue;
+      }
+
+      if (useAnalytic) {
+        List<Object> analyticKey =
+            Arrays.asList(entry.getCompanyId(), entry.getProductId(), entry.getPartnerId());
+        if (!analyticDistributionTemplateIdMap.containsKey(analyticKey)) {
+          AnalyticDistributionTemplate analyticDistributionTemplate =
+              analyticMoveLineService.getAnalyticDistributionTemplate(partner, product, company);
+          analyticDistributionTemplateIdMap.put(
+              analyticKey,
+              analyticDistributionTemplate != null ? analyticDistributionTemplate.getId() : null);
+        }
+        entry.setAnalyticDistributionTemplateId(analyticDistributionTemplateIdMap.get(analyticKey));
+      }
+    }
+
+    return errorMap;
+  }
+
+  @Transactional(rollbackOn = {Exception.class})
+  public List<Move> generateGroupedCutOffMoves(
+      Company company,
+      Partner partner,
+      Currency currency,
+      List<AccountingCutOffEntry> entryList,
+      LocalDate moveDate,
+      LocalDate reverseMoveDate,
+      int accountingCutOffTypeSelect,
+      String moveDescription)
+      throws AxelorException {
+
+    boolean isPurchase =
+        accountingCutOffTypeSelect
+            == SupplychainBatchRepository.ACCOUNTING_CUT_OFF_TYPE_SUPPLIER_INVOICES;
+
+    Move move =
+        generateGroupedCutOffMove(
+            company,
+            partner,
+            currency,
+            entryList,
+            moveDate,
+            moveDate,
+            isPurchase,
+            moveDescription,
+            false);
+
+    if (move == null) {
+      return null;
+    }
+
+    Move reverseMove =
+        generateGroupedCutOffMove(
+            company,
+            partner,
+            currency,
+            entryList,
+            reverseMoveDate,
+            moveDate,
+            isPurchase,
+            moveDescription,
+            true);
+
+    if (reverseMove == null) {
+      return null;
+    }
+
+    reconcile(move, reverseMove);
+
+    List<Move> moveList = new ArrayList<>();
+    moveList.add(move);
+    moveList.add(reverseMove);
+    return moveList;
+  }
+
+  protected Move generateGroupedCutOffMove(
+      Company company,
+      Partner partner,
+      Currency currency,
+      List<AccountingCutOffEntry> entryList,
+      LocalDate moveDate,
+      LocalDate originDate,
+      boolean isPurchase,
+      String moveDescription,
+      boolean isReverse)
+      throws AxelorException {
+
+    if (moveDate == null) {
+      return null;
+    }
+
+    AccountConfig accountConfig = accountConfigSupplychainService.getAccountConfig(company);
+    Account partnerAccount =
+        isPurchase
+            ? accountConfigSupplychainService.getForecastedInvSuppAccount(accountConfig)
+            : accountConfigSupplychainService.getForecastedInvCustAccount(accountConfig);
+
+    Move move =
+        moveCreateService.createMove(
+            accountConfigSupplychainService.getAutoMiscOpeJournal(accountConfig),
+            company,
+            currency,
+            partner,
+            moveDate,
+            null,
+            MoveRepository.TECHNICAL_ORIGIN_AUTOMATIC);
+
+    counter = 0;
+
+    // sum the entries sharing the same account, tax line and analytic distribution template
+    Map<List<Object>, BigDecimal> amountMap = new LinkedHashMap<>();
+    for (AccountingCutOffEntry entry : entryList) {
+      amountMap.merge(
+          Arrays.asList(
+              entry.getAccountId(),
+              entry.getTaxLineId(),
+              entry.getAnalyticDistributionTemplateId(),
+              entry.isFixedAssets()),
+          entry.getAmount(),
+          BigDecimal::add);
+    }
+
+    for (Map.Entry<List<Object>, BigDecimal> amountEntry : amountMap.entrySet()) {
+      List<Object> key = amountEntry.getKey();
+      BigDecimal amountInCurrency = amountEntry.getValue();
+
+      if (amountInCurrency.compareTo(BigDecimal.ZERO) == 0) {
+        continue;
+      }
+
+      generateGroupedProductMoveLine(
+          move,
+          key.get(0) != null ? JPA.find(Account.class, (Long) key.get(0)) : null,
+          key.get(1) != null ? JPA.find(TaxLine.class, (Long) key.get(1)) : null,
+          key.get(2) != null
+              ? JPA.find(AnalyticDistributionTemplate.class, (Long) key.get(2))
+              : null,
+          (Boolean) key.get(3),
+          amountInCurrency,
+          isPurchase,
+          moveDescription,
+          isReverse,
+          originDate);
+    }
+
+    this.generatePartnerMoveLine(move, null, partnerAccount, moveDescription, originDate);
+
+    if (move.getMoveLineList() != null && !move.getMoveLineList().isEmpty()) {
+      moveValidateService.validate(move);
+    } else {
+      moveRepository.remove(move);
+      return null;
+    }
+
+    return move;
+  }
+
+  protected MoveLine generateGroupedProductMoveLine(
+      Move move,
+      Account account,
+      TaxLine taxLine,
+      AnalyticDistributionTemplate analyticDistributionTemplate,
+      boolean isFixedAssets,
+      BigDecimal amountInCurrency,
+      boolean isPurchase,
+      String moveDescription,
+      boolean isReverse,
+      LocalDate originDate)
+      throws AxelorException {
+
+    LocalDate moveDate = move.getDate();
+
+    boolean isDebit = false;
+    if ((isPurchase && amountInCurrency.compareTo(BigDecimal.ZERO) == 1)
+        || !isPurchase && amountInCurrency.compareTo(BigDecimal.ZERO) == -1) {
+      isDebit = true;
+    }
+    if (isReverse) {
+      isDebit = !isDebit;
+    }
+
+    MoveLine moveLine =
+        moveLineService.createMoveLine(
+            move,
+            move.getPartner(),
+            account,
+            amountInCurrency,
+            isDebit,
+            originDate,
+            ++counter,
+            null,
+            moveDescription);
+    moveLine.setDate(moveDate);
+    moveLine.setDueDate(moveDate);
+
+    if (analyticDistributionTemplate != null) {
+      computeAnalyticDistribution(moveLine, analyticDistributionTemplate);
+    }
+
+    move.addMoveLineListItem(moveLine);
+
+    if (taxLine != null) {
+      moveLine.setTaxLine(taxLine);
+      moveLine.setTaxRate(taxLine.getValue());
+      moveLine.setTaxCode(taxLine.getTax().getCode());
+
+      if (taxLine.getValue().compareTo(BigDecimal.ZERO) != 0) {
+        generateTaxMoveLine(move, moveLine, null, isPurchase, isFixedAssets, moveDescription);
+      }
+    }
+
+    return moveLine;
+  }
+
   protected List<MoveLine> generateMoveLines(
       Move move,
       List<StockMoveLine> stockMoveLineList,
@@ -383,64 +748,19 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
       LocalDate originDate)
       throws AxelorException {
 
-    SaleOrderLine saleOrderLine = stockMoveLine.getSaleOrderLine();
-    PurchaseOrderLine purchaseOrderLine = stockMoveLine.getPurchaseOrderLine();
     Company company = move.getCompany();
     LocalDate moveDate = move.getDate();
     Partner partner = move.getPartner();
 
-    boolean isFixedAssets = false;
-    BigDecimal amountInCurrency = null;
-    BigDecimal totalQty = null;
-    BigDecimal notInvoicedQty = null;
-
-    if (isPurchase && purchaseOrderLine != null) {
-      totalQty = purchaseOrderLine.getQty();
-
-      notInvoicedQty =
-          unitConversionService.convert(
-              stockMoveLine.getUnit(),
-              purchaseOrderLine.getUnit(),
-              stockMoveLine.getRealQty().subtract(stockMoveLine.getQtyInvoiced()),
-              stockMoveLine.getRealQty().scale(),
-              purchaseOrderLine.getProduct());
-
-      isFixedAssets = purchaseOrderLine.getFixedAssets();
-      if (ati && !recoveredTax) {
-        amountInCurrency = purchaseOrderLine.getInTaxTotal();
-      } else {
-        amountInCurrency = purchaseOrderLine.getExTaxTotal();
-      }
-    }
-    if (!isPurchase && saleOrderLine != null) {
-      totalQty = saleOrderLine.getQty();
-
-      notInvoicedQty =
-          unitConversionService.convert(
-              stockMoveLine.getUnit(),
-              saleOrderLine.getUnit(),
-              stockMoveLine.getRealQty().subtract(stockMoveLine.getQtyInvoiced()),
-              stockMoveLine.getRealQty().scale(),
-              saleOrderLine.getProduct());
-      if (ati) {
-        amountInCurrency = saleOrderLine.getInTaxTotal();
-      } else {
-        amountInCurrency = saleOrderLine.getExTaxTotal();
-      }
-    }
-    if (totalQty == null || BigDecimal.ZERO.compareTo(totalQty) == 0) {
-      return null;
-    }
-
-    BigDecimal qtyRate = notInvoicedQty.divide(totalQty, 10, RoundingMode.HALF_UP);
-    amountInCurrency = amountInCurrency.multiply(qtyRate).setScale(2, RoundingMode.HALF_UP);
+    boolean isFixedAssets = isFixedAssets(stockMoveLine, isPurchase);
+    BigDecimal amountInCurrency =
+        computeNotInvoicedAmount(stockMoveLine, isPurchase, recoveredTax, ati);
 
     if (amountInCurrency == null || amountInCurrency.compareTo(BigDecimal.ZERO) == 0) {
       return null;
     }
 
     Product product = stockMoveLine.getProduct();
-
     Account account =
         accountManagementAccountService.getProductAccount(
             product, company, partner.getFiscalPosition(), isPurchase, isFixedAssets);
@@ -490,6 +810,69 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
     return moveLine;
   }
 
+  /**
+   * Compute the amount of the order line corresponding to the quantity of the stock move line
+   * which is not invoiced yet.
+   *
+   * @return the amount, or null if the stock move line has no order line to take it from
+   */
+  protected BigDecimal computeNotInvoicedAmount(
+      StockMoveLine stockMoveLine, boolean isPurchase, boolean recoveredTax, boolean ati)
+      throws AxelorException {
+
+    SaleOrderLine saleOrderLine = stockMoveLine.getSaleOrderLine();
+    PurchaseOrderLine purchaseOrderLine = stockMoveLine.getPurchaseOrderLine();
+
+    BigDecimal amountInCurrency = null;
+    BigDecimal totalQty = null;
+    BigDecimal notInvoicedQty = null;
+
+    if (isPurchase && purchaseOrderLine != null) {
+      totalQty = purchaseOrderLine.getQty();
+
+      notInvoicedQty =
+          unitConversionService.convert(
+              stockMoveLine.getUnit(),
+              purchaseOrderLine.getUnit(),
+              stockMoveLine.getRealQty().subtract(stockMoveLine.getQtyInvoiced()),
+              stockMoveLine.getRealQty().scale(),
+              purchaseOrderLine.getProduct());
+
+      if (ati && !recoveredTax) {
+        amountInCurrency = purchaseOrderLine.getInTaxTotal();
+      } else {
+        amountInCurrency = purchaseOrderLine.getExTaxTotal();
+      }
+    }
+    if (!isPurchase && saleOrderLine != null) {
+      totalQty = saleOrderLine.getQty();
+
+      notInvoicedQty =
+          unitConversionService.convert(
+              stockMoveLine.getUnit(),
+              saleOrderLine.getUnit(),
+              stockMoveLine.getRealQty().subtract(stockMoveLine.getQtyInvoiced()),
+              stockMoveLine.getRealQty().scale(),
+              saleOrderLine.getProduct());
+      if (ati) {
+        amountInCurrency = saleOrderLine.getInTaxTotal();
+      } else {
+        amountInCurrency = saleOrderLine.getExTaxTotal();
+      }
+    }
+    if (totalQty == null || BigDecimal.ZERO.compareTo(totalQty) == 0) {
+      return null;
+    }
+
+    BigDecimal qtyRate = notInvoicedQty.divide(totalQty, 10, RoundingMode.HALF_UP);
+    return amountInCurrency.multiply(qtyRate).setScale(2, RoundingMode.HALF_UP);
+  }
+
+  protected boolean isFixedAssets(StockMoveLine stockMoveLine, boolean isPurchase) {
+    PurchaseOrderLine purchaseOrderLine = stockMoveLine.getPurchaseOrderLine();
+    return isPurchase && purchaseOrderLine != null && purchaseOrderLine.getFixedAssets();
+  }
+
   protected void generateTaxMoveLine(
       Move move,
       MoveLine productMoveLine,
@@ -571,6 +954,12 @@ public class AccountingCutOffServiceImpl implements AccountingCutOffService {
         analyticMoveLineService.getAnalyticDistributionTemplate(
             move.getPartner(), product, move.getCompany());
 
+    computeAnalyticDistribution(moveLine, analyticDistributionTemplate);
+  }
+
+  protected void computeAnalyticDistribution(
+      MoveLine moveLine, AnalyticDistributionTemplate analyticDistributionTemplate) {
+
     moveLine.setAnalyticDistributionTemplate(analyticDistributionTemplate);
 
     List<AnalyticMoveLine> analyticMoveLineList =
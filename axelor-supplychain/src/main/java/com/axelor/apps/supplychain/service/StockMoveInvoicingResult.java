@@ -0,0 +1,58 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.supplychain.service;
+
+/** Outcome of the invoicing of one stock move during a mass invoicing. */
+public class StockMoveInvoicingResult {
+
+  private final Long stockMoveId;
+  private final String stockMoveName;
+  private Long invoiceId;
+  private Exception exception;
+
+  public StockMoveInvoicingResult(Long stockMoveId, String stockMoveName) {
+    this.stockMoveId = stockMoveId;
+    this.stockMoveName = stockMoveName;
+  }
+
+  public Long getStockMoveId() {
+    return stockMoveId;
+  }
+
+  public String getStockMoveName() {
+    return stockMoveName;
+  }
+
+  /** Get the id of the generated invoice, null if no invoice has been generated. */
+  public Long getInvoiceId() {
+    return invoiceId;
+  }
+
+  public void setInvoiceId(Long invoiceId) {
+    this.invoiceId = invoiceId;
+  }
+
+  /** Get the error raised while invoicing the stock move, null if it has been invoiced. */
+  public Exception getException() {
+    return exception;
+  }
+
+  public void setException(Exception exception) {
+    this.exception = exception;
+  }
+}
@@ -39,6 +39,15 @@ public interface StockMoveMultiInvoiceService {
    */
   Entry<List<Long>, String> generateMultipleInvoices(List<Long> stockMoveIdList);
 
+  /**
+   * Generate one invoice per stock move. The stock moves are partitioned by company and partner
+   * and the partitions are invoiced in parallel, an error on a stock move not stopping the others.
+   *
+   * @param stockMoveIdList a list of stock move ids.
+   * @return the result of each stock move, in the order of the given ids.
+   */
+  List<StockMoveInvoicingResult> invoiceStockMoves(List<Long> stockMoveIdList);
+
   Map<String, Object> areFieldsConflictedToGenerateCustInvoice(List<StockMove> stockMoveList)
       throws AxelorException;
 
@@ -31,6 +31,8 @@ import com.axelor.apps.base.db.Partner;
 import com.axelor.apps.base.service.AddressService;
 import com.axelor.apps.base.service.PartnerService;
 import com.axelor.apps.base.service.administration.AbstractBatch;
+import com.axelor.apps.base.service.tax.AccountManagementCache;
+import com.axelor.apps.base.service.tax.AccountManagementCacheService;
 import com.axelor.apps.purchase.db.PurchaseOrder;
 import com.axelor.apps.purchase.db.repo.PurchaseOrderRepository;
 import com.axelor.apps.sale.db.SaleOrder;
@@ -38,34 +40,46 @@ import com.axelor.apps.sale.db.repo.SaleOrderRepository;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.supplychain.exception.IExceptionMessage;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.apps.tool.StringTool;
 import com.axelor.db.JPA;
-import com.axelor.db.Query;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.TraceBackRepository;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import java.lang.invoke.MethodHandles;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class StockMoveMultiInvoiceServiceImpl implements StockMoveMultiInvoiceService {
 
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  protected static final int MAX_PARALLEL_PARTITIONS = 4;
+
   private InvoiceRepository invoiceRepository;
   private SaleOrderRepository saleOrderRepository;
   private PurchaseOrderRepository purchaseOrderRepository;
   private StockMoveInvoiceService stockMoveInvoiceService;
 
+  @Inject protected AccountManagementCacheService accountManagementCacheService;
+
   @Inject
   public StockMoveMultiInvoiceServiceImpl(
       InvoiceRepository invoiceRepository,
@@ -80,43 +94,135 @@ public class StockMoveMultiInvoiceServiceImpl implements StockMoveMultiInvoiceSe
 
   @Override
   public Entry<List<Long>, String> generateMultipleInvoices(List<Long> stockMoveIdList) {
-    StockMoveRepository stockMoveRepository = Beans.get(StockMoveRepository.class);
     List<Long> invoiceIdList = new ArrayList<>();
-
     StringBuilder stockMovesInError = new StringBuilder();
-    List<StockMove> stockMoveList;
-    Query<StockMove> stockMoveQuery =
-        stockMoveRepository
-            .all()
-            .filter("self.id IN :stockMoveIdList")
-            .bind("stockMoveIdList", stockMoveIdList)
-            .order("id");
-    int offset = 0;
-
-    while (!(stockMoveList = stockMoveQuery.fetch(AbstractBatch.FETCH_LIMIT, offset)).isEmpty()) {
-      for (StockMove stockMove : stockMoveList) {
-        offset++;
+
+    for (StockMoveInvoicingResult result : invoiceStockMoves(stockMoveIdList)) {
+      if (result.getException() != null) {
+        if (stockMovesInError.length() > 0) {
+          stockMovesInError.append("<br/>");
+        }
+        stockMovesInError.append(
+            String.format(
+                I18n.get(IExceptionMessage.STOCK_MOVE_GENERATE_INVOICE),
+                result.getStockMoveName(),
+                result.getException().getLocalizedMessage()));
+      } else if (result.getInvoiceId() != null) {
+        invoiceIdList.add(result.getInvoiceId());
+      }
+    }
+
+    return new SimpleImmutableEntry<>(invoiceIdList, stockMovesInError.toString());
+  }
+
+  @Override
+  public List<StockMoveInvoicingResult> invoiceStockMoves(List<Long> stockMoveIdList) {
+    long startTime = System.currentTimeMillis();
+    List<List<Long>> partitionList = getPartitions(stockMoveIdList);
+    Map<Long, StockMoveInvoicingResult> resultMap = new HashMap<>();
+
+    // Accounts and taxes resolved by the workers are shared for this run only.
+    AccountManagementCache cache = new AccountManagementCache();
+    List<Callable<List<StockMoveInvoicingResult>>> tasks = new ArrayList<>();
+    for (List<Long> partition : partitionList) {
+      tasks.add(
+          () ->
+              accountManagementCacheService.callWith(
+                  cache, () -> invoiceStockMovePartition(partition)));
+    }
+
+    ParallelTool.run(
+        tasks,
+        MAX_PARALLEL_PARTITIONS,
+        (results, i) -> results.forEach(result -> resultMap.put(result.getStockMoveId(), result)),
+        (e, i) -> {
+          Exception cause = e instanceof Exception ? (Exception) e : new Exception(e);
+          for (Long stockMoveId : partitionList.get(i)) {
+            StockMoveInvoicingResult result =
+                new StockMoveInvoicingResult(stockMoveId, String.valueOf(stockMoveId));
+            result.setException(cause);
+            resultMap.put(stockMoveId, result);
+          }
+        });
+
+    long duration = Math.max(1, System.currentTimeMillis() - startTime);
+    long invoiceCount = resultMap.values().stream().filter(r -> r.getInvoiceId() != null).count();
+    LOG.info(
+        "{} invoices generated from {} stock moves in {} ms ({} invoices/s)",
+        invoiceCount,
+        stockMoveIdList.size(),
+        duration,
+        invoiceCount * 1000 / duration);
+
+    return stockMoveIdList.stream()
+        .map(resultMap::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Split the stock moves by company and partner, so that the stock moves of the same orders are
+   * never invoiced at the same time by two workers.
+   */
+  protected List<List<Long>> getPartitions(List<Long> stockMoveIdList) {
+    if (stockMoveIdList.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    List<Object[]> rows =
+        JPA.em()
+            .createQuery(
+                "SELECT self.id, company.id, partner.id FROM StockMove self "
+                    + "LEFT JOIN self.company company "
+                    + "LEFT JOIN self.partner partner "
+                    + "WHERE self.id IN :stockMoveIdList "
+                    + "ORDER BY self.id",
+                Object[].class)
+            .setParameter("stockMoveIdList", stockMoveIdList)
+            .getResultList();
+
+    Map<List<Long>, List<Long>> partitionMap = new LinkedHashMap<>();
+    for (Object[] row : rows) {
+      partitionMap
+          .computeIfAbsent(Arrays.asList((Long) row[1], (Long) row[2]), key -> new ArrayList<>())
+          .add((Long) row[0]);
+    }
+
+    return new ArrayList<>(partitionMap.values());
+  }
+
+  /** Invoice the stock moves of a partition from a worker thread, one transaction per move. */
+  protected List<StockMoveInvoicingResult> invoiceStockMovePartition(List<Long> stockMoveIdList) {
+    StockMoveRepository stockMoveRepository = Beans.get(StockMoveRepository.class);
+    List<StockMoveInvoicingResult> resultList = new ArrayList<>();
+
+    try {
+      for (Long stockMoveId : stockMoveIdList) {
+        StockMove stockMove = stockMoveRepository.find(stockMoveId);
+        StockMoveInvoicingResult result =
+            new StockMoveInvoicingResult(stockMoveId, stockMove.getName());
+
         try {
           Invoice invoice = stockMoveInvoiceService.createInvoice(stockMove, 0, null);
           if (invoice != null) {
-            invoiceIdList.add(invoice.getId());
+            result.setInvoiceId(invoice.getId());
           }
         } catch (Exception e) {
-          if (stockMovesInError.length() > 0) {
-            stockMovesInError.append("<br/>");
-          }
-          stockMovesInError.append(
-              String.format(
-                  I18n.get(IExceptionMessage.STOCK_MOVE_GENERATE_INVOICE),
-                  stockMove.getName(),
-                  e.getLocalizedMessage()));
-          break;
+          result.setException(e);
+          JPA.clear();
+        }
+
+        resultList.add(result);
+
+        if (resultList.size() % AbstractBatch.FETCH_LIMIT == 0) {
+          JPA.clear();
         }
       }
+    } finally {
       JPA.clear();
     }
 
-    return new SimpleImmutableEntry<>(invoiceIdList, stockMovesInError.toString());
+    return resultList;
   }
 
   @Override
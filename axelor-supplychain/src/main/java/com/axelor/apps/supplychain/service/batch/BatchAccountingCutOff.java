@@ -18,12 +18,21 @@
 package com.axelor.apps.supplychain.service.batch;
 
 import com.axelor.apps.account.db.Move;
+import com.axelor.apps.account.db.repo.MoveRepository;
 import com.axelor.apps.base.db.Company;
+import com.axelor.apps.base.db.Currency;
+import com.axelor.apps.base.db.Partner;
+import com.axelor.apps.base.db.repo.CompanyRepository;
+import com.axelor.apps.base.db.repo.CurrencyRepository;
+import com.axelor.apps.base.db.repo.PartnerRepository;
 import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.supplychain.db.SupplychainBatch;
+import com.axelor.apps.supplychain.db.repo.SupplychainBatchRepository;
 import com.axelor.apps.supplychain.exception.IExceptionMessage;
+import com.axelor.apps.supplychain.service.AccountingCutOffEntry;
 import com.axelor.apps.supplychain.service.AccountingCutOffService;
+import com.axelor.apps.tool.ParallelTool;
 import com.axelor.db.JPA;
 import com.axelor.exception.AxelorException;
 import com.axelor.exception.db.repo.ExceptionOriginRepository;
@@ -33,7 +42,15 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,16 +59,31 @@ public class BatchAccountingCutOff extends BatchStrategy {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   protected static final int FETCH_LIMIT = 1;
+  protected static final int CHUNK_SIZE = 50;
+  protected static final int MAX_PARALLEL_CHUNKS = 4;
 
   protected AccountingCutOffService cutOffService;
   protected StockMoveRepository stockMoveRepository;
+  protected MoveRepository moveRepository;
+  protected CompanyRepository companyRepository;
+  protected PartnerRepository partnerRepository;
+  protected CurrencyRepository currencyRepository;
 
   @Inject
   public BatchAccountingCutOff(
-      AccountingCutOffService cutOffService, StockMoveRepository stockMoveRepository) {
+      AccountingCutOffService cutOffService,
+      StockMoveRepository stockMoveRepository,
+      MoveRepository moveRepository,
+      CompanyRepository companyRepository,
+      PartnerRepository partnerRepository,
+      CurrencyRepository currencyRepository) {
     super();
     this.cutOffService = cutOffService;
     this.stockMoveRepository = stockMoveRepository;
+    this.moveRepository = moveRepository;
+    this.companyRepository = companyRepository;
+    this.partnerRepository = partnerRepository;
+    this.currencyRepository = currencyRepository;
   }
 
   @Override
@@ -74,6 +106,22 @@ public class BatchAccountingCutOff extends BatchStrategy {
       return;
     }
 
+    if (supplychainBatch.getCutOffGroupingSelect()
+        != SupplychainBatchRepository.CUT_OFF_GROUPING_STOCK_MOVE) {
+      processGrouped(
+          company,
+          moveDate,
+          reverseMoveDate,
+          accountingCutOffTypeSelect,
+          recoveredTax,
+          ati,
+          moveDescription,
+          includeNotStockManagedProduct,
+          supplychainBatch.getCutOffGroupingSelect()
+              == SupplychainBatchRepository.CUT_OFF_GROUPING_PARTNER);
+      return;
+    }
+
     List<StockMove> stockMoveList;
 
     while (!(stockMoveList =
@@ -130,6 +178,165 @@ public class BatchAccountingCutOff extends BatchStrategy {
     }
   }
 
+  /**
+   * Generate one cut-off move per partner and currency, or per currency only, instead of one per
+   * stock move. The not invoiced amounts are computed in parallel chunks of stock moves, then the
+   * accounts and taxes are resolved once per product before the moves are generated.
+   */
+  protected void processGrouped(
+      Company company,
+      LocalDate moveDate,
+      LocalDate reverseMoveDate,
+      int accountingCutOffTypeSelect,
+      boolean recoveredTax,
+      boolean ati,
+      String moveDescription,
+      boolean includeNotStockManagedProduct,
+      boolean groupPerPartner) {
+
+    long startTime = System.currentTimeMillis();
+    List<Long> stockMoveIdList =
+        cutOffService.getStockMoveIds(company, accountingCutOffTypeSelect, moveDate);
+    List<AccountingCutOffEntry> entryList = new ArrayList<>();
+    List<Callable<List<AccountingCutOffEntry>>> tasks = new ArrayList<>();
+
+    for (int i = 0; i < stockMoveIdList.size(); i += CHUNK_SIZE) {
+      List<Long> chunk =
+          stockMoveIdList.subList(i, Math.min(i + CHUNK_SIZE, stockMoveIdList.size()));
+      tasks.add(
+          () ->
+              cutOffService.getCutOffEntries(
+                  chunk,
+                  accountingCutOffTypeSelect,
+                  recoveredTax,
+                  ati,
+                  includeNotStockManagedProduct));
+    }
+
+    boolean completed =
+        ParallelTool.run(
+            tasks,
+            MAX_PARALLEL_CHUNKS,
+            (entries, i) -> entryList.addAll(entries),
+            (e, i) -> {
+              TraceBackService.trace(e, ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
+              incrementAnomaly();
+            });
+    if (!completed) {
+      return;
+    }
+
+    LOG.debug(
+        "{} cut-off lines computed for {} stock moves in {} ms",
+        entryList.size(),
+        stockMoveIdList.size(),
+        System.currentTimeMillis() - startTime);
+
+    Map<Long, AxelorException> errorMap =
+        cutOffService.resolveCutOffEntries(
+            entryList, accountingCutOffTypeSelect, recoveredTax, moveDate);
+
+    for (Map.Entry<Long, AxelorException> error : errorMap.entrySet()) {
+      AxelorException e = error.getValue();
+      TraceBackService.trace(
+          new AxelorException(
+              e,
+              e.getCategory(),
+              I18n.get("StockMove") + " %s",
+              stockMoveRepository.find(error.getKey()).getStockMoveSeq()),
+          ExceptionOriginRepository.INVOICE_ORIGIN,
+          batch.getId());
+      incrementAnomaly();
+    }
+
+    Map<List<Long>, List<AccountingCutOffEntry>> groupMap = new LinkedHashMap<>();
+    for (AccountingCutOffEntry entry : entryList) {
+      if (!errorMap.containsKey(entry.getStockMoveId())) {
+        groupMap
+            .computeIfAbsent(
+                Arrays.asList(
+                    entry.getCompanyId(),
+                    groupPerPartner ? entry.getPartnerId() : null,
+                    entry.getCurrencyId()),
+                key -> new ArrayList<>())
+            .add(entry);
+      }
+    }
+    JPA.clear();
+
+    for (Map.Entry<List<Long>, List<AccountingCutOffEntry>> group : groupMap.entrySet()) {
+      findBatch();
+      generateGroupedCutOffMoves(
+          group.getKey(),
+          group.getValue(),
+          moveDate,
+          reverseMoveDate,
+          accountingCutOffTypeSelect,
+          moveDescription);
+      JPA.clear();
+    }
+
+    LOG.debug(
+        "{} cut-off groups generated in {} ms",
+        groupMap.size(),
+        System.currentTimeMillis() - startTime);
+  }
+
+  protected void generateGroupedCutOffMoves(
+      List<Long> groupKey,
+      List<AccountingCutOffEntry> entryList,
+      LocalDate moveDate,
+      LocalDate reverseMoveDate,
+      int accountingCutOffTypeSelect,
+      String moveDescription) {
+
+    Set<Long> stockMoveIdSet =
+        entryList.stream()
+            .map(AccountingCutOffEntry::getStockMoveId)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+
+    try {
+      Company company = companyRepository.find(groupKey.get(0));
+      Partner partner = groupKey.get(1) != null ? partnerRepository.find(groupKey.get(1)) : null;
+      Currency currency = groupKey.get(2) != null ? currencyRepository.find(groupKey.get(2)) : null;
+
+      List<Move> moveList =
+          cutOffService.generateGroupedCutOffMoves(
+              company,
+              partner,
+              currency,
+              entryList,
+              moveDate,
+              reverseMoveDate,
+              accountingCutOffTypeSelect,
+              moveDescription);
+
+      if (moveList != null && !moveList.isEmpty()) {
+        for (Long stockMoveId : stockMoveIdSet) {
+          updateStockMove(stockMoveRepository.find(stockMoveId));
+        }
+
+        for (Move move : moveList) {
+          updateAccountMove(moveRepository.find(move.getId()), false);
+        }
+      }
+
+    } catch (Exception e) {
+      String stockMoveSeqs =
+          stockMoveIdSet.stream()
+              .map(stockMoveId -> stockMoveRepository.find(stockMoveId).getStockMoveSeq())
+              .collect(Collectors.joining(", "));
+      TraceBackService.trace(
+          new Exception(String.format(I18n.get("StockMove") + " %s", stockMoveSeqs), e),
+          ExceptionOriginRepository.INVOICE_ORIGIN,
+          batch.getId());
+      for (int i = 0; i < stockMoveIdSet.size(); i++) {
+        incrementAnomaly();
+      }
+      LOG.error("Anomaly generated for the stock moves {}", stockMoveSeqs);
+    }
+  }
+
   @Transactional
   public void updateBatch(LocalDate moveDate, int accountingCutOffTypeSelect) {
     batch.setMoveDate(moveDate);
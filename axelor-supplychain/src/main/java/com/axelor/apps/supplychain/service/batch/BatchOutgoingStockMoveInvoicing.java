@@ -20,45 +20,43 @@ package com.axelor.apps.supplychain.service.batch;
 import com.axelor.apps.account.db.repo.InvoiceRepository;
 import com.axelor.apps.base.db.repo.BlockingRepository;
 import com.axelor.apps.base.service.BlockingService;
-import com.axelor.apps.sale.db.repo.SaleOrderRepository;
-import com.axelor.apps.stock.db.StockMove;
 import com.axelor.apps.stock.db.repo.StockMoveRepository;
 import com.axelor.apps.supplychain.db.SupplychainBatch;
 import com.axelor.apps.supplychain.exception.IExceptionMessage;
-import com.axelor.apps.supplychain.service.StockMoveInvoiceService;
+import com.axelor.apps.supplychain.service.StockMoveInvoicingResult;
+import com.axelor.apps.supplychain.service.StockMoveMultiInvoiceService;
 import com.axelor.db.JPA;
 import com.axelor.exception.db.repo.ExceptionOriginRepository;
 import com.axelor.exception.service.TraceBackService;
 import com.axelor.i18n.I18n;
 import com.axelor.inject.Beans;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import java.util.List;
-import javax.persistence.TypedQuery;
 
 public class BatchOutgoingStockMoveInvoicing extends BatchStrategy {
 
-  private StockMoveInvoiceService stockMoveInvoiceService;
+  private StockMoveMultiInvoiceService stockMoveMultiInvoiceService;
+  private StockMoveRepository stockMoveRepository;
 
   @Inject
-  public BatchOutgoingStockMoveInvoicing(StockMoveInvoiceService stockMoveInvoiceService) {
-    this.stockMoveInvoiceService = stockMoveInvoiceService;
+  public BatchOutgoingStockMoveInvoicing(
+      StockMoveMultiInvoiceService stockMoveMultiInvoiceService,
+      StockMoveRepository stockMoveRepository) {
+    this.stockMoveMultiInvoiceService = stockMoveMultiInvoiceService;
+    this.stockMoveRepository = stockMoveRepository;
   }
 
   @Override
   protected void process() {
     SupplychainBatch supplychainBatch = batch.getSupplychainBatch();
-    List<Long> anomalyList = Lists.newArrayList(0L);
-    SaleOrderRepository saleRepo = Beans.get(SaleOrderRepository.class);
 
-    TypedQuery<StockMove> query =
+    List<Long> stockMoveIdList =
         JPA.em()
             .createQuery(
-                "SELECT self FROM StockMove self "
+                "SELECT self.id FROM StockMove self "
                     + "WHERE self.statusSelect = :statusSelect "
                     + "AND self.originTypeSelect LIKE :typeSaleOrder "
                     + "AND (SELECT count(invoice.id) FROM Invoice invoice WHERE invoice.statusSelect != :invoiceStatusCanceled AND invoice MEMBER OF self.invoiceSet) = 0"
-                    + "AND self.id NOT IN (:anomalyList) "
                     + "AND self.partner.id NOT IN ("
                     + Beans.get(BlockingService.class)
                         .listOfBlockedPartner(
@@ -66,30 +64,29 @@ public class BatchOutgoingStockMoveInvoicing extends BatchStrategy {
                     + ") "
                     + "AND :batch NOT MEMBER OF self.batchSet "
                     + "ORDER BY self.id",
-                StockMove.class)
+                Long.class)
             .setParameter("statusSelect", StockMoveRepository.STATUS_REALIZED)
             .setParameter("typeSaleOrder", StockMoveRepository.ORIGIN_SALE_ORDER)
             .setParameter("invoiceStatusCanceled", InvoiceRepository.STATUS_CANCELED)
-            .setParameter("anomalyList", anomalyList)
             .setParameter("batch", batch)
-            .setMaxResults(FETCH_LIMIT);
+            .getResultList();
 
-    List<StockMove> stockMoveList;
-    while (!(stockMoveList = query.getResultList()).isEmpty()) {
-      for (StockMove stockMove : stockMoveList) {
-        try {
-          stockMoveInvoiceService.createInvoiceFromSaleOrder(
-              stockMove, saleRepo.find(stockMove.getOriginId()), null);
-          updateStockMove(stockMove);
-        } catch (Exception e) {
-          incrementAnomaly();
-          anomalyList.add(stockMove.getId());
-          query.setParameter("anomalyList", anomalyList);
-          TraceBackService.trace(e, ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
-          break;
-        }
+    List<StockMoveInvoicingResult> resultList =
+        stockMoveMultiInvoiceService.invoiceStockMoves(stockMoveIdList);
+
+    int count = 0;
+    for (StockMoveInvoicingResult result : resultList) {
+      if (result.getException() != null) {
+        incrementAnomaly();
+        TraceBackService.trace(
+            result.getException(), ExceptionOriginRepository.INVOICE_ORIGIN, batch.getId());
+      } else {
+        updateStockMove(stockMoveRepository.find(result.getStockMoveId()));
+      }
+
+      if (++count % FETCH_LIMIT == 0) {
+        JPA.clear();
       }
-      JPA.clear();
     }
   }
 
@@ -0,0 +1,125 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.tool;
+
+import com.axelor.auth.AuthUtils;
+import com.axelor.inject.Beans;
+import com.google.inject.persist.UnitOfWork;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ObjIntConsumer;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+
+/** Run tasks of a batch or a service on a bounded pool of worker threads. */
+public final class ParallelTool {
+
+  private static final String REALM_NAME = "ParallelTool";
+
+  private ParallelTool() {}
+
+  /**
+   * Run the given tasks on at most <code>maxThreads</code> worker threads.
+   *
+   * <p>Each task runs as the user of the calling thread, so audit fields and user dependent
+   * values are the same as if the task was run by the caller. The unit of work of the worker is
+   * ended after each task, so its entity manager is closed and entities are never shared between
+   * tasks. Results and errors are handed to the calling thread in the order of the tasks.
+   *
+   * @param tasks the tasks to run.
+   * @param maxThreads maximum number of worker threads.
+   * @param onResult called with the result and the index of each successful task.
+   * @param onError called with the cause and the index of each failed task.
+   * @return false if the calling thread was interrupted before all the tasks were handled.
+   */
+  public static <T> boolean run(
+      List<? extends Callable<T>> tasks,
+      int maxThreads,
+      ObjIntConsumer<T> onResult,
+      ObjIntConsumer<Throwable> onError) {
+
+    if (tasks.isEmpty()) {
+      return true;
+    }
+
+    Subject subject = AuthUtils.getSubject();
+    List<Future<T>> futures = new ArrayList<>();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(maxThreads, tasks.size())));
+
+    try {
+      for (Callable<T> task : tasks) {
+        futures.add(executor.submit(asWorker(subject, task)));
+      }
+
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          onResult.accept(futures.get(i).get(), i);
+        } catch (ExecutionException e) {
+          onError.accept(e.getCause() != null ? e.getCause() : e, i);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return true;
+  }
+
+  /**
+   * Wrap a task so that it runs as the given user and ends the unit of work of the thread once
+   * done.
+   */
+  public static <T> Callable<T> asWorker(Subject subject, Callable<T> task) {
+    Callable<T> worker =
+        () -> {
+          try {
+            return task.call();
+          } finally {
+            Beans.get(UnitOfWork.class).end();
+          }
+        };
+    return subject != null ? subject.associateWith(worker) : worker;
+  }
+
+  /**
+   * Build the subject of a user from its code, to run as this user a task saved earlier, from a
+   * thread that has no user such as a scheduler.
+   *
+   * @param userCode the code of the user, may be null.
+   * @return the subject of the user, or null if no code is given.
+   */
+  public static Subject getSubject(String userCode) {
+    if (userCode == null) {
+      return null;
+    }
+    return new Subject.Builder(SecurityUtils.getSecurityManager())
+        .principals(new SimplePrincipalCollection(userCode, REALM_NAME))
+        .authenticated(true)
+        .buildSubject();
+  }
+}
@@ -23,6 +23,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -30,11 +32,31 @@ import javax.xml.bind.Unmarshaller;
 
 public final class Marschaller {
 
+  private static final Map<String, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
   private Marschaller() {}
 
+  /**
+   * Get the JAXB context of the given package, created on first use and then shared, as creating a
+   * context loads and introspects all the classes of the schema.
+   *
+   * @param context the package of the classes generated from the schema
+   * @return the JAXB context
+   * @throws JAXBException
+   */
+  public static JAXBContext getContext(String context) throws JAXBException {
+
+    JAXBContext jaxbContext = CONTEXTS.get(context);
+    if (jaxbContext == null) {
+      jaxbContext = JAXBContext.newInstance(context);
+      CONTEXTS.putIfAbsent(context, jaxbContext);
+    }
+    return jaxbContext;
+  }
+
   public static void marschalOutputStream(Object jaxbElement, String context) throws JAXBException {
 
-    JAXBContext jaxbContext = JAXBContext.newInstance(context);
+    JAXBContext jaxbContext = getContext(context);
     marschalOutputStream(jaxbElement, jaxbContext);
   }
 
@@ -50,7 +72,7 @@ public final class Marschaller {
   public static void marschal(Object jaxbElement, String context, StringWriter writer)
       throws JAXBException {
 
-    JAXBContext jaxbContext = JAXBContext.newInstance(context);
+    JAXBContext jaxbContext = getContext(context);
     marschal(jaxbElement, jaxbContext, writer);
   }
 
@@ -70,7 +92,7 @@ public final class Marschaller {
       Object jaxbElement, String context, String destinationFolder, String fileName)
       throws JAXBException, IOException {
 
-    JAXBContext jaxbContext = JAXBContext.newInstance(context);
+    JAXBContext jaxbContext = getContext(context);
     return marschalFile(jaxbElement, jaxbContext, destinationFolder, fileName);
   }
 
@@ -91,7 +113,7 @@ public final class Marschaller {
 
   public static Object unmarschalFile(String context, String data) throws JAXBException {
 
-    JAXBContext jc = JAXBContext.newInstance(context);
+    JAXBContext jc = getContext(context);
 
     return unmarschalFile(jc, data);
   }
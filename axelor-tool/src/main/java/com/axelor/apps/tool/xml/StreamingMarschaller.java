@@ -0,0 +1,348 @@
+/*
+ * Axelor Business Solutions
+ *
+ * Copyright (C) 2021 Axelor (<http://axelor.com>).
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.axelor.apps.tool.xml;
+
+import com.axelor.apps.tool.file.FileTool;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a large XML file element by element, so that only one element is held in memory at a
+ * time. The head of the document is marshalled first with one of its elements left open, then the
+ * children of this element are marshalled one by one, and the file is closed by {@link #finish()}.
+ *
+ * <p>The output is not indented.
+ */
+public class StreamingMarschaller implements AutoCloseable {
+
+  private static final String ENCODING = "UTF-8";
+
+  private final File file;
+  private final OutputStream outputStream;
+  private final XMLStreamWriter writer;
+  private final Marshaller marshaller;
+
+  private int openElementCount;
+  private boolean finished;
+
+  public StreamingMarschaller(JAXBContext jaxbContext, String destinationFolder, String fileName)
+      throws JAXBException, IOException {
+
+    file = FileTool.create(destinationFolder, fileName);
+    outputStream = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      writer = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, ENCODING);
+      writer.writeStartDocument(ENCODING, "1.0");
+    } catch (XMLStreamException e) {
+      outputStream.close();
+      throw new JAXBException(e);
+    }
+
+    marshaller = jaxbContext.createMarshaller();
+    marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+  }
+
+  /**
+   * Marshal the document up to the end of the given element, which is left open so that children
+   * can be appended to it. The element must be the last one of the document.
+   *
+   * @param jaxbElement the document, without the children to stream
+   * @param openElementName the local name of the element to leave open
+   * @throws JAXBException
+   */
+  public void marschalHead(Object jaxbElement, String openElementName) throws JAXBException {
+
+    HeadStreamWriter headWriter = new HeadStreamWriter(writer, openElementName);
+    marshaller.marshal(jaxbElement, headWriter);
+
+    if (headWriter.skippedEndElementCount == 0) {
+      throw new JAXBException("Element " + openElementName + " not found");
+    }
+    openElementCount = headWriter.skippedEndElementCount;
+  }
+
+  /**
+   * Marshal an element as the last child of the open element.
+   *
+   * @param jaxbElement an element, usually a {@link javax.xml.bind.JAXBElement}
+   * @throws JAXBException
+   */
+  public void marschalElement(Object jaxbElement) throws JAXBException {
+    marshaller.marshal(jaxbElement, writer);
+  }
+
+  /**
+   * Close the open elements and the document.
+   *
+   * @return the written file
+   * @throws JAXBException
+   * @throws IOException
+   */
+  public File finish() throws JAXBException, IOException {
+
+    try {
+      for (; openElementCount > 0; openElementCount--) {
+        writer.writeEndElement();
+      }
+      writer.writeEndDocument();
+      writer.close();
+    } catch (XMLStreamException e) {
+      throw new JAXBException(e);
+    }
+    outputStream.close();
+    finished = true;
+
+    return file;
+  }
+
+  /** Close the file, which is deleted if it has not been finished. */
+  @Override
+  public void close() throws IOException {
+    if (finished) {
+      return;
+    }
+    outputStream.close();
+    Files.deleteIfExists(file.toPath());
+  }
+
+  /**
+   * Writes the events of the head of the document, and skips the end of the element to leave open
+   * and the end of its parents.
+   */
+  private static class HeadStreamWriter implements XMLStreamWriter {
+
+    private final XMLStreamWriter delegate;
+    private final String openElementName;
+    private final Deque<String> elementNames = new ArrayDeque<>();
+
+    private int skippedEndElementCount;
+
+    private HeadStreamWriter(XMLStreamWriter delegate, String openElementName) {
+      this.delegate = delegate;
+      this.openElementName = openElementName;
+    }
+
+    private void checkNotSkipping() throws XMLStreamException {
+      if (skippedEndElementCount > 0) {
+        throw new XMLStreamException(
+            "Element " + openElementName + " must be the last element of the document");
+      }
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+      checkNotSkipping();
+      elementNames.push(localName);
+      delegate.writeStartElement(localName);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+      checkNotSkipping();
+      elementNames.push(localName);
+      delegate.writeStartElement(namespaceURI, localName);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI)
+        throws XMLStreamException {
+      checkNotSkipping();
+      elementNames.push(localName);
+      delegate.writeStartElement(prefix, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeEmptyElement(namespaceURI, localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI)
+        throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeEmptyElement(prefix, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeEmptyElement(localName);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+      String localName = elementNames.pop();
+      if (skippedEndElementCount > 0 || localName.equals(openElementName)) {
+        skippedEndElementCount++;
+        return;
+      }
+      delegate.writeEndElement();
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+      // written by finish()
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+      // the underlying writer is closed by finish()
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+      delegate.flush();
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+      delegate.writeAttribute(localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value)
+        throws XMLStreamException {
+      delegate.writeAttribute(prefix, namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value)
+        throws XMLStreamException {
+      delegate.writeAttribute(namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+      delegate.writeNamespace(prefix, namespaceURI);
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+      delegate.writeDefaultNamespace(namespaceURI);
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeComment(data);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeProcessingInstruction(target);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data)
+        throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeProcessingInstruction(target, data);
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeCData(data);
+    }
+
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+      delegate.writeDTD(dtd);
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeEntityRef(name);
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+      // written by the constructor
+    }
+
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+      // written by the constructor
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+      // written by the constructor
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeCharacters(text);
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+      checkNotSkipping();
+      delegate.writeCharacters(text, start, len);
+    }
+
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+      return delegate.getPrefix(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+      delegate.setPrefix(prefix, uri);
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+      delegate.setDefaultNamespace(uri);
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+      delegate.setNamespaceContext(context);
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+      return delegate.getNamespaceContext();
+    }
+
+    @Override
+    public Object getProperty(String name) {
+      return delegate.getProperty(name);
+    }
+  }
+}